@@ -0,0 +1,270 @@
+package datawave.edge.util;
+
+import datawave.edge.model.EdgeModelAware.Fields.FieldKey;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.commons.lang.StringEscapeUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Locates the fields of an edge key within the key's row, column family and column qualifier bytes without decoding them, so that filters can compare field
+ * values against the raw bytes. The fields are found in the same places as {@link EdgeKeyUtil#dissasembleKey(Key, boolean)} would find them.
+ *
+ * An instance is reused across keys by calling {@link #reset(Key, boolean)}, and is not thread safe.
+ */
+public class EdgeKeySegments {
+    
+    /** the result of comparing a field when the raw bytes are not enough to decide */
+    public static final int UNDECIDED = -1;
+    
+    private static final byte[] STATS = "STATS".getBytes(StandardCharsets.UTF_8);
+    private static final int MAX_PARTS = 5;
+    
+    private final byte[][] data = new byte[FieldKey.values().length][];
+    private final int[] offsets = new int[FieldKey.values().length];
+    private final int[] lengths = new int[FieldKey.values().length];
+    
+    private final int[] partOffsets = new int[MAX_PARTS];
+    private final int[] partLengths = new int[MAX_PARTS];
+    
+    private boolean protobuffFormat;
+    private boolean statsEdge;
+    
+    /**
+     * Locate the fields of the supplied key
+     *
+     * @param key
+     *            the edge key
+     * @param protobuffEdgeFormat
+     *            true if the key is in the protocol buffer edge format
+     */
+    public void reset(Key key, boolean protobuffEdgeFormat) {
+        for (int i = 0; i < data.length; i++) {
+            data[i] = null;
+        }
+        this.protobuffFormat = protobuffEdgeFormat;
+        
+        ByteSequence row = key.getRowData();
+        ByteSequence colFam = key.getColumnFamilyData();
+        ByteSequence colQual = key.getColumnQualifierData();
+        
+        setRow(row);
+        
+        statsEdge = startsWith(colFam, STATS);
+        if (!statsEdge) {
+            int parts = split(colFam);
+            if (parts >= 2) {
+                setPart(FieldKey.EDGE_TYPE, colFam, 0);
+                setPart(FieldKey.EDGE_RELATIONSHIP, colFam, 1);
+            }
+            if (protobuffEdgeFormat) {
+                setColumnQualifier(colQual);
+            } else {
+                if (parts >= 3) {
+                    setPart(FieldKey.EDGE_ATTRIBUTE1, colFam, 2);
+                }
+                if (parts >= 4) {
+                    setPart(FieldKey.EDGE_ATTRIBUTE2, colFam, 3);
+                }
+                if (parts >= 5) {
+                    setPart(FieldKey.EDGE_ATTRIBUTE3, colFam, 4);
+                }
+                set(FieldKey.DATE, colQual, 0, colQual.length());
+            }
+        } else if (protobuffEdgeFormat) {
+            if (split(colFam) >= 4) {
+                setPart(FieldKey.EDGE_TYPE, colFam, 2);
+                setPart(FieldKey.EDGE_RELATIONSHIP, colFam, 3);
+            }
+            setColumnQualifier(colQual);
+        }
+    }
+    
+    public boolean isStatsEdge() {
+        return statsEdge;
+    }
+    
+    public boolean hasField(FieldKey field) {
+        if (field == FieldKey.STATS_EDGE) {
+            return statsEdge;
+        }
+        return data[field.ordinal()] != null;
+    }
+    
+    /**
+     * @param field
+     *            the field
+     * @return true if the field is read from the column qualifier, and therefore may differ between keys sharing a row and column family
+     */
+    public boolean isColumnQualifierField(FieldKey field) {
+        switch (field) {
+            case DATE:
+                return true;
+            case EDGE_ATTRIBUTE1:
+            case EDGE_ATTRIBUTE2:
+            case EDGE_ATTRIBUTE3:
+                return protobuffFormat || statsEdge;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Compare a field against a value without decoding the field. Only ascii bytes are compared; anything which would require decoding (non-ascii bytes, or
+     * escaped source and sink values) leaves the comparison undecided.
+     *
+     * @param field
+     *            the field
+     * @param lowerCaseValue
+     *            the lower case, ascii value to compare against
+     * @return 1 if the field, once lower cased, equals the value, 0 if it does not or the field is missing, or {@link #UNDECIDED}
+     */
+    public int equalsIgnoreCase(FieldKey field, byte[] lowerCaseValue) {
+        byte[] bytes = data[field.ordinal()];
+        if (bytes == null) {
+            return 0;
+        }
+        int offset = offsets[field.ordinal()];
+        int length = lengths[field.ordinal()];
+        boolean escaped = field == FieldKey.EDGE_SOURCE || field == FieldKey.EDGE_SINK;
+        
+        int common = Math.min(length, lowerCaseValue.length);
+        for (int i = 0; i < common; i++) {
+            byte b = bytes[offset + i];
+            if (b < 0 || (escaped && b == '\\')) {
+                return UNDECIDED;
+            }
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowerCaseValue[i]) {
+                return 0;
+            }
+        }
+        for (int i = common; i < length; i++) {
+            byte b = bytes[offset + i];
+            if (b < 0 || (escaped && b == '\\')) {
+                return UNDECIDED;
+            }
+        }
+        return length == lowerCaseValue.length ? 1 : 0;
+    }
+    
+    /**
+     * Decode a field, as it would be decoded by {@link EdgeKeyUtil#dissasembleKey(Key, boolean)}
+     *
+     * @param field
+     *            the field
+     * @return the field value, or null if the key does not have the field
+     */
+    public String getValue(FieldKey field) {
+        if (field == FieldKey.STATS_EDGE) {
+            return statsEdge ? "true" : null;
+        }
+        byte[] bytes = data[field.ordinal()];
+        if (bytes == null) {
+            return null;
+        }
+        String value = new String(bytes, offsets[field.ordinal()], lengths[field.ordinal()], StandardCharsets.UTF_8);
+        if (field == FieldKey.EDGE_SOURCE || field == FieldKey.EDGE_SINK) {
+            value = StringEscapeUtils.unescapeJava(value);
+        }
+        return value;
+    }
+    
+    private void setRow(ByteSequence row) {
+        byte[] bytes = row.getBackingArray();
+        int start = row.offset();
+        int end = start + row.length();
+        int separator = -1;
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == 0) {
+                if (separator >= 0) {
+                    // more than one separator, which is not a valid edge row
+                    return;
+                }
+                separator = i;
+            }
+        }
+        if (separator < 0) {
+            set(FieldKey.EDGE_SOURCE, row, 0, row.length());
+        } else {
+            set(FieldKey.EDGE_SOURCE, row, 0, separator - start);
+            set(FieldKey.EDGE_SINK, row, separator - start + 1, end - separator - 1);
+        }
+    }
+    
+    private void setColumnQualifier(ByteSequence colQual) {
+        int parts = split(colQual);
+        if (parts >= 1) {
+            setPart(FieldKey.DATE, colQual, 0);
+        }
+        if (parts >= 2) {
+            setPart(FieldKey.EDGE_ATTRIBUTE1, colQual, 1);
+        }
+        if (parts >= 3) {
+            setPart(FieldKey.EDGE_ATTRIBUTE2, colQual, 2);
+        }
+        if (parts >= 4) {
+            setPart(FieldKey.EDGE_ATTRIBUTE3, colQual, 3);
+        }
+    }
+    
+    /**
+     * Split a sequence on '/', following the semantics of {@link String#split(String)}: trailing empty parts are dropped unless the sequence is empty.
+     *
+     * @return the number of parts, of which only the first {@link #MAX_PARTS} are recorded
+     */
+    private int split(ByteSequence sequence) {
+        byte[] bytes = sequence.getBackingArray();
+        int start = sequence.offset();
+        int end = start + sequence.length();
+        if (start == end) {
+            partOffsets[0] = 0;
+            partLengths[0] = 0;
+            return 1;
+        }
+        
+        int parts = 0;
+        int nonEmptyParts = 0;
+        int partStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || bytes[i] == '/') {
+                if (parts < MAX_PARTS) {
+                    partOffsets[parts] = partStart - start;
+                    partLengths[parts] = i - partStart;
+                }
+                parts++;
+                if (i > partStart) {
+                    nonEmptyParts = parts;
+                }
+                partStart = i + 1;
+            }
+        }
+        return nonEmptyParts;
+    }
+    
+    private void setPart(FieldKey field, ByteSequence sequence, int part) {
+        set(field, sequence, partOffsets[part], partLengths[part]);
+    }
+    
+    private void set(FieldKey field, ByteSequence sequence, int offset, int length) {
+        data[field.ordinal()] = sequence.getBackingArray();
+        offsets[field.ordinal()] = sequence.offset() + offset;
+        lengths[field.ordinal()] = length;
+    }
+    
+    private static boolean startsWith(ByteSequence sequence, byte[] prefix) {
+        if (sequence.length() < prefix.length) {
+            return false;
+        }
+        byte[] bytes = sequence.getBackingArray();
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[sequence.offset() + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
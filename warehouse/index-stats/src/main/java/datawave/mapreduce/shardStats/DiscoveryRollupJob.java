@@ -0,0 +1,215 @@
+package datawave.mapreduce.shardStats;
+
+import datawave.ingest.data.config.ingest.AccumuloHelper;
+import datawave.ingest.mapreduce.job.IngestJob;
+import datawave.ingest.mapreduce.job.MultiRFileOutputFormatter;
+import datawave.ingest.table.aggregator.GlobalIndexUidAggregator;
+import datawave.iterators.TotalAggregatingIterator;
+import datawave.mr.bulk.BulkInputFormat;
+import datawave.mr.bulk.MultiRfileInputformat;
+import datawave.query.discovery.DiscoveryRollups;
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.admin.CompactionConfig;
+import org.apache.accumulo.core.client.admin.SecurityOperations;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Level;
+
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Date;
+
+import static datawave.mapreduce.shardStats.StatsJob.DEFAULT_LOG_LEVEL;
+
+/**
+ * Map/Reduce job which materializes the discovery rollups from the global index. For each term and field, the counts are summed by month and by year for each
+ * datatype and visibility, so that discovery over a long date range can read a handful of rollups per term rather than one index entry per shard. The whole
+ * index is read on every run, and the input path argument is ignored; a run replaces the rollups of the previous one, so the job should be scheduled to run
+ * after each month ends (late data for a closed month is picked up by the next run).
+ * <p>
+ * Only the index entries before the high-water mark of the run are rolled up: by default the first day of the month in which the job runs, so that the
+ * current month is never partially rolled up. The mark is written to the rollup table with the rollups, and queries only take the periods which end before it
+ * from the rollups.
+ * <p>
+ * The rollup table must not have a combiner on it: the rollups of a run are written with a single timestamp and replace those of earlier runs through the
+ * versioning iterator. Queries ignore rollups older than the run which wrote the high-water mark, and those left behind for combinations which have aged off
+ * the index are compacted away by the following run.
+ */
+public class DiscoveryRollupJob extends IngestJob {
+    
+    static final String ROLLUP_INPUT_TABLE_NAME = "discovery.rollup.input.table";
+    static final String ROLLUP_OUTPUT_TABLE_NAME = "discovery.rollup.table.name";
+    static final String ROLLUP_TIMESTAMP = "discovery.rollup.timestamp";
+    static final String ROLLUP_HIGH_WATER_MARK = "discovery.rollup.high.water.mark";
+    static final String ROLLUP_JOB_LOG_LEVEL = "discovery.rollup.job.log.level";
+    
+    // instance members
+    private String inputTableName;
+    private String outputTableName;
+    
+    public static void main(String[] args) throws Exception {
+        System.out.println("Running main");
+        System.exit(ToolRunner.run(new Configuration(), new DiscoveryRollupJob(), args));
+    }
+    
+    @Override
+    protected Configuration parseArguments(String[] args, Configuration conf) throws ClassNotFoundException, URISyntaxException, IllegalArgumentException {
+        Configuration parseConf = super.parseArguments(args, conf);
+        
+        // force bulk job
+        this.outputMutations = false;
+        this.useMapOnly = false;
+        
+        if (null != parseConf) {
+            parseRollupOptions(args, parseConf);
+            
+            parseConf.setStrings(MultiRFileOutputFormatter.CONFIGURED_TABLE_NAMES, this.outputTableName);
+            // every reducer writes the same timestamp
+            parseConf.setLong(ROLLUP_TIMESTAMP, System.currentTimeMillis());
+            if (null == parseConf.get(ROLLUP_HIGH_WATER_MARK)) {
+                parseConf.set(ROLLUP_HIGH_WATER_MARK, DiscoveryRollups.highWaterMark(new Date()));
+            }
+            // fail fast on a mark which the mappers could not use
+            DiscoveryRollups.parseDay(parseConf.get(ROLLUP_HIGH_WATER_MARK));
+            log.info("high water mark(" + parseConf.get(ROLLUP_HIGH_WATER_MARK) + ")");
+            
+            this.mapper = DiscoveryRollupMapper.class;
+            this.inputFormat = MultiRfileInputformat.class;
+        }
+        
+        return parseConf;
+    }
+    
+    @Override
+    protected void configureInputFormat(Job job, AccumuloHelper cbHelper, Configuration conf) throws Exception {
+        BulkInputFormat.setZooKeeperInstance(conf, cbHelper.getInstanceName(), cbHelper.getZooKeepers());
+        
+        // combine the uid lists as the index table does, since the rfiles may hold entries which are not yet compacted
+        IteratorSetting cfg = new IteratorSetting(19, "UIDAggregator", TotalAggregatingIterator.class);
+        cfg.addOption("*", GlobalIndexUidAggregator.class.getName());
+        BulkInputFormat.addIterator(conf, cfg);
+        
+        // get authorizations
+        Authorizations auths;
+        try (AccumuloClient client = cbHelper.newClient()) {
+            SecurityOperations secOps = client.securityOperations();
+            auths = secOps.getUserAuthorizations(cbHelper.getUsername());
+            
+            removeSupersededRollups(client);
+        }
+        
+        BulkInputFormat.setInputInfo(job, cbHelper.getUsername(), cbHelper.getPassword(), this.inputTableName, auths);
+        BulkInputFormat.setRanges(job, Collections.singleton(new Range()));
+        this.inputPaths = "";
+        
+        super.configureInputFormat(job, cbHelper, conf);
+    }
+    
+    @Override
+    protected void configureJob(Job job, Configuration conf, Path workDirPath, FileSystem outputFs) throws Exception {
+        super.configureJob(job, conf, workDirPath, outputFs);
+        
+        job.setReducerClass(DiscoveryRollupReducer.class);
+    }
+    
+    /**
+     * Compacts away the rollups written before the previous run. Queries already ignore them, as they are older than the high-water mark of the previous run,
+     * but the rollups of a term, field, datatype or visibility which has aged off the index are never replaced by a later run. The rollups of the previous run
+     * are kept, as they are used until this run is loaded.
+     *
+     * @param client
+     *            the accumulo client
+     * @throws Exception
+     *             if the compaction cannot be started
+     */
+    private void removeSupersededRollups(AccumuloClient client) throws Exception {
+        if (!client.tableOperations().exists(this.outputTableName)) {
+            return;
+        }
+        DiscoveryRollups.HighWaterMark previous = DiscoveryRollups.readHighWaterMark(client, this.outputTableName);
+        if (null == previous) {
+            return;
+        }
+        
+        IteratorSetting cfg = new IteratorSetting(50, "supersededRollups", TimestampFilter.class);
+        TimestampFilter.setStart(cfg, previous.getTimestamp(), true);
+        log.info("removing rollups written before " + previous.getTimestamp() + " from " + this.outputTableName);
+        client.tableOperations().compact(this.outputTableName, new CompactionConfig().setIterators(Collections.singletonList(cfg)).setWait(false));
+    }
+    
+    /**
+     * Processes the options for the rollup job.
+     *
+     * @param inArgs
+     *            input arguments to rollup job
+     * @param conf
+     *            hadoop configuration
+     */
+    private void parseRollupOptions(final String[] inArgs, final Configuration conf) {
+        for (String inArg : inArgs) {
+            String[] args = inArg.split("=");
+            JobArg arg = JobArg.getOption(args[0]);
+            if (null != arg) {
+                switch (arg) {
+                    case JOB_LOG_LEVEL:
+                        Level level = Level.toLevel(args[1], DEFAULT_LOG_LEVEL);
+                        log.setLevel(level);
+                        log.info("log level set to " + level.toString());
+                        break;
+                    default:
+                        conf.set(arg.key, args[1]);
+                        break;
+                }
+            }
+        }
+        
+        this.inputTableName = conf.get(ROLLUP_INPUT_TABLE_NAME);
+        if (null == this.inputTableName) {
+            throw new IllegalStateException("input table property (" + ROLLUP_INPUT_TABLE_NAME + ") is not set");
+        }
+        log.info("input table(" + this.inputTableName + ")");
+        
+        this.outputTableName = conf.get(ROLLUP_OUTPUT_TABLE_NAME);
+        if (null == this.outputTableName) {
+            throw new IllegalStateException("output table property (" + ROLLUP_OUTPUT_TABLE_NAME + ") is not set");
+        }
+        log.info("output table(" + this.outputTableName + ")");
+    }
+    
+    /**
+     * Helper enum to manage options.
+     */
+    private enum JobArg {
+        INPUT_TABLE(ROLLUP_INPUT_TABLE_NAME),
+        OUTPUT_TABLE(ROLLUP_OUTPUT_TABLE_NAME),
+        HIGH_WATER_MARK(ROLLUP_HIGH_WATER_MARK),
+        JOB_LOG_LEVEL(ROLLUP_JOB_LOG_LEVEL),
+        MAPPER_LOG_LEVEL(DiscoveryRollupMapper.ROLLUP_MAPPER_LOG_LEVEL);
+        
+        static JobArg getOption(String option) {
+            while (option.startsWith("-")) {
+                option = option.substring(1);
+            }
+            for (JobArg opt : JobArg.values()) {
+                if (opt.key.equals(option)) {
+                    return opt;
+                }
+            }
+            
+            return null;
+        }
+        
+        private final String key;
+        
+        JobArg(String kVal) {
+            this.key = kVal;
+        }
+    }
+}
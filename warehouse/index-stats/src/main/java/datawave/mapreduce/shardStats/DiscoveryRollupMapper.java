@@ -0,0 +1,160 @@
+package datawave.mapreduce.shardStats;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.ingest.mapreduce.partition.MultiTableRangePartitioner;
+import datawave.ingest.protobuf.Uid;
+import datawave.query.discovery.DiscoveryRollups;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static datawave.mapreduce.shardStats.DiscoveryRollupJob.ROLLUP_HIGH_WATER_MARK;
+import static datawave.mapreduce.shardStats.DiscoveryRollupJob.ROLLUP_OUTPUT_TABLE_NAME;
+import static datawave.mapreduce.shardStats.StatsJob.DEFAULT_LOG_LEVEL;
+
+/**
+ * Mapper for the discovery rollups. The input is the global index, with entries of the form {@code term fieldName:yyyyMMdd_N\0datatype [vis] Uid.List}. The
+ * counts for each term and field are summed by month and by year, for each datatype and visibility, and written as
+ * {@code term fieldName:period\0datatype [vis] Uid.List} where the period is yyyyMM or yyyy and the list holds only the count. Index entries from the
+ * high-water mark (yyyyMMdd) on are not rolled up, and every mapper writes the mark so that it is loaded with the rollups.
+ */
+public class DiscoveryRollupMapper extends Mapper<Key,Value,BulkIngestKey,Value> {
+    private static final Logger log = Logger.getLogger(DiscoveryRollupMapper.class);
+    
+    static final String ROLLUP_MAPPER_LOG_LEVEL = "discovery.rollup.mapper.log.level";
+    
+    private static final char NULL_CHAR = '\0';
+    
+    private Text outputTable;
+    private String highWaterMark;
+    // row and column family for the counts being summed
+    private Key current;
+    private final Map<Period,Long> counts = new HashMap<>();
+    // total of all index entries
+    private long total;
+    // total of all output entries
+    private long outputTotal;
+    
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        Configuration conf = context.getConfiguration();
+        
+        MultiTableRangePartitioner.setContext(context);
+        
+        // set log level if configured
+        Level level = Level.toLevel(conf.get(ROLLUP_MAPPER_LOG_LEVEL), DEFAULT_LOG_LEVEL);
+        log.setLevel(level);
+        log.info("log level set to " + level.toString());
+        
+        this.outputTable = new Text(conf.get(ROLLUP_OUTPUT_TABLE_NAME));
+        log.info("output table(" + this.outputTable.toString() + ")");
+        
+        this.highWaterMark = conf.get(ROLLUP_HIGH_WATER_MARK);
+        if (null == this.highWaterMark) {
+            throw new IllegalStateException("high water mark property (" + ROLLUP_HIGH_WATER_MARK + ") is not set");
+        }
+        log.info("high water mark(" + this.highWaterMark + ")");
+    }
+    
+    @Override
+    protected void map(Key key, Value value, Context context) throws IOException, InterruptedException {
+        if (null == this.current || !this.current.equals(key, PartialKey.ROW_COLFAM)) {
+            flush(context);
+            this.current = new Key(key.getRow(), key.getColumnFamily());
+        }
+        
+        // the colq is yyyyMMdd_N\0datatype; anything else (e.g. old tasking entries) is not rolled up
+        String colq = key.getColumnQualifier().toString();
+        int separator = colq.indexOf(NULL_CHAR);
+        if (separator < 8 || colq.indexOf(NULL_CHAR, separator + 1) >= 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("skipping key(" + key + ")");
+            }
+            return;
+        }
+        // days from the high-water mark on are still being ingested, and are read from the index
+        if (colq.substring(0, 8).compareTo(this.highWaterMark) >= 0) {
+            return;
+        }
+        
+        long count;
+        try {
+            count = Uid.List.parseFrom(value.get()).getCOUNT();
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("unable to parse the uid list for key(" + key + ")");
+            return;
+        }
+        
+        this.total++;
+        String datatype = colq.substring(separator + 1);
+        Text vis = key.getColumnVisibility();
+        this.counts.merge(new Period(colq.substring(0, 6), datatype, vis), count, Long::sum);
+        this.counts.merge(new Period(colq.substring(0, 4), datatype, vis), count, Long::sum);
+        
+        context.progress();
+    }
+    
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        flush(context);
+        
+        Key mark = new Key(DiscoveryRollups.HIGH_WATER_MARK_ROW, DiscoveryRollups.HIGH_WATER_MARK_COLF, "", "", 0);
+        context.write(new BulkIngestKey(this.outputTable, mark), new Value(this.highWaterMark.getBytes()));
+        
+        log.info("total keys(" + this.outputTotal + ") index entries(" + this.total + ")");
+        
+        super.cleanup(context);
+    }
+    
+    private void flush(Context context) throws IOException, InterruptedException {
+        for (Map.Entry<Period,Long> entry : this.counts.entrySet()) {
+            Period period = entry.getKey();
+            Key key = new Key(this.current.getRow(), this.current.getColumnFamily(), new Text(period.period + NULL_CHAR + period.datatype), period.vis, 0);
+            Uid.List list = Uid.List.newBuilder().setIGNORE(true).setCOUNT(entry.getValue()).build();
+            context.write(new BulkIngestKey(this.outputTable, key), new Value(list.toByteArray()));
+            this.outputTotal++;
+        }
+        this.counts.clear();
+    }
+    
+    /**
+     * The month or year, datatype and visibility which a count is summed for.
+     */
+    private static class Period {
+        final String period;
+        final String datatype;
+        final Text vis;
+        
+        Period(String period, String datatype, Text vis) {
+            this.period = period;
+            this.datatype = datatype;
+            this.vis = vis;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Period)) {
+                return false;
+            }
+            Period other = (Period) o;
+            return period.equals(other.period) && datatype.equals(other.datatype) && vis.equals(other.vis);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(period, datatype, vis);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package datawave.mapreduce.shardStats;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.ingest.mapreduce.job.reduce.BulkIngestKeyAggregatingReducer;
+import datawave.ingest.protobuf.Uid;
+import datawave.query.discovery.DiscoveryRollups;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+
+/**
+ * Reducer for the discovery rollups. Sums the counts produced by each mapper for a term, field, period, datatype and visibility. Every rollup written by a run
+ * carries the same timestamp, so that a later run of the job replaces, rather than adds to, the rollups of an earlier one. The high-water mark written by
+ * every mapper is written once, with the same timestamp as the rollups.
+ */
+public class DiscoveryRollupReducer extends BulkIngestKeyAggregatingReducer<BulkIngestKey,Value> {
+    private static final Logger log = Logger.getLogger(DiscoveryRollupReducer.class);
+    
+    // total number of keys written to output table
+    private long totalKeys;
+    
+    // timestamp for bulk ingest key
+    private long timestamp;
+    
+    @Override
+    public void setup(Configuration conf) throws IOException, InterruptedException {
+        super.setup(conf);
+        this.timestamp = conf.getLong(DiscoveryRollupJob.ROLLUP_TIMESTAMP, System.currentTimeMillis());
+        log.info("rollup timestamp(" + this.timestamp + ")");
+    }
+    
+    @Override
+    public void finish(TaskInputOutputContext<?,?,BulkIngestKey,Value> context) throws IOException, InterruptedException {
+        log.info("reduce total(" + this.totalKeys + ")");
+        super.finish(context);
+    }
+    
+    @Override
+    public void doReduce(BulkIngestKey key, Iterable<Value> values, TaskInputOutputContext<?,?,BulkIngestKey,Value> context) throws IOException,
+                    InterruptedException {
+        if (DiscoveryRollups.HIGH_WATER_MARK_ROW.equals(key.getKey().getRow().toString())) {
+            key.getKey().setTimestamp(this.timestamp);
+            writeBulkIngestKey(key, new Value(values.iterator().next()), context);
+            return;
+        }
+        
+        long count = 0;
+        for (Value value : values) {
+            try {
+                count += Uid.List.parseFrom(value.get()).getCOUNT();
+            } catch (InvalidProtocolBufferException e) {
+                log.warn("unable to parse the uid list for key(" + key.getKey() + ")");
+            }
+        }
+        
+        key.getKey().setTimestamp(this.timestamp);
+        Uid.List list = Uid.List.newBuilder().setIGNORE(true).setCOUNT(count).build();
+        writeBulkIngestKey(key, new Value(list.toByteArray()), context);
+        this.totalKeys++;
+        
+        context.progress();
+    }
+}
@@ -0,0 +1,76 @@
+package datawave.mapreduce.shardStats;
+
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.ingest.protobuf.Uid;
+import datawave.query.discovery.DiscoveryRollups;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static datawave.mapreduce.shardStats.StatsInit.TEST_TABLE;
+
+public class DiscoveryRollupMapperTest {
+    
+    @Test
+    public void testRollups() throws IOException, InterruptedException {
+        final Mapper<Key,Value,BulkIngestKey,Value> mapper = new DiscoveryRollupMapper();
+        final MockMapDriver<Key,Value,BulkIngestKey,Value> driver = new MockMapDriver(mapper);
+        driver.getConfiguration().set(DiscoveryRollupJob.ROLLUP_OUTPUT_TABLE_NAME, TEST_TABLE);
+        driver.getConfiguration().set(DiscoveryRollupJob.ROLLUP_HIGH_WATER_MARK, "20200201");
+        
+        driver.addInput(new Key("bar", "FIELD", "20190115_1\0csv", "A"), count(1));
+        driver.addInput(new Key("bar", "FIELD", "20190115_2\0csv", "A"), count(2));
+        driver.addInput(new Key("bar", "FIELD", "20190115_2\0csv", "B"), count(4));
+        driver.addInput(new Key("bar", "FIELD", "20190115_2\0json", "A"), count(8));
+        driver.addInput(new Key("bar", "FIELD", "20190201_0\0csv", "A"), count(16));
+        // an old tasking entry is not rolled up
+        driver.addInput(new Key("bar", "FIELD", "csv\u000020190201\0task", "A"), count(32));
+        driver.addInput(new Key("bar", "OTHER", "20191231_0\0csv", "A"), count(64));
+        driver.addInput(new Key("foo", "FIELD", "20200101_0\0csv", "A"), count(128));
+        // entries from the high-water mark on are not rolled up
+        driver.addInput(new Key("foo", "FIELD", "20200201_0\0csv", "A"), count(256));
+        driver.addInput(new Key("foo", "FIELD", "20200315_0\0csv", "A"), count(512));
+        
+        Map<Key,Long> expected = new HashMap<>();
+        expected.put(new Key("bar", "FIELD", "201901\0csv", "A", 0), 3L);
+        expected.put(new Key("bar", "FIELD", "201901\0csv", "B", 0), 4L);
+        expected.put(new Key("bar", "FIELD", "201901\0json", "A", 0), 8L);
+        expected.put(new Key("bar", "FIELD", "201902\0csv", "A", 0), 16L);
+        expected.put(new Key("bar", "FIELD", "2019\0csv", "A", 0), 19L);
+        expected.put(new Key("bar", "FIELD", "2019\0csv", "B", 0), 4L);
+        expected.put(new Key("bar", "FIELD", "2019\0json", "A", 0), 8L);
+        expected.put(new Key("bar", "OTHER", "201912\0csv", "A", 0), 64L);
+        expected.put(new Key("bar", "OTHER", "2019\0csv", "A", 0), 64L);
+        expected.put(new Key("foo", "FIELD", "202001\0csv", "A", 0), 128L);
+        expected.put(new Key("foo", "FIELD", "2020\0csv", "A", 0), 128L);
+        
+        List<MRPair<BulkIngestKey,Value>> results = driver.run();
+        Map<Key,Long> actual = new HashMap<>();
+        String highWaterMark = null;
+        for (MRPair<BulkIngestKey,Value> entry : results) {
+            Assert.assertEquals(TEST_TABLE, entry.key.getTableName().toString());
+            if (DiscoveryRollups.HIGH_WATER_MARK_ROW.equals(entry.key.getKey().getRow().toString())) {
+                Assert.assertNull(highWaterMark);
+                Assert.assertEquals(DiscoveryRollups.HIGH_WATER_MARK_COLF, entry.key.getKey().getColumnFamily().toString());
+                highWaterMark = entry.value.toString();
+                continue;
+            }
+            Uid.List list = Uid.List.parseFrom(entry.value.get());
+            Assert.assertTrue(list.getIGNORE());
+            Assert.assertNull(actual.put(entry.key.getKey(), list.getCOUNT()));
+        }
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals("20200201", highWaterMark);
+    }
+    
+    private static Value count(long count) {
+        return new Value(Uid.List.newBuilder().setIGNORE(true).setCOUNT(count).build().toByteArray());
+    }
+}
@@ -0,0 +1,163 @@
+package datawave.mapreduce.shardStats;
+
+import datawave.ingest.mapreduce.job.BulkIngestKey;
+import datawave.ingest.protobuf.Uid;
+import datawave.query.discovery.DiscoveryRollups;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.commons.lang.math.LongRange;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static datawave.mapreduce.shardStats.StatsInit.TEST_TABLE;
+
+public class DiscoveryRollupReducerTest {
+    
+    private static final long TIMESTAMP = 1234567890L;
+    private static final String HIGH_WATER_MARK = "20200301";
+    
+    @Test
+    public void testRollupsAreSummedAndStamped() throws IOException, InterruptedException {
+        Map<BulkIngestKey,List<Value>> input = new LinkedHashMap<>();
+        input.put(rollup("bar", "201901\0csv"), Arrays.asList(count(1), count(2), count(4)));
+        input.put(rollup("bar", "2019\0csv"), Arrays.asList(count(8), count(16)));
+        // an unparseable count is dropped rather than failing the rollup
+        input.put(rollup("foo", "201901\0csv"), Arrays.asList(count(32), new Value(new byte[] {(byte) 0xff})));
+        // every mapper writes the high-water mark
+        input.put(mark(), Arrays.asList(new Value(HIGH_WATER_MARK.getBytes()), new Value(HIGH_WATER_MARK.getBytes())));
+        
+        Map<Key,Value> results = reduce(input);
+        
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals(7L, countOf(results.get(new Key("bar", "FIELD", "201901\0csv", "A", TIMESTAMP))));
+        Assert.assertEquals(24L, countOf(results.get(new Key("bar", "FIELD", "2019\0csv", "A", TIMESTAMP))));
+        Assert.assertEquals(32L, countOf(results.get(new Key("foo", "FIELD", "201901\0csv", "A", TIMESTAMP))));
+        Value mark = results.get(new Key(DiscoveryRollups.HIGH_WATER_MARK_ROW, DiscoveryRollups.HIGH_WATER_MARK_COLF, "", "", TIMESTAMP));
+        Assert.assertEquals(HIGH_WATER_MARK, mark.toString());
+    }
+    
+    @Test
+    public void testRollupsAndIndexGiveTheIndexCounts() throws IOException, InterruptedException {
+        // an index entry every third day from December 2018 into March 2020, past the high-water mark
+        List<MRPair<Key,Value>> index = new ArrayList<>();
+        for (String term : new String[] {"bar", "foo"}) {
+            Calendar day = calendar(2018, Calendar.DECEMBER, 1);
+            for (int i = 0; day.before(calendar(2020, Calendar.MARCH, 20)); i++, day.add(Calendar.DAY_OF_MONTH, 3)) {
+                String shard = String.format("%1$tY%1$tm%1$td", day);
+                index.add(new MRPair<>(new Key(term, "FIELD", shard + "_0\0csv", "A", day.getTimeInMillis()), count(i % 7 + 1)));
+                index.add(new MRPair<>(new Key(term, "FIELD", shard + "_1\0json", "A", day.getTimeInMillis()), count(i % 5 + 1)));
+            }
+        }
+        
+        // run the rollup job over the index
+        MockMapDriver<Key,Value,BulkIngestKey,Value> mapDriver = new MockMapDriver(new DiscoveryRollupMapper());
+        mapDriver.getConfiguration().set(DiscoveryRollupJob.ROLLUP_OUTPUT_TABLE_NAME, TEST_TABLE);
+        mapDriver.getConfiguration().set(DiscoveryRollupJob.ROLLUP_HIGH_WATER_MARK, HIGH_WATER_MARK);
+        for (MRPair<Key,Value> entry : index) {
+            mapDriver.addInput(entry.key, entry.value);
+        }
+        Map<BulkIngestKey,List<Value>> mapOutput = new LinkedHashMap<>();
+        for (MRPair<BulkIngestKey,Value> entry : mapDriver.run()) {
+            mapOutput.computeIfAbsent(entry.key, k -> new ArrayList<>()).add(entry.value);
+        }
+        Map<Key,Value> rollups = reduce(mapOutput);
+        
+        Date highWaterMark = DiscoveryRollups.parseDay(HIGH_WATER_MARK);
+        Date[][] queries = new Date[][] {{date(2018, Calendar.DECEMBER, 1), date(2020, Calendar.MARCH, 20)},
+                {date(2019, Calendar.JANUARY, 15), date(2019, Calendar.DECEMBER, 31)}, {date(2019, Calendar.FEBRUARY, 1), date(2020, Calendar.FEBRUARY, 29)},
+                {date(2020, Calendar.JANUARY, 5), date(2020, Calendar.MARCH, 10)}, {date(2019, Calendar.MARCH, 1), date(2019, Calendar.MARCH, 31)}};
+        for (Date[] query : queries) {
+            DiscoveryRollups split = DiscoveryRollups.split(query[0], query[1], highWaterMark);
+            
+            Map<String,Long> expected = new HashMap<>();
+            Map<String,Long> actual = new HashMap<>();
+            for (MRPair<Key,Value> entry : index) {
+                long day = entry.key.getTimestamp();
+                if (day >= query[0].getTime() && day <= query[1].getTime()) {
+                    expected.merge(countKey(entry.key), countOf(entry.value), Long::sum);
+                }
+                for (LongRange range : split.getRawDateRanges()) {
+                    if (range.containsLong(day)) {
+                        actual.merge(countKey(entry.key), countOf(entry.value), Long::sum);
+                    }
+                }
+            }
+            for (Map.Entry<Key,Value> entry : rollups.entrySet()) {
+                String colq = entry.getKey().getColumnQualifier().toString();
+                if (split.getPeriods().contains(colq.substring(0, Math.max(colq.indexOf('\0'), 0)))) {
+                    actual.merge(countKey(entry.getKey()), countOf(entry.getValue()), Long::sum);
+                }
+            }
+            
+            Assert.assertFalse(split.getPeriods().isEmpty());
+            Assert.assertEquals("counts for " + split.getPeriods() + " and " + split.getRawDateRanges(), expected, actual);
+        }
+    }
+    
+    private static Map<Key,Value> reduce(Map<BulkIngestKey,List<Value>> input) throws IOException, InterruptedException {
+        MockReduceDriver<BulkIngestKey,Value,BulkIngestKey,Value> driver = new MockReduceDriver(new DiscoveryRollupReducer());
+        driver.getConfiguration().setLong(DiscoveryRollupJob.ROLLUP_TIMESTAMP, TIMESTAMP);
+        for (Map.Entry<BulkIngestKey,List<Value>> entry : input.entrySet()) {
+            driver.addInput(entry.getKey(), entry.getValue());
+        }
+        
+        Map<Key,Value> results = new HashMap<>();
+        for (MRPair<BulkIngestKey,Value> result : driver.run()) {
+            Assert.assertEquals(TEST_TABLE, result.key.getTableName().toString());
+            Assert.assertEquals(TIMESTAMP, result.key.getKey().getTimestamp());
+            Assert.assertNull(results.put(result.key.getKey(), result.value));
+        }
+        return results;
+    }
+    
+    /**
+     * @return the term, field and datatype which a count is for
+     */
+    private static String countKey(Key key) {
+        String colq = key.getColumnQualifier().toString();
+        return key.getRow() + ":" + key.getColumnFamily() + ":" + colq.substring(colq.indexOf('\0') + 1);
+    }
+    
+    private static BulkIngestKey rollup(String term, String colq) {
+        return new BulkIngestKey(new Text(TEST_TABLE), new Key(term, "FIELD", colq, "A", 0));
+    }
+    
+    private static BulkIngestKey mark() {
+        return new BulkIngestKey(new Text(TEST_TABLE), new Key(DiscoveryRollups.HIGH_WATER_MARK_ROW, DiscoveryRollups.HIGH_WATER_MARK_COLF, "", "", 0));
+    }
+    
+    private static Calendar calendar(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar;
+    }
+    
+    private static Date date(int year, int month, int day) {
+        return calendar(year, month, day).getTime();
+    }
+    
+    private static long countOf(Value value) {
+        try {
+            return Uid.List.parseFrom(value.get()).getCOUNT();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    private static Value count(long count) {
+        return new Value(Uid.List.newBuilder().setIGNORE(true).setCOUNT(count).build().toByteArray());
+    }
+}
@@ -1,5 +1,11 @@
 package datawave.core.iterators;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import datawave.core.iterators.filesystem.FileSystemCache;
 import datawave.query.Constants;
 import datawave.query.jexl.DatawaveArithmetic;
@@ -12,8 +18,13 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.log4j.Logger;
 import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.InputStreamDataInput;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.IntsRef;
 import org.apache.lucene.util.IntsRefBuilder;
 import org.apache.lucene.util.fst.FST;
@@ -21,15 +32,22 @@ import org.apache.lucene.util.fst.NoOutputs;
 import org.apache.lucene.util.fst.Outputs;
 import org.apache.lucene.util.fst.Util;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 
@@ -201,32 +219,114 @@ public class DatawaveFieldIndexListIteratorJexl extends DatawaveFieldIndexCachin
         return fstBuilder.finish();
     }
     
-    /** Utility class to load one instance of any FST per classloader */
+    /**
+     * Utility class to load one instance of any FST per classloader. The FSTs are held in a cache bounded by their size in memory, where concurrent requests
+     * for the same file wait for a single load while other files are loaded in parallel. If a local directory is configured, each file is first copied (and
+     * decompressed) there, and is then loaded from a memory map of the local copy, so an FST which was evicted is reloaded without going back to HDFS.
+     */
     public static class FSTManager {
-        static final Map<Path,FST<Object>> fstCache = new HashMap<>();
+        private static final Logger log = Logger.getLogger(FSTManager.class);
+        
+        public static final String MAX_BYTES_PROP = "tserver.datawave.fst.cache.max.bytes";
+        public static final String LOCAL_DIR_PROP = "tserver.datawave.fst.local.dir";
+        public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+        
+        /**
+         * a local copy which has not been used for this long is deleted
+         */
+        static final long LOCAL_COPY_EXPIRY_MS = 60 * 60 * 1000;
+        
+        private static volatile Cache<Path,FST<Object>> fstCache = buildCache(DEFAULT_MAX_BYTES);
+        private static volatile long maxBytes = DEFAULT_MAX_BYTES;
+        
+        private static volatile File localDir = null;
+        private static final Cache<Path,File> localCopies = CacheBuilder.newBuilder().expireAfterAccess(LOCAL_COPY_EXPIRY_MS, TimeUnit.MILLISECONDS)
+                        .removalListener((RemovalNotification<Path,File> n) -> {
+                            if (n.getValue().exists() && !n.getValue().delete()) {
+                                log.warn("Unable to delete local FST copy " + n.getValue());
+                            }
+                        }).build();
         
         static private FileSystemCache hdfsFileSystem;
         static private String hdfsFileCompressionCodec;
         
-        public static synchronized FST<Object> get(Path fstfile) throws IOException {
+        private static Cache<Path,FST<Object>> buildCache(long maxBytes) {
+            // a single segment, as each segment would otherwise be limited to its share of the weight and evict any FST larger than that share
+            return CacheBuilder.newBuilder().concurrencyLevel(1).maximumWeight(maxBytes).weigher((Path path, FST<Object> fst) -> weigh(fst)).build();
+        }
+        
+        private static int weigh(FST<Object> fst) {
+            return (int) Math.min(Integer.MAX_VALUE, fst.ramBytesUsed());
+        }
+        
+        public static FST<Object> get(Path fstfile) throws IOException {
             return get(fstfile, hdfsFileCompressionCodec, hdfsFileSystem.getFileSystem(fstfile.toUri()));
         }
         
-        public static synchronized FST<Object> get(Path fstfile, String compressedCodec, FileSystem fs) throws IOException {
+        public static FST<Object> get(Path fstfile, String compressedCodec, FileSystem fs) throws IOException {
             if (fstfile == null)
                 throw new NullPointerException("input fst key was null");
-            FST<Object> fst = fstCache.get(fstfile);
-            if (fst != null) {
-                return fst;
-            }
             
-            // Attempt to load fst from HDFS
-            fst = loadFSTFromFile(fstfile, compressedCodec, fs);
-            fstCache.put(fstfile, fst);
-            return fst;
+            final File dir = localDir;
+            try {
+                return fstCache.get(fstfile, () -> {
+                    FST<Object> fst = dir != null ? loadFSTFromLocalCopy(fstfile, compressedCodec, fs, dir) : loadFSTFromFile(fstfile, compressedCodec, fs);
+                    if (weigh(fst) > maxBytes) {
+                        log.warn("FST " + fstfile + " uses " + fst.ramBytesUsed() + " bytes, more than " + MAX_BYTES_PROP + " (" + maxBytes
+                                        + "), so it will be loaded again every time it is used");
+                    }
+                    return fst;
+                });
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause(), IOException.class);
+                throw new IOException("Unable to load FST " + fstfile, e.getCause());
+            }
         }
         
         public static FST<Object> loadFSTFromFile(Path filename, String compressionCodec, FileSystem fs) throws IOException {
+            try (InputStream fis = openFSTFile(filename, compressionCodec, fs)) {
+                NoOutputs outputs = NoOutputs.getSingleton();
+                DataInput di = new InputStreamDataInput(fis);
+                return new FST<>(di, outputs);
+            }
+        }
+        
+        /**
+         * Load an FST from a memory map of its local copy, copying it from the file system first if there is no local copy yet
+         */
+        static FST<Object> loadFSTFromLocalCopy(Path filename, String compressionCodec, FileSystem fs, File dir) throws IOException {
+            File local = localCopies.getIfPresent(filename);
+            if (local == null || !local.exists()) {
+                if (local != null) {
+                    // the copy is made again under the same name, so the entry of the missing copy must go first or replacing it would delete the new copy
+                    localCopies.invalidate(filename);
+                }
+                local = copyToLocal(filename, compressionCodec, fs, dir);
+                localCopies.put(filename, local);
+            }
+            
+            try (Directory directory = new MMapDirectory(local.getParentFile().toPath());
+                            IndexInput in = directory.openInput(local.getName(), IOContext.READONCE)) {
+                return new FST<>(in, NoOutputs.getSingleton());
+            }
+        }
+        
+        private static File copyToLocal(Path filename, String compressionCodec, FileSystem fs, File dir) throws IOException {
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("Unable to create local FST directory " + dir);
+            }
+            File local = new File(dir, Hashing.murmur3_128().hashString(filename.toString(), StandardCharsets.UTF_8) + ".fst");
+            File tmp = File.createTempFile(local.getName(), ".tmp", dir);
+            try (InputStream fis = openFSTFile(filename, compressionCodec, fs)) {
+                Files.copy(fis, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp.toPath(), local.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+            return local;
+        }
+        
+        private static InputStream openFSTFile(Path filename, String compressionCodec, FileSystem fs) throws IOException {
             
             CompressionCodec codec = null;
             if (compressionCodec != null) {
@@ -251,17 +351,52 @@ public class DatawaveFieldIndexListIteratorJexl extends DatawaveFieldIndexCachin
             if (codec != null) {
                 fis = codec.createInputStream(fis);
             }
-            NoOutputs outputs = NoOutputs.getSingleton();
-            DataInput di = new InputStreamDataInput(fis);
-            return new FST<>(di, outputs);
+            return fis;
         }
         
-        public static synchronized void clear(String file) {
-            fstCache.remove(new Path(file));
+        public static void clear(String file) {
+            fstCache.invalidate(new Path(file));
+            localCopies.invalidate(new Path(file));
+        }
+        
+        public static void clear() {
+            fstCache.invalidateAll();
+            localCopies.invalidateAll();
+        }
+        
+        /**
+         * Apply the FST cache settings of the tserver
+         */
+        public static void configure(IteratorEnvironment env) {
+            if (env == null || env.getConfig() == null) {
+                return;
+            }
+            Map<String,String> properties = new TreeMap<>();
+            env.getConfig().getProperties(properties, k -> Objects.equals(k, MAX_BYTES_PROP) || Objects.equals(k, LOCAL_DIR_PROP));
+            setMaxBytes(properties.containsKey(MAX_BYTES_PROP) ? Long.parseLong(properties.get(MAX_BYTES_PROP)) : DEFAULT_MAX_BYTES);
+            setLocalDir(properties.get(LOCAL_DIR_PROP));
+        }
+        
+        /**
+         * @param maxBytes
+         *            the memory used by the cached FSTs above which the least recently used are evicted
+         */
+        public static synchronized void setMaxBytes(long maxBytes) {
+            if (maxBytes != FSTManager.maxBytes) {
+                log.info("Changing " + MAX_BYTES_PROP + " to " + maxBytes);
+                Cache<Path,FST<Object>> cache = buildCache(maxBytes);
+                cache.putAll(fstCache.asMap());
+                fstCache = cache;
+                FSTManager.maxBytes = maxBytes;
+            }
         }
         
-        public static synchronized void clear() {
-            fstCache.clear();
+        /**
+         * @param localDir
+         *            the local directory to copy FSTs to before memory mapping them, or null to load them directly from the file system
+         */
+        public static void setLocalDir(String localDir) {
+            FSTManager.localDir = (localDir == null || localDir.isEmpty()) ? null : new File(localDir);
         }
         
         public static void setHdfsFileSystem(FileSystemCache hdfsFileSystem) {
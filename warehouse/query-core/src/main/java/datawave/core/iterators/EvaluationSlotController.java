@@ -0,0 +1,163 @@
+package datawave.core.iterators;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.DoubleSupplier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Grants evaluation pipeline slots to the queries running on a tserver. Each query asks for its configured number of pipelines, and is granted at most a fair
+ * share of the evaluation pool (the pool size divided by the number of active queries). Grants are counted by query id, so a query scanning several tablets of
+ * this tserver, or one whose earlier scan session has not yet released its grant, still counts as a single query. While the tserver is overloaded, which is
+ * when the pool has more tasks queued than threads or the load average per processor is above a threshold, each grant is halved on every adjustment; otherwise
+ * it grows by one slot, up to its fair share. A grant is never less than one slot, so every query keeps making progress.
+ */
+public class EvaluationSlotController {
+    private static final Logger log = Logger.getLogger(EvaluationSlotController.class);
+    
+    static final long ADJUST_INTERVAL_MS = 1000;
+    
+    /**
+     * a grant which has not been used for this long no longer counts towards the fair share (the scan session was closed without releasing it)
+     */
+    static final long IDLE_MS = 60 * 1000;
+    
+    private final ThreadPoolExecutor pool;
+    private final DoubleSupplier loadPerProcessor;
+    private volatile double loadThreshold;
+    private final Set<Grant> grants = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * @param pool
+     *            the evaluation pool
+     * @param loadPerProcessor
+     *            supplies the system load average divided by the number of processors, or a negative value if it is not available
+     * @param loadThreshold
+     *            the load per processor above which the tserver is overloaded, or a value of zero or less to only use the depth of the pool queue
+     */
+    public EvaluationSlotController(ThreadPoolExecutor pool, DoubleSupplier loadPerProcessor, double loadThreshold) {
+        this.pool = pool;
+        this.loadPerProcessor = loadPerProcessor;
+        this.loadThreshold = loadThreshold;
+    }
+    
+    public void setLoadThreshold(double loadThreshold) {
+        this.loadThreshold = loadThreshold;
+    }
+    
+    /**
+     * @param queryId
+     *            the id of the query, or null if it is not known in which case the grant counts as a query of its own
+     * @param requested
+     *            the number of pipelines the query is configured with
+     * @return the grant, which must be released when the query is done with it
+     */
+    public Grant grant(String queryId, int requested) {
+        Grant grant = new Grant(queryId, Math.max(1, requested));
+        grants.add(grant);
+        synchronized (grant) {
+            grant.slots = Math.min(grant.requested, fairShare(System.currentTimeMillis()));
+        }
+        return grant;
+    }
+    
+    /**
+     * @return the number of grants which have been used recently, dropping those which have not
+     */
+    int getActiveGrants(long now) {
+        grants.removeIf(g -> now - g.lastUsed > IDLE_MS);
+        return grants.size();
+    }
+    
+    /**
+     * @return the number of queries with a grant which has been used recently, dropping the grants which have not
+     */
+    int getActiveQueries(long now) {
+        grants.removeIf(g -> now - g.lastUsed > IDLE_MS);
+        Set<Object> queries = new HashSet<>();
+        for (Grant grant : grants) {
+            queries.add(grant.getQuery());
+        }
+        return queries.size();
+    }
+    
+    private int fairShare(long now) {
+        return Math.max(1, pool.getMaximumPoolSize() / Math.max(1, getActiveQueries(now)));
+    }
+    
+    boolean isOverloaded() {
+        if (pool.getQueue().size() > pool.getMaximumPoolSize()) {
+            return true;
+        }
+        double load = loadPerProcessor.getAsDouble();
+        return loadThreshold > 0 && load > loadThreshold;
+    }
+    
+    /**
+     * The slots for a query, given its current slots, its request and its fair share
+     */
+    static int adjust(int slots, int requested, int fairShare, boolean overloaded) {
+        slots = overloaded ? slots / 2 : slots + 1;
+        return Math.max(1, Math.min(slots, Math.min(requested, fairShare)));
+    }
+    
+    public class Grant {
+        private final String queryId;
+        private final int requested;
+        private int slots;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private long lastAdjusted = lastUsed;
+        private long throttled = 0;
+        
+        private Grant(String queryId, int requested) {
+            this.queryId = queryId;
+            this.requested = requested;
+        }
+        
+        /**
+         * @return the query this grant counts towards
+         */
+        private Object getQuery() {
+            return queryId != null ? queryId : this;
+        }
+        
+        public int getRequested() {
+            return requested;
+        }
+        
+        /**
+         * @return the number of evaluations the query may currently have in flight
+         */
+        public synchronized int getSlots() {
+            long now = System.currentTimeMillis();
+            lastUsed = now;
+            grants.add(this);
+            if (now - lastAdjusted >= ADJUST_INTERVAL_MS) {
+                lastAdjusted = now;
+                int adjusted = adjust(slots, requested, fairShare(now), isOverloaded());
+                if (adjusted < slots) {
+                    throttled++;
+                }
+                if (adjusted != slots && log.isDebugEnabled()) {
+                    log.debug("Adjusted evaluation slots from " + slots + " to " + adjusted + " of " + requested + " requested");
+                }
+                slots = adjusted;
+            }
+            return slots;
+        }
+        
+        /**
+         * @return the number of times the slots have been reduced
+         */
+        public synchronized long getThrottled() {
+            return throttled;
+        }
+        
+        public void release() {
+            grants.remove(this);
+        }
+    }
+}
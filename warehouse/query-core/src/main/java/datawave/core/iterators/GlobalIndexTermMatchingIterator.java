@@ -14,11 +14,13 @@ import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.OptionDescriber;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.hadoop.io.Text;
 import org.apache.log4j.Logger;
 
 public class GlobalIndexTermMatchingIterator extends GlobalIndexTermMatchingFilter implements SortedKeyValueIterator<Key,Value>, OptionDescriber {
     
     public static final String UNIQUE_TERMS_IN_FIELD = "term.unique";
+    public static final String AUTOMATON_SEEK = "term.automaton";
     private static final Logger log = Logger.getLogger(GlobalIndexTermMatchingIterator.class);
     
     private SortedKeyValueIterator<Key,Value> source;
@@ -31,6 +33,11 @@ public class GlobalIndexTermMatchingIterator extends GlobalIndexTermMatchingFilt
     
     protected boolean uniqueTermsOnly = false;
     
+    /**
+     * when set, used to seek past runs of rows which cannot match rather than testing each of them
+     */
+    protected TermAutomaton automaton = null;
+    
     public GlobalIndexTermMatchingIterator() throws IOException {}
     
     public GlobalIndexTermMatchingIterator deepCopy(IteratorEnvironment env) {
@@ -39,6 +46,7 @@ public class GlobalIndexTermMatchingIterator extends GlobalIndexTermMatchingFilt
     
     private GlobalIndexTermMatchingIterator(GlobalIndexTermMatchingIterator other, IteratorEnvironment env) {
         setSource(other.getSource().deepCopy(env));
+        this.automaton = other.automaton;
     }
     
     @Override
@@ -111,12 +119,44 @@ public class GlobalIndexTermMatchingIterator extends GlobalIndexTermMatchingFilt
                 log.trace("top key is " + top);
             if (accept(top, getSource().getTopValue())) {
                 foundMatch = true;
+            } else if (automaton != null) {
+                if (!seekToNextCandidate(top)) {
+                    break;
+                }
             } else {
                 getSource().next();
             }
         }
     }
     
+    /**
+     * Seeks to the first row after the given key which the automaton could still accept
+     * 
+     * @param top
+     *            the current key, whose row was not accepted
+     * @return false if no further row in the scan range can be accepted
+     * @throws IOException
+     */
+    protected boolean seekToNextCandidate(final Key top) throws IOException {
+        ByteSequence row = top.getRowData();
+        byte[] next = automaton.next(row.getBackingArray(), row.offset(), row.length());
+        if (next == null) {
+            if (log.isTraceEnabled())
+                log.trace("no candidates follow " + top);
+            return false;
+        }
+        Key start = new Key(new Text(next));
+        if (scanRange.afterEndKey(start)) {
+            if (log.isTraceEnabled())
+                log.trace("next candidate " + start + " is past the end of " + scanRange);
+            return false;
+        }
+        if (log.isTraceEnabled())
+            log.trace("seeking from " + top + " to candidate " + start);
+        getSource().seek(new Range(start, true, scanRange.getEndKey(), scanRange.isEndKeyInclusive()), scanCFs, scanInclusive);
+        return true;
+    }
+    
     /**
      * Advances to the next top key
      * 
@@ -164,6 +204,7 @@ public class GlobalIndexTermMatchingIterator extends GlobalIndexTermMatchingFilt
         io.addNamedOption(PATTERN + "i", "A regex value to match");
         io.addNamedOption(REVERSE_INDEX, "Boolean denoting whether we are matching against a reverse index");
         io.addNamedOption(UNIQUE_TERMS_IN_FIELD, "Advances the term when one is found, ignoring the fact that the term may exist on multiple shards");
+        io.addNamedOption(AUTOMATON_SEEK, "Boolean denoting whether to seek between candidate terms using an automaton built from the literals and regexs");
         io.setDescription("GlobalIndexTermMatchingIterator uses a set of literals and regexs to match global index keys");
         return io;
     }
@@ -180,6 +221,10 @@ public class GlobalIndexTermMatchingIterator extends GlobalIndexTermMatchingFilt
             uniqueTermsOnly = new Boolean(options.get(UNIQUE_TERMS_IN_FIELD));
             
         }
+        if (Boolean.parseBoolean(options.get(AUTOMATON_SEEK))) {
+            // falls back to testing every row when the patterns cannot be translated exactly
+            automaton = TermAutomaton.create(getPatterns(), getLiterals(), isReverseIndex());
+        }
         return valid;
     }
     
@@ -1,5 +1,7 @@
 package datawave.core.iterators;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
@@ -25,9 +27,15 @@ public class IteratorThreadPoolManager {
     private static final String IVARATOR_THREAD_NAME = "DATAWAVE Ivarator";
     private static final String EVALUATOR_THREAD_PROP = "tserver.datawave.evaluation.threads";
     private static final String EVALUATOR_THREAD_NAME = "DATAWAVE Evaluation";
+    private static final String EVALUATOR_LOAD_PROP = "tserver.datawave.evaluation.load.threshold";
     private static final int DEFAULT_THREAD_POOL_SIZE = 100;
+    // matches the default threshold of the LoadAverageWatchIterator
+    private static final double DEFAULT_LOAD_THRESHOLD = 2.0;
+    
+    private static final OperatingSystemMXBean OS_BEAN = ManagementFactory.getPlatformMXBean(OperatingSystemMXBean.class);
     
     private Map<String,ExecutorService> threadPools = new TreeMap<>();
+    private final EvaluationSlotController evaluationSlots;
     
     private static final Object instanceSemaphore = new Object();
     private static final String instanceId = Integer.toHexString(instanceSemaphore.hashCode());
@@ -36,16 +44,30 @@ public class IteratorThreadPoolManager {
     private IteratorThreadPoolManager(IteratorEnvironment env) {
         // create the thread pools
         createExecutorService(IVARATOR_THREAD_PROP, IVARATOR_THREAD_NAME, env);
-        createExecutorService(EVALUATOR_THREAD_PROP, EVALUATOR_THREAD_NAME, env);
+        ThreadPoolExecutor evaluator = createExecutorService(EVALUATOR_THREAD_PROP, EVALUATOR_THREAD_NAME, env);
+        
+        // grant evaluation pipelines to queries according to the load on this tserver
+        final AccumuloConfiguration accumuloConfiguration = getConfiguration(env);
+        evaluationSlots = new EvaluationSlotController(evaluator, IteratorThreadPoolManager::getLoadPerProcessor, getLoadThreshold(accumuloConfiguration));
+        SimpleTimer.getInstance(accumuloConfiguration).schedule(() -> {
+            try {
+                evaluationSlots.setLoadThreshold(getLoadThreshold(accumuloConfiguration));
+            } catch (Throwable t) {
+                log.error(t, t);
+            }
+        }, 1000, 10 * 1000);
     }
     
-    private ThreadPoolExecutor createExecutorService(final String prop, final String name, IteratorEnvironment env) {
-        final AccumuloConfiguration accumuloConfiguration;
+    private static AccumuloConfiguration getConfiguration(IteratorEnvironment env) {
         if (env != null) {
-            accumuloConfiguration = env.getConfig();
+            return env.getConfig();
         } else {
-            accumuloConfiguration = DefaultConfiguration.getInstance();
+            return DefaultConfiguration.getInstance();
         }
+    }
+    
+    private ThreadPoolExecutor createExecutorService(final String prop, final String name, IteratorEnvironment env) {
+        final AccumuloConfiguration accumuloConfiguration = getConfiguration(env);
         final ThreadPoolExecutor service = createExecutorService(getMaxThreads(prop, accumuloConfiguration), name + " (" + instanceId + ')');
         threadPools.put(name, service);
         SimpleTimer.getInstance(accumuloConfiguration).schedule(() -> {
@@ -82,6 +104,22 @@ public class IteratorThreadPoolManager {
         return DEFAULT_THREAD_POOL_SIZE;
     }
     
+    private double getLoadThreshold(AccumuloConfiguration conf) {
+        if (conf != null) {
+            Map<String,String> properties = new TreeMap<>();
+            conf.getProperties(properties, k -> Objects.equals(k, EVALUATOR_LOAD_PROP));
+            if (properties.containsKey(EVALUATOR_LOAD_PROP)) {
+                return Double.parseDouble(properties.get(EVALUATOR_LOAD_PROP));
+            }
+        }
+        return DEFAULT_LOAD_THRESHOLD;
+    }
+    
+    private static double getLoadPerProcessor() {
+        double load = OS_BEAN.getSystemLoadAverage();
+        return load < 0 ? load : load / OS_BEAN.getAvailableProcessors();
+    }
+    
     private static IteratorThreadPoolManager instance(IteratorEnvironment env) {
         if (instance == null) {
             synchronized (instanceSemaphore) {
@@ -113,4 +151,18 @@ public class IteratorThreadPoolManager {
         return instance(env).execute(EVALUATOR_THREAD_NAME, task, taskName);
     }
     
+    /**
+     * Grant evaluation pipeline slots to a query, according to its fair share of the evaluation pool and the load on this tserver
+     *
+     * @param queryId
+     *            the id of the query, so that all of its grants count as one query
+     * @param requested
+     *            the number of pipelines the query is configured with
+     * @param env
+     * @return the grant, to be released when the query is done evaluating
+     */
+    public static EvaluationSlotController.Grant grantEvaluationSlots(String queryId, int requested, IteratorEnvironment env) {
+        return instance(env).evaluationSlots.grant(queryId, requested);
+    }
+    
 }
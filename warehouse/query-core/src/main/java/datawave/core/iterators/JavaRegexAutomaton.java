@@ -0,0 +1,352 @@
+package datawave.core.iterators;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.Operations;
+
+/**
+ * Translates a java regular expression into an equivalent automaton, matching the whole term as {@link java.util.regex.Matcher#matches()} does. Only a
+ * conservative subset of the java syntax is supported: literals, escapes, character classes (without intersections, nesting or unicode properties), the
+ * predefined classes, '.', groups, alternation, and greedy or reluctant quantifiers. Anything else (flags, look-around, back references, possessive
+ * quantifiers, anchors other than a leading '^' or trailing '$', ...) makes the translation fail, so that callers never act on an automaton which could reject
+ * a term the pattern accepts.
+ */
+class JavaRegexAutomaton {
+    
+    private static final int MAX_REPEAT = 100;
+    
+    private final String regex;
+    private int pos = 0;
+    
+    private JavaRegexAutomaton(String regex) {
+        this.regex = regex;
+    }
+    
+    /**
+     * @param regex
+     *            the java regular expression
+     * @return the automaton, or null if the expression uses syntax which is not supported
+     */
+    static Automaton toAutomaton(String regex) {
+        try {
+            JavaRegexAutomaton parser = new JavaRegexAutomaton(regex);
+            if (parser.peek('^')) {
+                parser.pos++;
+            }
+            Automaton a = parser.alternation();
+            if (parser.peek('$') && parser.pos == regex.length() - 1) {
+                parser.pos++;
+            }
+            return parser.pos == regex.length() ? a : null;
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+    }
+    
+    private Automaton alternation() {
+        List<Automaton> alternatives = new ArrayList<>();
+        alternatives.add(concatenation());
+        while (peek('|')) {
+            pos++;
+            alternatives.add(concatenation());
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : Operations.union(alternatives);
+    }
+    
+    private Automaton concatenation() {
+        List<Automaton> parts = new ArrayList<>();
+        while (pos < regex.length() && !peek('|') && !peek(')') && !(peek('$') && pos == regex.length() - 1)) {
+            parts.add(repetition());
+        }
+        if (parts.isEmpty()) {
+            return Automata.makeEmptyString();
+        }
+        return parts.size() == 1 ? parts.get(0) : Operations.concatenate(parts);
+    }
+    
+    private Automaton repetition() {
+        Automaton a = atom();
+        while (pos < regex.length()) {
+            char c = regex.charAt(pos);
+            if (c == '*') {
+                pos++;
+                a = Operations.repeat(a);
+            } else if (c == '+') {
+                pos++;
+                a = Operations.repeat(a, 1);
+            } else if (c == '?') {
+                pos++;
+                a = Operations.optional(a);
+            } else if (c == '{') {
+                pos++;
+                int min = number();
+                int max = min;
+                if (peek(',')) {
+                    pos++;
+                    max = peek('}') ? -1 : number();
+                }
+                expect('}');
+                if (max > MAX_REPEAT || min > MAX_REPEAT || (max >= 0 && max < min)) {
+                    throw new UnsupportedOperationException();
+                }
+                a = max < 0 ? Operations.repeat(a, min) : Operations.repeat(a, min, max);
+            } else {
+                break;
+            }
+            // a reluctant quantifier matches the same terms; a possessive one may not
+            if (peek('?')) {
+                pos++;
+            } else if (peek('+')) {
+                throw new UnsupportedOperationException();
+            }
+        }
+        return a;
+    }
+    
+    private Automaton atom() {
+        int c = regex.codePointAt(pos);
+        pos += Character.charCount(c);
+        switch (c) {
+            case '(':
+                if (peek('?')) {
+                    pos++;
+                    // only a non-capturing group is supported
+                    expect(':');
+                }
+                Automaton group = alternation();
+                expect(')');
+                return group;
+            case '[':
+                return toAutomaton(characterClass());
+            case '.':
+                return toAutomaton(CharRanges.DOT);
+            case '\\':
+                CharRanges predefined = predefinedClass();
+                if (predefined != null) {
+                    return toAutomaton(predefined);
+                }
+                return Automata.makeChar(escapedCharacter());
+            case '^':
+            case '$':
+            case '{':
+            case '*':
+            case '+':
+            case '?':
+            case ')':
+            case '|':
+                throw new UnsupportedOperationException();
+            default:
+                return Automata.makeChar(c);
+        }
+    }
+    
+    private CharRanges characterClass() {
+        boolean negated = false;
+        if (peek('^')) {
+            negated = true;
+            pos++;
+        }
+        CharRanges ranges = new CharRanges();
+        boolean first = true;
+        while (first || !peek(']')) {
+            if (pos >= regex.length() || peek('[') || regex.startsWith("&&", pos)) {
+                throw new UnsupportedOperationException();
+            }
+            first = false;
+            int lo;
+            if (peek('\\')) {
+                pos++;
+                CharRanges predefined = predefinedClass();
+                if (predefined != null) {
+                    ranges.add(predefined);
+                    continue;
+                }
+                lo = escapedCharacter();
+            } else {
+                lo = regex.codePointAt(pos);
+                pos += Character.charCount(lo);
+            }
+            int hi = lo;
+            if (peek('-') && pos + 1 < regex.length() && regex.charAt(pos + 1) != ']') {
+                pos++;
+                if (peek('\\')) {
+                    pos++;
+                    hi = escapedCharacter();
+                } else if (peek('[')) {
+                    throw new UnsupportedOperationException();
+                } else {
+                    hi = regex.codePointAt(pos);
+                    pos += Character.charCount(hi);
+                }
+                if (hi < lo) {
+                    throw new UnsupportedOperationException();
+                }
+            }
+            ranges.add(lo, hi);
+        }
+        pos++;
+        return negated ? ranges.complement() : ranges;
+    }
+    
+    /**
+     * @return the class for the escape at the current position, or null if it is not a predefined class
+     */
+    private CharRanges predefinedClass() {
+        if (pos >= regex.length()) {
+            throw new UnsupportedOperationException();
+        }
+        CharRanges ranges;
+        switch (regex.charAt(pos)) {
+            case 'd':
+            case 'D':
+                ranges = CharRanges.DIGIT;
+                break;
+            case 'w':
+            case 'W':
+                ranges = CharRanges.WORD;
+                break;
+            case 's':
+            case 'S':
+                ranges = CharRanges.SPACE;
+                break;
+            default:
+                return null;
+        }
+        boolean negated = Character.isUpperCase(regex.charAt(pos));
+        pos++;
+        return negated ? ranges.complement() : ranges;
+    }
+    
+    private int escapedCharacter() {
+        if (pos >= regex.length()) {
+            throw new UnsupportedOperationException();
+        }
+        int c = regex.codePointAt(pos);
+        pos += Character.charCount(c);
+        switch (c) {
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case 'a':
+                return 0x07;
+            case 'e':
+                return 0x1B;
+            default:
+                // any other letter or digit is a construct (boundary, back reference, quote, property, ...) that is not supported
+                if (Character.isLetterOrDigit(c)) {
+                    throw new UnsupportedOperationException();
+                }
+                return c;
+        }
+    }
+    
+    private int number() {
+        int start = pos;
+        while (pos < regex.length() && Character.isDigit(regex.charAt(pos)) && pos - start < 4) {
+            pos++;
+        }
+        if (start == pos) {
+            throw new UnsupportedOperationException();
+        }
+        return Integer.parseInt(regex.substring(start, pos));
+    }
+    
+    private boolean peek(char c) {
+        return pos < regex.length() && regex.charAt(pos) == c;
+    }
+    
+    private void expect(char c) {
+        if (!peek(c)) {
+            throw new UnsupportedOperationException();
+        }
+        pos++;
+    }
+    
+    private static Automaton toAutomaton(CharRanges ranges) {
+        List<Automaton> automata = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            automata.add(Automata.makeCharRange(ranges.lo(i), ranges.hi(i)));
+        }
+        if (automata.isEmpty()) {
+            return Automata.makeEmpty();
+        }
+        return automata.size() == 1 ? automata.get(0) : Operations.union(automata);
+    }
+    
+    /**
+     * A set of code points, held as sorted, non-overlapping inclusive ranges
+     */
+    private static class CharRanges {
+        
+        static final CharRanges DIGIT = new CharRanges().add('0', '9');
+        static final CharRanges WORD = new CharRanges().add('a', 'z').add('A', 'Z').add('_', '_').add('0', '9');
+        static final CharRanges SPACE = new CharRanges().add(' ', ' ').add('\t', '\r');
+        // '.' matches anything but a line terminator
+        static final CharRanges DOT = new CharRanges().add('\n', '\n').add('\r', '\r').add(0x85, 0x85).add(0x2028, 0x2029).complement();
+        
+        private final List<int[]> ranges = new ArrayList<>();
+        
+        CharRanges add(int lo, int hi) {
+            int[] range = new int[] {lo, hi};
+            List<int[]> merged = new ArrayList<>();
+            int i = 0;
+            while (i < ranges.size() && ranges.get(i)[1] < range[0] - 1) {
+                merged.add(ranges.get(i++));
+            }
+            while (i < ranges.size() && ranges.get(i)[0] <= range[1] + 1) {
+                range[0] = Math.min(range[0], ranges.get(i)[0]);
+                range[1] = Math.max(range[1], ranges.get(i)[1]);
+                i++;
+            }
+            merged.add(range);
+            while (i < ranges.size()) {
+                merged.add(ranges.get(i++));
+            }
+            ranges.clear();
+            ranges.addAll(merged);
+            return this;
+        }
+        
+        CharRanges add(CharRanges other) {
+            for (int[] range : other.ranges) {
+                add(range[0], range[1]);
+            }
+            return this;
+        }
+        
+        CharRanges complement() {
+            CharRanges complement = new CharRanges();
+            int next = 0;
+            for (int[] range : ranges) {
+                if (range[0] > next) {
+                    complement.ranges.add(new int[] {next, range[0] - 1});
+                }
+                next = range[1] + 1;
+            }
+            if (next <= Character.MAX_CODE_POINT) {
+                complement.ranges.add(new int[] {next, Character.MAX_CODE_POINT});
+            }
+            return complement;
+        }
+        
+        int size() {
+            return ranges.size();
+        }
+        
+        int lo(int i) {
+            return ranges.get(i)[0];
+        }
+        
+        int hi(int i) {
+            return ranges.get(i)[1];
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package datawave.core.iterators;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.ColumnVisibility;
+
+import com.clearspring.analytics.stream.cardinality.CardinalityMergeException;
+import com.clearspring.analytics.stream.cardinality.HyperLogLogPlus;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * A partial aggregate of query results: the number of matching documents, an approximate distinct value count (HyperLogLog) for each requested field, and a
+ * value histogram for each requested field. Partial aggregates are produced by the QueryIterator, merged per scan range by the
+ * {@link ResultAggregatingIterator} and finally merged on the web server, so no documents need to be returned to answer the query.
+ *
+ * Each histogram keeps at most {@link #getMaxHistogramValues()} distinct values so that a high cardinality field cannot grow an aggregate without bound. Once
+ * a histogram is full, documents with values that are not already in it are tallied in a single overflow count for the field. Since partial aggregates fill
+ * up independently, the count of a value kept by one partial aggregate but overflowed by another is a lower bound.
+ *
+ * The serialized object will be of the form: long - count, visibility, int - number of distinct count fields followed by (field, hll bytes) for each, int -
+ * maximum histogram values, int - number of histogram fields followed by (field, int - number of values, (value, long - count) for each value, long - overflow
+ * count) for each
+ */
+public class ResultAggregate implements KryoSerializable {
+    
+    public static final int HLL_PRECISION = 14;
+    public static final int HLL_SPARSE_PRECISION = 25;
+    public static final int DEFAULT_MAX_HISTOGRAM_VALUES = 1000;
+    
+    private long count;
+    private ColumnVisibility visibility;
+    private int maxHistogramValues;
+    private final Map<String,HyperLogLogPlus> distinctValues = new TreeMap<>();
+    private final Map<String,Map<String,Long>> histograms = new TreeMap<>();
+    private final Map<String,Long> histogramOverflows = new TreeMap<>();
+    
+    public ResultAggregate() {
+        // need default constructor for kryo
+        this(DEFAULT_MAX_HISTOGRAM_VALUES);
+    }
+    
+    public ResultAggregate(int maxHistogramValues) {
+        this.visibility = new ColumnVisibility();
+        this.maxHistogramValues = maxHistogramValues;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public void setCount(long count) {
+        this.count = count;
+    }
+    
+    public void incrementCount() {
+        count++;
+    }
+    
+    public ColumnVisibility getVisibility() {
+        return visibility;
+    }
+    
+    public void setVisibility(ColumnVisibility visibility) {
+        this.visibility = visibility;
+    }
+    
+    public void offerDistinctValue(String field, String value) {
+        distinctValues.computeIfAbsent(field, f -> new HyperLogLogPlus(HLL_PRECISION, HLL_SPARSE_PRECISION)).offer(value);
+    }
+    
+    public void addHistogramValue(String field, String value) {
+        addHistogramValue(field, value, 1L);
+    }
+    
+    private void addHistogramValue(String field, String value, long valueCount) {
+        Map<String,Long> histogram = histograms.computeIfAbsent(field, f -> new TreeMap<>());
+        if (histogram.size() < maxHistogramValues || histogram.containsKey(value)) {
+            histogram.merge(value, valueCount, Long::sum);
+        } else {
+            histogramOverflows.merge(field, valueCount, Long::sum);
+        }
+    }
+    
+    /**
+     * @return the estimated number of distinct values seen for each distinct count field
+     */
+    public Map<String,Long> getDistinctCounts() {
+        Map<String,Long> counts = new TreeMap<>();
+        for (Map.Entry<String,HyperLogLogPlus> entry : distinctValues.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().cardinality());
+        }
+        return counts;
+    }
+    
+    public Map<String,Map<String,Long>> getHistograms() {
+        return histograms;
+    }
+    
+    /**
+     * @return for each histogram field that filled up, the number of values that were not kept in its histogram
+     */
+    public Map<String,Long> getHistogramOverflows() {
+        return histogramOverflows;
+    }
+    
+    public int getMaxHistogramValues() {
+        return maxHistogramValues;
+    }
+    
+    /**
+     * Merge another partial aggregate into this one. The visibilities are not merged here since that requires the marking functions.
+     *
+     * @param other
+     *            the partial aggregate to merge
+     */
+    public void merge(ResultAggregate other) {
+        this.count += other.count;
+        for (Map.Entry<String,HyperLogLogPlus> entry : other.distinctValues.entrySet()) {
+            HyperLogLogPlus hll = distinctValues.get(entry.getKey());
+            if (hll == null) {
+                distinctValues.put(entry.getKey(), entry.getValue());
+            } else {
+                try {
+                    hll.addAll(entry.getValue());
+                } catch (CardinalityMergeException e) {
+                    throw new IllegalStateException("Unable to merge distinct counts for " + entry.getKey(), e);
+                }
+            }
+        }
+        this.maxHistogramValues = Math.min(this.maxHistogramValues, other.maxHistogramValues);
+        for (Map.Entry<String,Map<String,Long>> entry : other.histograms.entrySet()) {
+            entry.getValue().forEach((value, valueCount) -> addHistogramValue(entry.getKey(), value, valueCount));
+        }
+        other.histogramOverflows.forEach((field, overflow) -> histogramOverflows.merge(field, overflow, Long::sum));
+    }
+    
+    public Value toValue(Kryo kryo) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Output kryoOutput = new Output(baos);
+        kryo.writeObject(kryoOutput, this);
+        kryoOutput.close();
+        return new Value(baos.toByteArray());
+    }
+    
+    public static ResultAggregate fromValue(Kryo kryo, Value value) {
+        Input input = new Input(new ByteArrayInputStream(value.get()));
+        return kryo.readObject(input, ResultAggregate.class);
+    }
+    
+    @Override
+    public void write(Kryo kryo, Output output) {
+        output.writeLong(count);
+        byte[] expression = visibility.getExpression();
+        output.writeInt(expression.length);
+        output.writeBytes(expression);
+        
+        output.writeInt(distinctValues.size());
+        for (Map.Entry<String,HyperLogLogPlus> entry : distinctValues.entrySet()) {
+            output.writeString(entry.getKey());
+            byte[] bytes;
+            try {
+                bytes = entry.getValue().getBytes();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to serialize distinct counts for " + entry.getKey(), e);
+            }
+            output.writeInt(bytes.length);
+            output.writeBytes(bytes);
+        }
+        
+        output.writeInt(maxHistogramValues);
+        output.writeInt(histograms.size());
+        for (Map.Entry<String,Map<String,Long>> entry : histograms.entrySet()) {
+            output.writeString(entry.getKey());
+            output.writeInt(entry.getValue().size());
+            for (Map.Entry<String,Long> valueCount : entry.getValue().entrySet()) {
+                output.writeString(valueCount.getKey());
+                output.writeLong(valueCount.getValue());
+            }
+            output.writeLong(histogramOverflows.getOrDefault(entry.getKey(), 0L));
+        }
+    }
+    
+    @Override
+    public void read(Kryo kryo, Input input) {
+        this.count = input.readLong();
+        int expressionLength = input.readInt();
+        this.visibility = new ColumnVisibility(input.readBytes(expressionLength));
+        
+        int distinctFields = input.readInt();
+        for (int i = 0; i < distinctFields; i++) {
+            String field = input.readString();
+            byte[] bytes = input.readBytes(input.readInt());
+            try {
+                distinctValues.put(field, HyperLogLogPlus.Builder.build(bytes));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to deserialize distinct counts for " + field, e);
+            }
+        }
+        
+        this.maxHistogramValues = input.readInt();
+        int histogramFields = input.readInt();
+        for (int i = 0; i < histogramFields; i++) {
+            String field = input.readString();
+            int values = input.readInt();
+            Map<String,Long> histogram = new TreeMap<>();
+            for (int j = 0; j < values; j++) {
+                histogram.put(input.readString(), input.readLong());
+            }
+            histograms.put(field, histogram);
+            long overflow = input.readLong();
+            if (overflow > 0) {
+                histogramOverflows.put(field, overflow);
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "ResultAggregate{" + "count=" + count + ", visibility=" + visibility + ", distinctCounts=" + getDistinctCounts() + ", histograms=" + histograms
+                        + ", histogramOverflows=" + histogramOverflows + '}';
+    }
+}
@@ -0,0 +1,128 @@
+package datawave.core.iterators;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import datawave.marking.MarkingFunctions;
+import datawave.query.iterator.profile.FinalDocumentTrackingIterator;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.log4j.Logger;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.collect.Sets;
+
+/**
+ * <p>
+ * The aggregating counterpart of the {@link ResultCountingIterator}. The iterator beneath it on the stack returns partial {@link ResultAggregate}s rather than
+ * documents; this iterator merges all of them for the seeked range so that a single aggregate is returned per range.
+ * </p>
+ *
+ * <p>
+ * The key is the last key returned by the source iterator. The value is the Kryo serialized {@link ResultAggregate} with the rolled up visibility.
+ * </p>
+ */
+public class ResultAggregatingIterator extends WrappingIterator {
+    private static final Logger log = Logger.getLogger(ResultAggregatingIterator.class);
+    
+    private static MarkingFunctions markingFunctions = MarkingFunctions.Factory.createMarkingFunctions();
+    
+    private Kryo kryo = new Kryo();
+    
+    private Key currentTopKey = null;
+    
+    private ResultAggregate aggregate = null;
+    
+    protected Set<ColumnVisibility> columnVisibilities = Sets.newHashSet();
+    
+    public ResultAggregatingIterator() {}
+    
+    public ResultAggregatingIterator(ResultAggregatingIterator other, IteratorEnvironment env) {
+        setSource(other.getSource().deepCopy(env));
+    }
+    
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) throws IOException {
+        setSource(source.deepCopy(env));
+        this.aggregate = null;
+    }
+    
+    @Override
+    public boolean hasTop() {
+        return aggregate != null;
+    }
+    
+    @Override
+    public void next() throws IOException {
+        // everything below was consumed by the seek, so there is only ever one aggregate per range
+        this.aggregate = null;
+    }
+    
+    /**
+     * A <code>seek</code> will reset the aggregate made by this iterator.
+     */
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+        getSource().seek(range, columnFamilies, inclusive);
+        consume();
+    }
+    
+    public void consume() throws IOException {
+        this.aggregate = null;
+        this.columnVisibilities.clear();
+        while (getSource().hasTop()) {
+            Key key = getSource().getTopKey();
+            // the timing details document is not an aggregate
+            if (key != null && !FinalDocumentTrackingIterator.isFinalDocumentKey(key)) {
+                ResultAggregate partial = ResultAggregate.fromValue(kryo, getSource().getTopValue());
+                if (this.aggregate == null) {
+                    this.aggregate = partial;
+                } else {
+                    this.aggregate.merge(partial);
+                }
+                columnVisibilities.add(partial.getVisibility());
+                this.currentTopKey = key;
+            }
+            getSource().next();
+        }
+        
+        if (this.aggregate != null) {
+            try {
+                this.aggregate.setVisibility(markingFunctions.combine(columnVisibilities));
+            } catch (MarkingFunctions.Exception e) {
+                throw new IOException("Could not create combined columnVisibility for the aggregate", e);
+            }
+        }
+        
+        if (log.isDebugEnabled()) {
+            log.debug("Returning an aggregate of " + this.aggregate);
+        }
+    }
+    
+    @Override
+    public Key getTopKey() {
+        return currentTopKey;
+    }
+    
+    @Override
+    public Value getTopValue() {
+        if (null == aggregate) {
+            return null;
+        }
+        return aggregate.toValue(kryo);
+    }
+    
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+        return new ResultAggregatingIterator(this, env);
+    }
+}
@@ -0,0 +1,169 @@
+package datawave.core.iterators;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.util.automaton.Automata;
+import org.apache.lucene.util.automaton.Automaton;
+import org.apache.lucene.util.automaton.ByteRunAutomaton;
+import org.apache.lucene.util.automaton.Operations;
+import org.apache.lucene.util.automaton.TooComplexToDeterminizeException;
+
+/**
+ * A deterministic automaton over the UTF-8 bytes of global index rows, accepting the terms matched by a set of patterns and literals. Given a row which does
+ * not match, it computes the smallest row which could still lead to a match, so that a scan can seek past every row in between rather than reading them.
+ */
+public class TermAutomaton {
+    
+    private static final Logger log = Logger.getLogger(TermAutomaton.class);
+    
+    public static final int MAX_DETERMINIZED_STATES = 10000;
+    
+    private final ByteRunAutomaton automaton;
+    
+    /**
+     * live[s] is true if an accepting state can be reached from state s
+     */
+    private final boolean[] live;
+    
+    private TermAutomaton(ByteRunAutomaton automaton) {
+        this.automaton = automaton;
+        this.live = liveStates(automaton);
+    }
+    
+    /**
+     * Build the automaton for a set of patterns and literals
+     *
+     * @param patterns
+     *            java regular expressions
+     * @param literals
+     *            literal terms
+     * @param reverse
+     *            true if the rows hold the terms reversed, as in the reverse index
+     * @return the automaton, or null if any pattern cannot be translated exactly or the automaton would be too large
+     */
+    public static TermAutomaton create(Collection<String> patterns, Collection<String> literals, boolean reverse) {
+        List<Automaton> automata = new ArrayList<>();
+        for (String pattern : patterns) {
+            Automaton a = JavaRegexAutomaton.toAutomaton(pattern);
+            if (a == null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Cannot build an automaton for " + pattern);
+                }
+                return null;
+            }
+            automata.add(a);
+        }
+        for (String literal : literals) {
+            automata.add(Automata.makeString(literal));
+        }
+        if (automata.isEmpty()) {
+            return null;
+        }
+        
+        Automaton a = automata.size() == 1 ? automata.get(0) : Operations.union(automata);
+        if (reverse) {
+            a = Operations.reverse(a);
+        }
+        try {
+            return new TermAutomaton(new ByteRunAutomaton(a, false, MAX_DETERMINIZED_STATES));
+        } catch (TooComplexToDeterminizeException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Automaton for " + patterns + " is too complex", e);
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * @return true if the row is accepted
+     */
+    public boolean accepts(byte[] row, int offset, int length) {
+        int state = 0;
+        for (int i = 0; i < length && state >= 0; i++) {
+            state = automaton.step(state, row[offset + i] & 0xff);
+        }
+        return state >= 0 && automaton.isAccept(state);
+    }
+    
+    /**
+     * Compute the smallest row, greater than the given row, which is a prefix of some accepted row. Every accepted row greater than the given row sorts at or
+     * after it.
+     *
+     * @return the row to seek to, or null if no row greater than the given row can be accepted
+     */
+    public byte[] next(byte[] row, int offset, int length) {
+        if (!live[0]) {
+            return null;
+        }
+        
+        // follow the row for as long as it can still lead to an accepting state
+        int[] states = new int[length + 1];
+        int depth = 0;
+        while (depth < length) {
+            int state = automaton.step(states[depth], row[offset + depth] & 0xff);
+            if (state < 0 || !live[state]) {
+                break;
+            }
+            states[++depth] = state;
+        }
+        
+        // then back off until a byte greater than the row's can be taken; at the full depth, any byte extends the row
+        for (int i = depth; i >= 0; i--) {
+            int min = (i == length ? 0 : (row[offset + i] & 0xff) + 1);
+            for (int b = min; b < 256; b++) {
+                int state = automaton.step(states[i], b);
+                if (state >= 0 && live[state]) {
+                    byte[] next = Arrays.copyOfRange(row, offset, offset + i + 1);
+                    next[i] = (byte) b;
+                    return next;
+                }
+            }
+        }
+        return null;
+    }
+    
+    private static boolean[] liveStates(ByteRunAutomaton automaton) {
+        int size = automaton.getSize();
+        
+        // invert the transitions, then walk back from the accepting states
+        List<List<Integer>> incoming = new ArrayList<>(size);
+        for (int s = 0; s < size; s++) {
+            incoming.add(new ArrayList<>());
+        }
+        for (int s = 0; s < size; s++) {
+            int previous = -1;
+            for (int b = 0; b < 256; b++) {
+                int state = automaton.step(s, b);
+                // transitions are mostly runs of bytes to the same state
+                if (state >= 0 && state != previous) {
+                    incoming.get(state).add(s);
+                }
+                previous = state;
+            }
+        }
+        
+        boolean[] live = new boolean[size];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int s = 0; s < size; s++) {
+            if (automaton.isAccept(s)) {
+                live[s] = true;
+                queue.add(s);
+            }
+        }
+        while (!queue.isEmpty()) {
+            for (int s : incoming.get(queue.poll())) {
+                if (!live[s]) {
+                    live[s] = true;
+                    queue.add(s);
+                }
+            }
+        }
+        return live;
+    }
+}
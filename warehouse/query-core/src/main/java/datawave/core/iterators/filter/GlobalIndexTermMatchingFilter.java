@@ -117,6 +117,18 @@ public class GlobalIndexTermMatchingFilter extends Filter {
         return false;
     }
     
+    protected Set<String> getPatterns() {
+        return patterns.keySet();
+    }
+    
+    protected Set<String> getLiterals() {
+        return literals;
+    }
+    
+    protected boolean isReverseIndex() {
+        return reverseIndex;
+    }
+    
     public String getMatchedValue() {
         return matchedValue;
     }
@@ -141,6 +141,25 @@ public class QueryParameters {
     public static final String GROUP_FIELDS = "group.fields";
     public static final String GROUP_FIELDS_BATCH_SIZE = "group.fields.batch.size";
     public static final String UNIQUE_FIELDS = "unique.fields";
+    
+    /**
+     * Used by the counting query logic to return value histograms and approximate distinct value counts along with the count
+     */
+    public static final String HISTOGRAM_FIELDS = "histogram.fields";
+    public static final String DISTINCT_COUNT_FIELDS = "distinct.count.fields";
+    public static final String MAX_HISTOGRAM_VALUES = "histogram.max.values";
+    
+    /**
+     * Used to return only the top k documents, ordered by the top k field or else by event date, highest first
+     */
+    public static final String TOP_K = "top.k";
+    public static final String TOP_K_FIELD = "top.k.field";
+    
+    /**
+     * Used to scan only a deterministic sample of the shards of each day, at the given rate and seed, and to estimate the count of results from it
+     */
+    public static final String SAMPLE_RATE = "sample.rate";
+    public static final String SAMPLE_SEED = "sample.seed";
     /**
      * Used to cause Documents to contain a list of selectors that hit;
      */
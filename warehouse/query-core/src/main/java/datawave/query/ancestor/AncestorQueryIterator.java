@@ -67,6 +67,11 @@ public class AncestorQueryIterator extends QueryIterator {
         super.equality = new AncestorEquality();
         // we need the hit list arithmetic in any case (see getJexlEvaluation below)
         super.arithmetic = new HitListArithmetic(false);
+        // a compiled evaluation returns its result without passing it through isMatched, so it could not limit the hits to the current document
+        if (isCompiledEvaluation()) {
+            log.info("Compiled evaluation does not apply to ancestor queries, the query will be interpreted");
+            setCompiledEvaluation(false);
+        }
         return success;
     }
     
@@ -127,6 +132,10 @@ public class AncestorQueryIterator extends QueryIterator {
         return evaluationFilter != null ? evaluationFilter.clone() : null;
     }
     
+    /**
+     * Always an interpreted evaluation, since the hits must be checked against the current document as each result is matched. Compiled evaluation is turned
+     * off for this iterator in {@link #validateOptions(Map)}.
+     */
     @Override
     protected JexlEvaluation getJexlEvaluation(NestedQueryIterator<Key> documentSource) {
         return new JexlEvaluation(query, getArithmetic()) {
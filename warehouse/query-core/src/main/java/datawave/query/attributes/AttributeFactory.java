@@ -41,6 +41,11 @@ public class AttributeFactory {
     
     private final TypeMetadata typeMetadata;
     
+    /**
+     * When set, single typed attributes are created holding their raw value, and the type is only built when the attribute is first used
+     */
+    private MaterializationCounts lazyNormalization = null;
+    
     private String defaultType = NoOpType.class.getName();
     private Class<?> mostGeneralType = LcNoDiacriticsType.class;
     private static final List<Class<?>> mostGeneralTypes = Collections
@@ -55,6 +60,20 @@ public class AttributeFactory {
         this.defaultType = defaultType;
     }
     
+    /**
+     * Defer building the type of created attributes until they are used
+     *
+     * @param counts
+     *            tracks how many of the attributes were ever materialized
+     */
+    public void setLazyNormalization(MaterializationCounts counts) {
+        this.lazyNormalization = counts;
+    }
+    
+    public MaterializationCounts getLazyNormalization() {
+        return lazyNormalization;
+    }
+    
     private String extractIngestDataTypeFromKey(Key key) {
         Text cf = new Text();
         key.getColumnFamily(cf);
@@ -90,12 +109,13 @@ public class AttributeFactory {
         try {
             if (null == dataTypes || dataTypes.isEmpty()) {
                 Class<?> dataTypeClass = clazzCache.get(this.defaultType);
-                return getAttribute(dataTypeClass, fieldName, data, key, toKeep);
+                return getSingleAttribute(dataTypeClass, fieldName, data, key, toKeep);
             } else if (1 == dataTypes.size()) {
                 String dataType = dataTypes.iterator().next();
                 Class<?> dataTypeClass = clazzCache.get(dataType);
-                return getAttribute(dataTypeClass, fieldName, data, key, toKeep);
+                return getSingleAttribute(dataTypeClass, fieldName, data, key, toKeep);
             } else {
+                // the types are built eagerly here, as they are compared with each other when collected into the set
                 
                 Iterable<Class<?>> typeClasses = Iterables.transform(dataTypes, new Function<String,Class<?>>() {
                     @Nullable
@@ -132,16 +152,27 @@ public class AttributeFactory {
         }
     }
     
+    private Attribute<?> getSingleAttribute(Class<?> dataTypeClass, String fieldName, String data, Key key, boolean toKeep) throws Exception {
+        if (lazyNormalization != null) {
+            return new TypeAttribute(dataTypeClass, fieldName, data, key, toKeep, lazyNormalization);
+        }
+        return getAttribute(dataTypeClass, fieldName, data, key, toKeep);
+    }
+    
     protected Attribute<?> getAttribute(Class<?> dataTypeClass, String fieldName, String data, Key key, boolean toKeep) throws Exception {
+        return new TypeAttribute(getType(dataTypeClass, fieldName, data), key, toKeep);
+    }
+    
+    static Type<?> getType(Class<?> dataTypeClass, String fieldName, String data) throws Exception {
         Type<?> type = (Type<?>) dataTypeClass.newInstance();
         try {
             type.setDelegateFromString(data);
-            return new TypeAttribute(type, key, toKeep);
+            return type;
         } catch (Exception ex) {
             
             if (ex instanceof IllegalArgumentException) {
                 log.warn("Could not parse " + fieldName + " = '" + data + "', resorting to a NoOpType");
-                return new TypeAttribute(new NoOpType(data), key, toKeep);
+                return new NoOpType(data);
             } else {
                 log.error("Could not create Attribute for " + fieldName + " and " + data, ex);
                 throw new IllegalArgumentException("Could not create Attribute for " + fieldName + " and " + data, ex);
@@ -38,6 +38,11 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
      */
     private boolean trackSizes;
     
+    /**
+     * Should the attributes be held in a {@link CompactAttributeSet} rather than a {@link LinkedHashSet}. This is not serialized.
+     */
+    private boolean compact = false;
+    
     public MarkingFunctions getMarkingFunctions() {
         return MarkingFunctions.Factory.createMarkingFunctions();
     }
@@ -51,9 +56,14 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
     }
     
     public Attributes(boolean toKeep, boolean trackSizes) {
+        this(toKeep, trackSizes, false);
+    }
+    
+    public Attributes(boolean toKeep, boolean trackSizes, boolean compact) {
         super(toKeep);
-        attributes = new LinkedHashSet<>();
+        attributes = compact ? new CompactAttributeSet() : new LinkedHashSet<>();
         this.trackSizes = trackSizes;
+        this.compact = compact;
     }
     
     public Attributes(Collection<Attribute<? extends Comparable<?>>> attributes, boolean toKeep) {
@@ -61,7 +71,11 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
     }
     
     public Attributes(Collection<Attribute<? extends Comparable<?>>> attributes, boolean toKeep, boolean trackSizes) {
-        this(toKeep, trackSizes);
+        this(attributes, toKeep, trackSizes, false);
+    }
+    
+    public Attributes(Collection<Attribute<? extends Comparable<?>>> attributes, boolean toKeep, boolean trackSizes, boolean compact) {
+        this(toKeep, trackSizes, compact);
         
         for (Attribute<? extends Comparable<?>> attr : attributes) {
             this.add(attr);
@@ -76,6 +90,18 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
         return this.attributes;
     }
     
+    public boolean isCompact() {
+        return compact;
+    }
+    
+    /**
+     * @return the estimated bytes used to hold one attribute in the set, beyond the attribute itself
+     */
+    private int entryOverhead() {
+        // a linked hash set entry and its table slot, or an array slot and a share of the position table
+        return compact ? 16 : 24 + 24;
+    }
+    
     @Override
     public int size() {
         return _count;
@@ -91,7 +117,7 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
             this.attributes.add(attr);
             this._count += attr.size();
             if (trackSizes) {
-                this._bytes += attr.sizeInBytes() + 24 + 24;
+                this._bytes += attr.sizeInBytes() + entryOverhead();
             }
             invalidateMetadata();
         }
@@ -249,7 +275,7 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
             Attribute<?> attr = it.next();
             this._count -= attr.size();
             if (trackSizes) {
-                this._bytes -= attr.sizeInBytes() + 24 + 24;
+                this._bytes -= attr.sizeInBytes() + entryOverhead();
             }
             if (attr.isToKeep()) {
                 Attribute<?> newAttr = attr.reduceToKeep();
@@ -258,7 +284,7 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
                 } else {
                     this._count += newAttr.size();
                     if (trackSizes) {
-                        this._bytes += newAttr.sizeInBytes() + 24 + 24;
+                        this._bytes += newAttr.sizeInBytes() + entryOverhead();
                     }
                     if (attr != newAttr) {
                         it.remove();
@@ -270,6 +296,9 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
             }
         }
         this.attributes.addAll(replacements);
+        if (compact) {
+            ((CompactAttributeSet) this.attributes).trim();
+        }
         invalidateMetadata();
         
         if (this.attributes.isEmpty()) {
@@ -350,7 +379,7 @@ public class Attributes extends AttributeBag<Attributes> implements Serializable
      */
     @Override
     public Attributes copy() {
-        Attributes attrs = new Attributes(this.isToKeep(), this.trackSizes);
+        Attributes attrs = new Attributes(this.isToKeep(), this.trackSizes, this.compact);
         
         for (Attribute<?> attr : this._getAttributes()) {
             attrs.add((Attribute<?>) attr.copy());
@@ -0,0 +1,188 @@
+package datawave.query.attributes;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An insertion ordered set of attributes backed by a single array. Small sets are searched linearly; once a set grows past {@link #LINEAR_LIMIT} elements an
+ * open addressing table of array positions is built alongside it. Compared to a {@link java.util.LinkedHashSet} this avoids an entry object (and its
+ * before/after/next references) per attribute, which dominates the footprint of the many small multi-valued fields held in a document.
+ */
+class CompactAttributeSet extends AbstractSet<Attribute<? extends Comparable<?>>> {
+    
+    static final int LINEAR_LIMIT = 8;
+    
+    private Attribute<?>[] elements;
+    private int size = 0;
+    private int modCount = 0;
+    
+    /**
+     * positions + 1 of the elements, indexed by hash; null while the set is small, or after a removal until the next lookup
+     */
+    private int[] table = null;
+    
+    CompactAttributeSet() {
+        this(2);
+    }
+    
+    CompactAttributeSet(int capacity) {
+        elements = new Attribute<?>[Math.max(1, capacity)];
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+    
+    @Override
+    public boolean add(Attribute<? extends Comparable<?>> attr) {
+        if (indexOf(attr) >= 0) {
+            return false;
+        }
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size + (size >> 1) + 1);
+        }
+        elements[size++] = attr;
+        modCount++;
+        if (table != null) {
+            if (size * 2 > table.length) {
+                rehash();
+            } else {
+                insert(table, attr, size);
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public boolean remove(Object o) {
+        int i = indexOf(o);
+        if (i < 0) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+    
+    @Override
+    public void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+        table = null;
+        modCount++;
+    }
+    
+    /**
+     * Drop any spare capacity, once no further attributes are expected
+     */
+    void trim() {
+        if (elements.length > size) {
+            elements = Arrays.copyOf(elements, Math.max(1, size));
+        }
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<Attribute<? extends Comparable<?>>> iterator() {
+        return new Iterator<Attribute<? extends Comparable<?>>>() {
+            private int next = 0;
+            private int last = -1;
+            private int expectedModCount = modCount;
+            
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+            
+            @Override
+            public Attribute<? extends Comparable<?>> next() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return (Attribute<? extends Comparable<?>>) elements[last];
+            }
+            
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeAt(last);
+                next = last;
+                last = -1;
+                expectedModCount = modCount;
+            }
+        };
+    }
+    
+    private void removeAt(int i) {
+        System.arraycopy(elements, i + 1, elements, i, size - i - 1);
+        elements[--size] = null;
+        // positions have shifted; rebuild lazily so that a run of removals costs a single rehash
+        table = null;
+        modCount++;
+    }
+    
+    private int indexOf(Object o) {
+        if (o == null || size == 0) {
+            return -1;
+        }
+        if (size <= LINEAR_LIMIT) {
+            for (int i = 0; i < size; i++) {
+                if (o.equals(elements[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        if (table == null) {
+            rehash();
+        }
+        int mask = table.length - 1;
+        for (int slot = hash(o) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int i = table[slot] - 1;
+            if (o.equals(elements[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private void rehash() {
+        int capacity = Integer.highestOneBit(Math.max(LINEAR_LIMIT, size) * 4 - 1);
+        int[] newTable = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            insert(newTable, elements[i], i + 1);
+        }
+        table = newTable;
+    }
+    
+    private static void insert(int[] table, Object o, int position) {
+        int mask = table.length - 1;
+        int slot = hash(o) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = position;
+    }
+    
+    private static int hash(Object o) {
+        int h = o.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
@@ -3,6 +3,8 @@ package datawave.query.attributes;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 import datawave.marking.MarkingFunctions;
@@ -27,6 +29,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -52,6 +55,22 @@ public class Document extends AttributeBag<Document> implements Serializable {
      */
     private boolean trackSizes;
     
+    /**
+     * Should field names be interned, attribute metadata shared, and multi-valued fields held in a {@link CompactAttributeSet}. This is not serialized.
+     */
+    private boolean compact = false;
+    
+    /**
+     * The distinct attribute metadata keys seen by a compact document, which equal metadata on later attributes is replaced with
+     */
+    private Key[] sharedMetadata = null;
+    private static final int MAX_SHARED_METADATA = 8;
+    
+    /**
+     * Field names are drawn from a small vocabulary but are otherwise copied out of every key, so compact documents share a single instance of each
+     */
+    private static final Interner<String> FIELD_NAMES = Interners.newWeakInterner();
+    
     private static final long ONE_DAY_MS = 1000l * 60 * 60 * 24;
     
     public MarkingFunctions getMarkingFunctions() {
@@ -75,9 +94,14 @@ public class Document extends AttributeBag<Document> implements Serializable {
     }
     
     public Document(Key key, boolean toKeep, boolean trackSizes) {
+        this(key, toKeep, trackSizes, false);
+    }
+    
+    public Document(Key key, boolean toKeep, boolean trackSizes, boolean compact) {
         super(key, toKeep);
         dict = new TreeMap<>();
         this.trackSizes = trackSizes;
+        this.compact = compact;
     }
     
     public Document(Key key, Set<Key> docKeys, Iterator<Entry<Key,Value>> iter, TypeMetadata typeMetadata, CompositeMetadata compositeMetadata,
@@ -92,7 +116,13 @@ public class Document extends AttributeBag<Document> implements Serializable {
     
     public Document(Key key, Set<Key> docKeys, Iterator<Entry<Key,Value>> iter, TypeMetadata typeMetadata, CompositeMetadata compositeMetadata,
                     boolean includeGroupingContext, boolean keepRecordId, EventDataQueryFilter attrFilter, boolean toKeep, boolean trackSizes) {
-        this(key, toKeep, trackSizes);
+        this(key, docKeys, iter, typeMetadata, compositeMetadata, includeGroupingContext, keepRecordId, attrFilter, toKeep, trackSizes, false);
+    }
+    
+    public Document(Key key, Set<Key> docKeys, Iterator<Entry<Key,Value>> iter, TypeMetadata typeMetadata, CompositeMetadata compositeMetadata,
+                    boolean includeGroupingContext, boolean keepRecordId, EventDataQueryFilter attrFilter, boolean toKeep, boolean trackSizes,
+                    boolean compact) {
+        this(key, toKeep, trackSizes, compact);
         this.consumeRawData(key, docKeys, iter, typeMetadata, compositeMetadata, includeGroupingContext, keepRecordId, attrFilter);
     }
     
@@ -109,6 +139,10 @@ public class Document extends AttributeBag<Document> implements Serializable {
         return dict;
     }
     
+    public boolean isCompact() {
+        return compact;
+    }
+    
     public Set<Entry<String,Attribute<? extends Comparable<?>>>> entrySet() {
         return getDictionary().entrySet();
     }
@@ -127,6 +161,20 @@ public class Document extends AttributeBag<Document> implements Serializable {
      */
     public Document consumeRawData(Key docKey, Set<Key> docKeys, Iterator<Entry<Key,Value>> iter, TypeMetadata typeMetadata,
                     CompositeMetadata compositeMetadata, boolean includeGroupingContext, boolean keepRecordId, EventDataQueryFilter attrFilter) {
+        return consumeRawData(docKey, docKeys, iter, typeMetadata, compositeMetadata, includeGroupingContext, keepRecordId, attrFilter, null);
+    }
+    
+    /**
+     * As {@link #consumeRawData(Key, Set, Iterator, TypeMetadata, CompositeMetadata, boolean, boolean, EventDataQueryFilter)}, optionally deferring the
+     * normalization of the attributes until they are used
+     *
+     * @param lazyNormalization
+     *            if not null, attributes are created holding their raw values and counted here
+     * @return
+     */
+    public Document consumeRawData(Key docKey, Set<Key> docKeys, Iterator<Entry<Key,Value>> iter, TypeMetadata typeMetadata,
+                    CompositeMetadata compositeMetadata, boolean includeGroupingContext, boolean keepRecordId, EventDataQueryFilter attrFilter,
+                    MaterializationCounts lazyNormalization) {
         invalidateMetadata();
         // extract the sharded time from the dockey if possible
         try {
@@ -142,7 +190,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
         
         // Transform the remaining entries back into Attributes
         Iterator<Iterable<Entry<String,Attribute<? extends Comparable<?>>>>> attributes = Iterators.transform(extractedFieldNames, new ValueToAttributes(
-                        compositeMetadata, typeMetadata, attrFilter, MarkingFunctions.Factory.createMarkingFunctions()));
+                        compositeMetadata, typeMetadata, attrFilter, MarkingFunctions.Factory.createMarkingFunctions(), lazyNormalization));
         
         // Add all of the String=>Attribute pairs to this Document
         while (attributes.hasNext()) {
@@ -165,7 +213,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
     }
     
     public Attribute<?> toDocKeyAttributes(Set<Key> docKeys, boolean keepRecordId) {
-        Attributes attributes = new Attributes(keepRecordId, trackSizes);
+        Attributes attributes = new Attributes(keepRecordId, trackSizes, compact);
         for (Key docKey : docKeys) {
             // if the attribute filter says not to keep it, then don't even create it.
             attributes.add(new DocumentKey(docKey, keepRecordId));
@@ -261,6 +309,11 @@ public class Document extends AttributeBag<Document> implements Serializable {
             log.trace("Loading: " + key + "=" + value);
         }
         
+        if (compact) {
+            key = FIELD_NAMES.intern(key);
+            value = shareMetadata(value);
+        }
+        
         Attribute<?> existingAttr = dict.get(key);
         if (existingAttr == null) {
             dict.put(key, value);
@@ -268,7 +321,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
             _count += value.size();
             if (trackSizes) {
                 _bytes += value.sizeInBytes();
-                _bytes += Attribute.sizeInBytes(key);
+                _bytes += fieldNameSizeInBytes(key);
             }
             
             invalidateMetadata();
@@ -309,7 +362,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
                     HashSet<Attribute<? extends Comparable<?>>> attrsSet = Sets.newHashSet();
                     attrsSet.add(existingAttr);
                     attrsSet.addAll(((Attributes) value).getAttributes());
-                    attrs = new Attributes(attrsSet, this.isToKeep(), trackSizes);
+                    attrs = new Attributes(attrsSet, this.isToKeep(), trackSizes, compact);
                     dict.put(key, attrs);
                     
                     _count += attrs.size();
@@ -339,7 +392,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
                     HashSet<Attribute<? extends Comparable<?>>> attrsSet = Sets.newHashSet();
                     attrsSet.add(existingAttr);
                     attrsSet.add(value);
-                    attrs = new Attributes(attrsSet, this.isToKeep(), trackSizes);
+                    attrs = new Attributes(attrsSet, this.isToKeep(), trackSizes, compact);
                     dict.put(key, attrs);
                     
                     _count += value.size();
@@ -355,6 +408,70 @@ public class Document extends AttributeBag<Document> implements Serializable {
         }
     }
     
+    /**
+     * Point the metadata of the attribute, or of the attributes it holds, at an equal key already held by this document. The attributes of an event all carry
+     * the same row, datatype\0uid, visibility and timestamp, so this typically leaves a document with one metadata key rather than one per attribute. The
+     * attribute may be held elsewhere as well, so it is copied rather than changed when any of its metadata is not already shared.
+     *
+     * @param value
+     * @return the attribute, or a copy of it pointing at the shared metadata
+     */
+    private Attribute<?> shareMetadata(Attribute<?> value) {
+        if (isMetadataShared(value)) {
+            return value;
+        }
+        Attribute<?> copy = (Attribute<?>) value.copy();
+        pointAtSharedMetadata(copy);
+        return copy;
+    }
+    
+    private boolean isMetadataShared(Attribute<?> value) {
+        if (value instanceof Attributes) {
+            for (Attribute<?> attr : ((Attributes) value).getAttributes()) {
+                if (!isMetadataShared(attr)) {
+                    return false;
+                }
+            }
+        } else if (!(value instanceof AttributeBag) && value.metadata != null) {
+            return sharedMetadata(value.metadata) == value.metadata;
+        }
+        return true;
+    }
+    
+    private void pointAtSharedMetadata(Attribute<?> value) {
+        if (value instanceof Attributes) {
+            for (Attribute<?> attr : ((Attributes) value).getAttributes()) {
+                pointAtSharedMetadata(attr);
+            }
+        } else if (!(value instanceof AttributeBag) && value.metadata != null) {
+            value.metadata = sharedMetadata(value.metadata);
+        }
+    }
+    
+    private Key sharedMetadata(Key metadata) {
+        if (sharedMetadata == null) {
+            sharedMetadata = new Key[] {metadata};
+            return metadata;
+        }
+        for (Key shared : sharedMetadata) {
+            if (shared == metadata || shared.equals(metadata)) {
+                return shared;
+            }
+        }
+        if (sharedMetadata.length < MAX_SHARED_METADATA) {
+            sharedMetadata = Arrays.copyOf(sharedMetadata, sharedMetadata.length + 1);
+            sharedMetadata[sharedMetadata.length - 1] = metadata;
+        }
+        return metadata;
+    }
+    
+    /**
+     * @return the estimated bytes of a field name held by this document; an interned name is shared rather than owned
+     */
+    private long fieldNameSizeInBytes(String key) {
+        return compact ? 0 : Attribute.sizeInBytes(key);
+    }
+    
     public void put(Entry<String,Attribute<? extends Comparable<?>>> entry, Boolean includeGroupingContext) {
         // No grouping context in the document.
         this.put(entry.getKey(), entry.getValue(), includeGroupingContext, false);
@@ -400,7 +517,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
             this._count -= attr.size();
             if (trackSizes) {
                 this._bytes -= attr.sizeInBytes();
-                this._bytes -= Attribute.sizeInBytes(key);
+                this._bytes -= fieldNameSizeInBytes(key);
             }
             invalidateMetadata();
             
@@ -436,7 +553,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
                 if (entry.getKey().equals(key)) {
                     iter.remove();
                     if (trackSizes) {
-                        this._bytes -= Attribute.sizeInBytes(key);
+                        this._bytes -= fieldNameSizeInBytes(key);
                     }
                 } else {
                     // Recursively delete if it's a Document
@@ -493,7 +610,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
                 Attribute<?> newAttr = attr.reduceToKeep();
                 if (newAttr == null) {
                     if (trackSizes) {
-                        _bytes -= Attribute.sizeInBytes(entry.getKey());
+                        _bytes -= fieldNameSizeInBytes(entry.getKey());
                     }
                     it.remove();
                 } else {
@@ -507,7 +624,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
                 }
             } else {
                 if (trackSizes) {
-                    _bytes -= Attribute.sizeInBytes(entry.getKey());
+                    _bytes -= fieldNameSizeInBytes(entry.getKey());
                 }
                 it.remove();
             }
@@ -827,7 +944,7 @@ public class Document extends AttributeBag<Document> implements Serializable {
     
     @Override
     public Document copy() {
-        Document d = new Document(this.getMetadata(), this.isToKeep(), trackSizes);
+        Document d = new Document(this.getMetadata(), this.isToKeep(), trackSizes, compact);
         
         // _count will be set via put operations
         Set<Entry<String,Attribute<? extends Comparable<?>>>> entries = this._getDictionary().entrySet();
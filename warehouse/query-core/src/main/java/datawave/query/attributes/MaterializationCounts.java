@@ -0,0 +1,43 @@
+package datawave.query.attributes;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the lazily normalized attributes created for a query, and how many of those were ever materialized into their type. The difference is the number of
+ * attributes whose normalization was avoided altogether.
+ */
+public class MaterializationCounts {
+    
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong materialized = new AtomicLong();
+    
+    void created() {
+        created.incrementAndGet();
+    }
+    
+    void materialized() {
+        materialized.incrementAndGet();
+    }
+    
+    public long getCreated() {
+        return created.get();
+    }
+    
+    public long getMaterialized() {
+        return materialized.get();
+    }
+    
+    public long getUnmaterialized() {
+        return getCreated() - getMaterialized();
+    }
+    
+    public void reset() {
+        created.set(0);
+        materialized.set(0);
+    }
+    
+    @Override
+    public String toString() {
+        return "created: " + getCreated() + ", materialized: " + getMaterialized() + ", never materialized: " + getUnmaterialized();
+    }
+}
@@ -12,6 +12,13 @@ public class TimingMetadata extends Metadata {
     private static final String SOURCE_COUNT = "SOURCE_COUNT";
     private static final String SEEK_COUNT = "SEEK_COUNT";
     private static final String YIELD_COUNT = "YIELD_COUNT";
+    private static final String PIPELINES_GRANTED = "PIPELINES_GRANTED";
+    private static final String THROTTLE_COUNT = "THROTTLE_COUNT";
+    private static final String TEMPLATE_HITS = "TEMPLATE_HITS";
+    private static final String TEMPLATE_MISSES = "TEMPLATE_MISSES";
+    private static final String TEMPLATE_SAVED_NANOS = "TEMPLATE_SAVED_NANOS";
+    private static final String FETCHED_DOCUMENTS = "FETCHED_DOCUMENTS";
+    private static final String FETCH_SEEKS = "FETCH_SEEKS";
     private static final String STAGE_TIMERS = "STAGE_TIMERS";
     private static final String HOST = "HOST";
     
@@ -68,6 +75,97 @@ public class TimingMetadata extends Metadata {
         put(YIELD_COUNT, new Numeric(yieldCount, this.getMetadata(), this.isToKeep()));
     }
     
+    public long getPipelinesGranted() {
+        Numeric numericValue = (Numeric) get(PIPELINES_GRANTED);
+        if (numericValue != null) {
+            return ((Number) numericValue.getData()).longValue();
+        } else {
+            return 0L;
+        }
+    }
+    
+    public void setPipelinesGranted(long pipelinesGranted) {
+        put(PIPELINES_GRANTED, new Numeric(pipelinesGranted, this.getMetadata(), this.isToKeep()));
+    }
+    
+    public long getThrottleCount() {
+        Numeric numericValue = (Numeric) get(THROTTLE_COUNT);
+        if (numericValue != null) {
+            return ((Number) numericValue.getData()).longValue();
+        } else {
+            return 0L;
+        }
+    }
+    
+    public void setThrottleCount(long throttleCount) {
+        put(THROTTLE_COUNT, new Numeric(throttleCount, this.getMetadata(), this.isToKeep()));
+    }
+    
+    public long getTemplateHits() {
+        Numeric numericValue = (Numeric) get(TEMPLATE_HITS);
+        if (numericValue != null) {
+            return ((Number) numericValue.getData()).longValue();
+        } else {
+            return 0L;
+        }
+    }
+    
+    public void setTemplateHits(long templateHits) {
+        put(TEMPLATE_HITS, new Numeric(templateHits, this.getMetadata(), this.isToKeep()));
+    }
+    
+    public long getTemplateMisses() {
+        Numeric numericValue = (Numeric) get(TEMPLATE_MISSES);
+        if (numericValue != null) {
+            return ((Number) numericValue.getData()).longValue();
+        } else {
+            return 0L;
+        }
+    }
+    
+    public void setTemplateMisses(long templateMisses) {
+        put(TEMPLATE_MISSES, new Numeric(templateMisses, this.getMetadata(), this.isToKeep()));
+    }
+    
+    public long getTemplateSavedNanos() {
+        Numeric numericValue = (Numeric) get(TEMPLATE_SAVED_NANOS);
+        if (numericValue != null) {
+            return ((Number) numericValue.getData()).longValue();
+        } else {
+            return 0L;
+        }
+    }
+    
+    public void setTemplateSavedNanos(long templateSavedNanos) {
+        put(TEMPLATE_SAVED_NANOS, new Numeric(templateSavedNanos, this.getMetadata(), this.isToKeep()));
+    }
+    
+    public long getFetchedDocuments() {
+        Numeric numericValue = (Numeric) get(FETCHED_DOCUMENTS);
+        if (numericValue != null) {
+            return ((Number) numericValue.getData()).longValue();
+        } else {
+            return 0L;
+        }
+    }
+    
+    public void setFetchedDocuments(long fetchedDocuments) {
+        put(FETCHED_DOCUMENTS, new Numeric(fetchedDocuments, this.getMetadata(), this.isToKeep()));
+    }
+    
+    public long getFetchSeeks() {
+        Numeric numericValue = (Numeric) get(FETCH_SEEKS);
+        if (numericValue != null) {
+            return ((Number) numericValue.getData()).longValue();
+        } else {
+            return 0L;
+        }
+    }
+    
+    public void setFetchSeeks(long fetchSeeks) {
+        put(FETCH_SEEKS, new Numeric(fetchSeeks, this.getMetadata(), this.isToKeep()));
+    }
+    
     public void addStageTimer(String stageName, Numeric elapsed) {
         Metadata stageTimers = (Metadata) get(STAGE_TIMERS);
         if (stageTimers == null) {
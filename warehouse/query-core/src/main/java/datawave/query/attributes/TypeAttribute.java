@@ -31,6 +31,28 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     
     private Type<T> datawaveType;
     
+    /**
+     * The raw value of a lazily normalized attribute. This is only set when the attribute was created without its type.
+     */
+    private RawValue raw = null;
+    
+    private static class RawValue {
+        private final Class<?> dataTypeClass;
+        private final String fieldName;
+        private String data;
+        private MaterializationCounts counts;
+        // fixed when created, so that a document's size accounting is unaffected by materializing its attributes
+        private final long bytes;
+        
+        private RawValue(Class<?> dataTypeClass, String fieldName, String data, MaterializationCounts counts, long bytes) {
+            this.dataTypeClass = dataTypeClass;
+            this.fieldName = fieldName;
+            this.data = data;
+            this.counts = counts;
+            this.bytes = bytes;
+        }
+    }
+    
     protected TypeAttribute() {
         super(null, true);
     }
@@ -40,13 +62,57 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
         this.datawaveType = datawaveType;
     }
     
+    /**
+     * Create an attribute holding the raw value, whose type is built the first time the attribute is evaluated, compared, or serialized
+     *
+     * @param dataTypeClass
+     *            the class of the type
+     * @param fieldName
+     *            the field name, for logging
+     * @param data
+     *            the raw value
+     * @param docKey
+     * @param toKeep
+     * @param counts
+     *            tracks the created and materialized attributes
+     */
+    public TypeAttribute(Class<?> dataTypeClass, String fieldName, String data, Key docKey, boolean toKeep, MaterializationCounts counts) {
+        super(docKey, toKeep);
+        // 24 for the raw value holder and its references
+        this.raw = new RawValue(dataTypeClass, fieldName, data, counts, Attribute.sizeInBytes(data) + super.sizeInBytes(4) + 24);
+        counts.created();
+    }
+    
     @Override
     public long sizeInBytes() {
+        if (raw != null) {
+            return raw.bytes;
+        }
         return ObjectSizeOf.Sizer.getObjectSize(datawaveType) + super.sizeInBytes(4);
         // 4 for datawaveType reference
     }
     
+    /**
+     * @return true if the type has been built, which is always the case for attributes that were not created lazily
+     */
+    public boolean isMaterialized() {
+        return datawaveType != null;
+    }
+    
+    @SuppressWarnings("unchecked")
     public Type<T> getType() {
+        if (this.datawaveType == null && raw != null) {
+            try {
+                this.datawaveType = (Type<T>) AttributeFactory.getType(raw.dataTypeClass, raw.fieldName, raw.data);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Could not create Attribute for " + raw.fieldName + " and " + raw.data, e);
+            }
+            raw.counts.materialized();
+            raw.data = null;
+            raw.counts = null;
+        }
         return this.datawaveType;
     }
     
@@ -62,9 +128,9 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     
     @Override
     public void write(DataOutput out, boolean reducedResponse) throws IOException {
-        WritableUtils.writeString(out, datawaveType.getClass().toString());
+        WritableUtils.writeString(out, getType().getClass().toString());
         writeMetadata(out, reducedResponse);
-        WritableUtils.writeString(out, datawaveType.getDelegateAsString());
+        WritableUtils.writeString(out, getType().getDelegateAsString());
     }
     
     @Override
@@ -82,7 +148,7 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     
     @Override
     public int compareTo(TypeAttribute<T> other) {
-        int cmp = datawaveType.compareTo(other.getType());
+        int cmp = getType().compareTo(other.getType());
         
         if (0 == cmp) {
             // Compare the ColumnVisibility as well
@@ -109,20 +175,20 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     @Override
     public int hashCode() {
         HashCodeBuilder hcb = new HashCodeBuilder(2099, 2129);
-        hcb.append(datawaveType.getDelegateAsString()).append(super.hashCode());
+        hcb.append(getType().getDelegateAsString()).append(super.hashCode());
         return hcb.toHashCode();
     }
     
     @Override
     public Collection<ValueTuple> visit(Collection<String> fieldNames, DatawaveJexlContext context) {
-        if (this.datawaveType instanceof OneToManyNormalizerType) {
+        if (getType() instanceof OneToManyNormalizerType) {
             Set<ValueTuple> set = new FunctionalSet<>();
-            for (String norm : ((OneToManyNormalizerType<?>) this.datawaveType).getNormalizedValues()) {
-                set.add(new ValueTuple(fieldNames, this.datawaveType, norm, this));
+            for (String norm : ((OneToManyNormalizerType<?>) getType()).getNormalizedValues()) {
+                set.add(new ValueTuple(fieldNames, getType(), norm, this));
             }
             return set;
         }
-        return FunctionalSet.singleton(new ValueTuple(fieldNames, this.datawaveType, datawaveType.normalize(), this));
+        return FunctionalSet.singleton(new ValueTuple(fieldNames, getType(), getType().normalize(), this));
     }
     
     @Override
@@ -132,10 +198,10 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     
     @Override
     public void write(Kryo kryo, Output output, Boolean reducedResponse) {
-        output.writeString(datawaveType.getClass().getName());
+        output.writeString(getType().getClass().getName());
         super.writeMetadata(kryo, output, reducedResponse);
         
-        output.writeString(this.datawaveType.getDelegateAsString());
+        output.writeString(getType().getDelegateAsString());
     }
     
     @Override
@@ -176,8 +242,8 @@ public class TypeAttribute<T extends Comparable<T>> extends Attribute<TypeAttrib
     
     @Override
     public String toString() {
-        if (datawaveType.getDelegate() != null) {
-            return datawaveType.getDelegateAsString();
+        if (getType().getDelegate() != null) {
+            return getType().getDelegateAsString();
         } else {
             return this.getClass() + " with null delegate";
         }
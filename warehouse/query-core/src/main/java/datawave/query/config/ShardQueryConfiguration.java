@@ -7,6 +7,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import datawave.core.iterators.ResultAggregate;
 import datawave.query.iterator.ivarator.IvaratorCacheDirConfig;
 import datawave.data.type.DiscreteIndexType;
 import datawave.data.type.NoOpType;
@@ -19,9 +20,12 @@ import datawave.query.function.DocumentPermutation;
 import datawave.query.iterator.QueryIterator;
 import datawave.query.jexl.JexlASTHelper;
 import datawave.query.model.QueryModel;
+import datawave.query.planner.ShardSampler;
 import datawave.query.tables.ShardQueryLogic;
+import datawave.query.tables.async.ServerScanBudget;
 import datawave.query.tld.TLDQueryIterator;
 import datawave.query.util.QueryStopwatch;
+import datawave.query.util.sortedset.SpillableByteArraySet;
 import datawave.util.TableName;
 import datawave.util.UniversalSet;
 import datawave.webservice.query.Query;
@@ -259,6 +263,13 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
      * By default don't use speculative scanning.
      */
     private boolean speculativeScanning = false;
+    /**
+     * By default don't hedge slow scans. When enabled, a scan which has returned nothing after the given percentile of recent scan latencies is duplicated
+     * in a new scan session on the same tablet server, up to the given fraction of the scans in the session.
+     */
+    private boolean hedgedScanning = false;
+    private double hedgeLatencyPercentile = 0.95;
+    private double maxHedgeFraction = 0.1;
     private boolean disableEvaluation = false;
     private boolean containsIndexOnlyTerms = false;
     private boolean containsCompositeTerms = false;
@@ -324,6 +335,92 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
     private boolean accrueStats = false;
     private Set<String> groupFields = new HashSet<>(0);
     private Set<String> uniqueFields = new HashSet<>(0);
+    /**
+     * Used by the CountingShardQueryLogic to aggregate counts, distinct counts and histograms on the tservers instead of returning documents
+     */
+    private boolean aggregateResults = false;
+    private Set<String> histogramFields = new HashSet<>(0);
+    private Set<String> distinctCountFields = new HashSet<>(0);
+    /**
+     * The maximum number of distinct values kept in each aggregated histogram, beyond which values are only counted as a whole
+     */
+    private int maxHistogramValues = ResultAggregate.DEFAULT_MAX_HISTOGRAM_VALUES;
+    /**
+     * Compile the query into predicates once per iterator rather than interpreting it for each document
+     */
+    private boolean compiledEvaluation = false;
+    /**
+     * Keep term offsets packed in primitive arrays, decoded lazily, for content function evaluation
+     */
+    private boolean packedTermOffsets = false;
+    /**
+     * Evaluate documents without their term frequencies first, and only fetch term frequencies, a batch of documents at a time, for those which could match
+     */
+    private boolean lazyTermFrequencies = false;
+    private int termFrequencyBatchSize = 32;
+    /**
+     * Build documents with interned field names, shared attribute metadata and array backed storage for multi-valued fields
+     */
+    private boolean compactDocuments = false;
+    /**
+     * Create document attributes holding their raw values, and only build their types when they are evaluated, compared or serialized
+     */
+    private boolean lazyAttributeNormalization = false;
+    /**
+     * The bytes of unique signatures held in memory before they are forgotten on the tserver, or spilled to disk on the web server
+     */
+    private long uniqueMaxMemory = SpillableByteArraySet.DEFAULT_MAX_MEMORY;
+    /**
+     * If true, the tservers share the type metadata, parsed query and evaluation function built when a query iterator is initialized with the later init
+     * calls of the same query
+     */
+    private boolean queryTemplateCache = true;
+    /**
+     * If greater than 0, only the top k documents ordered by the top k field (or by event date if not set), highest first, are returned. Each tserver keeps
+     * only its own top k, which are merged on the web server
+     */
+    private int topK = 0;
+    private String topKField = null;
+    /**
+     * If greater than 1, a serial evaluation pipeline fetches the events of the next document fetch batch size documents in one forward pass, only seeking
+     * over gaps between documents of more than document fetch max nexts keys
+     */
+    private int documentFetchBatchSize = 0;
+    private int documentFetchMaxNexts = 10;
+    /**
+     * If true, the chunks of a query are queued per tserver and at most max scans per server of the query run against a tserver at once, and at most the
+     * {@link ServerScanBudget} of all the queries of the web server
+     */
+    private boolean localityScheduler = false;
+    private int maxScansPerServer = 4;
+    /**
+     * If the sample rate is within (0, 1), only a deterministic sample of about that fraction of the shards of each day, selected by the seed, is scanned
+     */
+    private double sampleRate = 0.0;
+    private long sampleSeed = 0L;
+    /**
+     * The sampler of a sampled query, set when its ranges are planned
+     */
+    @JsonIgnore
+    private transient ShardSampler shardSampler = null;
+    /**
+     * If true, the expanded query tree planned for a query is reused by identical queries (same query, parameters, auths and dates within the same ttl
+     * bucket) for the ttl in milliseconds, which should be no longer than the ingest latency that is acceptable for the expansions
+     */
+    private boolean queryPlanCache = false;
+    private long queryPlanCacheTtl = 5 * 60 * 1000L;
+    /**
+     * If true, the shard index lookups of terms for days older than the horizon in days are cached per term and day and shared by queries with the same
+     * auths, up to the max bytes and for the ttl in milliseconds. The cache is shared by the webserver, so it is sized by the first query to use it
+     */
+    private boolean indexLookupCache = false;
+    private int indexLookupCacheHorizon = 7;
+    private long indexLookupCacheMaxBytes = 256L * 1024 * 1024;
+    private long indexLookupCacheTtl = 60 * 60 * 1000L;
+    /**
+     * Seek between candidate terms in the global index using an automaton built from the regexes being expanded, rather than testing every term in range
+     */
+    private boolean automatonRegexExpansion = false;
     private boolean cacheModel = false;
     /**
      * should the sizes of documents be tracked for this query
@@ -451,6 +548,9 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setReducedResponse(other.isReducedResponse());
         this.setAllowShortcutEvaluation(other.getAllowShortcutEvaluation());
         this.setSpeculativeScanning(other.getSpeculativeScanning());
+        this.setHedgedScanning(other.getHedgedScanning());
+        this.setHedgeLatencyPercentile(other.getHedgeLatencyPercentile());
+        this.setMaxHedgeFraction(other.getMaxHedgeFraction());
         this.setDisableEvaluation(other.isDisableEvaluation());
         this.setContainsIndexOnlyTerms(other.isContainsIndexOnlyTerms());
         this.setContainsCompositeTerms(other.isContainsCompositeTerms());
@@ -502,6 +602,33 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.setAccrueStats(other.getAccrueStats());
         this.setGroupFields(null == other.getGroupFields() ? null : Sets.newHashSet(other.getGroupFields()));
         this.setUniqueFields(null == other.getUniqueFields() ? null : Sets.newHashSet(other.getUniqueFields()));
+        this.setAggregateResults(other.isAggregateResults());
+        this.setHistogramFields(null == other.getHistogramFields() ? null : Sets.newHashSet(other.getHistogramFields()));
+        this.setDistinctCountFields(null == other.getDistinctCountFields() ? null : Sets.newHashSet(other.getDistinctCountFields()));
+        this.setMaxHistogramValues(other.getMaxHistogramValues());
+        this.setCompiledEvaluation(other.isCompiledEvaluation());
+        this.setPackedTermOffsets(other.isPackedTermOffsets());
+        this.setLazyTermFrequencies(other.isLazyTermFrequencies());
+        this.setTermFrequencyBatchSize(other.getTermFrequencyBatchSize());
+        this.setCompactDocuments(other.isCompactDocuments());
+        this.setLazyAttributeNormalization(other.isLazyAttributeNormalization());
+        this.setUniqueMaxMemory(other.getUniqueMaxMemory());
+        this.setQueryTemplateCache(other.isQueryTemplateCache());
+        this.setTopK(other.getTopK());
+        this.setTopKField(other.getTopKField());
+        this.setDocumentFetchBatchSize(other.getDocumentFetchBatchSize());
+        this.setDocumentFetchMaxNexts(other.getDocumentFetchMaxNexts());
+        this.setLocalityScheduler(other.getLocalityScheduler());
+        this.setMaxScansPerServer(other.getMaxScansPerServer());
+        this.setSampleRate(other.getSampleRate());
+        this.setSampleSeed(other.getSampleSeed());
+        this.setQueryPlanCache(other.isQueryPlanCache());
+        this.setQueryPlanCacheTtl(other.getQueryPlanCacheTtl());
+        this.setIndexLookupCache(other.isIndexLookupCache());
+        this.setIndexLookupCacheHorizon(other.getIndexLookupCacheHorizon());
+        this.setIndexLookupCacheMaxBytes(other.getIndexLookupCacheMaxBytes());
+        this.setIndexLookupCacheTtl(other.getIndexLookupCacheTtl());
+        this.setAutomatonRegexExpansion(other.isAutomatonRegexExpansion());
         this.setCacheModel(other.getCacheModel());
         this.setTrackSizes(other.isTrackSizes());
         this.setContentFieldNames(null == other.getContentFieldNames() ? null : Lists.newArrayList(other.getContentFieldNames()));
@@ -1522,6 +1649,238 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         return StringUtils.join(this.getUniqueFields(), Constants.PARAM_VALUE_SEP);
     }
     
+    public boolean isAggregateResults() {
+        return aggregateResults;
+    }
+    
+    public void setAggregateResults(boolean aggregateResults) {
+        this.aggregateResults = aggregateResults;
+    }
+    
+    public Set<String> getHistogramFields() {
+        return histogramFields;
+    }
+    
+    public void setHistogramFields(Set<String> histogramFields) {
+        this.histogramFields = deconstruct(histogramFields);
+    }
+    
+    public String getHistogramFieldsAsString() {
+        return StringUtils.join(this.getHistogramFields(), Constants.PARAM_VALUE_SEP);
+    }
+    
+    public Set<String> getDistinctCountFields() {
+        return distinctCountFields;
+    }
+    
+    public void setDistinctCountFields(Set<String> distinctCountFields) {
+        this.distinctCountFields = deconstruct(distinctCountFields);
+    }
+    
+    public String getDistinctCountFieldsAsString() {
+        return StringUtils.join(this.getDistinctCountFields(), Constants.PARAM_VALUE_SEP);
+    }
+    
+    public int getMaxHistogramValues() {
+        return maxHistogramValues;
+    }
+    
+    public void setMaxHistogramValues(int maxHistogramValues) {
+        this.maxHistogramValues = maxHistogramValues;
+    }
+    
+    public boolean isCompiledEvaluation() {
+        return compiledEvaluation;
+    }
+    
+    public void setCompiledEvaluation(boolean compiledEvaluation) {
+        this.compiledEvaluation = compiledEvaluation;
+    }
+    
+    public boolean isPackedTermOffsets() {
+        return packedTermOffsets;
+    }
+    
+    public void setPackedTermOffsets(boolean packedTermOffsets) {
+        this.packedTermOffsets = packedTermOffsets;
+    }
+    
+    public boolean isLazyTermFrequencies() {
+        return lazyTermFrequencies;
+    }
+    
+    public void setLazyTermFrequencies(boolean lazyTermFrequencies) {
+        this.lazyTermFrequencies = lazyTermFrequencies;
+    }
+    
+    public int getTermFrequencyBatchSize() {
+        return termFrequencyBatchSize;
+    }
+    
+    public void setTermFrequencyBatchSize(int termFrequencyBatchSize) {
+        this.termFrequencyBatchSize = termFrequencyBatchSize;
+    }
+    
+    public boolean isCompactDocuments() {
+        return compactDocuments;
+    }
+    
+    public void setCompactDocuments(boolean compactDocuments) {
+        this.compactDocuments = compactDocuments;
+    }
+    
+    public boolean isLazyAttributeNormalization() {
+        return lazyAttributeNormalization;
+    }
+    
+    public void setLazyAttributeNormalization(boolean lazyAttributeNormalization) {
+        this.lazyAttributeNormalization = lazyAttributeNormalization;
+    }
+    
+    public long getUniqueMaxMemory() {
+        return uniqueMaxMemory;
+    }
+    
+    public void setUniqueMaxMemory(long uniqueMaxMemory) {
+        this.uniqueMaxMemory = uniqueMaxMemory;
+    }
+    
+    public boolean isQueryTemplateCache() {
+        return queryTemplateCache;
+    }
+    
+    public void setQueryTemplateCache(boolean queryTemplateCache) {
+        this.queryTemplateCache = queryTemplateCache;
+    }
+    
+    public int getTopK() {
+        return topK;
+    }
+    
+    public void setTopK(int topK) {
+        this.topK = topK;
+    }
+    
+    public String getTopKField() {
+        return topKField;
+    }
+    
+    public void setTopKField(String topKField) {
+        this.topKField = topKField;
+    }
+    
+    public int getDocumentFetchBatchSize() {
+        return documentFetchBatchSize;
+    }
+    
+    public void setDocumentFetchBatchSize(int documentFetchBatchSize) {
+        this.documentFetchBatchSize = documentFetchBatchSize;
+    }
+    
+    public int getDocumentFetchMaxNexts() {
+        return documentFetchMaxNexts;
+    }
+    
+    public void setDocumentFetchMaxNexts(int documentFetchMaxNexts) {
+        this.documentFetchMaxNexts = documentFetchMaxNexts;
+    }
+    
+    public boolean getLocalityScheduler() {
+        return localityScheduler;
+    }
+    
+    public void setLocalityScheduler(boolean localityScheduler) {
+        this.localityScheduler = localityScheduler;
+    }
+    
+    public int getMaxScansPerServer() {
+        return maxScansPerServer;
+    }
+    
+    public void setMaxScansPerServer(int maxScansPerServer) {
+        this.maxScansPerServer = maxScansPerServer;
+    }
+    
+    public double getSampleRate() {
+        return sampleRate;
+    }
+    
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+    
+    public long getSampleSeed() {
+        return sampleSeed;
+    }
+    
+    public void setSampleSeed(long sampleSeed) {
+        this.sampleSeed = sampleSeed;
+    }
+    
+    public ShardSampler getShardSampler() {
+        return shardSampler;
+    }
+    
+    public void setShardSampler(ShardSampler shardSampler) {
+        this.shardSampler = shardSampler;
+    }
+    
+    public boolean isQueryPlanCache() {
+        return queryPlanCache;
+    }
+    
+    public void setQueryPlanCache(boolean queryPlanCache) {
+        this.queryPlanCache = queryPlanCache;
+    }
+    
+    public long getQueryPlanCacheTtl() {
+        return queryPlanCacheTtl;
+    }
+    
+    public void setQueryPlanCacheTtl(long queryPlanCacheTtl) {
+        this.queryPlanCacheTtl = queryPlanCacheTtl;
+    }
+    
+    public boolean isIndexLookupCache() {
+        return indexLookupCache;
+    }
+    
+    public void setIndexLookupCache(boolean indexLookupCache) {
+        this.indexLookupCache = indexLookupCache;
+    }
+    
+    public int getIndexLookupCacheHorizon() {
+        return indexLookupCacheHorizon;
+    }
+    
+    public void setIndexLookupCacheHorizon(int indexLookupCacheHorizon) {
+        this.indexLookupCacheHorizon = indexLookupCacheHorizon;
+    }
+    
+    public long getIndexLookupCacheMaxBytes() {
+        return indexLookupCacheMaxBytes;
+    }
+    
+    public void setIndexLookupCacheMaxBytes(long indexLookupCacheMaxBytes) {
+        this.indexLookupCacheMaxBytes = indexLookupCacheMaxBytes;
+    }
+    
+    public long getIndexLookupCacheTtl() {
+        return indexLookupCacheTtl;
+    }
+    
+    public void setIndexLookupCacheTtl(long indexLookupCacheTtl) {
+        this.indexLookupCacheTtl = indexLookupCacheTtl;
+    }
+    
+    public boolean isAutomatonRegexExpansion() {
+        return automatonRegexExpansion;
+    }
+    
+    public void setAutomatonRegexExpansion(boolean automatonRegexExpansion) {
+        this.automatonRegexExpansion = automatonRegexExpansion;
+    }
+    
     public boolean isHitList() {
         return this.hitList;
     }
@@ -2013,6 +2372,30 @@ public class ShardQueryConfiguration extends GenericQueryConfiguration implement
         this.speculativeScanning = speculativeScanning;
     }
     
+    public boolean getHedgedScanning() {
+        return hedgedScanning;
+    }
+    
+    public void setHedgedScanning(boolean hedgedScanning) {
+        this.hedgedScanning = hedgedScanning;
+    }
+    
+    public double getHedgeLatencyPercentile() {
+        return hedgeLatencyPercentile;
+    }
+    
+    public void setHedgeLatencyPercentile(double hedgeLatencyPercentile) {
+        this.hedgeLatencyPercentile = hedgeLatencyPercentile;
+    }
+    
+    public double getMaxHedgeFraction() {
+        return maxHedgeFraction;
+    }
+    
+    public void setMaxHedgeFraction(double maxHedgeFraction) {
+        this.maxHedgeFraction = maxHedgeFraction;
+    }
+    
     public boolean getSerializeQueryIterator() {
         return serializeQueryIterator;
     }
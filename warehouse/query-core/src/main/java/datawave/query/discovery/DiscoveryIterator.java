@@ -36,6 +36,7 @@ public class DiscoveryIterator implements SortedKeyValueIterator<Key,Value> {
     private boolean separateCountsByColVis = false;
     private boolean showReferenceCount = false;
     private boolean reverseIndex = false;
+    private boolean rollup = false;
     
     @Override
     public DiscoveryIterator deepCopy(IteratorEnvironment env) {
@@ -81,7 +82,7 @@ public class DiscoveryIterator implements SortedKeyValueIterator<Key,Value> {
         Multimap<String,TermInfo> terms = ArrayListMultimap.create();
         Key start = new Key(itr.getTopKey()), key = null;
         while (itr.hasTop() && start.equals((key = itr.getTopKey()), PartialKey.ROW_COLFAM) && datesMatch(start, key)) {
-            TermInfo ti = new TermInfo(key, itr.getTopValue());
+            TermInfo ti = new TermInfo(key, itr.getTopValue(), rollup);
             if (ti.valid)
                 terms.put(ti.datatype, ti);
             else {
@@ -93,9 +94,17 @@ public class DiscoveryIterator implements SortedKeyValueIterator<Key,Value> {
         return terms;
     }
     
-    private static boolean datesMatch(Key reference, Key test) {
+    private boolean datesMatch(Key reference, Key test) {
         ByteSequence a = reference.getColumnQualifierData(), b = test.getColumnQualifierData();
-        for (int i = 0; i < 8; i++) {
+        int length = 8;
+        if (rollup) {
+            // rollup periods are either yyyy or yyyyMM
+            length = periodLength(a);
+            if (length != periodLength(b)) {
+                return false;
+            }
+        }
+        for (int i = 0; i < length; i++) {
             if (a.byteAt(i) != b.byteAt(i)) {
                 return false;
             }
@@ -103,6 +112,15 @@ public class DiscoveryIterator implements SortedKeyValueIterator<Key,Value> {
         return true;
     }
     
+    private static int periodLength(ByteSequence colq) {
+        for (int i = 0; i < colq.length(); i++) {
+            if (colq.byteAt(i) == 0) {
+                return i;
+            }
+        }
+        return colq.length();
+    }
+    
     private Pair<Key,Value> makeTop(List<DiscoveredThing> things) {
         Writable[] returnedThings = new Writable[things.size()];
         for (int i = 0; i < returnedThings.length; ++i)
@@ -132,6 +150,7 @@ public class DiscoveryIterator implements SortedKeyValueIterator<Key,Value> {
         separateCountsByColVis = Boolean.parseBoolean(options.get(DiscoveryLogic.SEPARATE_COUNTS_BY_COLVIS));
         showReferenceCount = Boolean.parseBoolean(options.get(DiscoveryLogic.SHOW_REFERENCE_COUNT));
         reverseIndex = Boolean.parseBoolean(options.get(DiscoveryLogic.REVERSE_INDEX));
+        rollup = Boolean.parseBoolean(options.get(DiscoveryLogic.ROLLUP));
         
         if (log.isTraceEnabled()) {
             log.trace("My source is a " + source.getClass().getName());
@@ -46,6 +46,8 @@ import org.apache.accumulo.core.client.TableNotFoundException;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.user.RegExFilter;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.commons.jexl2.parser.ASTJexlScript;
 import org.apache.commons.lang.StringUtils;
@@ -74,9 +76,13 @@ public class DiscoveryLogic extends ShardIndexQueryTable {
     public static final String SEPARATE_COUNTS_BY_COLVIS = "separate.counts.by.colvis";
     public static final String SHOW_REFERENCE_COUNT = "show.reference.count";
     public static final String REVERSE_INDEX = "reverse.index";
+    public static final String USE_ROLLUPS = "use.rollups";
+    public static final String ROLLUP = "rollup";
     
     private Boolean separateCountsByColVis = false;
     private Boolean showReferenceCount = false;
+    private String rollupTableName = null;
+    private boolean useRollups = false;
     private MetadataHelper metadataHelper;
     
     public DiscoveryLogic() {
@@ -85,6 +91,11 @@ public class DiscoveryLogic extends ShardIndexQueryTable {
     
     public DiscoveryLogic(ShardIndexQueryTable other) {
         super(other);
+        if (other instanceof DiscoveryLogic) {
+            DiscoveryLogic discovery = (DiscoveryLogic) other;
+            this.rollupTableName = discovery.getRollupTableName();
+            this.useRollups = discovery.isUseRollups();
+        }
     }
     
     @Override
@@ -126,6 +137,13 @@ public class DiscoveryLogic extends ShardIndexQueryTable {
             config.setShowReferenceCount(showReferenceCount);
         }
         
+        // Check if user would like to answer whole months and years from the discovery rollups
+        config.setRollupTableName(rollupTableName);
+        config.setUseRollups(useRollups);
+        if (null != settings.findParameter(USE_ROLLUPS) && !settings.findParameter(USE_ROLLUPS).getParameterValue().trim().isEmpty()) {
+            config.setUseRollups(Boolean.valueOf(settings.findParameter(USE_ROLLUPS).getParameterValue().trim()));
+        }
+        
         this.queryModel = metadataHelper.getQueryModel(modelTableName, modelName, null);
         
         // get the data type filter set if any
@@ -214,9 +232,27 @@ public class DiscoveryLogic extends ShardIndexQueryTable {
         Pair<Set<Range>,Set<Range>> seekRanges = makeRanges(config, familiesToSeek, metadataHelper);
         Collection<Range> forward = seekRanges.getValue0();
         if (!forward.isEmpty()) {
-            BatchScanner bs = configureBatchScannerForDiscovery(config, scannerFactory, config.getIndexTableName(), forward, familiesToSeek,
-                            config.getLiterals(), config.getPatterns(), config.getRanges(), false);
-            iterators.add(transformScanner(bs));
+            DiscoveryRollups.HighWaterMark highWaterMark = getRollupHighWaterMark(config);
+            if (highWaterMark != null) {
+                DiscoveryRollups rollups = DiscoveryRollups.split(config.getBeginDate(), config.getEndDate(), highWaterMark.getDate());
+                if (log.isDebugEnabled()) {
+                    log.debug("Using rollups for " + rollups.getPeriods() + " and the index for " + rollups.getRawDateRanges());
+                }
+                if (!rollups.getPeriods().isEmpty()) {
+                    BatchScanner bs = configureBatchScannerForRollups(config, scannerFactory, config.getRollupTableName(), forward, familiesToSeek,
+                                    config.getLiterals(), config.getPatterns(), config.getRanges(), rollups.getPeriods(), highWaterMark.getTimestamp());
+                    iterators.add(transformScanner(bs));
+                }
+                for (LongRange dateRange : rollups.getRawDateRanges()) {
+                    BatchScanner bs = configureBatchScannerForDiscovery(config, scannerFactory, config.getIndexTableName(), forward, familiesToSeek,
+                                    config.getLiterals(), config.getPatterns(), config.getRanges(), false, dateRange);
+                    iterators.add(transformScanner(bs));
+                }
+            } else {
+                BatchScanner bs = configureBatchScannerForDiscovery(config, scannerFactory, config.getIndexTableName(), forward, familiesToSeek,
+                                config.getLiterals(), config.getPatterns(), config.getRanges(), false);
+                iterators.add(transformScanner(bs));
+            }
         }
         Collection<Range> reverse = seekRanges.getValue1();
         if (!reverse.isEmpty()) {
@@ -231,9 +267,45 @@ public class DiscoveryLogic extends ShardIndexQueryTable {
         this.iterator = concat(iterators.iterator());
     }
     
+    /**
+     * The rollups are only used when requested, when the rollup job has populated the rollup table, and when the counts are term counts; the rollups do not
+     * hold reference counts.
+     *
+     * @return the high-water mark of the rollups, or null if the index is to be scanned instead
+     */
+    private DiscoveryRollups.HighWaterMark getRollupHighWaterMark(DiscoveryQueryConfiguration config) throws TableNotFoundException {
+        if (!config.isUseRollups() || config.getShowReferenceCount() || StringUtils.isEmpty(config.getRollupTableName())) {
+            return null;
+        }
+        if (!config.getClient().tableOperations().exists(config.getRollupTableName())) {
+            log.warn("Discovery rollup table " + config.getRollupTableName() + " does not exist; scanning the index instead");
+            return null;
+        }
+        DiscoveryRollups.HighWaterMark highWaterMark = DiscoveryRollups.readHighWaterMark(config.getClient(), config.getRollupTableName());
+        if (highWaterMark == null) {
+            log.warn("Discovery rollup table " + config.getRollupTableName() + " has no high-water mark; scanning the index instead");
+        }
+        return highWaterMark;
+    }
+    
     public static BatchScanner configureBatchScannerForDiscovery(DiscoveryQueryConfiguration config, ScannerFactory scannerFactory, String tableName,
                     Collection<Range> seekRanges, Set<Text> columnFamilies, Multimap<String,String> literals, Multimap<String,String> patterns,
                     Multimap<String,LiteralRange<String>> ranges, boolean reverseIndex) throws TableNotFoundException {
+        // The begin date from the query may be down to the second, for doing lookups in the index we want to use the day because
+        // the times in the index table have been truncated to the day.
+        Date begin = DateUtils.truncate(config.getBeginDate(), Calendar.DAY_OF_MONTH);
+        // we don't need to bump up the end date any more because it's not apart of the range set on the scanner
+        Date end = config.getEndDate();
+        
+        LongRange dateRange = new LongRange(begin.getTime(), end.getTime());
+        
+        return configureBatchScannerForDiscovery(config, scannerFactory, tableName, seekRanges, columnFamilies, literals, patterns, ranges, reverseIndex,
+                        dateRange);
+    }
+    
+    public static BatchScanner configureBatchScannerForDiscovery(DiscoveryQueryConfiguration config, ScannerFactory scannerFactory, String tableName,
+                    Collection<Range> seekRanges, Set<Text> columnFamilies, Multimap<String,String> literals, Multimap<String,String> patterns,
+                    Multimap<String,LiteralRange<String>> ranges, boolean reverseIndex, LongRange dateRange) throws TableNotFoundException {
         
         // if we have no ranges, then nothing to scan
         if (seekRanges.isEmpty()) {
@@ -248,14 +320,6 @@ public class DiscoveryLogic extends ShardIndexQueryTable {
             }
         }
         
-        // The begin date from the query may be down to the second, for doing lookups in the index we want to use the day because
-        // the times in the index table have been truncated to the day.
-        Date begin = DateUtils.truncate(config.getBeginDate(), Calendar.DAY_OF_MONTH);
-        // we don't need to bump up the end date any more because it's not apart of the range set on the scanner
-        Date end = config.getEndDate();
-        
-        LongRange dateRange = new LongRange(begin.getTime(), end.getTime());
-        
         ShardIndexQueryTableStaticMethods.configureGlobalIndexDateRangeFilter(config, bs, dateRange);
         ShardIndexQueryTableStaticMethods.configureGlobalIndexDataTypeFilter(config, bs, config.getDatatypeFilter());
         
@@ -272,6 +336,55 @@ public class DiscoveryLogic extends ShardIndexQueryTable {
         return bs;
     }
     
+    /**
+     * Configure a scanner over the discovery rollup table, which holds the counts for each term, field and datatype summed over whole months and years. The
+     * date of each discovered thing is the period (yyyy or yyyyMM) rather than the day.
+     *
+     * @param periods
+     *            the years and months to read, as produced by {@link DiscoveryRollups}
+     * @param timestamp
+     *            the timestamp of the rollup run which wrote the high-water mark; the rollups of earlier runs are ignored
+     */
+    public static BatchScanner configureBatchScannerForRollups(DiscoveryQueryConfiguration config, ScannerFactory scannerFactory, String tableName,
+                    Collection<Range> seekRanges, Set<Text> columnFamilies, Multimap<String,String> literals, Multimap<String,String> patterns,
+                    Multimap<String,LiteralRange<String>> ranges, Collection<String> periods, long timestamp) throws TableNotFoundException {
+        
+        // if we have no ranges or periods, then nothing to scan
+        if (seekRanges.isEmpty() || periods.isEmpty()) {
+            return null;
+        }
+        
+        BatchScanner bs = scannerFactory.newScanner(tableName, config.getAuthorizations(), config.getNumQueryThreads(), config.getQuery());
+        bs.setRanges(seekRanges);
+        if (!columnFamilies.isEmpty()) {
+            for (Text family : columnFamilies) {
+                bs.fetchColumnFamily(family);
+            }
+        }
+        
+        // a later run replaces the rollups of an earlier one, except for those of a term, field, datatype or visibility which has since aged off the index
+        IteratorSetting runFilter = new IteratorSetting(config.getBaseIteratorPriority() + 20, "runFilter", TimestampFilter.class);
+        TimestampFilter.setStart(runFilter, timestamp, true);
+        bs.addScanIterator(runFilter);
+        
+        // the years and months are selected by the period in the colq
+        IteratorSetting periodFilter = new IteratorSetting(config.getBaseIteratorPriority() + 21, "periodFilter", RegExFilter.class);
+        RegExFilter.setRegexs(periodFilter, null, null, "(" + StringUtils.join(periods, '|') + ")" + Constants.NULL_BYTE_STRING + ".*", null, false);
+        bs.addScanIterator(periodFilter);
+        
+        ShardIndexQueryTableStaticMethods.configureGlobalIndexDataTypeFilter(config, bs, config.getDatatypeFilter());
+        
+        configureIndexMatchingIterator(config, bs, literals, patterns, ranges, false);
+        
+        IteratorSetting discoveryIteratorSetting = new IteratorSetting(config.getBaseIteratorPriority() + 50, DiscoveryIterator.class);
+        discoveryIteratorSetting.addOption(REVERSE_INDEX, Boolean.toString(false));
+        discoveryIteratorSetting.addOption(SEPARATE_COUNTS_BY_COLVIS, config.getSeparateCountsByColVis().toString());
+        discoveryIteratorSetting.addOption(ROLLUP, Boolean.toString(true));
+        bs.addScanIterator(discoveryIteratorSetting);
+        
+        return bs;
+    }
+    
     public static final void configureIndexMatchingIterator(DiscoveryQueryConfiguration config, ScannerBase bs, Multimap<String,String> literals,
                     Multimap<String,String> patterns, Multimap<String,LiteralRange<String>> ranges, boolean reverseIndex) {
         if ((literals == null || literals.isEmpty()) && (patterns == null || patterns.isEmpty()) && (ranges == null || ranges.isEmpty())) {
@@ -496,6 +609,7 @@ public class DiscoveryLogic extends ShardIndexQueryTable {
     public Set<String> getOptionalQueryParameters() {
         Set<String> params = super.getOptionalQueryParameters();
         params.add(SEPARATE_COUNTS_BY_COLVIS);
+        params.add(USE_ROLLUPS);
         return params;
     }
     
@@ -515,4 +629,20 @@ public class DiscoveryLogic extends ShardIndexQueryTable {
         this.showReferenceCount = showReferenceCount;
     }
     
+    public String getRollupTableName() {
+        return rollupTableName;
+    }
+    
+    public void setRollupTableName(String rollupTableName) {
+        this.rollupTableName = rollupTableName;
+    }
+    
+    public boolean isUseRollups() {
+        return useRollups;
+    }
+    
+    public void setUseRollups(boolean useRollups) {
+        this.useRollups = useRollups;
+    }
+    
 }
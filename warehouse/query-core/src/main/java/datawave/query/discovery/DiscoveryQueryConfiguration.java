@@ -15,6 +15,8 @@ public class DiscoveryQueryConfiguration extends ShardIndexQueryConfiguration {
     private Multimap<String,LiteralRange<String>> ranges;
     private Boolean separateCountsByColVis = false;
     private Boolean showReferenceCount = false;
+    private String rollupTableName = null;
+    private boolean useRollups = false;
     
     public DiscoveryQueryConfiguration(ShardIndexQueryTable logic, Query query) {
         super(logic, query);
@@ -60,4 +62,20 @@ public class DiscoveryQueryConfiguration extends ShardIndexQueryConfiguration {
         this.showReferenceCount = showReferenceCount;
         
     }
+    
+    public String getRollupTableName() {
+        return rollupTableName;
+    }
+    
+    public void setRollupTableName(String rollupTableName) {
+        this.rollupTableName = rollupTableName;
+    }
+    
+    public boolean isUseRollups() {
+        return useRollups;
+    }
+    
+    public void setUseRollups(boolean useRollups) {
+        this.useRollups = useRollups;
+    }
 }
@@ -0,0 +1,198 @@
+package datawave.query.discovery;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedSet;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.lang.math.LongRange;
+
+/**
+ * Splits a discovery date range into the whole years and months which can be answered from the discovery rollup table, and the ranges of days at its edges
+ * which must still be answered from the raw index. A period is only taken from the rollups once it ends before the high-water mark of the rollup job: the day
+ * from which the index was not rolled up, as recorded in the rollup table by the run which wrote the rollups. Days are calendar days in GMT, matching the
+ * shard dates from which the rollups are built.
+ */
+public class DiscoveryRollups {
+    
+    public static final String YEAR_FORMAT = "yyyy";
+    public static final String MONTH_FORMAT = "yyyyMM";
+    public static final String DAY_FORMAT = "yyyyMMdd";
+    
+    // the entry holding the high-water mark (yyyyMMdd) as its value, sorting before any term
+    public static final String HIGH_WATER_MARK_ROW = "\0discovery.rollups";
+    public static final String HIGH_WATER_MARK_COLF = "highWaterMark";
+    
+    private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+    
+    private final SortedSet<String> periods = new TreeSet<>();
+    private final List<LongRange> rawDateRanges = new ArrayList<>();
+    
+    private DiscoveryRollups() {}
+    
+    /**
+     * @param begin
+     *            the begin date of the query
+     * @param end
+     *            the end date of the query
+     * @param highWaterMark
+     *            the high-water mark of the rollups; only periods which end before this day are taken from the rollups
+     * @return the split of the date range
+     */
+    public static DiscoveryRollups split(Date begin, Date end, Date highWaterMark) {
+        DiscoveryRollups rollups = new DiscoveryRollups();
+        
+        Calendar cursor = day(begin);
+        long limit = Math.min(end.getTime(), day(highWaterMark).getTimeInMillis() - 1);
+        long rawStart = -1;
+        while (cursor.getTimeInMillis() <= limit) {
+            String period = null;
+            if (cursor.get(Calendar.DAY_OF_YEAR) == 1 && lastDay(cursor, Calendar.YEAR) <= limit) {
+                period = format(cursor, YEAR_FORMAT);
+            } else if (cursor.get(Calendar.DAY_OF_MONTH) == 1 && lastDay(cursor, Calendar.MONTH) <= limit) {
+                period = format(cursor, MONTH_FORMAT);
+            }
+            
+            if (period == null) {
+                if (rawStart < 0) {
+                    rawStart = cursor.getTimeInMillis();
+                }
+                cursor.add(Calendar.DAY_OF_MONTH, 1);
+            } else {
+                if (rawStart >= 0) {
+                    rollups.rawDateRanges.add(new LongRange(rawStart, cursor.getTimeInMillis() - 1));
+                    rawStart = -1;
+                }
+                rollups.periods.add(period);
+                cursor.add(period.length() == YEAR_FORMAT.length() ? Calendar.YEAR : Calendar.MONTH, 1);
+            }
+        }
+        
+        // whatever could not be rolled up at the end, including everything from the high-water mark on, is read from the index
+        if (rawStart < 0 && cursor.getTimeInMillis() <= end.getTime()) {
+            rawStart = cursor.getTimeInMillis();
+        }
+        if (rawStart >= 0) {
+            rollups.rawDateRanges.add(new LongRange(rawStart, end.getTime()));
+        }
+        return rollups;
+    }
+    
+    /**
+     * @return the years (yyyy) and months (yyyyMM) to read from the rollup table
+     */
+    public SortedSet<String> getPeriods() {
+        return Collections.unmodifiableSortedSet(periods);
+    }
+    
+    /**
+     * @return the date ranges to read from the index
+     */
+    public List<LongRange> getRawDateRanges() {
+        return Collections.unmodifiableList(rawDateRanges);
+    }
+    
+    /**
+     * Read the high-water mark written by the latest run of the rollup job
+     *
+     * @return the high-water mark, or null if the rollup job has not been run against the table
+     */
+    public static HighWaterMark readHighWaterMark(AccumuloClient client, String tableName) throws TableNotFoundException {
+        HighWaterMark mark = null;
+        try (Scanner scanner = client.createScanner(tableName, Authorizations.EMPTY)) {
+            scanner.setRange(Range.exact(HIGH_WATER_MARK_ROW, HIGH_WATER_MARK_COLF));
+            for (Entry<Key,Value> entry : scanner) {
+                long timestamp = entry.getKey().getTimestamp();
+                if (mark == null || timestamp > mark.getTimestamp()) {
+                    mark = new HighWaterMark(parseDay(entry.getValue().toString()), timestamp);
+                }
+            }
+        }
+        return mark;
+    }
+    
+    /**
+     * @return the default high-water mark for a run of the rollup job at the given time: the first day of its month, so that only whole months are rolled up
+     */
+    public static String highWaterMark(Date runDate) {
+        Calendar calendar = day(runDate);
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        return format(calendar, DAY_FORMAT);
+    }
+    
+    /**
+     * @return the start of the given yyyyMMdd day in GMT
+     */
+    public static Date parseDay(String day) {
+        SimpleDateFormat format = new SimpleDateFormat(DAY_FORMAT);
+        format.setTimeZone(GMT);
+        format.setLenient(false);
+        try {
+            return format.parse(day);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid " + DAY_FORMAT + " day: " + day, e);
+        }
+    }
+    
+    /**
+     * The day from which the index has not been rolled up, and the timestamp of the run of the rollup job which wrote it. Every rollup written by that run
+     * has the same timestamp, so older rollups are those of earlier runs.
+     */
+    public static class HighWaterMark {
+        private final Date date;
+        private final long timestamp;
+        
+        public HighWaterMark(Date date, long timestamp) {
+            this.date = date;
+            this.timestamp = timestamp;
+        }
+        
+        public Date getDate() {
+            return date;
+        }
+        
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+    
+    private static Calendar day(Date date) {
+        Calendar calendar = Calendar.getInstance(GMT);
+        calendar.setTime(date);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar;
+    }
+    
+    /**
+     * @return the start of the last day of the year or month beginning at the cursor
+     */
+    private static long lastDay(Calendar cursor, int field) {
+        Calendar last = (Calendar) cursor.clone();
+        last.add(field, 1);
+        last.add(Calendar.DAY_OF_MONTH, -1);
+        return last.getTimeInMillis();
+    }
+    
+    private static String format(Calendar cursor, String pattern) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setTimeZone(GMT);
+        return format.format(cursor.getTime());
+    }
+}
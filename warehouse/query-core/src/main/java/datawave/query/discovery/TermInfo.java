@@ -21,6 +21,14 @@ public class TermInfo {
     private long listSize = 0;
     
     public TermInfo(Key key, Value value) {
+        this(key, value, false);
+    }
+    
+    /**
+     * @param rollup
+     *            true if the key is from the discovery rollup table, where the colq is period\0datatype with a period of yyyy or yyyyMM
+     */
+    public TermInfo(Key key, Value value, boolean rollup) {
         // Get the shard id and datatype from the colq
         fieldValue = key.getRow().toString();
         fieldName = key.getColumnFamily().toString();
@@ -30,7 +38,14 @@ public class TermInfo {
         if (separator != -1) {
             int end_separator = colq.lastIndexOf(Constants.NULL_BYTE_STRING);
             // if we have multiple separators, then we must have a tasking data type entry.
-            if (separator != end_separator) {
+            if (rollup) {
+                // ensure we at least have yyyy
+                if (separator != end_separator || separator < 4) {
+                    return;
+                }
+                date = colq.substring(0, separator);
+                datatype = colq.substring(separator + 1);
+            } else if (separator != end_separator) {
                 // ensure we at least have yyyyMMdd
                 if ((end_separator - separator) < 9) {
                     return;
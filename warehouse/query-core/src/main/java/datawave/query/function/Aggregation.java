@@ -5,6 +5,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import datawave.query.attributes.Document;
+import datawave.query.attributes.MaterializationCounts;
 import datawave.query.composite.CompositeMetadata;
 import datawave.query.iterator.aggregation.DocumentData;
 import datawave.query.predicate.EventDataQueryFilter;
@@ -33,6 +34,16 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
      */
     private boolean trackSizes = true;
     
+    /**
+     * should documents be built compactly
+     */
+    private boolean compact = false;
+    
+    /**
+     * if set, attributes are normalized lazily and counted here
+     */
+    private MaterializationCounts lazyNormalization = null;
+    
     // Need to provide the mapping
     @SuppressWarnings("unused")
     private Aggregation() {}
@@ -44,6 +55,18 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
     
     public Aggregation(TimeFilter timeFilter, TypeMetadata typeMetadata, CompositeMetadata compositeMetadata, boolean includeGroupingContext,
                     boolean includeRecordId, boolean disableIndexOnlyDocuments, EventDataQueryFilter attrFilter, boolean trackSizes) {
+        this(timeFilter, typeMetadata, compositeMetadata, includeGroupingContext, includeRecordId, disableIndexOnlyDocuments, attrFilter, trackSizes, false);
+    }
+    
+    public Aggregation(TimeFilter timeFilter, TypeMetadata typeMetadata, CompositeMetadata compositeMetadata, boolean includeGroupingContext,
+                    boolean includeRecordId, boolean disableIndexOnlyDocuments, EventDataQueryFilter attrFilter, boolean trackSizes, boolean compact) {
+        this(timeFilter, typeMetadata, compositeMetadata, includeGroupingContext, includeRecordId, disableIndexOnlyDocuments, attrFilter, trackSizes, compact,
+                        null);
+    }
+    
+    public Aggregation(TimeFilter timeFilter, TypeMetadata typeMetadata, CompositeMetadata compositeMetadata, boolean includeGroupingContext,
+                    boolean includeRecordId, boolean disableIndexOnlyDocuments, EventDataQueryFilter attrFilter, boolean trackSizes, boolean compact,
+                    MaterializationCounts lazyNormalization) {
         Preconditions.checkNotNull(timeFilter);
         
         this.timeFilter = timeFilter;
@@ -54,6 +77,8 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
         this.attrFilter = attrFilter;
         this.disableIndexOnlyDocuments = disableIndexOnlyDocuments;
         this.trackSizes = trackSizes;
+        this.compact = compact;
+        this.lazyNormalization = lazyNormalization;
     }
     
     @Override
@@ -66,8 +91,9 @@ public class Aggregation implements Function<Entry<DocumentData,Document>,Entry<
         }
         
         // Only load attributes for this document that fall within the expected date range
-        Document d = new Document(docData.getKey(), docData.getDocKeys(), Iterators.filter(docData.getData().iterator(), timeFilter.getKeyValueTimeFilter()),
-                        this.typeMetadata, this.compositeMetadata, this.includeGroupingContext, this.includeRecordId, this.attrFilter, true, trackSizes);
+        Document d = new Document(docData.getKey(), true, trackSizes, compact).consumeRawData(docData.getKey(), docData.getDocKeys(),
+                        Iterators.filter(docData.getData().iterator(), timeFilter.getKeyValueTimeFilter()), this.typeMetadata, this.compositeMetadata,
+                        this.includeGroupingContext, this.includeRecordId, this.attrFilter, lazyNormalization);
         
         if (log.isTraceEnabled()) {
             log.trace("disable index only docs? " + disableIndexOnlyDocuments + " , size is " + d.size());
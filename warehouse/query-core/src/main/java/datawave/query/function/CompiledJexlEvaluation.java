@@ -0,0 +1,39 @@
+package datawave.query.function;
+
+import datawave.query.jexl.DatawaveJexlContext;
+import datawave.query.jexl.compiled.CompiledPredicate;
+import datawave.query.jexl.compiled.FieldSlots;
+import datawave.query.jexl.compiled.JexlPredicateCompiler;
+import org.apache.commons.jexl2.JexlArithmetic;
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link JexlEvaluation} which compiles the query once, up front, into a tree of {@link CompiledPredicate}s instead of interpreting the query for every
+ * document. Subtrees which cannot be compiled are still evaluated by the interpreter, and the fields read by the compiled comparisons are held in
+ * {@link FieldSlots} which are rebound for each document.
+ */
+public class CompiledJexlEvaluation extends JexlEvaluation {
+    private static final Logger log = Logger.getLogger(CompiledJexlEvaluation.class);
+    
+    private final CompiledPredicate predicate;
+    
+    private final FieldSlots slots;
+    
+    public CompiledJexlEvaluation(String query, JexlArithmetic arithmetic) {
+        super(query, arithmetic);
+        JexlPredicateCompiler compiler = new JexlPredicateCompiler(getEngine(), arithmetic);
+        this.predicate = compiler.compile(parse(query));
+        this.slots = compiler.newFieldSlots();
+    }
+    
+    @Override
+    protected boolean evaluate(DatawaveJexlContext context) {
+        boolean matched = predicate.evaluate(slots.bind(context));
+        
+        if (log.isTraceEnabled()) {
+            log.trace("Compiled evaluation against " + context + " returned " + matched);
+        }
+        
+        return matched;
+    }
+}
@@ -78,7 +78,7 @@ public class DocumentProjection implements DocumentPermutation {
     
     private Document trim(Document d) {
         Map<String,Attribute<? extends Comparable<?>>> dict = d.getDictionary();
-        Document newDoc = new Document();
+        Document newDoc = new Document(null, true, true, d.isCompact());
         
         for (Entry<String,Attribute<? extends Comparable<?>>> entry : dict.entrySet()) {
             String fieldName = entry.getKey();
@@ -138,7 +138,7 @@ public class DocumentProjection implements DocumentPermutation {
     }
     
     private Attributes trim(Attributes attrs, String fieldName) {
-        Attributes newAttrs = new Attributes(attrs.isToKeep(), trackSizes);
+        Attributes newAttrs = new Attributes(attrs.isToKeep(), trackSizes, attrs.isCompact());
         for (Attribute<? extends Comparable<?>> attr : attrs.getAttributes()) {
             if (attr instanceof Document) {
                 Document newAttr = trim((Document) attr);
@@ -62,16 +62,27 @@ public class JexlEvaluation implements Predicate<Tuple3<Key,Document,DatawaveJex
         return ArithmeticJexlEngines.isMatched(o);
     }
     
-    @Override
-    public boolean apply(Tuple3<Key,Document,DatawaveJexlContext> input) {
-        
-        Object o = script.execute(input.third());
+    /**
+     * Evaluate the query against the context
+     * 
+     * @param context
+     *            the context for the document being evaluated
+     * @return true if the document matched
+     */
+    protected boolean evaluate(DatawaveJexlContext context) {
+        Object o = script.execute(context);
         
         if (log.isTraceEnabled()) {
-            log.trace("Evaluation of " + query + " against " + input.third() + " returned " + o);
+            log.trace("Evaluation of " + query + " against " + context + " returned " + o);
         }
         
-        boolean matched = isMatched(o);
+        return isMatched(o);
+    }
+    
+    @Override
+    public boolean apply(Tuple3<Key,Document,DatawaveJexlContext> input) {
+        
+        boolean matched = evaluate(input.third());
         
         if (arithmetic instanceof HitListArithmetic) {
             HitListArithmetic hitListArithmetic = (HitListArithmetic) arithmetic;
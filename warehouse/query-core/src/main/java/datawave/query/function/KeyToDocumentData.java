@@ -7,10 +7,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 
 import datawave.data.hash.UID;
 import datawave.data.hash.UIDConstants;
@@ -18,6 +22,7 @@ import datawave.query.attributes.Document;
 import datawave.query.exceptions.DatawaveFatalQueryException;
 import datawave.query.iterator.QueryOptions;
 import datawave.query.iterator.aggregation.DocumentData;
+import datawave.query.iterator.profile.QuerySpan;
 import datawave.query.predicate.EventDataQueryFilter;
 import datawave.query.util.Tuple3;
 import datawave.webservice.query.exception.DatawaveErrorCode;
@@ -62,6 +67,18 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
     
     private boolean includeParent = false;
     
+    private int fetchBatchSize = 0;
+    
+    private int maxNextsBeforeSeek = 10;
+    
+    private Supplier<List<Key>> upcoming = null;
+    
+    // the document ranges covered by the last batch, and the keys and values read for them
+    private final Set<Range> fetchedRanges = new HashSet<>();
+    private final TreeMap<Key,Value> fetched = new TreeMap<>();
+    
+    private QuerySpan querySpan = null;
+    
     public KeyToDocumentData(SortedKeyValueIterator<Key,Value> source) {
         this(source, new PrefixEquality(PartialKey.ROW_COLFAM), false, false);
     }
@@ -99,6 +116,36 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
         }
     }
     
+    /**
+     * Fetch the events of the upcoming documents together with the current one, in a single forward pass over the source instead of one seek per document.
+     * Gaps between the documents are crossed by calling next, unless more than maxNextsBeforeSeek keys are skipped, in which case the source is seeked to the
+     * next document.
+     *
+     * @param fetchBatchSize
+     *            the number of documents to fetch at once, disabled when not greater than one
+     * @param maxNextsBeforeSeek
+     *            the number of keys to skip within a gap before seeking
+     * @param upcoming
+     *            supplies the keys of the documents which will follow the current one, in order
+     * @return this
+     */
+    public KeyToDocumentData withBatchedFetch(int fetchBatchSize, int maxNextsBeforeSeek, Supplier<List<Key>> upcoming) {
+        this.fetchBatchSize = fetchBatchSize;
+        this.maxNextsBeforeSeek = maxNextsBeforeSeek;
+        this.upcoming = upcoming;
+        return this;
+    }
+    
+    /**
+     * @param querySpan
+     *            the span to which the number of documents fetched and the seeks issued for them are added
+     * @return this
+     */
+    public KeyToDocumentData withQuerySpan(QuerySpan querySpan) {
+        this.querySpan = querySpan;
+        return this;
+    }
+    
     /**
      * Append hierarchy fields, including parent and descendant counts, based on the specified range and key
      * 
@@ -124,16 +171,30 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
         
         try {
             
-            source.seek(keyRange, columnFamilies, inclusive);
+            // when batching, read the document from the keys fetched with the previous ones
+            final SortedKeyValueIterator<Key,Value> documentSource;
+            if (fetchBatchSize > 1 && upcoming != null) {
+                if (!fetchedRanges.contains(keyRange)) {
+                    fetchBatch(keyRange);
+                }
+                documentSource = new BufferedIterator(fetched);
+            } else {
+                documentSource = source;
+                if (querySpan != null) {
+                    querySpan.documentFetch(1, 1);
+                }
+            }
+            
+            documentSource.seek(keyRange, columnFamilies, inclusive);
             
             if (log.isDebugEnabled())
-                log.debug(source.hasTop() + " Key range is " + keyRange);
+                log.debug(documentSource.hasTop() + " Key range is " + keyRange);
             
             final List<Entry<Key,Value>> attrs; // Assign only once for
                                                 // efficiency
             final Set<Key> docKeys = new HashSet<>();
-            if (source.hasTop()) {
-                attrs = this.collectDocumentAttributes(from.getKey(), docKeys, keyRange);
+            if (documentSource.hasTop()) {
+                attrs = collectAttributesForDocumentKey(from.getKey(), documentSource, equality, filter, docKeys, keyRange);
                 this.appendHierarchyFields(attrs, keyRange, from.getKey());
             } else {
                 attrs = Collections.emptyList();
@@ -148,6 +209,70 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
         
     }
     
+    /**
+     * Reads the keys and values of the document in the given range and of the upcoming documents into the fetched buffer, replacing those of the previous
+     * batch.
+     *
+     * @param keyRange
+     *            the range of the current document
+     * @throws IOException
+     */
+    private void fetchBatch(Range keyRange) throws IOException {
+        fetchedRanges.clear();
+        fetched.clear();
+        
+        fetchedRanges.add(keyRange);
+        for (Key key : upcoming.get()) {
+            if (fetchedRanges.size() >= fetchBatchSize) {
+                break;
+            }
+            fetchedRanges.add(getKeyRange(Maps.immutableEntry(key, null)));
+        }
+        
+        // the documents of a batch may overlap, so merge them into sorted disjoint ranges to walk over
+        List<Range> ranges = Range.mergeOverlapping(fetchedRanges);
+        Range last = ranges.get(ranges.size() - 1);
+        Range first = ranges.get(0);
+        
+        long seeks = 1;
+        source.seek(new Range(first.getStartKey(), first.isStartKeyInclusive(), last.getEndKey(), last.isEndKeyInclusive()), columnFamilies, inclusive);
+        
+        int index = 0;
+        int nexts = 0;
+        while (source.hasTop()) {
+            Key key = source.getTopKey();
+            while (index < ranges.size() && ranges.get(index).afterEndKey(key)) {
+                index++;
+            }
+            if (index == ranges.size()) {
+                break;
+            }
+            
+            Range range = ranges.get(index);
+            if (range.contains(key)) {
+                fetched.put(new Key(key), new Value(source.getTopValue().get(), true));
+                nexts = 0;
+                source.next();
+            } else if (nexts >= maxNextsBeforeSeek) {
+                // too many keys between the documents, so skip over the rest of the gap
+                source.seek(new Range(range.getStartKey(), range.isStartKeyInclusive(), last.getEndKey(), last.isEndKeyInclusive()), columnFamilies,
+                                inclusive);
+                seeks++;
+                nexts = 0;
+            } else {
+                nexts++;
+                source.next();
+            }
+        }
+        
+        if (querySpan != null) {
+            querySpan.documentFetch(fetchedRanges.size(), seeks);
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Fetched " + fetched.size() + " keys for " + fetchedRanges.size() + " documents with " + seeks + " seeks");
+        }
+    }
+    
     /**
      * Given a Key pointing to the start of an document to aggregate, construct a list of attributes, adding the names of the attributes to the specified set of
      * "docKeys".
@@ -369,4 +494,67 @@ public class KeyToDocumentData implements Function<Entry<Key,Document>,Entry<Doc
         }
         return new Range(getStartKey(from), true, getStopKey(from), false);
     }
+    
+    /**
+     * Iterates over the keys and values fetched for a batch of documents. These were read with the column families of the document excluded already, so the
+     * column families given to seek are not applied again.
+     */
+    private static class BufferedIterator implements SortedKeyValueIterator<Key,Value> {
+        
+        private final TreeMap<Key,Value> buffer;
+        private Iterator<Entry<Key,Value>> iterator;
+        private Range range;
+        private Entry<Key,Value> top;
+        
+        BufferedIterator(TreeMap<Key,Value> buffer) {
+            this.buffer = buffer;
+        }
+        
+        @Override
+        public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options, IteratorEnvironment env) {
+            // the buffer takes the place of a source, so there is nothing to initialize
+        }
+        
+        @Override
+        public boolean hasTop() {
+            return top != null;
+        }
+        
+        @Override
+        public void next() {
+            top = null;
+            if (iterator.hasNext()) {
+                Entry<Key,Value> next = iterator.next();
+                if (!range.afterEndKey(next.getKey())) {
+                    top = next;
+                }
+            }
+        }
+        
+        @Override
+        public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) {
+            this.range = range;
+            SortedMap<Key,Value> tail = range.isInfiniteStartKey() ? buffer : buffer.tailMap(range.getStartKey());
+            iterator = tail.entrySet().iterator();
+            next();
+            while (top != null && range.beforeStartKey(top.getKey())) {
+                next();
+            }
+        }
+        
+        @Override
+        public Key getTopKey() {
+            return top.getKey();
+        }
+        
+        @Override
+        public Value getTopValue() {
+            return top.getValue();
+        }
+        
+        @Override
+        public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+            return new BufferedIterator(buffer);
+        }
+    }
 }
@@ -57,6 +57,19 @@ public class LogTiming implements Function<Entry<Key,Document>,Entry<Key,Documen
                 } else {
                     timingMetadata.setYieldCount(0L);
                 }
+                if (querySpan.getPipelinesGranted() > 0 || querySpan.getThrottleCount() > 0) {
+                    timingMetadata.setPipelinesGranted(querySpan.getPipelinesGranted());
+                    timingMetadata.setThrottleCount(querySpan.getThrottleCount());
+                }
+                if (querySpan.getTemplateHits() > 0 || querySpan.getTemplateMisses() > 0) {
+                    timingMetadata.setTemplateHits(querySpan.getTemplateHits());
+                    timingMetadata.setTemplateMisses(querySpan.getTemplateMisses());
+                    timingMetadata.setTemplateSavedNanos(querySpan.getTemplateSavedNanos());
+                }
+                if (querySpan.getFetchedDocuments() > 0) {
+                    timingMetadata.setFetchedDocuments(querySpan.getFetchedDocuments());
+                    timingMetadata.setFetchSeeks(querySpan.getFetchSeeks());
+                }
                 
                 long totalStageTimers = querySpan.getStageTimerTotal();
                 // do not report timers that are less than 5% of the total
@@ -0,0 +1,240 @@
+package datawave.query.index.lookup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Iterators;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import datawave.query.tables.ScannerSession;
+import datawave.util.time.DateHelper;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.log4j.Logger;
+
+/**
+ * A webserver wide cache of the shard index entries found for a term, per day. Rows of the shard index for days well in the past do not change, yet every
+ * query scans them again for every term, so the entries for days older than a horizon are cached and shared by all queries which look up the same term in the
+ * same context. The context covers the index table, the auths and everything else that changes what the index scan returns, so entries are never shared
+ * between users who may see different index rows. Only complete day ranges are cached: the entries of a scan are recorded as they are consumed, and are put
+ * into the cache when the scan has completed, never when it ended early because it was closed or failed. Entries expire after a ttl, so that late data and
+ * deletions in the historical days are eventually seen.
+ * <p>
+ * The cache is built by the first query to use it, with the max bytes and ttl of that query. Later queries share it as it is.
+ */
+public class IndexLookupCache {
+    private static final Logger log = Logger.getLogger(IndexLookupCache.class);
+    
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    public static final long DEFAULT_TTL = 60 * 60 * 1000L;
+    
+    /**
+     * the estimated bytes used by an entry beyond its key and value data
+     */
+    static final int ENTRY_OVERHEAD = 128;
+    
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    
+    private static volatile long maxBytes = DEFAULT_MAX_BYTES;
+    private static volatile Cache<String,List<Map.Entry<Key,Value>>> cache = null;
+    
+    private IndexLookupCache() {}
+    
+    private static Cache<String,List<Map.Entry<Key,Value>>> build(long maxBytes, long ttl, Ticker ticker) {
+        return CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher((Weigher<String,List<Map.Entry<Key,Value>>>) (key, entries) -> {
+            long weight = key.length() * 2L + ENTRY_OVERHEAD;
+            for (Map.Entry<Key,Value> entry : entries) {
+                weight += weigh(entry);
+            }
+            return (int) Math.min(weight, Integer.MAX_VALUE);
+        }).expireAfterWrite(ttl, TimeUnit.MILLISECONDS).ticker(ticker).recordStats().build();
+    }
+    
+    private static long weigh(Map.Entry<Key,Value> entry) {
+        return entry.getKey().getSize() + entry.getValue().getSize() + ENTRY_OVERHEAD;
+    }
+    
+    /**
+     * Build the cache if it has not been built yet. Once built, the cache is not changed by later calls.
+     *
+     * @param maxBytes
+     *            the memory the cached entries may use
+     * @param ttl
+     *            the milliseconds an entry is cached for
+     */
+    public static void configure(long maxBytes, long ttl) {
+        if (cache == null) {
+            synchronized (IndexLookupCache.class) {
+                if (cache == null) {
+                    reset(maxBytes, ttl, Ticker.systemTicker());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Replace the cache, dropping all of its entries
+     */
+    static synchronized void reset(long maxBytes, long ttl, Ticker ticker) {
+        IndexLookupCache.maxBytes = maxBytes;
+        cache = build(maxBytes, ttl, ticker);
+    }
+    
+    private static Cache<String,List<Map.Entry<Key,Value>>> cache() {
+        configure(DEFAULT_MAX_BYTES, DEFAULT_TTL);
+        return cache;
+    }
+    
+    /**
+     * @param parts
+     *            everything that changes the entries returned by an index scan
+     * @return the context of the lookups
+     */
+    public static String context(String... parts) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (String part : parts) {
+            String value = part == null ? "" : part;
+            hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+    
+    /**
+     * @param horizon
+     *            the number of days before today which may still change
+     * @param now
+     *            the current time
+     * @return the first day which may still change, so is not cached
+     */
+    public static Date horizon(int horizon, long now) {
+        return DateHelper.parse(DateHelper.format(new Date(now - horizon * DAY_MS)));
+    }
+    
+    /**
+     * @return the days from begin to end inclusive, as formatted in the shard index
+     */
+    public static List<String> days(Date begin, Date end) {
+        List<String> days = new ArrayList<>();
+        String last = DateHelper.format(end);
+        for (long day = DateHelper.parse(DateHelper.format(begin)).getTime(); DateHelper.format(day).compareTo(last) <= 0; day += DAY_MS) {
+            days.add(DateHelper.format(day));
+        }
+        return days;
+    }
+    
+    private static String key(String context, String field, String term, String day) {
+        return context + '\u0000' + field + '\u0000' + term + '\u0000' + day;
+    }
+    
+    /**
+     * @return the cached entries for the term on all of the days in order, or null if any day is not cached
+     */
+    public static Iterator<Map.Entry<Key,Value>> get(String context, String field, String term, List<String> days) {
+        List<Iterator<Map.Entry<Key,Value>>> entries = new ArrayList<>(days.size());
+        for (String day : days) {
+            List<Map.Entry<Key,Value>> dayEntries = cache().getIfPresent(key(context, field, term, day));
+            if (dayEntries == null) {
+                return null;
+            }
+            if (!dayEntries.isEmpty()) {
+                entries.add(dayEntries.iterator());
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Using the cached index entries of " + field + ":" + term + " for " + days.size() + " days");
+        }
+        return Iterators.concat(entries.iterator());
+    }
+    
+    /**
+     * @param entries
+     *            the entries of a scan of the term over the days. A {@link ScannerSession} has completed only if it says so, any other iterator once it is
+     *            exhausted, as a batch scanner fails rather than ending early.
+     * @return the entries, which are cached per day once they have all been read
+     */
+    public static Iterator<Map.Entry<Key,Value>> recording(Iterator<Map.Entry<Key,Value>> entries, String context, String field, String term,
+                    List<String> days) {
+        return new Recorder(entries, context, field, term, days);
+    }
+    
+    /**
+     * @return the hit and miss counts of the cache since the webserver started
+     */
+    public static CacheStats stats() {
+        return cache().stats();
+    }
+    
+    private static class Recorder implements Iterator<Map.Entry<Key,Value>> {
+        private final Iterator<Map.Entry<Key,Value>> delegate;
+        private final String context;
+        private final String field;
+        private final String term;
+        private final List<String> days;
+        private Map<String,List<Map.Entry<Key,Value>>> recorded = new HashMap<>();
+        private long bytes = 0;
+        
+        Recorder(Iterator<Map.Entry<Key,Value>> delegate, String context, String field, String term, List<String> days) {
+            this.delegate = delegate;
+            this.context = context;
+            this.field = field;
+            this.term = term;
+            this.days = days;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext && recorded != null) {
+                if (isComplete()) {
+                    for (String day : days) {
+                        List<Map.Entry<Key,Value>> dayEntries = recorded.get(day);
+                        cache().put(key(context, field, term, day), dayEntries == null ? Collections.emptyList() : dayEntries);
+                    }
+                } else if (log.isDebugEnabled()) {
+                    log.debug("Not caching the index entries of " + field + ":" + term + " as the scan did not complete");
+                }
+                recorded = null;
+            }
+            return hasNext;
+        }
+        
+        private boolean isComplete() {
+            return !(delegate instanceof ScannerSession) || ((ScannerSession) delegate).isComplete();
+        }
+        
+        @Override
+        public Map.Entry<Key,Value> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<Key,Value> entry = delegate.next();
+            if (recorded != null) {
+                String shard = entry.getKey().getColumnQualifier().toString();
+                String day = shard.length() > 8 ? shard.substring(0, 8) : shard;
+                Map.Entry<Key,Value> copy = new AbstractMap.SimpleImmutableEntry<>(new Key(entry.getKey()), new Value(entry.getValue().get(), true));
+                bytes += weigh(copy);
+                if (bytes > maxBytes / 16) {
+                    // a term this frequent would push out too many others
+                    recorded = null;
+                } else {
+                    recorded.computeIfAbsent(day, d -> new ArrayList<>()).add(copy);
+                }
+            }
+            return entry;
+        }
+    }
+}
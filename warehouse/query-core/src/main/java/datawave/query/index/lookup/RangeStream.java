@@ -2,6 +2,7 @@ package datawave.query.index.lookup;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.collect.Collections2;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
@@ -86,6 +87,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -149,6 +151,9 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         streamExecutor = new ThreadPoolExecutor(executeLookupMin, maxLookup, 100, TimeUnit.MILLISECONDS, runnables);
         fieldDataTypes = config.getQueryFieldsDatatypes();
         collapseUids = config.getCollapseUids();
+        if (config.isIndexLookupCache()) {
+            IndexLookupCache.configure(config.getIndexLookupCacheMaxBytes(), config.getIndexLookupCacheTtl());
+        }
         try {
             Set<String> ioFields = metadataHelper.getIndexOnlyFields(null);
             if (null != ioFields) {
@@ -441,50 +446,8 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         log.debug("\"" + fieldName + "\" is indexed. for " + literal);
         try {
             
-            // two scenarios
-            Iterator<Tuple2<String,IndexInfo>> itr = null;
-            int stackStart = config.getBaseIteratorPriority();
-            
-            if (limitScanners) {
-                // Setup the CreateUidsIterator
-                RangeStreamScanner scanSession = scanners.newRangeScanner(config.getIndexTableName(), config.getAuthorizations(), config.getQuery(),
-                                config.getShardsPerDayThreshold());
-                scanSession.setMaxResults(config.getMaxIndexBatchSize());
-                scanSession.setExecutor(streamExecutor);
-                
-                if (log.isTraceEnabled()) {
-                    log.trace("Provided new object " + scanSession.hashCode());
-                }
-                SessionOptions options = new SessionOptions();
-                options.fetchColumnFamily(new Text(fieldName));
-                options.addScanIterator(makeDataTypeFilter(config, stackStart++));
-                
-                final IteratorSetting uidSetting = new IteratorSetting(stackStart++, createUidsIteratorClass);
-                uidSetting.addOption(CreateUidsIterator.COLLAPSE_UIDS, Boolean.valueOf(collapseUids).toString());
-                uidSetting.addOption(CreateUidsIterator.PARSE_TLD_UIDS, Boolean.valueOf(config.getParseTldUids()).toString());
-                options.addScanIterator(uidSetting);
-                
-                String queryString = fieldName + "=='" + literal + "'";
-                options.addScanIterator(QueryScannerHelper.getQueryInfoIterator(config.getQuery(), false, queryString));
-                
-                scanSession.setRanges(Collections.singleton(rangeForTerm(literal, fieldName, config))).setOptions(options);
-                
-                itr = Iterators.transform(scanSession, new EntryParser(node, fieldName, literal, indexOnlyFields));
-                
-            } else {
-                
-                BatchScanner scanner = scanners.newScanner(config.getIndexTableName(), config.getAuthorizations(), 1, config.getQuery());
-                scanner.setRanges(Collections.singleton(rangeForTerm(literal, fieldName, config)));
-                scanner.fetchColumnFamily(new Text(fieldName));
-                scanner.addScanIterator(makeDataTypeFilter(config, stackStart++));
-                
-                final IteratorSetting uidSetting = new IteratorSetting(stackStart++, createUidsIteratorClass);
-                uidSetting.addOption(CreateUidsIterator.COLLAPSE_UIDS, Boolean.valueOf(collapseUids).toString());
-                uidSetting.addOption(CreateUidsIterator.PARSE_TLD_UIDS, Boolean.valueOf(config.getParseTldUids()).toString());
-                scanner.addScanIterator(uidSetting);
-                
-                itr = Iterators.transform(scanner.iterator(), new EntryParser(node, fieldName, literal, indexOnlyFields));
-            }
+            Iterator<Tuple2<String,IndexInfo>> itr = Iterators.transform(lookupTerm(fieldName, literal),
+                            new EntryParser(node, fieldName, literal, indexOnlyFields));
             
             /*
              * Create a scanner in the initialized state so that we can scan immediately
@@ -500,6 +463,100 @@ public class RangeStream extends BaseVisitor implements CloseableIterable<QueryP
         }
     }
     
+    /**
+     * Look up the shard index entries of a term over the dates of the query. When the index lookup cache is enabled, the entries for the days older than
+     * the horizon are taken from the {@link IndexLookupCache} if it has all of them, or recorded into it as they are scanned, and only the recent days are
+     * scanned every time.
+     *
+     * @param fieldName
+     * @param literal
+     * @return the shard index entries of the term, in order
+     * @throws Exception
+     */
+    protected Iterator<Map.Entry<Key,Value>> lookupTerm(String fieldName, String literal) throws Exception {
+        Date begin = config.getBeginDate();
+        Date end = config.getEndDate();
+        if (!config.isIndexLookupCache()) {
+            return scanTerm(fieldName, literal, begin, end);
+        }
+        
+        Date horizon = IndexLookupCache.horizon(config.getIndexLookupCacheHorizon(), System.currentTimeMillis());
+        if (!begin.before(horizon)) {
+            return scanTerm(fieldName, literal, begin, end);
+        }
+        
+        Date historicalEnd = end.before(horizon) ? end : new Date(horizon.getTime() - 1);
+        List<String> days = IndexLookupCache.days(begin, historicalEnd);
+        // the entries seen depend on the auths and on how the index scan is configured
+        String auths = new TreeSet<>(Collections2.transform(config.getAuthorizations(), String::valueOf)).toString();
+        String context = IndexLookupCache.context(config.getIndexTableName(), auths, config.getDatatypeFilterAsString(), createUidsIteratorClass.getName(),
+                        String.valueOf(collapseUids), String.valueOf(config.getParseTldUids()), String.valueOf(limitScanners),
+                        String.valueOf(config.getShardsPerDayThreshold()));
+        Iterator<Map.Entry<Key,Value>> historical = IndexLookupCache.get(context, fieldName, literal, days);
+        if (historical == null) {
+            historical = IndexLookupCache.recording(scanTerm(fieldName, literal, begin, historicalEnd), context, fieldName, literal, days);
+        }
+        if (end.before(horizon)) {
+            return historical;
+        }
+        return Iterators.concat(historical, scanTerm(fieldName, literal, horizon, end));
+    }
+    
+    /**
+     * Scan the shard index entries of a term
+     *
+     * @param fieldName
+     * @param literal
+     * @param begin
+     *            the first day to scan
+     * @param end
+     *            the last day to scan
+     * @return the shard index entries of the term, in order
+     * @throws Exception
+     */
+    protected Iterator<Map.Entry<Key,Value>> scanTerm(String fieldName, String literal, Date begin, Date end) throws Exception {
+        int stackStart = config.getBaseIteratorPriority();
+        
+        if (limitScanners) {
+            // Setup the CreateUidsIterator
+            RangeStreamScanner scanSession = scanners.newRangeScanner(config.getIndexTableName(), config.getAuthorizations(), config.getQuery(),
+                            config.getShardsPerDayThreshold());
+            scanSession.setMaxResults(config.getMaxIndexBatchSize());
+            scanSession.setExecutor(streamExecutor);
+            
+            if (log.isTraceEnabled()) {
+                log.trace("Provided new object " + scanSession.hashCode());
+            }
+            SessionOptions options = new SessionOptions();
+            options.fetchColumnFamily(new Text(fieldName));
+            options.addScanIterator(makeDataTypeFilter(config, stackStart++));
+            
+            final IteratorSetting uidSetting = new IteratorSetting(stackStart++, createUidsIteratorClass);
+            uidSetting.addOption(CreateUidsIterator.COLLAPSE_UIDS, Boolean.valueOf(collapseUids).toString());
+            uidSetting.addOption(CreateUidsIterator.PARSE_TLD_UIDS, Boolean.valueOf(config.getParseTldUids()).toString());
+            options.addScanIterator(uidSetting);
+            
+            String queryString = fieldName + "=='" + literal + "'";
+            options.addScanIterator(QueryScannerHelper.getQueryInfoIterator(config.getQuery(), false, queryString));
+            
+            scanSession.setRanges(Collections.singleton(rangeForTerm(literal, fieldName, begin, end))).setOptions(options);
+            
+            return scanSession;
+        } else {
+            BatchScanner scanner = scanners.newScanner(config.getIndexTableName(), config.getAuthorizations(), 1, config.getQuery());
+            scanner.setRanges(Collections.singleton(rangeForTerm(literal, fieldName, begin, end)));
+            scanner.fetchColumnFamily(new Text(fieldName));
+            scanner.addScanIterator(makeDataTypeFilter(config, stackStart++));
+            
+            final IteratorSetting uidSetting = new IteratorSetting(stackStart++, createUidsIteratorClass);
+            uidSetting.addOption(CreateUidsIterator.COLLAPSE_UIDS, Boolean.valueOf(collapseUids).toString());
+            uidSetting.addOption(CreateUidsIterator.PARSE_TLD_UIDS, Boolean.valueOf(config.getParseTldUids()).toString());
+            scanner.addScanIterator(uidSetting);
+            
+            return scanner.iterator();
+        }
+    }
+    
     /*
      * Presume that functions have already been expanded with their index query parts @see QueryIndexQueryExpandingVisitor
      */
@@ -0,0 +1,138 @@
+package datawave.query.iterator;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.collect.Maps;
+import datawave.core.iterators.ResultAggregate;
+import datawave.marking.MarkingFunctions;
+import datawave.marking.MarkingFunctionsFactory;
+import datawave.query.attributes.Attribute;
+import datawave.query.attributes.Attributes;
+import datawave.query.attributes.Document;
+import datawave.query.jexl.JexlASTHelper;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.YieldCallback;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.log4j.Logger;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reduces the evaluated documents of a QueryIterator to a single {@link ResultAggregate} holding the document count, the distinct value counts and the value
+ * histograms for the requested fields, so that no documents are serialized back to the client.
+ *
+ * Like the grouping iterator, there can be no state saved across a teardown: the aggregate is returned keyed by the last document consumed (or the yield
+ * position) so that a rebuilt iterator will resume after the documents already aggregated.
+ */
+public class DocumentAggregatingIterator implements Iterator<Entry<Key,Value>> {
+    private static final Logger log = Logger.getLogger(DocumentAggregatingIterator.class);
+    
+    private final Iterator<Entry<Key,Document>> documents;
+    private final Set<String> histogramFields;
+    private final Set<String> distinctCountFields;
+    private final int maxHistogramValues;
+    private final YieldCallback<Key> yield;
+    private final MarkingFunctions markingFunctions = MarkingFunctionsFactory.createMarkingFunctions();
+    private final Kryo kryo = new Kryo();
+    
+    private Entry<Key,Value> next = null;
+    
+    public DocumentAggregatingIterator(Iterator<Entry<Key,Document>> documents, Collection<String> histogramFields, Collection<String> distinctCountFields,
+                    int maxHistogramValues, YieldCallback<Key> yield) {
+        this.documents = documents;
+        this.histogramFields = deconstruct(histogramFields);
+        this.distinctCountFields = deconstruct(distinctCountFields);
+        this.maxHistogramValues = maxHistogramValues;
+        this.yield = yield;
+    }
+    
+    private Set<String> deconstruct(Collection<String> fields) {
+        return fields.stream().map(JexlASTHelper::deconstructIdentifier).collect(Collectors.toSet());
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = aggregate();
+        }
+        return next != null;
+    }
+    
+    @Override
+    public Entry<Key,Value> next() {
+        Entry<Key,Value> entry = next;
+        next = null;
+        return entry;
+    }
+    
+    private Entry<Key,Value> aggregate() {
+        ResultAggregate aggregate = new ResultAggregate(maxHistogramValues);
+        Set<ColumnVisibility> visibilities = new HashSet<>();
+        Key lastKey = null;
+        
+        while (documents.hasNext()) {
+            Entry<Key,Document> entry = documents.next();
+            Document document = entry.getValue();
+            aggregate.incrementCount();
+            visibilities.add(document.getColumnVisibility());
+            for (Entry<String,Attribute<? extends Comparable<?>>> field : document.entrySet()) {
+                String fieldName = JexlASTHelper.deconstructIdentifier(field.getKey());
+                boolean histogram = histogramFields.contains(fieldName);
+                boolean distinct = distinctCountFields.contains(fieldName);
+                if (histogram || distinct) {
+                    for (String value : getValues(field.getValue())) {
+                        if (histogram) {
+                            aggregate.addHistogramValue(fieldName, value);
+                        }
+                        if (distinct) {
+                            aggregate.offerDistinctValue(fieldName, value);
+                        }
+                    }
+                }
+            }
+            lastKey = entry.getKey();
+        }
+        
+        if (yield != null && yield.hasYielded()) {
+            if (aggregate.getCount() == 0) {
+                // nothing aggregated, so let the yield through
+                return null;
+            }
+            // reset the yield and use its key for the aggregate
+            lastKey = yield.getPositionAndReset();
+        }
+        
+        if (lastKey == null) {
+            return null;
+        }
+        
+        try {
+            aggregate.setVisibility(markingFunctions.combine(visibilities));
+        } catch (MarkingFunctions.Exception e) {
+            throw new IllegalStateException("Unable to merge column visibilities: " + visibilities, e);
+        }
+        
+        if (log.isTraceEnabled()) {
+            log.trace("Aggregated " + aggregate + " up to " + lastKey);
+        }
+        return Maps.immutableEntry(lastKey, aggregate.toValue(kryo));
+    }
+    
+    private Set<String> getValues(Attribute<?> attr) {
+        Set<String> values = new HashSet<>();
+        if (attr instanceof Attributes) {
+            for (Attribute<?> child : ((Attributes) attr).getAttributes()) {
+                values.addAll(getValues(child));
+            }
+        } else {
+            values.add(String.valueOf(attr.getData()));
+        }
+        return values;
+    }
+}
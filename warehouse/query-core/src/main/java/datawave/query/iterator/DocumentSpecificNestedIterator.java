@@ -5,6 +5,7 @@ import org.apache.accumulo.core.data.Key;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,6 +15,8 @@ public class DocumentSpecificNestedIterator extends NestedQueryIterator<Key> {
     private Map.Entry<Key,Document> documentKey;
     private Map.Entry<Key,Document> next;
     private Map.Entry<Key,Document> current;
+    // the keys of the documents which will be set after this one, if known
+    private List<Key> upcoming = Collections.emptyList();
     
     public DocumentSpecificNestedIterator(Map.Entry<Key,Document> documentKey) {
         setDocumentKey(documentKey);
@@ -28,6 +31,17 @@ public class DocumentSpecificNestedIterator extends NestedQueryIterator<Key> {
         return documentKey;
     }
     
+    public void setUpcoming(List<Key> upcoming) {
+        this.upcoming = upcoming;
+    }
+    
+    /**
+     * @return the keys of the documents which will be set after the current one, in order, which may be fetched ahead of time
+     */
+    public List<Key> getUpcoming() {
+        return upcoming;
+    }
+    
     @Override
     public void initialize() {}
     
@@ -18,6 +18,7 @@ import datawave.query.Constants;
 import datawave.query.DocumentSerialization.ReturnType;
 import datawave.query.attributes.AttributeKeepFilter;
 import datawave.query.attributes.Document;
+import datawave.query.attributes.MaterializationCounts;
 import datawave.query.attributes.ValueTuple;
 import datawave.query.composite.CompositeMetadata;
 import datawave.query.function.Aggregation;
@@ -28,6 +29,7 @@ import datawave.query.function.DocumentProjection;
 import datawave.query.function.IndexOnlyContextCreator;
 import datawave.query.function.IndexOnlyContextCreatorBuilder;
 import datawave.query.function.JexlContextCreator;
+import datawave.query.function.CompiledJexlEvaluation;
 import datawave.query.function.JexlEvaluation;
 import datawave.query.function.KeyToDocumentData;
 import datawave.query.function.LimitFields;
@@ -53,15 +55,20 @@ import datawave.query.iterator.profile.QuerySpanCollector;
 import datawave.query.iterator.profile.SourceTrackingIterator;
 import datawave.query.jexl.DatawaveJexlContext;
 import datawave.query.jexl.DefaultArithmetic;
+import datawave.query.jexl.HitListArithmetic;
 import datawave.query.jexl.JexlASTHelper;
 import datawave.query.jexl.StatefulArithmetic;
 import datawave.query.jexl.functions.IdentityAggregator;
 import datawave.query.jexl.functions.KeyAdjudicator;
 import datawave.query.jexl.visitors.DelayedNonEventSubTreeVisitor;
 import datawave.query.jexl.visitors.IteratorBuildingVisitor;
+import datawave.query.jexl.visitors.JexlStringBuildingVisitor;
 import datawave.query.jexl.visitors.SatisfactionVisitor;
+import datawave.query.jexl.visitors.TermFrequencyPrefilterVisitor;
 import datawave.query.jexl.visitors.VariableNameVisitor;
+import datawave.query.postprocessing.tf.BatchedTermOffsetIterator;
 import datawave.query.postprocessing.tf.TFFactory;
+import datawave.query.postprocessing.tf.TermOffsetFunction;
 import datawave.query.predicate.EmptyDocumentFilter;
 import datawave.query.statsd.QueryStatsDClient;
 import datawave.query.tracking.ActiveQuery;
@@ -74,6 +81,7 @@ import datawave.query.util.TraceIterators;
 import datawave.query.util.Tuple2;
 import datawave.query.util.Tuple3;
 import datawave.query.util.TupleToEntry;
+import datawave.query.util.Tuples;
 import datawave.query.util.TypeMetadata;
 import datawave.util.StringUtils;
 import org.apache.accumulo.core.data.ByteSequence;
@@ -107,11 +115,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.commons.pool.impl.GenericObjectPool.WHEN_EXHAUSTED_BLOCK;
@@ -161,6 +171,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
     protected Map<String,String> documentOptions;
     protected NestedIterator<Key> initKeySource, seekKeySource;
     protected Iterator<Entry<Key,Value>> serializedDocuments;
+    protected PipelineIterator pipelineIterator = null;
     protected boolean fieldIndexSatisfiesQuery = false;
     
     protected Range range;
@@ -190,6 +201,18 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
     
     protected Map<String,Object> exceededOrEvaluationCache = null;
     
+    protected MaterializationCounts materializationCounts = null;
+    
+    // the template reused by this init call, and the time spent building what it would have provided
+    protected QueryTemplateCache.Template template = null;
+    
+    protected long templateBuildNanos = 0;
+    
+    // the projections applied to every document, which only depend on the options
+    protected DocumentProjection projection = null;
+    
+    protected DocumentProjection compositeProjection = null;
+    
     public QueryIterator() {}
     
     public QueryIterator(QueryIterator other, IteratorEnvironment env) {
@@ -208,6 +231,9 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         this.typeMetadata = other.typeMetadata;
         this.exceededOrEvaluationCache = other.exceededOrEvaluationCache;
         this.trackingSpan = other.trackingSpan;
+        this.materializationCounts = other.materializationCounts;
+        this.projection = other.projection;
+        this.compositeProjection = other.compositeProjection;
         // Defer to QueryOptions to re-set all of the query options
         super.deepCopy(other);
     }
@@ -222,25 +248,58 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             log.trace("QueryIterator init()");
         }
         
+        // the template must be known before the options are validated, so that the type metadata is not parsed again
+        String templateKey = null;
+        this.template = null;
+        this.templateBuildNanos = 0;
+        if (!options.containsKey(QUERY_TEMPLATE_CACHE) || Boolean.parseBoolean(options.get(QUERY_TEMPLATE_CACHE))) {
+            templateKey = QueryTemplateCache.key(options);
+            QueryTemplateCache.Template cached = QueryTemplateCache.get(templateKey);
+            if (cached != null && cached.isFor(options.get(QUERY))) {
+                this.template = cached;
+            }
+        }
+        
         if (!validateOptions(new SourcedOptions<>(source, env, options))) {
             throw new IllegalArgumentException("Could not initialize QueryIterator with " + options);
         }
         
-        // We want to add in spoofed dataTypes for Aggregation/Evaluation to
-        // ensure proper numeric evaluation.
-        this.typeMetadata = new TypeMetadata(this.getTypeMetadata());
-        this.typeMetadataWithNonIndexed = new TypeMetadata(this.typeMetadata);
-        this.typeMetadataWithNonIndexed.addForAllIngestTypes(this.getNonIndexedDataTypeMap());
-        
         this.exceededOrEvaluationCache = new HashMap<>();
         
-        // Parse the query
-        try {
-            this.script = JexlASTHelper.parseJexlQuery(this.getQuery());
+        if (this.template != null) {
+            this.typeMetadata = template.getTypeMetadata();
+            this.typeMetadataWithNonIndexed = template.getTypeMetadataWithNonIndexed();
+            this.script = template.getScript();
+            // the evaluation function is not shared, but building it is cheap as the engine caches the parsed query
             this.myEvaluationFunction = new JexlEvaluation(this.getQuery(), arithmetic);
+            this.projection = template.getProjection();
+            this.compositeProjection = template.getCompositeProjection();
+        } else {
+            long start = System.nanoTime();
             
-        } catch (Exception e) {
-            throw new IOException("Could not parse the JEXL query: '" + this.getQuery() + "'", e);
+            // We want to add in spoofed dataTypes for Aggregation/Evaluation to
+            // ensure proper numeric evaluation.
+            this.typeMetadata = new TypeMetadata(this.getTypeMetadata());
+            this.typeMetadataWithNonIndexed = new TypeMetadata(this.typeMetadata);
+            this.typeMetadataWithNonIndexed.addForAllIngestTypes(this.getNonIndexedDataTypeMap());
+            
+            // Parse the query
+            try {
+                this.script = JexlASTHelper.parseJexlQuery(this.getQuery());
+                this.myEvaluationFunction = new JexlEvaluation(this.getQuery(), arithmetic);
+                
+            } catch (Exception e) {
+                throw new IOException("Could not parse the JEXL query: '" + this.getQuery() + "'", e);
+            }
+            
+            this.projection = this.projectResults ? buildProjection() : null;
+            this.compositeProjection = buildCompositeProjection();
+            
+            this.templateBuildNanos += System.nanoTime() - start;
+            if (templateKey != null) {
+                QueryTemplateCache.put(templateKey, new QueryTemplateCache.Template(this.getQuery(), this.typeMetadata, this.typeMetadataWithNonIndexed,
+                                this.script, this.projection, this.compositeProjection, this.templateBuildNanos));
+            }
         }
         
         this.documentOptions = options;
@@ -249,6 +308,9 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         if (gatherTimingDetails()) {
             this.trackingSpan = new MultiThreadedQuerySpan(getStatsdClient());
             this.source = new SourceTrackingIterator(trackingSpan, source);
+            if (templateKey != null) {
+                this.trackingSpan.queryTemplate(this.template != null, this.template != null ? template.getBuildNanos() : 0);
+            }
         } else {
             this.source = source;
         }
@@ -269,6 +331,23 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         
         DatawaveFieldIndexListIteratorJexl.FSTManager.setHdfsFileSystem(this.getFileSystemCache());
         DatawaveFieldIndexListIteratorJexl.FSTManager.setHdfsFileCompressionCodec(this.getHdfsFileCompressionCodec());
+        DatawaveFieldIndexListIteratorJexl.FSTManager.configure(env);
+    }
+    
+    /**
+     * Skips parsing the type metadata when it will be taken from the template
+     */
+    @Override
+    protected void validateTypeMetadata(Map<String,String> options) {
+        if (this.template != null) {
+            Map<String,String> remaining = new HashMap<>(options);
+            remaining.remove(TYPE_METADATA);
+            super.validateTypeMetadata(remaining);
+        } else {
+            long start = System.nanoTime();
+            super.validateTypeMetadata(options);
+            this.templateBuildNanos += System.nanoTime() - start;
+        }
     }
     
     @Override
@@ -305,6 +384,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             if (this.key == null && this.value == null) {
                 // no entries to return
                 ActiveQueryLog.getInstance().remove(getQueryId(), this.originalRange);
+                reportMaterializationCounts();
             }
         }
     }
@@ -330,6 +410,12 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             }
             this.range = range;
             
+            // the pipeline of a previous seek is replaced, so stop its evaluations and give back its evaluation slots
+            if (this.pipelineIterator != null) {
+                this.pipelineIterator.close();
+                this.pipelineIterator = null;
+            }
+            
             // determine whether this is a teardown/rebuild range
             long resultCount = 0;
             if (!range.isStartKeyInclusive()) {
@@ -400,6 +486,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             pipelineIter.setCollectTimingDetails(collectTimingDetails);
             // TODO pipelineIter.setStatsdHostAndPort(statsdHostAndPort);
             
+            this.pipelineIterator = pipelineIter;
             pipelineIter.startPipeline();
             
             // gather Key,Document Entries from the pipelines
@@ -421,7 +508,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             // apply the grouping transform if requested and if the batch size is greater than zero
             // if the batch size is 0, then grouping is computed only on the web server
             GroupingTransform groupify = getGroupingTransform();
-            if (groupify != null && this.groupFieldsBatchSize > 0) {
+            if (groupify != null && this.groupFieldsBatchSize > 0 && !isAggregateResults()) {
                 
                 pipelineDocuments = groupingTransform.getGroupingIterator(pipelineDocuments, this.groupFieldsBatchSize, this.yield);
                 
@@ -443,20 +530,18 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                                 return true;
                             });
             
-            if (this.getReturnType() == ReturnType.kryo) {
-                // Serialize the Document using Kryo
-                this.serializedDocuments = Iterators.transform(pipelineDocuments, new KryoDocumentSerializer(isReducedResponse(), isCompressResults()));
-            } else if (this.getReturnType() == ReturnType.writable) {
-                // Use the Writable interface to serialize the Document
-                this.serializedDocuments = Iterators.transform(pipelineDocuments, new WritableDocumentSerializer(isReducedResponse()));
-            } else if (this.getReturnType() == ReturnType.tostring) {
-                // Just return a toString() representation of the document
-                this.serializedDocuments = Iterators.transform(pipelineDocuments, new ToStringDocumentSerializer(isReducedResponse()));
+            if (isAggregateResults()) {
+                // Reduce the Documents to a single aggregate instead of serializing them
+                this.serializedDocuments = new DocumentAggregatingIterator(pipelineDocuments, getHistogramFields(), getDistinctCountFields(),
+                                getMaxHistogramValues(), yield);
+            } else if (getTopK() > 0) {
+                // Serialize only the top k Documents, returned together in a single heap
+                this.serializedDocuments = new TopKIterator(pipelineDocuments, getTopK(), getTopKField(), getDocumentSerializer(), yield);
             } else {
-                throw new IllegalArgumentException("Unknown return type of: " + this.getReturnType());
+                this.serializedDocuments = Iterators.transform(pipelineDocuments, getDocumentSerializer());
             }
             
-            if (log.isTraceEnabled()) {
+            if (log.isTraceEnabled() && !isAggregateResults() && getTopK() <= 0) {
                 KryoDocumentDeserializer dser = new KryoDocumentDeserializer();
                 this.serializedDocuments = Iterators.filter(this.serializedDocuments, keyValueEntry -> {
                     log.trace("after serializing, keyValueEntry:" + dser.apply(keyValueEntry));
@@ -480,7 +565,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 this.serializedDocuments = new FinalDocumentTrackingIterator(querySpanCollector, trackingSpan, originalRange, this.serializedDocuments,
                                 this.getReturnType(), this.isReducedResponse(), this.isCompressResults(), this.yield);
             }
-            if (log.isTraceEnabled()) {
+            if (log.isTraceEnabled() && !isAggregateResults() && getTopK() <= 0) {
                 KryoDocumentDeserializer dser = new KryoDocumentDeserializer();
                 this.serializedDocuments = Iterators.filter(this.serializedDocuments, keyValueEntry -> {
                     log.debug("finally, considering:" + dser.apply(keyValueEntry));
@@ -504,10 +589,38 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             if (this.key == null && this.value == null) {
                 // no entries to return
                 ActiveQueryLog.getInstance().remove(getQueryId(), this.originalRange);
+                reportMaterializationCounts();
             }
         }
     }
     
+    /**
+     * @return the counts of lazily normalized attributes, or null if attributes are normalized when they are created
+     */
+    protected MaterializationCounts getMaterializationCounts() {
+        if (isLazyAttributeNormalization() && materializationCounts == null) {
+            materializationCounts = new MaterializationCounts();
+        }
+        return materializationCounts;
+    }
+    
+    /**
+     * Report how many of the lazily normalized attributes were never used, once the range has been exhausted
+     */
+    private void reportMaterializationCounts() {
+        if (materializationCounts != null && materializationCounts.getCreated() > 0) {
+            if (log.isDebugEnabled()) {
+                log.debug("Lazily normalized attributes for " + this.originalRange + ": " + materializationCounts);
+            }
+            QueryStatsDClient client = getStatsdClient();
+            if (client != null) {
+                client.count("attributes_created", materializationCounts.getCreated());
+                client.count("attributes_unmaterialized", materializationCounts.getUnmaterialized());
+            }
+            materializationCounts.reset();
+        }
+    }
+    
     /**
      * Handle an exception returned from seek or next. This will silently ignore IterationInterruptedException as that happens when the underlying iterator was
      * interrupted because the client is no longer listening.
@@ -621,7 +734,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 try {
                     
                     myScript = JexlASTHelper.parseJexlQuery(queries.getValue());
-                    eval = new JexlEvaluation(queries.getValue(), myArithmetic);
+                    eval = createJexlEvaluation(queries.getValue(), myArithmetic);
                     
                 } catch (Exception e) {
                     throw new IOException("Could not parse the JEXL query: '" + this.getQuery() + "'", e);
@@ -783,8 +896,14 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 }
             };
         } else {
-            docMapper = new KeyToDocumentData(deepSourceCopy, myEnvironment, documentOptions, super.equality, getEvaluationFilter(),
-                            this.includeHierarchyFields, this.includeHierarchyFields);
+            KeyToDocumentData keyToDocumentData = new KeyToDocumentData(deepSourceCopy, myEnvironment, documentOptions, super.equality,
+                            getEvaluationFilter(), this.includeHierarchyFields, this.includeHierarchyFields).withQuerySpan(trackingSpan);
+            // only a serial pipeline reads its documents ahead of the current one
+            if (getDocumentFetchBatchSize() > 1 && documentSpecificSource instanceof DocumentSpecificNestedIterator) {
+                keyToDocumentData.withBatchedFetch(getDocumentFetchBatchSize(), getDocumentFetchMaxNexts(),
+                                ((DocumentSpecificNestedIterator) documentSpecificSource)::getUpcoming);
+            }
+            docMapper = keyToDocumentData;
         }
         
         Iterator<Entry<DocumentData,Document>> sourceIterator = Iterators.transform(documentSpecificSource, from -> {
@@ -797,7 +916,8 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         // which do not fall within the expected time range
         Iterator<Entry<Key,Document>> documents = null;
         Aggregation a = new Aggregation(this.getTimeFilter(), this.typeMetadataWithNonIndexed, compositeMetadata, this.isIncludeGroupingContext(),
-                        this.includeRecordId, this.disableIndexOnlyDocuments(), getEvaluationFilter(), isTrackSizes());
+                        this.includeRecordId, this.disableIndexOnlyDocuments(), getEvaluationFilter(), isTrackSizes(), isCompactDocuments(),
+                        getMaterializationCounts());
         if (gatherTimingDetails()) {
             documents = Iterators.transform(sourceIterator, new EvaluationTrackingFunction<>(QuerySpan.Stage.Aggregation, trackingSpan, a));
         } else {
@@ -937,7 +1057,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                 variables = VariableNameVisitor.parseQuery(jexlEvaluationFunction.parse(query));
             }
             
-            final Iterator<Tuple2<Key,Document>> tupleItr = Iterators.transform(documents, new EntryToTuple<>());
+            Iterator<Tuple2<Key,Document>> tupleItr = Iterators.transform(documents, new EntryToTuple<>());
             
             // get the function we use for the tf functionality. Note we are
             // getting an additional source deep copy for this function
@@ -945,9 +1065,20 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
             if (this.isTermFrequenciesRequired()) {
                 Function<Tuple2<Key,Document>,Tuple3<Key,Document,Map<String,Object>>> tfFunction;
                 tfFunction = TFFactory.getFunction(getScript(documentSource), getContentExpansionFields(), getTermFrequencyFields(), this.getTypeMetadata(),
-                                super.equality, getEvaluationFilter(), sourceDeepCopy.deepCopy(myEnvironment));
+                                super.equality, getEvaluationFilter(), sourceDeepCopy.deepCopy(myEnvironment), isPackedTermOffsets());
                 
-                itrWithContext = TraceIterators.transform(tupleItr, tfFunction, "Term Frequency Lookup");
+                if (isLazyTermFrequencies() && tfFunction instanceof TermOffsetFunction) {
+                    // only fetch the term frequencies of documents which could still match, together with those of the documents read ahead
+                    tupleItr = getTermFrequencyPrefilter(documentSource, tupleItr, variables);
+                    Supplier<List<Key>> upcoming = null;
+                    if (documentSource instanceof DocumentSpecificNestedIterator) {
+                        upcoming = ((DocumentSpecificNestedIterator) documentSource)::getUpcoming;
+                    }
+                    itrWithContext = new BatchedTermOffsetIterator(tupleItr, ((TermOffsetFunction) tfFunction).getPopulator(), getTermFrequencyBatchSize(),
+                                    upcoming);
+                } else {
+                    itrWithContext = TraceIterators.transform(tupleItr, tfFunction, "Term Frequency Lookup");
+                }
             } else {
                 itrWithContext = Iterators.transform(tupleItr, new EmptyContext<>());
             }
@@ -983,6 +1114,41 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         return documents;
     }
     
+    /**
+     * Filter out the documents which cannot match the query whatever their term frequencies are, by evaluating them with every term that depends upon the
+     * term frequencies (or any other lookup made after the document is built) treated as unknown.
+     *
+     * @param documentSource
+     *            the nested query source, if any
+     * @param documents
+     *            the documents
+     * @param variables
+     *            the variables referenced by the query
+     * @return the documents which need their term frequencies
+     */
+    protected Iterator<Tuple2<Key,Document>> getTermFrequencyPrefilter(NestedQueryIterator<Key> documentSource, Iterator<Tuple2<Key,Document>> documents,
+                    Collection<String> variables) {
+        // the term frequency fields, and any fields which may only be found after the document has been built
+        Set<String> deferredFields = new HashSet<>(getTermFrequencyFields());
+        deferredFields.addAll(getNonEventFields());
+        
+        ASTJexlScript prefilter = TermFrequencyPrefilterVisitor.prefilter(getScript(documentSource), deferredFields);
+        if (prefilter == null) {
+            return documents;
+        }
+        
+        // the hit list is built by the full evaluation
+        JexlArithmetic prefilterArithmetic = getArithmetic();
+        if (prefilterArithmetic instanceof HitListArithmetic) {
+            prefilterArithmetic = new DefaultArithmetic();
+        }
+        final JexlEvaluation evaluation = createJexlEvaluation(JexlStringBuildingVisitor.buildQuery(prefilter), prefilterArithmetic);
+        final JexlContextCreator contextCreator = new JexlContextCreator(variables, this);
+        
+        return statelessFilter(documents,
+                        input -> evaluation.apply(contextCreator.apply(Tuples.tuple(input.first(), input.second(), Collections.<String,Object> emptyMap()))));
+    }
+    
     private Range getDocumentRange(NestedQueryIterator<Key> documentSource) {
         if (null == documentSource) {
             return range;
@@ -998,21 +1164,37 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
     protected JexlEvaluation getJexlEvaluation(NestedQueryIterator<Key> documentSource) {
         
         if (null == documentSource) {
-            return new JexlEvaluation(query, getArithmetic());
+            return createJexlEvaluation(query, getArithmetic());
         }
         JexlEvaluation jexlEvaluationFunction = null;
         NestedQuery<Key> nestedQuery = documentSource.getNestedQuery();
         if (null == nestedQuery) {
-            jexlEvaluationFunction = new JexlEvaluation(query, getArithmetic());
+            jexlEvaluationFunction = createJexlEvaluation(query, getArithmetic());
         } else {
             jexlEvaluationFunction = nestedQuery.getEvaluation();
             if (null == jexlEvaluationFunction) {
-                return new JexlEvaluation(query, getArithmetic());
+                return createJexlEvaluation(query, getArithmetic());
             }
         }
         return jexlEvaluationFunction;
     }
     
+    /**
+     * Create the evaluation function for a query, compiled if requested
+     *
+     * @param query
+     *            the query
+     * @param arithmetic
+     *            the arithmetic to evaluate with
+     * @return the evaluation function
+     */
+    protected JexlEvaluation createJexlEvaluation(String query, JexlArithmetic arithmetic) {
+        if (isCompiledEvaluation()) {
+            return new CompiledJexlEvaluation(query, arithmetic);
+        }
+        return new JexlEvaluation(query, arithmetic);
+    }
+    
     @Override
     public JexlArithmetic getArithmetic() {
         JexlArithmetic myArithmetic = this.arithmetic;
@@ -1051,7 +1233,7 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
                             documents,
                             new GetDocument(docMapper, new Aggregation(this.getTimeFilter(), typeMetadataWithNonIndexed, compositeMetadata, this
                                             .isIncludeGroupingContext(), this.includeRecordId, this.disableIndexOnlyDocuments(), getEvaluationFilter(),
-                                            isTrackSizes())));
+                                            isTrackSizes(), isCompactDocuments(), getMaterializationCounts())));
             
             Iterator<Entry<Key,Document>> retDocuments = Iterators.transform(mappedDocuments, new TupleToEntry<>());
             
@@ -1150,7 +1332,17 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         }
     }
     
+    /**
+     * @return the projection of the returned fields, built once per query as it only depends on the options
+     */
     protected DocumentProjection getProjection() {
+        if (this.projection == null) {
+            this.projection = buildProjection();
+        }
+        return this.projection;
+    }
+    
+    protected DocumentProjection buildProjection() {
         DocumentProjection projection = new DocumentProjection(this.isIncludeGroupingContext(), this.isReducedResponse(), isTrackSizes());
         
         if (this.useWhiteListedFields) {
@@ -1167,6 +1359,13 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
     }
     
     protected DocumentProjection getCompositeProjection() {
+        if (this.compositeProjection == null) {
+            this.compositeProjection = buildCompositeProjection();
+        }
+        return this.compositeProjection;
+    }
+    
+    protected DocumentProjection buildCompositeProjection() {
         DocumentProjection projection = new DocumentProjection(this.isIncludeGroupingContext(), this.isReducedResponse(), isTrackSizes());
         Set<String> composites = Sets.newHashSet();
         if (compositeMetadata != null) {
@@ -1493,11 +1692,29 @@ public class QueryIterator extends QueryOptions implements YieldingKeyValueItera
         return new ValueComparator(from.second().getMetadata());
     }
     
+    /**
+     * @return the serializer of the Documents in the return type of the query
+     */
+    protected Function<Entry<Key,Document>,Entry<Key,Value>> getDocumentSerializer() {
+        if (this.getReturnType() == ReturnType.kryo) {
+            // Serialize the Document using Kryo
+            return new KryoDocumentSerializer(isReducedResponse(), isCompressResults());
+        } else if (this.getReturnType() == ReturnType.writable) {
+            // Use the Writable interface to serialize the Document
+            return new WritableDocumentSerializer(isReducedResponse());
+        } else if (this.getReturnType() == ReturnType.tostring) {
+            // Just return a toString() representation of the document
+            return new ToStringDocumentSerializer(isReducedResponse());
+        } else {
+            throw new IllegalArgumentException("Unknown return type of: " + this.getReturnType());
+        }
+    }
+    
     protected UniqueTransform getUniqueTransform() {
         if (uniqueTransform == null && getUniqueFields() != null && !getUniqueFields().isEmpty()) {
             synchronized (getUniqueFields()) {
                 if (uniqueTransform == null) {
-                    uniqueTransform = new UniqueTransform(getUniqueFields());
+                    uniqueTransform = new UniqueTransform(getUniqueFields(), getUniqueMaxMemory());
                 }
             }
         }
@@ -15,6 +15,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Queues;
 import com.google.common.collect.Sets;
 import datawave.core.iterators.ColumnRangeIterator;
+import datawave.core.iterators.ResultAggregate;
 import datawave.core.iterators.DatawaveFieldIndexCachingIteratorJexl.HdfsBackedControl;
 import datawave.core.iterators.filesystem.FileSystemCache;
 import datawave.query.iterator.ivarator.IvaratorCacheDirConfig;
@@ -48,6 +49,7 @@ import datawave.query.tables.async.Scan;
 import datawave.query.util.TypeMetadata;
 import datawave.query.util.TypeMetadataProvider;
 import datawave.query.util.sortedset.FileSortedSet;
+import datawave.query.util.sortedset.SpillableByteArraySet;
 import datawave.util.StringUtils;
 import datawave.util.UniversalSet;
 import org.apache.accumulo.core.data.Key;
@@ -135,6 +137,22 @@ public class QueryOptions implements OptionDescriber {
     public static final String GROUP_FIELDS = "group.fields";
     public static final String GROUP_FIELDS_BATCH_SIZE = "group.fields.batch.size";
     public static final String UNIQUE_FIELDS = "unique.fields";
+    public static final String AGGREGATE_RESULTS = "aggregate.results";
+    public static final String HISTOGRAM_FIELDS = "histogram.fields";
+    public static final String DISTINCT_COUNT_FIELDS = "distinct.count.fields";
+    public static final String MAX_HISTOGRAM_VALUES = "max.histogram.values";
+    public static final String COMPILED_EVALUATION = "compiled.evaluation";
+    public static final String PACKED_TERM_OFFSETS = "packed.term.offsets";
+    public static final String LAZY_TERM_FREQUENCIES = "lazy.term.frequencies";
+    public static final String TERM_FREQUENCY_BATCH_SIZE = "term.frequency.batch.size";
+    public static final String COMPACT_DOCUMENTS = "compact.documents";
+    public static final String LAZY_ATTRIBUTE_NORMALIZATION = "lazy.attribute.normalization";
+    public static final String UNIQUE_MAX_MEMORY = "unique.max.memory";
+    public static final String QUERY_TEMPLATE_CACHE = "query.template.cache";
+    public static final String TOP_K = "top.k";
+    public static final String TOP_K_FIELD = "top.k.field";
+    public static final String DOCUMENT_FETCH_BATCH_SIZE = "document.fetch.batch.size";
+    public static final String DOCUMENT_FETCH_MAX_NEXTS = "document.fetch.max.nexts";
     public static final String TYPE_METADATA_IN_HDFS = "type.metadata.in.hdfs";
     public static final String HITS_ONLY = "hits.only";
     public static final String HIT_LIST = "hit.list";
@@ -270,6 +288,30 @@ public class QueryOptions implements OptionDescriber {
     protected int groupFieldsBatchSize = Integer.MAX_VALUE;
     protected Set<String> uniqueFields = Sets.newHashSet();
     
+    protected boolean aggregateResults = false;
+    protected Set<String> histogramFields = Sets.newHashSet();
+    protected Set<String> distinctCountFields = Sets.newHashSet();
+    protected int maxHistogramValues = ResultAggregate.DEFAULT_MAX_HISTOGRAM_VALUES;
+    
+    protected boolean compiledEvaluation = false;
+    
+    protected boolean packedTermOffsets = false;
+    
+    protected boolean lazyTermFrequencies = false;
+    protected int termFrequencyBatchSize = 32;
+    
+    protected boolean compactDocuments = false;
+    
+    protected boolean lazyAttributeNormalization = false;
+    
+    protected long uniqueMaxMemory = SpillableByteArraySet.DEFAULT_MAX_MEMORY;
+    
+    protected int topK = 0;
+    protected String topKField = null;
+    
+    protected int documentFetchBatchSize = 0;
+    protected int documentFetchMaxNexts = 10;
+    
     protected Set<String> hitsOnlySet = new HashSet<>();
     
     protected Function<Range,Key> getDocumentKey;
@@ -458,6 +500,21 @@ public class QueryOptions implements OptionDescriber {
         this.limitFieldsField = other.limitFieldsField;
         this.groupFields = other.groupFields;
         this.groupFieldsBatchSize = other.groupFieldsBatchSize;
+        this.aggregateResults = other.aggregateResults;
+        this.histogramFields = other.histogramFields;
+        this.distinctCountFields = other.distinctCountFields;
+        this.maxHistogramValues = other.maxHistogramValues;
+        this.compiledEvaluation = other.compiledEvaluation;
+        this.packedTermOffsets = other.packedTermOffsets;
+        this.lazyTermFrequencies = other.lazyTermFrequencies;
+        this.termFrequencyBatchSize = other.termFrequencyBatchSize;
+        this.compactDocuments = other.compactDocuments;
+        this.lazyAttributeNormalization = other.lazyAttributeNormalization;
+        this.uniqueMaxMemory = other.uniqueMaxMemory;
+        this.topK = other.topK;
+        this.topKField = other.topKField;
+        this.documentFetchBatchSize = other.documentFetchBatchSize;
+        this.documentFetchMaxNexts = other.documentFetchMaxNexts;
         this.hitsOnlySet = other.hitsOnlySet;
         
         this.compressedMappings = other.compressedMappings;
@@ -967,6 +1024,126 @@ public class QueryOptions implements OptionDescriber {
         this.uniqueFields = uniqueFields;
     }
     
+    public boolean isAggregateResults() {
+        return aggregateResults;
+    }
+    
+    public void setAggregateResults(boolean aggregateResults) {
+        this.aggregateResults = aggregateResults;
+    }
+    
+    public Set<String> getHistogramFields() {
+        return histogramFields;
+    }
+    
+    public void setHistogramFields(Set<String> histogramFields) {
+        this.histogramFields = histogramFields;
+    }
+    
+    public Set<String> getDistinctCountFields() {
+        return distinctCountFields;
+    }
+    
+    public void setDistinctCountFields(Set<String> distinctCountFields) {
+        this.distinctCountFields = distinctCountFields;
+    }
+    
+    public int getMaxHistogramValues() {
+        return maxHistogramValues;
+    }
+    
+    public void setMaxHistogramValues(int maxHistogramValues) {
+        this.maxHistogramValues = maxHistogramValues;
+    }
+    
+    public boolean isCompiledEvaluation() {
+        return compiledEvaluation;
+    }
+    
+    public void setCompiledEvaluation(boolean compiledEvaluation) {
+        this.compiledEvaluation = compiledEvaluation;
+    }
+    
+    public boolean isPackedTermOffsets() {
+        return packedTermOffsets;
+    }
+    
+    public void setPackedTermOffsets(boolean packedTermOffsets) {
+        this.packedTermOffsets = packedTermOffsets;
+    }
+    
+    public boolean isLazyTermFrequencies() {
+        return lazyTermFrequencies;
+    }
+    
+    public void setLazyTermFrequencies(boolean lazyTermFrequencies) {
+        this.lazyTermFrequencies = lazyTermFrequencies;
+    }
+    
+    public int getTermFrequencyBatchSize() {
+        return termFrequencyBatchSize;
+    }
+    
+    public void setTermFrequencyBatchSize(int termFrequencyBatchSize) {
+        this.termFrequencyBatchSize = termFrequencyBatchSize;
+    }
+    
+    public boolean isCompactDocuments() {
+        return compactDocuments;
+    }
+    
+    public void setCompactDocuments(boolean compactDocuments) {
+        this.compactDocuments = compactDocuments;
+    }
+    
+    public boolean isLazyAttributeNormalization() {
+        return lazyAttributeNormalization;
+    }
+    
+    public void setLazyAttributeNormalization(boolean lazyAttributeNormalization) {
+        this.lazyAttributeNormalization = lazyAttributeNormalization;
+    }
+    
+    public long getUniqueMaxMemory() {
+        return uniqueMaxMemory;
+    }
+    
+    public void setUniqueMaxMemory(long uniqueMaxMemory) {
+        this.uniqueMaxMemory = uniqueMaxMemory;
+    }
+    
+    public int getTopK() {
+        return topK;
+    }
+    
+    public void setTopK(int topK) {
+        this.topK = topK;
+    }
+    
+    public String getTopKField() {
+        return topKField;
+    }
+    
+    public void setTopKField(String topKField) {
+        this.topKField = topKField;
+    }
+    
+    public int getDocumentFetchBatchSize() {
+        return documentFetchBatchSize;
+    }
+    
+    public void setDocumentFetchBatchSize(int documentFetchBatchSize) {
+        this.documentFetchBatchSize = documentFetchBatchSize;
+    }
+    
+    public int getDocumentFetchMaxNexts() {
+        return documentFetchMaxNexts;
+    }
+    
+    public void setDocumentFetchMaxNexts(int documentFetchMaxNexts) {
+        this.documentFetchMaxNexts = documentFetchMaxNexts;
+    }
+    
     public Set<String> getHitsOnlySet() {
         return hitsOnlySet;
     }
@@ -1043,6 +1220,22 @@ public class QueryOptions implements OptionDescriber {
         options.put(GROUP_FIELDS, "group fields");
         options.put(GROUP_FIELDS_BATCH_SIZE, "group fields.batch.size");
         options.put(UNIQUE_FIELDS, "unique fields");
+        options.put(AGGREGATE_RESULTS, "Return a single aggregate of the matching documents instead of the documents themselves");
+        options.put(HISTOGRAM_FIELDS, "Fields for which a value histogram is aggregated");
+        options.put(DISTINCT_COUNT_FIELDS, "Fields for which an approximate distinct value count is aggregated");
+        options.put(MAX_HISTOGRAM_VALUES, "The maximum number of distinct values kept in each histogram (default is 1000)");
+        options.put(COMPILED_EVALUATION, "Compile the query into predicates once rather than interpreting it for each document (default is false)");
+        options.put(PACKED_TERM_OFFSETS, "Keep term offsets packed in primitive arrays for content function evaluation (default is false)");
+        options.put(LAZY_TERM_FREQUENCIES, "Only fetch term frequencies for documents which could still match, batched across documents (default is false)");
+        options.put(TERM_FREQUENCY_BATCH_SIZE, "The number of documents whose term frequencies a serial pipeline fetches together (default is 32)");
+        options.put(COMPACT_DOCUMENTS, "Build documents with interned field names, shared metadata and array backed multi-value storage (default is false)");
+        options.put(LAZY_ATTRIBUTE_NORMALIZATION, "Create attributes holding their raw values, normalizing them only when used (default is false)");
+        options.put(UNIQUE_MAX_MEMORY, "The bytes of unique signatures held in memory before they are forgotten (default is 64MB)");
+        options.put(QUERY_TEMPLATE_CACHE, "If true, the objects built from the iterator options are shared by the init calls of the same query on a tserver");
+        options.put(TOP_K, "If greater than 0, only the top k documents of each range are returned, together in a single TopKHeap");
+        options.put(TOP_K_FIELD, "The numeric or date field by which the top k documents are chosen, or the event date if not set");
+        options.put(DOCUMENT_FETCH_BATCH_SIZE, "If greater than 1, a serial evaluation pipeline fetches this many documents in one forward pass");
+        options.put(DOCUMENT_FETCH_MAX_NEXTS, "The keys a batched document fetch nexts over between documents before it seeks instead");
         options.put(HIT_LIST, "hit list");
         options.put(NON_INDEXED_DATATYPES, "Normalizers to apply only at aggregation time");
         options.put(CONTAINS_INDEX_ONLY_TERMS, "Does the query being evaluated contain any terms which are index-only");
@@ -1361,6 +1554,70 @@ public class QueryOptions implements OptionDescriber {
             }
         }
         
+        if (options.containsKey(AGGREGATE_RESULTS)) {
+            this.setAggregateResults(Boolean.parseBoolean(options.get(AGGREGATE_RESULTS)));
+        }
+        
+        if (options.containsKey(HISTOGRAM_FIELDS)) {
+            for (String param : Splitter.on(',').omitEmptyStrings().trimResults().split(options.get(HISTOGRAM_FIELDS))) {
+                this.getHistogramFields().add(param);
+            }
+        }
+        
+        if (options.containsKey(DISTINCT_COUNT_FIELDS)) {
+            for (String param : Splitter.on(',').omitEmptyStrings().trimResults().split(options.get(DISTINCT_COUNT_FIELDS))) {
+                this.getDistinctCountFields().add(param);
+            }
+        }
+        
+        if (options.containsKey(MAX_HISTOGRAM_VALUES)) {
+            this.setMaxHistogramValues(Integer.parseInt(options.get(MAX_HISTOGRAM_VALUES)));
+        }
+        
+        if (options.containsKey(COMPILED_EVALUATION)) {
+            this.setCompiledEvaluation(Boolean.parseBoolean(options.get(COMPILED_EVALUATION)));
+        }
+        
+        if (options.containsKey(PACKED_TERM_OFFSETS)) {
+            this.setPackedTermOffsets(Boolean.parseBoolean(options.get(PACKED_TERM_OFFSETS)));
+        }
+        
+        if (options.containsKey(LAZY_TERM_FREQUENCIES)) {
+            this.setLazyTermFrequencies(Boolean.parseBoolean(options.get(LAZY_TERM_FREQUENCIES)));
+        }
+        
+        if (options.containsKey(TERM_FREQUENCY_BATCH_SIZE)) {
+            this.setTermFrequencyBatchSize(Integer.parseInt(options.get(TERM_FREQUENCY_BATCH_SIZE)));
+        }
+        
+        if (options.containsKey(COMPACT_DOCUMENTS)) {
+            this.setCompactDocuments(Boolean.parseBoolean(options.get(COMPACT_DOCUMENTS)));
+        }
+        
+        if (options.containsKey(LAZY_ATTRIBUTE_NORMALIZATION)) {
+            this.setLazyAttributeNormalization(Boolean.parseBoolean(options.get(LAZY_ATTRIBUTE_NORMALIZATION)));
+        }
+        
+        if (options.containsKey(UNIQUE_MAX_MEMORY)) {
+            this.setUniqueMaxMemory(Long.parseLong(options.get(UNIQUE_MAX_MEMORY)));
+        }
+        
+        if (options.containsKey(TOP_K)) {
+            this.setTopK(Integer.parseInt(options.get(TOP_K)));
+        }
+        
+        if (options.containsKey(TOP_K_FIELD)) {
+            this.setTopKField(options.get(TOP_K_FIELD).trim());
+        }
+        
+        if (options.containsKey(DOCUMENT_FETCH_BATCH_SIZE)) {
+            this.setDocumentFetchBatchSize(Integer.parseInt(options.get(DOCUMENT_FETCH_BATCH_SIZE)));
+        }
+        
+        if (options.containsKey(DOCUMENT_FETCH_MAX_NEXTS)) {
+            this.setDocumentFetchMaxNexts(Integer.parseInt(options.get(DOCUMENT_FETCH_MAX_NEXTS)));
+        }
+        
         if (options.containsKey(HIT_LIST)) {
             log.debug("Adding hitList to QueryOptions? " + options.get(HIT_LIST));
             if (Boolean.parseBoolean(options.get(HIT_LIST))) {
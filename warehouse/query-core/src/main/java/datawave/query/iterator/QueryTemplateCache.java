@@ -0,0 +1,141 @@
+package datawave.query.iterator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import datawave.query.function.DocumentProjection;
+import datawave.query.util.TypeMetadata;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+
+/**
+ * A tserver wide cache of the objects which the {@link QueryIterator} builds from its options when it is initialized. A query is initialized once for every
+ * tablet, and again every time its scan session is torn down or yields, but its options do not change, so the parsed type metadata, query script and
+ * document projections are built once and shared by the later init calls. Entries are keyed by a hash of all of the options, which include the query id, so
+ * they are only shared within a query.
+ * <p>
+ * These objects are shared between concurrent iterators without locking, which is safe because none of them is written once it is cached: the type
+ * metadata is complete, non-indexed types included, before it is put here; the visitors which rewrite the script work on a copy of it; and the projections
+ * are given their fields when they are built and are only read when applied. They are shared between the deep copies of an iterator in the same way.
+ * <p>
+ * The evaluation functions, evaluation filters and the nested iterators built by the IteratorBuildingVisitor are not shared: an evaluation function may hold a
+ * stateful arithmetic or compiled field slots rebound for each document, the filters count the keys of the document being aggregated, and the iterators are
+ * bound to the sources of a seek, so all of them are still built for each iterator from the shared script.
+ */
+public class QueryTemplateCache {
+    
+    static final int MAX_SIZE = 128;
+    
+    private static final Cache<String,Template> templates = CacheBuilder.newBuilder().maximumSize(MAX_SIZE).expireAfterAccess(10, TimeUnit.MINUTES)
+                    .recordStats().build();
+    
+    private QueryTemplateCache() {}
+    
+    /**
+     * @param options
+     *            the iterator options
+     * @return a key which is the same for equal options, regardless of their order
+     */
+    public static String key(Map<String,String> options) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (Map.Entry<String,String> entry : new TreeMap<>(options).entrySet()) {
+            String value = entry.getValue() == null ? "" : entry.getValue();
+            hasher.putInt(entry.getKey().length()).putString(entry.getKey(), StandardCharsets.UTF_8);
+            hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+    
+    /**
+     * @return the template built for the options with this key, or null if there is none
+     */
+    public static Template get(String key) {
+        return templates.getIfPresent(key);
+    }
+    
+    public static void put(String key, Template template) {
+        templates.put(key, template);
+    }
+    
+    /**
+     * @return the hit and miss counts of the cache since the tserver started
+     */
+    public static CacheStats stats() {
+        return templates.stats();
+    }
+    
+    static void clear() {
+        templates.invalidateAll();
+    }
+    
+    public static class Template {
+        private final String query;
+        private final TypeMetadata typeMetadata;
+        private final TypeMetadata typeMetadataWithNonIndexed;
+        private final ASTJexlScript script;
+        private final DocumentProjection projection;
+        private final DocumentProjection compositeProjection;
+        private final long buildNanos;
+        
+        /**
+         * @param query
+         *            the query the template was built for, which guards against a collision of the option hashes
+         * @param typeMetadata
+         *            the type metadata of the query
+         * @param typeMetadataWithNonIndexed
+         *            the type metadata with the non-indexed data types added
+         * @param script
+         *            the parsed query
+         * @param projection
+         *            the projection of the returned fields, or null if the fields are not projected
+         * @param compositeProjection
+         *            the projection removing the composite fields
+         * @param buildNanos
+         *            the time it took to build the template, which is saved by every init call that reuses it
+         */
+        public Template(String query, TypeMetadata typeMetadata, TypeMetadata typeMetadataWithNonIndexed, ASTJexlScript script, DocumentProjection projection,
+                        DocumentProjection compositeProjection, long buildNanos) {
+            this.query = query;
+            this.typeMetadata = typeMetadata;
+            this.typeMetadataWithNonIndexed = typeMetadataWithNonIndexed;
+            this.script = script;
+            this.projection = projection;
+            this.compositeProjection = compositeProjection;
+            this.buildNanos = buildNanos;
+        }
+        
+        public boolean isFor(String query) {
+            return this.query.equals(query);
+        }
+        
+        public TypeMetadata getTypeMetadata() {
+            return typeMetadata;
+        }
+        
+        public TypeMetadata getTypeMetadataWithNonIndexed() {
+            return typeMetadataWithNonIndexed;
+        }
+        
+        public ASTJexlScript getScript() {
+            return script;
+        }
+        
+        public DocumentProjection getProjection() {
+            return projection;
+        }
+        
+        public DocumentProjection getCompositeProjection() {
+            return compositeProjection;
+        }
+        
+        public long getBuildNanos() {
+            return buildNanos;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package datawave.query.iterator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.Maps;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
+/**
+ * The top k serialized documents of a set of results, by a sort value which is the event date or the value of a numeric or date field, highest first. A heap is
+ * filled by the QueryIterator for a range (or up to a yield) and returned in place of the documents themselves, and the heaps of all of the ranges are merged
+ * on the web server, so that only k documents per range are ever returned.
+ *
+ * The serialized object will be of the form: int - k, int - number of documents followed by (double - sort value, key bytes, value bytes) for each
+ */
+public class TopKHeap implements KryoSerializable {
+    
+    private static final Comparator<Item> ORDER = Comparator.comparingDouble((Item item) -> item.sortValue).thenComparing(item -> item.key);
+    
+    private int k;
+    
+    // the lowest of the top k is at the head, so it is the one replaced
+    private PriorityQueue<Item> items;
+    
+    public TopKHeap() {
+        // need default constructor for kryo
+        this(1);
+    }
+    
+    public TopKHeap(int k) {
+        this.k = k;
+        this.items = new PriorityQueue<>(ORDER);
+    }
+    
+    public int getK() {
+        return k;
+    }
+    
+    public int size() {
+        return items.size();
+    }
+    
+    /**
+     * @param sortValue
+     *            the value the document is ordered by, NaN if it has none, which is ordered below every other value
+     * @param key
+     *            the document key
+     * @param value
+     *            the serialized document
+     * @return true if the document is one of the top k so far
+     */
+    public boolean offer(double sortValue, Key key, Value value) {
+        Item item = new Item(Double.isNaN(sortValue) ? Double.NEGATIVE_INFINITY : sortValue, key, value);
+        if (items.size() < k) {
+            items.add(item);
+            return true;
+        }
+        if (ORDER.compare(item, items.peek()) > 0) {
+            items.poll();
+            items.add(item);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * @return the lowest sort value a document must beat to be one of the top k, or negative infinity if there are fewer than k documents
+     */
+    public double getThreshold() {
+        return items.size() < k ? Double.NEGATIVE_INFINITY : items.peek().sortValue;
+    }
+    
+    public void merge(TopKHeap other) {
+        for (Item item : other.items) {
+            offer(item.sortValue, item.key, item.value);
+        }
+    }
+    
+    /**
+     * @return the documents, highest sort value first
+     */
+    public List<Map.Entry<Key,Value>> getDocuments() {
+        List<Item> sorted = new ArrayList<>(items);
+        sorted.sort(ORDER.reversed());
+        List<Map.Entry<Key,Value>> documents = new ArrayList<>(sorted.size());
+        for (Item item : sorted) {
+            documents.add(Maps.immutableEntry(item.key, item.value));
+        }
+        return documents;
+    }
+    
+    public Value toValue(Kryo kryo) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Output kryoOutput = new Output(baos);
+        kryo.writeObject(kryoOutput, this);
+        kryoOutput.close();
+        return new Value(baos.toByteArray());
+    }
+    
+    public static TopKHeap fromValue(Kryo kryo, Value value) {
+        Input input = new Input(new ByteArrayInputStream(value.get()));
+        return kryo.readObject(input, TopKHeap.class);
+    }
+    
+    @Override
+    public void write(Kryo kryo, Output output) {
+        output.writeInt(k);
+        output.writeInt(items.size());
+        for (Item item : items) {
+            output.writeDouble(item.sortValue);
+            ByteArrayOutputStream key = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(key)) {
+                item.key.write(out);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to serialize " + item.key, e);
+            }
+            output.writeInt(key.size());
+            output.writeBytes(key.toByteArray());
+            byte[] value = item.value.get();
+            output.writeInt(value.length);
+            output.writeBytes(value);
+        }
+    }
+    
+    @Override
+    public void read(Kryo kryo, Input input) {
+        this.k = input.readInt();
+        this.items = new PriorityQueue<>(ORDER);
+        int size = input.readInt();
+        for (int i = 0; i < size; i++) {
+            double sortValue = input.readDouble();
+            Key key = new Key();
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(input.readBytes(input.readInt())))) {
+                key.readFields(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to deserialize a document key", e);
+            }
+            Value value = new Value(input.readBytes(input.readInt()));
+            items.add(new Item(sortValue, key, value));
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "TopKHeap{" + "k=" + k + ", size=" + items.size() + ", threshold=" + getThreshold() + '}';
+    }
+    
+    private static class Item {
+        private final double sortValue;
+        private final Key key;
+        private final Value value;
+        
+        Item(double sortValue, Key key, Value value) {
+            this.sortValue = sortValue;
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
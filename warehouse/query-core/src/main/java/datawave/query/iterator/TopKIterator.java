@@ -0,0 +1,167 @@
+package datawave.query.iterator;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.base.Function;
+import com.google.common.collect.Maps;
+import datawave.data.type.Type;
+import datawave.query.attributes.Attribute;
+import datawave.query.attributes.Attributes;
+import datawave.query.attributes.Document;
+import datawave.query.jexl.JexlASTHelper;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.YieldCallback;
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps only the top k of the evaluated documents of a QueryIterator, by event date or by the value of a numeric or date field, and returns them serialized
+ * together in a single {@link TopKHeap} rather than one by one, so that a range returns at most k documents however many match.
+ *
+ * Like the document aggregating iterator, no state is saved across a teardown: the heap is returned keyed by the last document consumed (or the yield position)
+ * so that a rebuilt iterator resumes after the documents already offered, and the partial heaps are merged on the web server.
+ */
+public class TopKIterator implements Iterator<Entry<Key,Value>> {
+    private static final Logger log = Logger.getLogger(TopKIterator.class);
+    
+    private final Iterator<Entry<Key,Document>> documents;
+    private final int k;
+    private final String field;
+    private final Function<Entry<Key,Document>,Entry<Key,Value>> serializer;
+    private final YieldCallback<Key> yield;
+    private final Kryo kryo = new Kryo();
+    
+    private Entry<Key,Value> next = null;
+    
+    /**
+     * @param documents
+     *            the evaluated documents
+     * @param k
+     *            the number of documents to keep
+     * @param field
+     *            the field to order by, or null to order by event date
+     * @param serializer
+     *            serializes the documents kept in the return type of the query
+     * @param yield
+     *            the yield callback
+     */
+    public TopKIterator(Iterator<Entry<Key,Document>> documents, int k, String field, Function<Entry<Key,Document>,Entry<Key,Value>> serializer,
+                    YieldCallback<Key> yield) {
+        this.documents = documents;
+        this.k = k;
+        this.field = field == null || field.isEmpty() ? null : JexlASTHelper.deconstructIdentifier(field);
+        this.serializer = serializer;
+        this.yield = yield;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = fill();
+        }
+        return next != null;
+    }
+    
+    @Override
+    public Entry<Key,Value> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Entry<Key,Value> entry = next;
+        next = null;
+        return entry;
+    }
+    
+    private Entry<Key,Value> fill() {
+        TopKHeap heap = new TopKHeap(k);
+        Key lastKey = null;
+        long offered = 0;
+        
+        while (documents.hasNext()) {
+            Entry<Key,Document> entry = documents.next();
+            double sortValue = sortValue(entry.getValue());
+            // only serialize the documents which make it into the heap
+            if (heap.size() < k || sortValue > heap.getThreshold()) {
+                Entry<Key,Value> serialized = serializer.apply(entry);
+                heap.offer(sortValue, serialized.getKey(), serialized.getValue());
+            }
+            offered++;
+            lastKey = entry.getKey();
+        }
+        
+        if (yield != null && yield.hasYielded()) {
+            if (offered == 0) {
+                // nothing offered, so let the yield through
+                return null;
+            }
+            // reset the yield and use its key for the heap
+            lastKey = yield.getPositionAndReset();
+        }
+        
+        if (lastKey == null) {
+            return null;
+        }
+        
+        if (log.isTraceEnabled()) {
+            log.trace("Kept " + heap + " of " + offered + " documents up to " + lastKey);
+        }
+        return Maps.immutableEntry(lastKey, heap.toValue(kryo));
+    }
+    
+    /**
+     * @return the event date of the document, or the highest value of the field, or NaN if the field has no numeric or date value
+     */
+    protected double sortValue(Document document) {
+        if (field == null) {
+            return document.getTimestamp();
+        }
+        double sortValue = Double.NaN;
+        for (Entry<String,Attribute<? extends Comparable<?>>> entry : document.entrySet()) {
+            if (field.equals(JexlASTHelper.deconstructIdentifier(entry.getKey()))) {
+                sortValue = max(sortValue, sortValue(entry.getValue()));
+            }
+        }
+        return sortValue;
+    }
+    
+    private static double sortValue(Attribute<?> attribute) {
+        if (attribute instanceof Attributes) {
+            double sortValue = Double.NaN;
+            for (Attribute<?> child : ((Attributes) attribute).getAttributes()) {
+                sortValue = max(sortValue, sortValue(child));
+            }
+            return sortValue;
+        }
+        return sortValue(attribute.getData());
+    }
+    
+    static double sortValue(Object data) {
+        if (data instanceof Type) {
+            data = ((Type<?>) data).getDelegate();
+        }
+        if (data instanceof Number) {
+            return ((Number) data).doubleValue();
+        } else if (data instanceof Date) {
+            return ((Date) data).getTime();
+        } else if (data instanceof Calendar) {
+            return ((Calendar) data).getTimeInMillis();
+        }
+        try {
+            return Double.parseDouble(String.valueOf(data));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+    
+    private static double max(double a, double b) {
+        if (Double.isNaN(a)) {
+            return b;
+        }
+        return Double.isNaN(b) ? a : Math.max(a, b);
+    }
+}
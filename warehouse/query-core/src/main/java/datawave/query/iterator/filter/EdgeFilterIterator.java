@@ -3,15 +3,20 @@ package datawave.query.iterator.filter;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
 import datawave.edge.model.EdgeModelAware;
 import datawave.edge.model.EdgeModelAware.Fields;
 import datawave.edge.model.EdgeModelAware.Fields.FieldKey;
+import datawave.edge.util.EdgeKeySegments;
 import datawave.edge.util.EdgeKeyUtil;
 
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.Filter;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
@@ -33,6 +38,10 @@ import com.google.common.collect.HashMultimap;
  *
  * Prefiltering is an optional component that can determine quickly if a key will fail using a whitelist of accepted values parsed from the jexl
  *
+ * When the queries only compare edge fields against string literals they are compiled into {@link EdgeKeyPredicate}s, which evaluate the key bytes directly
+ * instead of building a JEXL context for every key. A compiled query can also tell when no key in the current row and column family can match (e.g. the edge
+ * type or relationship is not wanted), in which case the filter seeks past the column family after {@link #SKIP_LIMIT_OPTION} rejected keys.
+ *
  */
 public class EdgeFilterIterator extends Filter {
     public static final Logger log = Logger.getLogger(EdgeFilterIterator.class);
@@ -42,6 +51,8 @@ public class EdgeFilterIterator extends Filter {
     public static final String INCLUDE_STATS_OPTION = "includeStats";
     public static final String JEXL_STATS_OPTION = "jexlStatsQuery";
     public static final String PREFILTER_WHITELIST = "prefilter";
+    public static final String COMPILE_OPTION = "compile";
+    public static final String SKIP_LIMIT_OPTION = "skipLimit";
     
     private static final JexlEngine jexlEngine = new JexlEngine();
     
@@ -53,12 +64,28 @@ public class EdgeFilterIterator extends Filter {
     
     private HashMultimap<String,String> preFilterValues;
     
+    private EdgeKeyPredicate predicate = null;
+    private EdgeKeyPredicate statsPredicate = null;
+    private EdgeKeySegments segments = new EdgeKeySegments();
+    private int skipLimit = 10;
+    private boolean negated = false;
+    
+    private Range range;
+    private Collection<ByteSequence> columnFamilies;
+    private boolean inclusive;
+    
     @Override
     public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
         EdgeFilterIterator result = (EdgeFilterIterator) super.deepCopy(env);
         result.protobuffFormat = this.protobuffFormat;
+        result.includeStatsEdges = this.includeStatsEdges;
         result.expression = this.expression;
+        result.statsExpression = this.statsExpression;
         result.preFilterValues = this.preFilterValues;
+        result.predicate = this.predicate;
+        result.statsPredicate = this.statsPredicate;
+        result.skipLimit = this.skipLimit;
+        result.negated = this.negated;
         
         return result;
     }
@@ -82,6 +109,9 @@ public class EdgeFilterIterator extends Filter {
         
         io.addNamedOption(PREFILTER_WHITELIST, "Serialized Hashmultimap of fieldname:fieldvalue for prefiltering.");
         io.setDescription("Used to filter keys prior to building a jexl context.");
+        
+        io.addNamedOption(COMPILE_OPTION, "Evaluate the queries directly against the key bytes when possible? Defaults to true.");
+        io.addNamedOption(SKIP_LIMIT_OPTION, "Number of keys rejected by their row and column family before seeking to the next column family. Defaults to 10.");
         return io;
     }
     
@@ -166,6 +196,27 @@ public class EdgeFilterIterator extends Filter {
             statsExpression = jexlEngine.createExpression(jexlStats.toLowerCase());
         }
         
+        String compile = options.get(COMPILE_OPTION);
+        if (null == compile || Boolean.parseBoolean(compile)) {
+            predicate = EdgeKeyPredicate.compile(caseFixQuery);
+            if (jexlStats != null) {
+                statsPredicate = EdgeKeyPredicate.compile(jexlStats.toLowerCase());
+                if (statsPredicate == null) {
+                    predicate = null;
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug(predicate == null ? "Evaluating edge query with JEXL: " + caseFixQuery : "Compiled edge query: " + caseFixQuery);
+            }
+        }
+        
+        String limit = options.get(SKIP_LIMIT_OPTION);
+        if (null != limit) {
+            skipLimit = Integer.parseInt(limit);
+        }
+        
+        negated = Boolean.parseBoolean(options.get(NEGATE));
+        
         String inPrefilter = options.get(PREFILTER_WHITELIST);
         
         if (null != inPrefilter) {
@@ -211,6 +262,27 @@ public class EdgeFilterIterator extends Filter {
         return retVal;
     }
     
+    /**
+     * The same prefilter, against the segments of a key which has not been disassembled
+     *
+     * @param segments
+     * @return
+     */
+    private boolean prefilter(EdgeKeySegments segments) {
+        if (preFilterValues != null) {
+            for (FieldKey field : FieldKey.values()) {
+                if (!segments.hasField(field)) {
+                    continue;
+                }
+                Set<String> values = preFilterValues.get(Fields.getInstance().getFieldName(field));
+                if (values != null && !values.isEmpty() && !values.contains(segments.getValue(field))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
     @Override
     public void init(org.apache.accumulo.core.iterators.SortedKeyValueIterator<org.apache.accumulo.core.data.Key,org.apache.accumulo.core.data.Value> source,
                     java.util.Map<java.lang.String,java.lang.String> options, org.apache.accumulo.core.iterators.IteratorEnvironment env)
@@ -231,6 +303,59 @@ public class EdgeFilterIterator extends Filter {
         initOptions(options);
     }
     
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+        this.range = range;
+        this.columnFamilies = columnFamilies;
+        this.inclusive = inclusive;
+        super.seek(range, columnFamilies, inclusive);
+    }
+    
+    /**
+     * Skips rejected keys as the Filter does, but will seek to the next column family once {@link #skipLimit} keys have been rejected by their row and column
+     * family alone.
+     */
+    @Override
+    protected void findTop() {
+        if (predicate == null || negated || range == null) {
+            super.findTop();
+            return;
+        }
+        
+        int skipped = 0;
+        try {
+            while (getSource().hasTop() && !getSource().getTopKey().isDeleted()) {
+                Key top = getSource().getTopKey();
+                if (accept(top, getSource().getTopValue())) {
+                    break;
+                }
+                
+                if (rejectsColumnFamily() && ++skipped > skipLimit) {
+                    Key next = top.followingKey(PartialKey.ROW_COLFAM);
+                    if (!range.afterEndKey(next)) {
+                        range = new Range(next, true, range.getEndKey(), range.isEndKeyInclusive());
+                        getSource().seek(range, columnFamilies, inclusive);
+                        skipped = 0;
+                        continue;
+                    }
+                }
+                getSource().next();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    /**
+     * @return true if no other key in the row and column family of the key last passed to {@link #accept(Key, Value)} can be accepted
+     */
+    private boolean rejectsColumnFamily() {
+        if (segments.isStatsEdge()) {
+            return !includeStatsEdges || (statsPredicate != null && Boolean.FALSE.equals(statsPredicate.testRowAndColumnFamily(segments)));
+        }
+        return Boolean.FALSE.equals(predicate.testRowAndColumnFamily(segments));
+    }
+    
     /**
      * Determines if the edge key satisfies the conditions expressed in the supplied JEXL query string.
      *
@@ -240,6 +365,17 @@ public class EdgeFilterIterator extends Filter {
      */
     @Override
     public boolean accept(Key k, Value V) {
+        if (predicate != null) {
+            segments.reset(k, protobuffFormat);
+            if (!prefilter(segments)) {
+                return false;
+            }
+            if (segments.isStatsEdge()) {
+                return includeStatsEdges && (statsPredicate == null || statsPredicate.test(segments));
+            }
+            return predicate.test(segments);
+        }
+        
         boolean value = false;
         
         Map<FieldKey,String> keyComponents = EdgeKeyUtil.dissasembleKey(k, protobuffFormat);
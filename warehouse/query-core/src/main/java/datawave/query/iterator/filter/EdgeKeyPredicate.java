@@ -0,0 +1,270 @@
+package datawave.query.iterator.filter;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import datawave.edge.model.EdgeModelAware;
+import datawave.edge.model.EdgeModelAware.Fields.FieldKey;
+import datawave.edge.util.EdgeKeySegments;
+
+import org.apache.commons.jexl2.parser.ASTAndNode;
+import org.apache.commons.jexl2.parser.ASTEQNode;
+import org.apache.commons.jexl2.parser.ASTERNode;
+import org.apache.commons.jexl2.parser.ASTIdentifier;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ASTNENode;
+import org.apache.commons.jexl2.parser.ASTNRNode;
+import org.apache.commons.jexl2.parser.ASTNotNode;
+import org.apache.commons.jexl2.parser.ASTOrNode;
+import org.apache.commons.jexl2.parser.ASTReference;
+import org.apache.commons.jexl2.parser.ASTReferenceExpression;
+import org.apache.commons.jexl2.parser.ASTStringLiteral;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.apache.commons.jexl2.parser.Parser;
+import org.apache.log4j.Logger;
+
+/**
+ * An edge query compiled to run directly against the {@link EdgeKeySegments} of an edge key, used by the {@link EdgeFilterIterator} in place of evaluating a
+ * JEXL expression against a context built from a decoded key.
+ *
+ * Only the queries generated for the edge filter are compiled: conjunctions, disjunctions and negations of equality and regex comparisons between an edge field
+ * and a string literal. Equality against an ascii literal is decided on the raw bytes, anything else decodes just the field being compared. A query which uses
+ * anything else is not compiled, and the filter continues to use the JEXL expression.
+ */
+public abstract class EdgeKeyPredicate {
+    private static final Logger log = Logger.getLogger(EdgeKeyPredicate.class);
+    
+    private static final Map<String,FieldKey> FIELDS = new HashMap<>();
+    
+    static {
+        FIELDS.put(EdgeModelAware.EDGE_SOURCE.toLowerCase(), FieldKey.EDGE_SOURCE);
+        FIELDS.put(EdgeModelAware.EDGE_SINK.toLowerCase(), FieldKey.EDGE_SINK);
+        FIELDS.put(EdgeModelAware.EDGE_TYPE.toLowerCase(), FieldKey.EDGE_TYPE);
+        FIELDS.put(EdgeModelAware.EDGE_RELATIONSHIP.toLowerCase(), FieldKey.EDGE_RELATIONSHIP);
+        FIELDS.put(EdgeModelAware.EDGE_ATTRIBUTE1.toLowerCase(), FieldKey.EDGE_ATTRIBUTE1);
+        FIELDS.put(EdgeModelAware.EDGE_ATTRIBUTE2.toLowerCase(), FieldKey.EDGE_ATTRIBUTE2);
+        FIELDS.put(EdgeModelAware.EDGE_ATTRIBUTE3.toLowerCase(), FieldKey.EDGE_ATTRIBUTE3);
+        FIELDS.put(EdgeModelAware.DATE.toLowerCase(), FieldKey.DATE);
+    }
+    
+    /**
+     * @param key
+     *            the segments of the edge key
+     * @return true if the key satisfies the query
+     */
+    public abstract boolean test(EdgeKeySegments key);
+    
+    /**
+     * Evaluate the query using only the fields found in the row and column family of the key
+     *
+     * @param key
+     *            the segments of the edge key
+     * @return {@link Boolean#FALSE} if no key with the same row and column family can satisfy the query, {@link Boolean#TRUE} if every such key does, or null
+     *         if that depends upon the column qualifier
+     */
+    public abstract Boolean testRowAndColumnFamily(EdgeKeySegments key);
+    
+    /**
+     * Compile an edge filter query
+     *
+     * @param query
+     *            the lower cased query
+     * @return the compiled query, or null if the query can only be evaluated by JEXL
+     */
+    public static EdgeKeyPredicate compile(String query) {
+        try {
+            ASTJexlScript script = new Parser(new StringReader(";")).parse(new StringReader(query), null);
+            if (script.jjtGetNumChildren() != 1) {
+                return null;
+            }
+            return compile(script.jjtGetChild(0));
+        } catch (ParseException | RuntimeException e) {
+            log.debug("Unable to compile edge query " + query + ", it will be evaluated by JEXL", e);
+            return null;
+        }
+    }
+    
+    private static EdgeKeyPredicate compile(JexlNode node) {
+        node = dereference(node);
+        if (node instanceof ASTAndNode || node instanceof ASTOrNode) {
+            EdgeKeyPredicate[] children = new EdgeKeyPredicate[node.jjtGetNumChildren()];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = compile(node.jjtGetChild(i));
+                if (children[i] == null) {
+                    return null;
+                }
+            }
+            return node instanceof ASTAndNode ? new And(children) : new Or(children);
+        } else if (node instanceof ASTNotNode) {
+            EdgeKeyPredicate child = compile(node.jjtGetChild(0));
+            return child == null ? null : new Not(child);
+        } else if (node instanceof ASTEQNode || node instanceof ASTNENode || node instanceof ASTERNode || node instanceof ASTNRNode) {
+            JexlNode left = dereference(node.jjtGetChild(0));
+            JexlNode right = dereference(node.jjtGetChild(1));
+            if (!(left instanceof ASTIdentifier) || !(right instanceof ASTStringLiteral) || !FIELDS.containsKey(left.image)) {
+                return null;
+            }
+            FieldKey field = FIELDS.get(left.image);
+            String literal = ((ASTStringLiteral) right).getLiteral();
+            
+            EdgeKeyPredicate comparison;
+            if (node instanceof ASTERNode || node instanceof ASTNRNode) {
+                comparison = new Matches(field, Pattern.compile(literal));
+            } else {
+                comparison = new Equals(field, literal);
+            }
+            return (node instanceof ASTNENode || node instanceof ASTNRNode) ? new Not(comparison) : comparison;
+        }
+        return null;
+    }
+    
+    private static JexlNode dereference(JexlNode node) {
+        while (node.jjtGetNumChildren() == 1 && (node instanceof ASTReference || node instanceof ASTReferenceExpression)) {
+            node = node.jjtGetChild(0);
+        }
+        return node;
+    }
+    
+    private static String lowerCaseValue(EdgeKeySegments key, FieldKey field) {
+        String value = key.getValue(field);
+        return value == null ? null : value.toLowerCase();
+    }
+    
+    private static class Equals extends EdgeKeyPredicate {
+        private final FieldKey field;
+        private final String value;
+        private final byte[] bytes;
+        
+        Equals(FieldKey field, String value) {
+            this.field = field;
+            this.value = value;
+            // values which are not ascii are always compared against the decoded field
+            boolean ascii = value.chars().allMatch(c -> c < 0x80);
+            this.bytes = ascii ? value.getBytes(StandardCharsets.US_ASCII) : null;
+        }
+        
+        @Override
+        public boolean test(EdgeKeySegments key) {
+            if (bytes != null) {
+                int equal = key.equalsIgnoreCase(field, bytes);
+                if (equal != EdgeKeySegments.UNDECIDED) {
+                    return equal == 1;
+                }
+            }
+            return value.equals(lowerCaseValue(key, field));
+        }
+        
+        @Override
+        public Boolean testRowAndColumnFamily(EdgeKeySegments key) {
+            return key.isColumnQualifierField(field) ? null : test(key);
+        }
+    }
+    
+    private static class Matches extends EdgeKeyPredicate {
+        private final FieldKey field;
+        private final Pattern pattern;
+        
+        Matches(FieldKey field, Pattern pattern) {
+            this.field = field;
+            this.pattern = pattern;
+        }
+        
+        @Override
+        public boolean test(EdgeKeySegments key) {
+            String value = lowerCaseValue(key, field);
+            return value != null && pattern.matcher(value).matches();
+        }
+        
+        @Override
+        public Boolean testRowAndColumnFamily(EdgeKeySegments key) {
+            return key.isColumnQualifierField(field) ? null : test(key);
+        }
+    }
+    
+    private static class And extends EdgeKeyPredicate {
+        private final EdgeKeyPredicate[] children;
+        
+        And(EdgeKeyPredicate[] children) {
+            this.children = children;
+        }
+        
+        @Override
+        public boolean test(EdgeKeySegments key) {
+            for (EdgeKeyPredicate child : children) {
+                if (!child.test(key)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public Boolean testRowAndColumnFamily(EdgeKeySegments key) {
+            Boolean result = Boolean.TRUE;
+            for (EdgeKeyPredicate child : children) {
+                Boolean childResult = child.testRowAndColumnFamily(key);
+                if (Boolean.FALSE.equals(childResult)) {
+                    return Boolean.FALSE;
+                } else if (childResult == null) {
+                    result = null;
+                }
+            }
+            return result;
+        }
+    }
+    
+    private static class Or extends EdgeKeyPredicate {
+        private final EdgeKeyPredicate[] children;
+        
+        Or(EdgeKeyPredicate[] children) {
+            this.children = children;
+        }
+        
+        @Override
+        public boolean test(EdgeKeySegments key) {
+            for (EdgeKeyPredicate child : children) {
+                if (child.test(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        @Override
+        public Boolean testRowAndColumnFamily(EdgeKeySegments key) {
+            Boolean result = Boolean.FALSE;
+            for (EdgeKeyPredicate child : children) {
+                Boolean childResult = child.testRowAndColumnFamily(key);
+                if (Boolean.TRUE.equals(childResult)) {
+                    return Boolean.TRUE;
+                } else if (childResult == null) {
+                    result = null;
+                }
+            }
+            return result;
+        }
+    }
+    
+    private static class Not extends EdgeKeyPredicate {
+        private final EdgeKeyPredicate child;
+        
+        Not(EdgeKeyPredicate child) {
+            this.child = child;
+        }
+        
+        @Override
+        public boolean test(EdgeKeySegments key) {
+            return !child.test(key);
+        }
+        
+        @Override
+        public Boolean testRowAndColumnFamily(EdgeKeySegments key) {
+            Boolean result = child.testRowAndColumnFamily(key);
+            return result == null ? null : !result;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package datawave.query.iterator.pipeline;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -49,6 +51,14 @@ public class Pipeline implements Runnable {
         this.documentSpecificSource.setDocumentKey(documentKey);
     }
     
+    /**
+     * @param upcoming
+     *            the keys of the documents this pipeline will be given after the current one
+     */
+    public void setUpcoming(List<Key> upcoming) {
+        this.documentSpecificSource.setUpcoming(upcoming);
+    }
+    
     public Map.Entry<Key,Document> getSource() {
         return this.documentSpecificSource.getDocumentKey();
     }
@@ -56,6 +66,7 @@ public class Pipeline implements Runnable {
     public void clear() {
         this.result = null;
         this.documentSpecificSource.setDocumentKey(null);
+        this.documentSpecificSource.setUpcoming(Collections.emptyList());
     }
     
     public Entry<Key,Document> getResult() {
@@ -1,5 +1,6 @@
 package datawave.query.iterator.pipeline;
 
+import datawave.core.iterators.EvaluationSlotController;
 import datawave.core.iterators.IteratorThreadPoolManager;
 import datawave.query.attributes.Document;
 import datawave.query.iterator.NestedIterator;
@@ -49,6 +50,9 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
     protected IteratorEnvironment env;
     protected Collection<ByteSequence> columnFamilies;
     protected boolean inclusive;
+    protected final String queryId;
+    protected EvaluationSlotController.Grant grant = null;
+    protected long throttled = 0;
     
     public PipelineIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, QuerySpanCollector querySpanCollector, QuerySpan querySpan,
                     QueryIterator sourceIterator, SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env,
@@ -65,6 +69,7 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
         this.yieldThresholdMs = yieldThresholdMs;
         this.columnFamilies = columnFamilies;
         this.inclusive = inclusive;
+        this.queryId = sourceIterator != null ? sourceIterator.getQueryId() : null;
     }
     
     public void setCollectTimingDetails(boolean collectTimingDetails) {
@@ -145,6 +150,9 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
                 } else {
                     next = results.peek();
                 }
+            } else if (evaluationQueue.isEmpty()) {
+                // all done, give up the evaluation slots
+                releaseGrant();
             }
             
             return next;
@@ -271,18 +279,9 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             pipelines.checkIn(nextFuture.second());
         }
         
-        // start a new evaluation if we can
-        if (docSource.hasNext()) {
-            Key keySource = docSource.next();
-            NestedQuery<Key> nestedQuery = null;
-            if (docSource instanceof NestedQueryIterator) {
-                nestedQuery = ((NestedQueryIterator) this.docSource).getNestedQuery();
-            }
-            
-            evaluate(keySource, docSource.document(), nestedQuery, columnFamilies, inclusive);
-            if (collectTimingDetails) {
-                querySpanCollector.addQuerySpan(querySpan);
-            }
+        // start new evaluations up to our current grant if we can
+        if (startEvaluations() && collectTimingDetails) {
+            querySpanCollector.addQuerySpan(querySpan);
         }
         
         // put the result into the queue if non-null
@@ -303,11 +302,41 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
             pipelines.checkIn(nextFuture.second());
         }
         results.clear();
+        releaseGrant();
+    }
+    
+    /**
+     * Cancel the evaluations still in flight and give up the evaluation slots, for when this iterator is replaced by a seek
+     */
+    public void close() {
+        cancel();
+    }
+    
+    private void releaseGrant() {
+        if (grant != null) {
+            grant.release();
+        }
     }
     
     public void startPipeline() {
-        // start up to maxPipeline pipelines
-        int maxPipelines = pipelines.maxPipelines;
+        // start up to maxPipeline pipelines, as far as this tserver will grant them
+        grant = IteratorThreadPoolManager.grantEvaluationSlots(queryId, pipelines.maxPipelines, env);
+        startEvaluations();
+    }
+    
+    /**
+     * Start evaluations until the number in flight reaches the slots currently granted to this query
+     *
+     * @return true if any evaluation was started
+     */
+    private boolean startEvaluations() {
+        int slots = Math.min(grant.getSlots(), pipelines.maxPipelines);
+        if (querySpan != null) {
+            long throttledNow = grant.getThrottled();
+            querySpan.pipelineGrant(slots, throttledNow - throttled);
+            throttled = throttledNow;
+        }
+        
         boolean isNested = false;
         NestedQuery<Key> nestedQuery = null;
         if (docSource instanceof NestedQueryIterator) {
@@ -315,10 +344,10 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
                 log.trace("we're in a nested query");
             }
             isNested = true;
-            
         }
         
-        for (int i = 0; i < maxPipelines && this.docSource.hasNext(); i++) {
+        boolean started = false;
+        while (evaluationQueue.size() < slots && this.docSource.hasNext()) {
             Key keySource = this.docSource.next();
             if (isNested) {
                 nestedQuery = ((NestedQueryIterator) this.docSource).getNestedQuery();
@@ -327,7 +356,9 @@ public class PipelineIterator implements Iterator<Entry<Key,Document>> {
                 log.trace("evaluating nested " + nestedQuery);
             }
             evaluate(keySource, this.docSource.document(), nestedQuery, columnFamilies, inclusive);
+            started = true;
         }
+        return started;
     }
     
     private void evaluate(Key key, Document document, NestedQuery<Key> nestedQuery, Collection<ByteSequence> columnFamilies, boolean inclusive) {
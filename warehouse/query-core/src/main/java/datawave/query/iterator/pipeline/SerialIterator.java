@@ -14,7 +14,12 @@ import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.YieldCallback;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map.Entry;
 
 public class SerialIterator extends PipelineIterator {
@@ -25,11 +30,28 @@ public class SerialIterator extends PipelineIterator {
     
     protected Entry<Key,Document> result = null;
     
+    /**
+     * The documents read ahead of the current one, so that the pipeline can fetch their events together with those of the current one. The parallel pipelines
+     * hold the documents of several keys at once as well, so the documents of the source are not reused across keys.
+     */
+    protected final Deque<Entry<Key,Document>> lookahead = new ArrayDeque<>();
+    
+    protected final int lookaheadSize;
+    
     public SerialIterator(NestedIterator<Key> documents, int maxPipelines, int maxCachedResults, QuerySpanCollector querySpanCollector, QuerySpan querySpan,
                     QueryIterator sourceIterator, SortedKeyValueIterator<Key,Value> sourceForDeepCopy, IteratorEnvironment env,
                     YieldCallback<Key> yieldCallback, long yieldThresholdMs, Collection<ByteSequence> columnFamilies, boolean include) {
         super(documents, maxPipelines, maxCachedResults, querySpanCollector, querySpan, sourceIterator, sourceForDeepCopy, env, yieldCallback,
                         yieldThresholdMs, columnFamilies, include);
+        // read far enough ahead for both the batched event fetch and the batched term frequency fetch
+        int lookaheadSize = 0;
+        if (sourceIterator != null) {
+            lookaheadSize = sourceIterator.getDocumentFetchBatchSize();
+            if (sourceIterator.isLazyTermFrequencies()) {
+                lookaheadSize = Math.max(lookaheadSize, sourceIterator.getTermFrequencyBatchSize());
+            }
+        }
+        this.lookaheadSize = lookaheadSize;
     }
     
     @Override
@@ -41,10 +63,11 @@ public class SerialIterator extends PipelineIterator {
         
         if (null == result) {
             long start = System.currentTimeMillis();
-            while (this.docSource.hasNext()) {
-                Key docKey = this.docSource.next();
-                Document doc = this.docSource.document();
-                currentPipeline.setSource(Maps.immutableEntry(docKey, doc));
+            while (hasNextDocument()) {
+                Entry<Key,Document> next = nextDocument();
+                Key docKey = next.getKey();
+                currentPipeline.setSource(next);
+                currentPipeline.setUpcoming(getUpcoming());
                 currentPipeline.run();
                 result = currentPipeline.getResult();
                 if (null != result)
@@ -80,8 +103,10 @@ public class SerialIterator extends PipelineIterator {
     }
     
     public void startPipeline() {
-        if (this.docSource.hasNext()) {
-            currentPipeline = pipelines.checkOut(this.docSource.next(), this.docSource.document(), null, columnFamilies, inclusive);
+        if (hasNextDocument()) {
+            Entry<Key,Document> next = nextDocument();
+            currentPipeline = pipelines.checkOut(next.getKey(), next.getValue(), null, columnFamilies, inclusive);
+            currentPipeline.setUpcoming(getUpcoming());
             currentPipeline.run();
             result = currentPipeline.getResult();
             if (null == result) {
@@ -91,4 +116,36 @@ public class SerialIterator extends PipelineIterator {
             result = null;
         }
     }
+    
+    protected boolean hasNextDocument() {
+        return !lookahead.isEmpty() || this.docSource.hasNext();
+    }
+    
+    protected Entry<Key,Document> nextDocument() {
+        if (!lookahead.isEmpty()) {
+            return lookahead.poll();
+        }
+        Key docKey = this.docSource.next();
+        return Maps.immutableEntry(docKey, this.docSource.document());
+    }
+    
+    /**
+     * Reads ahead up to one less than the larger of the document fetch and term frequency batch sizes documents
+     *
+     * @return the keys of the documents after the current one, in order
+     */
+    protected List<Key> getUpcoming() {
+        if (lookaheadSize <= 1) {
+            return Collections.emptyList();
+        }
+        while (lookahead.size() < lookaheadSize - 1 && this.docSource.hasNext()) {
+            Key docKey = this.docSource.next();
+            lookahead.add(Maps.immutableEntry(docKey, this.docSource.document()));
+        }
+        List<Key> upcoming = new ArrayList<>(lookahead.size());
+        for (Entry<Key,Document> entry : lookahead) {
+            upcoming.add(entry.getKey());
+        }
+        return upcoming;
+    }
 }
@@ -51,6 +51,41 @@ public class MultiThreadedQuerySpan extends QuerySpan {
         return getThreadSpecificQuerySpan().getYield();
     }
     
+    @Override
+    public long getPipelinesGranted() {
+        return getThreadSpecificQuerySpan().getPipelinesGranted();
+    }
+    
+    @Override
+    public long getThrottleCount() {
+        return getThreadSpecificQuerySpan().getThrottleCount();
+    }
+    
+    @Override
+    public long getTemplateHits() {
+        return getThreadSpecificQuerySpan().getTemplateHits();
+    }
+    
+    @Override
+    public long getTemplateMisses() {
+        return getThreadSpecificQuerySpan().getTemplateMisses();
+    }
+    
+    @Override
+    public long getTemplateSavedNanos() {
+        return getThreadSpecificQuerySpan().getTemplateSavedNanos();
+    }
+    
+    @Override
+    public long getFetchedDocuments() {
+        return getThreadSpecificQuerySpan().getFetchedDocuments();
+    }
+    
+    @Override
+    public long getFetchSeeks() {
+        return getThreadSpecificQuerySpan().getFetchSeeks();
+    }
+    
     @Override
     public synchronized void next() {
         getThreadSpecificQuerySpan().next();
@@ -66,6 +101,21 @@ public class MultiThreadedQuerySpan extends QuerySpan {
         getThreadSpecificQuerySpan().yield();
     }
     
+    @Override
+    public synchronized void pipelineGrant(long granted, long throttled) {
+        getThreadSpecificQuerySpan().pipelineGrant(granted, throttled);
+    }
+    
+    @Override
+    public synchronized void queryTemplate(boolean hit, long savedNanos) {
+        getThreadSpecificQuerySpan().queryTemplate(hit, savedNanos);
+    }
+    
+    @Override
+    public synchronized void documentFetch(long documents, long seeks) {
+        getThreadSpecificQuerySpan().documentFetch(documents, seeks);
+    }
+    
     @Override
     public void reset() {
         super.reset();
@@ -112,6 +162,41 @@ public class MultiThreadedQuerySpan extends QuerySpan {
         getThreadSpecificQuerySpan().setSourceCount(sourceCount);
     }
     
+    @Override
+    public void setPipelinesGranted(long pipelinesGranted) {
+        getThreadSpecificQuerySpan().setPipelinesGranted(pipelinesGranted);
+    }
+    
+    @Override
+    public void setThrottleCount(long throttle) {
+        getThreadSpecificQuerySpan().setThrottleCount(throttle);
+    }
+    
+    @Override
+    public void setTemplateHits(long templateHits) {
+        getThreadSpecificQuerySpan().setTemplateHits(templateHits);
+    }
+    
+    @Override
+    public void setTemplateMisses(long templateMisses) {
+        getThreadSpecificQuerySpan().setTemplateMisses(templateMisses);
+    }
+    
+    @Override
+    public void setTemplateSavedNanos(long templateSavedNanos) {
+        getThreadSpecificQuerySpan().setTemplateSavedNanos(templateSavedNanos);
+    }
+    
+    @Override
+    public void setFetchedDocuments(long fetchedDocuments) {
+        getThreadSpecificQuerySpan().setFetchedDocuments(fetchedDocuments);
+    }
+    
+    @Override
+    public void setFetchSeeks(long fetchSeeks) {
+        getThreadSpecificQuerySpan().setFetchSeeks(fetchSeeks);
+    }
+    
     @Override
     public void setStageTimers(Map<String,Long> stageTimers) {
         getThreadSpecificQuerySpan().setStageTimers(stageTimers);
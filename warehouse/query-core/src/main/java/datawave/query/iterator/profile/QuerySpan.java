@@ -30,6 +30,23 @@ public class QuerySpan {
     
     protected boolean yield = false;
     
+    // the evaluation pipelines last granted to the query, and the number of times the grant was reduced
+    protected long pipelinesGranted = 0;
+    
+    protected long throttle = 0;
+    
+    // the iterator init calls which reused or built a query template, and the init time saved by the reuse
+    protected long templateHits = 0;
+    
+    protected long templateMisses = 0;
+    
+    protected long templateSavedNanos = 0;
+    
+    // the documents fetched by batched document fetches, and the seeks issued to fetch them
+    protected long fetchedDocuments = 0;
+    
+    protected long fetchSeeks = 0;
+    
     private Map<String,Long> stageTimers = new LinkedHashMap<>();
     
     private long stageTimerTotal = 0;
@@ -108,10 +125,68 @@ public class QuerySpan {
         return false;
     }
     
+    public long getPipelinesGranted() {
+        long pipelinesGranted = this.pipelinesGranted;
+        for (QuerySpan subSpan : sources) {
+            pipelinesGranted = Math.max(pipelinesGranted, subSpan.getPipelinesGranted());
+        }
+        return pipelinesGranted;
+    }
+    
+    public long getThrottleCount() {
+        long throttleCount = throttle;
+        for (QuerySpan subSpan : sources) {
+            throttleCount += subSpan.getThrottleCount();
+        }
+        return throttleCount;
+    }
+    
+    public long getTemplateHits() {
+        long templateHits = this.templateHits;
+        for (QuerySpan subSpan : sources) {
+            templateHits += subSpan.getTemplateHits();
+        }
+        return templateHits;
+    }
+    
+    public long getTemplateMisses() {
+        long templateMisses = this.templateMisses;
+        for (QuerySpan subSpan : sources) {
+            templateMisses += subSpan.getTemplateMisses();
+        }
+        return templateMisses;
+    }
+    
+    public long getTemplateSavedNanos() {
+        long templateSavedNanos = this.templateSavedNanos;
+        for (QuerySpan subSpan : sources) {
+            templateSavedNanos += subSpan.getTemplateSavedNanos();
+        }
+        return templateSavedNanos;
+    }
+    
+    public long getFetchedDocuments() {
+        long fetchedDocuments = this.fetchedDocuments;
+        for (QuerySpan subSpan : sources) {
+            fetchedDocuments += subSpan.getFetchedDocuments();
+        }
+        return fetchedDocuments;
+    }
+    
+    public long getFetchSeeks() {
+        long fetchSeeks = this.fetchSeeks;
+        for (QuerySpan subSpan : sources) {
+            fetchSeeks += subSpan.getFetchSeeks();
+        }
+        return fetchSeeks;
+    }
+    
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append(super.toString()).append(" sources:").append(getSourceCount()).append(" next:").append(getNextCount()).append(" seek:")
-                        .append(getSeekCount()).append(" yield:").append(getYield());
+                        .append(getSeekCount()).append(" yield:").append(getYield()).append(" pipelines:").append(getPipelinesGranted()).append(" throttle:")
+                        .append(getThrottleCount()).append(" templateHits:").append(getTemplateHits()).append(" templateMisses:").append(getTemplateMisses())
+                        .append(" fetchedDocuments:").append(getFetchedDocuments()).append(" fetchSeeks:").append(getFetchSeeks());
         return sb.toString();
     }
     
@@ -156,6 +231,49 @@ public class QuerySpan {
         }
     }
     
+    /**
+     * Record the evaluation pipelines granted to the query by the tserver
+     *
+     * @param granted
+     *            the number of pipelines granted
+     * @param throttled
+     *            the number of times the grant was reduced since the last call
+     */
+    public synchronized void pipelineGrant(long granted, long throttled) {
+        pipelinesGranted = granted;
+        throttle += throttled;
+    }
+    
+    /**
+     * Record whether the iterator init reused a query template
+     *
+     * @param hit
+     *            true if the template was reused, false if it was built
+     * @param savedNanos
+     *            the init time saved by the reuse
+     */
+    public synchronized void queryTemplate(boolean hit, long savedNanos) {
+        if (hit) {
+            templateHits++;
+            templateSavedNanos += savedNanos;
+        } else {
+            templateMisses++;
+        }
+    }
+    
+    /**
+     * Record a batched fetch of documents
+     *
+     * @param documents
+     *            the documents fetched
+     * @param seeks
+     *            the seeks issued to fetch them
+     */
+    public synchronized void documentFetch(long documents, long seeks) {
+        fetchedDocuments += documents;
+        fetchSeeks += seeks;
+    }
+    
     public void reset() {
         for (QuerySpan source : sources) {
             source.reset();
@@ -164,6 +282,13 @@ public class QuerySpan {
         next = 0;
         seek = 0;
         yield = false;
+        pipelinesGranted = 0;
+        throttle = 0;
+        templateHits = 0;
+        templateMisses = 0;
+        templateSavedNanos = 0;
+        fetchedDocuments = 0;
+        fetchSeeks = 0;
         stageTimerTotal = 0;
         stageTimers.clear();
     }
@@ -177,7 +302,8 @@ public class QuerySpan {
     }
     
     public boolean hasEntries() {
-        if (this.getSeekCount() > 0 || this.getNextCount() > 0 || this.getYield() || this.getSourceCount() > 0 || !this.stageTimers.isEmpty()) {
+        if (this.getSeekCount() > 0 || this.getNextCount() > 0 || this.getYield() || this.getSourceCount() > 0 || this.getThrottleCount() > 0
+                        || this.getTemplateHits() > 0 || this.getTemplateMisses() > 0 || this.getFetchedDocuments() > 0 || !this.stageTimers.isEmpty()) {
             return true;
         } else {
             return false;
@@ -212,6 +338,34 @@ public class QuerySpan {
         this.sourceCount = sourceCount;
     }
     
+    public void setPipelinesGranted(long pipelinesGranted) {
+        this.pipelinesGranted = pipelinesGranted;
+    }
+    
+    public void setThrottleCount(long throttle) {
+        this.throttle = throttle;
+    }
+    
+    public void setTemplateHits(long templateHits) {
+        this.templateHits = templateHits;
+    }
+    
+    public void setTemplateMisses(long templateMisses) {
+        this.templateMisses = templateMisses;
+    }
+    
+    public void setTemplateSavedNanos(long templateSavedNanos) {
+        this.templateSavedNanos = templateSavedNanos;
+    }
+    
+    public void setFetchedDocuments(long fetchedDocuments) {
+        this.fetchedDocuments = fetchedDocuments;
+    }
+    
+    public void setFetchSeeks(long fetchSeeks) {
+        this.fetchSeeks = fetchSeeks;
+    }
+    
     public void setStageTimers(Map<String,Long> stageTimers) {
         this.stageTimers.clear();
         for (Map.Entry<String,Long> entry : stageTimers.entrySet()) {
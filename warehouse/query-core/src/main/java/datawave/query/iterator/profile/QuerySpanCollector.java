@@ -12,6 +12,13 @@ public class QuerySpanCollector {
     private AtomicLong nextCount = new AtomicLong();
     private AtomicBoolean yield = new AtomicBoolean();
     private AtomicLong sourceCount = new AtomicLong();
+    private AtomicLong pipelinesGranted = new AtomicLong();
+    private AtomicLong throttleCount = new AtomicLong();
+    private AtomicLong templateHits = new AtomicLong();
+    private AtomicLong templateMisses = new AtomicLong();
+    private AtomicLong templateSavedNanos = new AtomicLong();
+    private AtomicLong fetchedDocuments = new AtomicLong();
+    private AtomicLong fetchSeeks = new AtomicLong();
     private Map<String,Long> stageTimers = new LinkedHashMap<>();
     private Logger log = Logger.getLogger(QuerySpan.class);
     
@@ -23,6 +30,15 @@ public class QuerySpanCollector {
                 nextCount.addAndGet(querySpan.getNextCount());
                 yield.set(querySpan.getYield());
                 sourceCount.addAndGet(querySpan.getSourceCount());
+                if (querySpan.getPipelinesGranted() > 0) {
+                    pipelinesGranted.set(querySpan.getPipelinesGranted());
+                }
+                throttleCount.addAndGet(querySpan.getThrottleCount());
+                templateHits.addAndGet(querySpan.getTemplateHits());
+                templateMisses.addAndGet(querySpan.getTemplateMisses());
+                templateSavedNanos.addAndGet(querySpan.getTemplateSavedNanos());
+                fetchedDocuments.addAndGet(querySpan.getFetchedDocuments());
+                fetchSeeks.addAndGet(querySpan.getFetchSeeks());
                 Map<String,Long> timers = querySpan.getStageTimers();
                 for (Map.Entry<String,Long> entry : timers.entrySet()) {
                     String k = entry.getKey();
@@ -51,6 +67,13 @@ public class QuerySpanCollector {
                 combinedQuerySpan.setSeek(this.seekCount.getAndSet(0));
                 combinedQuerySpan.setYield(this.yield.getAndSet(false));
                 combinedQuerySpan.setSourceCount(this.sourceCount.getAndSet(0));
+                combinedQuerySpan.setPipelinesGranted(this.pipelinesGranted.getAndSet(0));
+                combinedQuerySpan.setThrottleCount(this.throttleCount.getAndSet(0));
+                combinedQuerySpan.setTemplateHits(this.templateHits.getAndSet(0));
+                combinedQuerySpan.setTemplateMisses(this.templateMisses.getAndSet(0));
+                combinedQuerySpan.setTemplateSavedNanos(this.templateSavedNanos.getAndSet(0));
+                combinedQuerySpan.setFetchedDocuments(this.fetchedDocuments.getAndSet(0));
+                combinedQuerySpan.setFetchSeeks(this.fetchSeeks.getAndSet(0));
                 combinedQuerySpan.setStageTimers(this.stageTimers);
                 this.stageTimers.clear();
             }
@@ -60,7 +83,8 @@ public class QuerySpanCollector {
     
     public boolean hasEntries() {
         if (this.seekCount.intValue() > 0 || this.nextCount.intValue() > 0 || this.yield.get() || this.sourceCount.intValue() > 0
-                        || !this.stageTimers.isEmpty()) {
+                        || this.throttleCount.intValue() > 0 || this.templateHits.intValue() > 0 || this.templateMisses.intValue() > 0
+                        || this.fetchedDocuments.intValue() > 0 || !this.stageTimers.isEmpty()) {
             return true;
         } else {
             return false;
@@ -85,7 +109,9 @@ public class QuerySpanCollector {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append(super.toString()).append(" seek:").append(seekCount).append(" next:").append(nextCount).append(" yield:").append(yield).append(" sources:")
-                        .append(sourceCount);
+                        .append(sourceCount).append(" pipelines:").append(pipelinesGranted).append(" throttle:").append(throttleCount)
+                        .append(" templateHits:").append(templateHits).append(" templateMisses:").append(templateMisses).append(" fetchedDocuments:")
+                        .append(fetchedDocuments).append(" fetchSeeks:").append(fetchSeeks);
         return sb.toString();
     }
     
@@ -118,6 +144,34 @@ public class QuerySpanCollector {
         return sourceCount.longValue();
     }
     
+    public long getPipelinesGranted() {
+        return pipelinesGranted.longValue();
+    }
+    
+    public long getThrottleCount() {
+        return throttleCount.longValue();
+    }
+    
+    public long getTemplateHits() {
+        return templateHits.longValue();
+    }
+    
+    public long getTemplateMisses() {
+        return templateMisses.longValue();
+    }
+    
+    public long getTemplateSavedNanos() {
+        return templateSavedNanos.longValue();
+    }
+    
+    public long getFetchedDocuments() {
+        return fetchedDocuments.longValue();
+    }
+    
+    public long getFetchSeeks() {
+        return fetchSeeks.longValue();
+    }
+    
     public Map<String,Long> getStageTimers() {
         return Collections.unmodifiableMap(stageTimers);
     }
@@ -0,0 +1,14 @@
+package datawave.query.jexl.compiled;
+
+/**
+ * A query, or part of a query, compiled by the {@link JexlPredicateCompiler}
+ */
+public interface CompiledPredicate {
+    
+    /**
+     * @param slots
+     *            the slots bound to the document's field values
+     * @return true if the document satisfies this part of the query
+     */
+    boolean evaluate(FieldSlots slots);
+}
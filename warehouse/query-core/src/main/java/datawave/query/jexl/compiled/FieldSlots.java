@@ -0,0 +1,57 @@
+package datawave.query.jexl.compiled;
+
+import java.util.Arrays;
+
+import org.apache.commons.jexl2.JexlContext;
+
+/**
+ * The field values of the document being evaluated, held in the slots the {@link JexlPredicateCompiler} assigned to the identifiers of the query. Compiled
+ * comparisons read their field by slot index, and each field is looked up in the context at most once per document however often the query refers to it.
+ * <p>
+ * Like the arithmetic, the slots hold per-document state and must not be shared across threads.
+ */
+public class FieldSlots {
+    private static final Object UNRESOLVED = new Object();
+    
+    private final String[] names;
+    private final Object[] values;
+    private JexlContext context;
+    
+    FieldSlots(String[] names) {
+        this.names = names;
+        this.values = new Object[names.length];
+    }
+    
+    /**
+     * Clear the slots to evaluate another document
+     *
+     * @param context
+     *            the context holding the document's field values
+     * @return these slots
+     */
+    public FieldSlots bind(JexlContext context) {
+        this.context = context;
+        Arrays.fill(values, UNRESOLVED);
+        return this;
+    }
+    
+    /**
+     * @return the context, for the subtrees left to the interpreter
+     */
+    public JexlContext getContext() {
+        return context;
+    }
+    
+    Object get(int slot) {
+        Object value = values[slot];
+        if (value == UNRESOLVED) {
+            value = context.get(names[slot]);
+            values[slot] = value;
+        }
+        return value;
+    }
+    
+    public int size() {
+        return names.length;
+    }
+}
@@ -0,0 +1,294 @@
+package datawave.query.jexl.compiled;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import datawave.query.jexl.DatawaveJexlEngine;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.JexlPatternCache;
+import datawave.query.jexl.nodes.ExceededOrThresholdMarkerJexlNode;
+import datawave.query.jexl.visitors.JexlStringBuildingVisitor;
+
+import org.apache.commons.jexl2.JexlArithmetic;
+import org.apache.commons.jexl2.Script;
+import org.apache.commons.jexl2.parser.ASTAndNode;
+import org.apache.commons.jexl2.parser.ASTAssignment;
+import org.apache.commons.jexl2.parser.ASTEQNode;
+import org.apache.commons.jexl2.parser.ASTERNode;
+import org.apache.commons.jexl2.parser.ASTFalseNode;
+import org.apache.commons.jexl2.parser.ASTGENode;
+import org.apache.commons.jexl2.parser.ASTGTNode;
+import org.apache.commons.jexl2.parser.ASTIdentifier;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ASTLENode;
+import org.apache.commons.jexl2.parser.ASTLTNode;
+import org.apache.commons.jexl2.parser.ASTNENode;
+import org.apache.commons.jexl2.parser.ASTNRNode;
+import org.apache.commons.jexl2.parser.ASTNotNode;
+import org.apache.commons.jexl2.parser.ASTNullLiteral;
+import org.apache.commons.jexl2.parser.ASTNumberLiteral;
+import org.apache.commons.jexl2.parser.ASTOrNode;
+import org.apache.commons.jexl2.parser.ASTReference;
+import org.apache.commons.jexl2.parser.ASTReferenceExpression;
+import org.apache.commons.jexl2.parser.ASTStringLiteral;
+import org.apache.commons.jexl2.parser.ASTTrueNode;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.log4j.Logger;
+
+/**
+ * Compiles a parsed query into a tree of {@link CompiledPredicate}s so that a document can be evaluated without walking the AST through the interpreter.
+ * <p>
+ * Boolean operators, equality, regex and comparison nodes between an identifier and a literal are compiled into direct calls on the arithmetic, so hit-list
+ * tracking continues to be done by the {@link datawave.query.jexl.HitListArithmetic} exactly as it is when interpreted. Anything else (functions, method calls,
+ * bounded ranges and the exceeded or threshold marker) is compiled into a script for just that subtree and handed to the interpreter at evaluation time.
+ * <p>
+ * Each distinct identifier compared by a compiled node is assigned a slot, so compiled nodes read their field by index from the {@link FieldSlots} created by
+ * {@link #newFieldSlots()} rather than by name from the context. Interpreted subtrees still resolve their fields through the context.
+ */
+public class JexlPredicateCompiler {
+    private static final Logger log = Logger.getLogger(JexlPredicateCompiler.class);
+    
+    private final DatawaveJexlEngine engine;
+    private final JexlArithmetic arithmetic;
+    
+    private final Map<String,Integer> slotsByName = new LinkedHashMap<>();
+    
+    private int compiledNodes = 0;
+    private int interpretedNodes = 0;
+    
+    public JexlPredicateCompiler(DatawaveJexlEngine engine, JexlArithmetic arithmetic) {
+        this.engine = engine;
+        this.arithmetic = arithmetic;
+    }
+    
+    public CompiledPredicate compile(ASTJexlScript script) {
+        CompiledPredicate predicate;
+        if (script.jjtGetNumChildren() == 1) {
+            predicate = compileNode(script.jjtGetChild(0));
+        } else {
+            predicate = interpret(script);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Compiled " + compiledNodes + " nodes, " + interpretedNodes + " subtrees left to the interpreter");
+        }
+        return predicate;
+    }
+    
+    /**
+     * @return new slots for the identifiers of the queries compiled so far
+     */
+    public FieldSlots newFieldSlots() {
+        return new FieldSlots(slotsByName.keySet().toArray(new String[0]));
+    }
+    
+    public int getCompiledNodes() {
+        return compiledNodes;
+    }
+    
+    public int getInterpretedNodes() {
+        return interpretedNodes;
+    }
+    
+    private CompiledPredicate compileNode(JexlNode node) {
+        // the interpreter evaluates the exceeded or threshold marker specially, and may recognize it on any of the wrapping references
+        while (!ExceededOrThresholdMarkerJexlNode.instanceOf(node) && node.jjtGetNumChildren() == 1
+                        && (node instanceof ASTReferenceExpression || node instanceof ASTReference)) {
+            node = node.jjtGetChild(0);
+        }
+        if (ExceededOrThresholdMarkerJexlNode.instanceOf(node)) {
+            return interpret(node);
+        }
+        
+        if (node instanceof ASTAndNode) {
+            // the interpreter reevaluates bounded ranges as a single function
+            if (JexlASTHelper.findRange().getRange(node) != null) {
+                return interpret(node);
+            }
+            compiledNodes++;
+            return new And(compileChildren(node));
+        } else if (node instanceof ASTOrNode) {
+            compiledNodes++;
+            return new Or(compileChildren(node));
+        } else if (node instanceof ASTNotNode) {
+            compiledNodes++;
+            return new Not(compileNode(node.jjtGetChild(0)));
+        } else if (node instanceof ASTAssignment && node.jjtGetNumChildren() == 2 && dereference(node.jjtGetChild(1)) instanceof ASTTrueNode) {
+            // query property markers, e.g. (_Delayed_ = true), always evaluate to true
+            compiledNodes++;
+            return slots -> true;
+        } else if (node instanceof ASTTrueNode) {
+            compiledNodes++;
+            return slots -> true;
+        } else if (node instanceof ASTFalseNode) {
+            compiledNodes++;
+            return slots -> false;
+        } else if (node.jjtGetNumChildren() == 2) {
+            Operand left = compileOperand(node.jjtGetChild(0));
+            Operand right = compileOperand(node.jjtGetChild(1));
+            if (left != null && right != null) {
+                CompiledPredicate predicate = compileComparison(node, left, right);
+                if (predicate != null) {
+                    compiledNodes++;
+                    return predicate;
+                }
+            }
+        }
+        
+        return interpret(node);
+    }
+    
+    private CompiledPredicate[] compileChildren(JexlNode node) {
+        List<CompiledPredicate> children = new ArrayList<>(node.jjtGetNumChildren());
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            children.add(compileNode(node.jjtGetChild(i)));
+        }
+        return children.toArray(new CompiledPredicate[0]);
+    }
+    
+    private CompiledPredicate compileComparison(JexlNode node, Operand left, Operand right) {
+        if (node instanceof ASTEQNode) {
+            return slots -> arithmetic.equals(left.get(slots), right.get(slots));
+        } else if (node instanceof ASTNENode) {
+            return slots -> !arithmetic.equals(left.get(slots), right.get(slots));
+        } else if (node instanceof ASTERNode || node instanceof ASTNRNode) {
+            // the interpreter only pattern matches against a string right hand side
+            if (!(right instanceof Literal) || !(((Literal) right).value instanceof String)) {
+                return null;
+            }
+            Pattern pattern = JexlPatternCache.getPattern((String) ((Literal) right).value);
+            if (node instanceof ASTERNode) {
+                return slots -> arithmetic.matches(left.get(slots), pattern);
+            }
+            return slots -> !arithmetic.matches(left.get(slots), pattern);
+        } else if (node instanceof ASTLTNode) {
+            return slots -> arithmetic.lessThan(left.get(slots), right.get(slots));
+        } else if (node instanceof ASTLENode) {
+            return slots -> arithmetic.lessThanOrEqual(left.get(slots), right.get(slots));
+        } else if (node instanceof ASTGTNode) {
+            return slots -> arithmetic.greaterThan(left.get(slots), right.get(slots));
+        } else if (node instanceof ASTGENode) {
+            return slots -> arithmetic.greaterThanOrEqual(left.get(slots), right.get(slots));
+        }
+        return null;
+    }
+    
+    private Operand compileOperand(JexlNode node) {
+        node = dereference(node);
+        if (node instanceof ASTIdentifier) {
+            return new Slot(slotsByName.computeIfAbsent(node.image, name -> slotsByName.size()));
+        } else if (node instanceof ASTStringLiteral) {
+            return new Literal(((ASTStringLiteral) node).getLiteral());
+        } else if (node instanceof ASTNumberLiteral) {
+            return new Literal(((ASTNumberLiteral) node).getLiteral());
+        } else if (node instanceof ASTTrueNode) {
+            return new Literal(Boolean.TRUE);
+        } else if (node instanceof ASTFalseNode) {
+            return new Literal(Boolean.FALSE);
+        } else if (node instanceof ASTNullLiteral) {
+            return new Literal(null);
+        }
+        return null;
+    }
+    
+    private CompiledPredicate interpret(JexlNode node) {
+        interpretedNodes++;
+        String query = JexlStringBuildingVisitor.buildQuery(node);
+        Script script = engine.createScript(query);
+        return slots -> {
+            Object result = script.execute(slots.getContext());
+            return arithmetic.toBoolean(result);
+        };
+    }
+    
+    private static JexlNode dereference(JexlNode node) {
+        while (node.jjtGetNumChildren() == 1 && (node instanceof ASTReferenceExpression || node instanceof ASTReference)) {
+            node = node.jjtGetChild(0);
+        }
+        return node;
+    }
+    
+    /**
+     * A value resolved against the slots at evaluation time
+     */
+    private interface Operand {
+        Object get(FieldSlots slots);
+    }
+    
+    private static class Slot implements Operand {
+        private final int slot;
+        
+        Slot(int slot) {
+            this.slot = slot;
+        }
+        
+        @Override
+        public Object get(FieldSlots slots) {
+            return slots.get(slot);
+        }
+    }
+    
+    private static class Literal implements Operand {
+        private final Object value;
+        
+        Literal(Object value) {
+            this.value = value;
+        }
+        
+        @Override
+        public Object get(FieldSlots slots) {
+            return value;
+        }
+    }
+    
+    private static class And implements CompiledPredicate {
+        private final CompiledPredicate[] children;
+        
+        And(CompiledPredicate[] children) {
+            this.children = children;
+        }
+        
+        @Override
+        public boolean evaluate(FieldSlots slots) {
+            for (CompiledPredicate child : children) {
+                if (!child.evaluate(slots)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    private static class Or implements CompiledPredicate {
+        private final CompiledPredicate[] children;
+        
+        Or(CompiledPredicate[] children) {
+            this.children = children;
+        }
+        
+        @Override
+        public boolean evaluate(FieldSlots slots) {
+            for (CompiledPredicate child : children) {
+                if (child.evaluate(slots)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    private static class Not implements CompiledPredicate {
+        private final CompiledPredicate child;
+        
+        Not(CompiledPredicate child) {
+            this.child = child;
+        }
+        
+        @Override
+        public boolean evaluate(FieldSlots slots) {
+            return !child.evaluate(slots);
+        }
+    }
+}
@@ -71,6 +71,14 @@ public abstract class ContentFunctionEvaluator {
      */
     protected abstract boolean evaluate(List<List<TermWeightPosition>> offsets);
     
+    /**
+     * Evaluate the function based on packed offsets, one per term in the order of the terms.
+     * 
+     * @param positions
+     * @return true if the positions satisfy the function
+     */
+    protected abstract boolean evaluatePacked(List<PackedTermPositions> positions);
+    
     /**
      * Validate and initialize this class. This will validate the arguments and setup other members.
      * 
@@ -116,7 +124,7 @@ public abstract class ContentFunctionEvaluator {
                 
                 return false;
             }
-            if (tfList.fetchOffsets().isEmpty()) {
+            if (tfList.isEmpty()) {
                 if (log.isTraceEnabled()) {
                     log.trace("Failing process() because of an empty offset list for " + term);
                 }
@@ -148,6 +156,10 @@ public abstract class ContentFunctionEvaluator {
      * @return true if found, false otherwise
      */
     public boolean evaluate() {
+        if (computable() && isPacked()) {
+            return evaluatePacked();
+        }
+        
         if (computable()) {
             // now for each event, lets process the terms
             for (String eventId : eventIds) {
@@ -226,6 +238,67 @@ public abstract class ContentFunctionEvaluator {
         return false;
     }
     
+    private boolean isPacked() {
+        for (String term : terms) {
+            if (!termOffsetMap.get(term).isPacked()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * The same as {@link #evaluate()}, over the packed offsets of each term
+     * 
+     * @return true if found, false otherwise
+     */
+    private boolean evaluatePacked() {
+        for (String eventId : eventIds) {
+            ListMultimap<String,PackedTermPositions> positionsByField = LinkedListMultimap.create();
+            boolean malformed = false;
+            for (String term : terms) {
+                TermFrequencyList tfList = termOffsetMap.get(term);
+                for (String field : tfList.fields()) {
+                    PackedTermPositions positions = tfList.fetchPackedOffsets(new TermFrequencyList.Zone(field, true, eventId));
+                    malformed |= positions != null && positions.isMalformed();
+                    // if no offsets, but we are explicitly looking for this field (i.e. not unfielded), then check for a non-content expansion zone
+                    if ((positions == null || positions.isEmpty()) && (fields != null && fields.contains(field))) {
+                        positions = tfList.fetchPackedOffsets(new TermFrequencyList.Zone(field, false, eventId));
+                        malformed |= positions != null && positions.isMalformed();
+                    }
+                    if (positions != null && !positions.isEmpty()) {
+                        positionsByField.put(field, positions);
+                    }
+                }
+            }
+            
+            if (malformed) {
+                // the offsets of this document cannot be trusted
+                log.warn("Skipping " + eventId + " because its term offsets could not be decoded");
+                continue;
+            }
+            
+            for (String field : positionsByField.keySet()) {
+                List<PackedTermPositions> positions = positionsByField.get(field);
+                
+                // fail quick if we did not find enough offsets
+                if (positions.size() < terms.length) {
+                    continue;
+                }
+                
+                if (evaluatePacked(positions)) {
+                    if (log.isTraceEnabled()) {
+                        log.trace("Packed content evaluation in " + field + '(' + eventId + ") over " + Arrays.toString(terms) + ": " + positions
+                                        + " satisfied the content function");
+                    }
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+    
     @Override
     public String toString() {
         return "ContentFunctionEvaluator{fields=" + fields + ", distance=" + distance + ", terms=" + Arrays.toString(terms) + ", termOffsetMap="
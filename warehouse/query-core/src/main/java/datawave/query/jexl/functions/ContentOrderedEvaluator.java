@@ -111,6 +111,108 @@ public class ContentOrderedEvaluator extends ContentFunctionEvaluator {
         return false;
     }
     
+    /**
+     * Evaluate the phrase over packed positions as a single forward pass over the terms: for each term, find the positions which can end a match of the
+     * phrase so far, i.e. those within distance of a position which ended a match of the previous term. Positions of each term are sorted by their low offset,
+     * so the candidates for a position are a prefix of the previous term's matches, found by binary search, and a prefix maximum of their offsets decides the
+     * distance without visiting them.
+     *
+     * @param positions
+     *            the packed positions for each term
+     * @return true if the terms occur in order, within distance
+     */
+    @Override
+    protected boolean evaluatePacked(List<PackedTermPositions> positions) {
+        if (positions.isEmpty() || positions.size() < terms.length) {
+            return false;
+        }
+        
+        // the positions of the previous term which end a match, and the maximum offset over each prefix of them
+        PackedTermPositions previous = positions.get(0);
+        int[] matched = new int[previous.size()];
+        int matchedSize = 0;
+        for (int i = 0; i < previous.size(); i++) {
+            if (previous.getScore(i) <= maxScore) {
+                matched[matchedSize++] = i;
+            }
+        }
+        
+        for (int t = 1; t < terms.length && matchedSize > 0; t++) {
+            PackedTermPositions current = positions.get(t);
+            
+            int[] prefixMax = new int[matchedSize + 1];
+            prefixMax[0] = Integer.MIN_VALUE;
+            for (int i = 0; i < matchedSize; i++) {
+                prefixMax[i + 1] = Math.max(prefixMax[i], previous.getOffset(matched[i]));
+            }
+            
+            // positions at the same offset may be disallowed, and a repeated term may not match itself
+            boolean zeroOffsetExcluded = !previous.getZeroOffsetMatch() || !current.getZeroOffsetMatch();
+            boolean sameTerm = terms[t - 1].equals(terms[t]);
+            
+            int[] next = new int[current.size()];
+            int nextSize = 0;
+            for (int q = 0; q < current.size(); q++) {
+                if (current.getScore(q) > maxScore) {
+                    continue;
+                }
+                int offset = current.getOffset(q);
+                int low = current.getLowOffset(q);
+                
+                // the previous positions with a low offset no greater than this offset
+                int end = upperBound(previous, matched, matchedSize, offset);
+                if (end == 0 || prefixMax[end] < low - distance) {
+                    continue;
+                }
+                if ((zeroOffsetExcluded || sameTerm) && prefixMax[end] == offset
+                                && !hasOtherMatch(previous, matched, end, low, offset, zeroOffsetExcluded)) {
+                    continue;
+                }
+                next[nextSize++] = q;
+            }
+            
+            previous = current;
+            matched = next;
+            matchedSize = nextSize;
+        }
+        
+        return matchedSize > 0;
+    }
+    
+    /**
+     * @return the number of matched positions with a low offset no greater than the offset
+     */
+    private static int upperBound(PackedTermPositions positions, int[] matched, int size, int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions.getLowOffset(matched[mid]) <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Look for a matched position within distance of the given position which is not excluded by being at the same offset (or the same position)
+     */
+    private boolean hasOtherMatch(PackedTermPositions positions, int[] matched, int end, int low, int offset, boolean zeroOffsetExcluded) {
+        for (int i = end - 1; i >= 0; i--) {
+            int candidateOffset = positions.getOffset(matched[i]);
+            if (candidateOffset < low - distance) {
+                continue;
+            }
+            if (candidateOffset == offset && (zeroOffsetExcluded || positions.getLowOffset(matched[i]) == low)) {
+                continue;
+            }
+            return true;
+        }
+        return false;
+    }
+    
     /**
      * Prune the lists by the maximum first offset and the min last offset
      *
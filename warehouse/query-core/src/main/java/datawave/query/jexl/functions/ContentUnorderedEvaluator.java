@@ -60,6 +60,106 @@ public class ContentUnorderedEvaluator extends ContentFunctionEvaluator {
         return mlIter.findMatch();
     }
     
+    /**
+     * The same search as the {@link MultiOffsetMatcher}, run over the packed positions with a cursor per term rather than a queue of position objects.
+     * Repeated terms share their positions, as they do in the MultiOffsetMatcher.
+     *
+     * @param positions
+     * @return true if we found an unordered list within the specified distance for the specified set of positions.
+     */
+    @Override
+    protected boolean evaluatePacked(List<PackedTermPositions> positions) {
+        int k = terms.length;
+        if (k > positions.size()) {
+            return false;
+        }
+        
+        // the positions remaining after the score filter, and the next unused one, for the first occurrence of each term
+        int[][] kept = new int[k][];
+        int[] keptSize = new int[k];
+        int[] next = new int[k];
+        int[] owner = new int[k];
+        Map<String,Integer> termsSeen = new HashMap<>();
+        for (int e = 0; e < k; e++) {
+            Integer first = termsSeen.putIfAbsent(terms[e], e);
+            owner[e] = first == null ? e : first;
+            if (first == null) {
+                PackedTermPositions list = positions.get(e);
+                kept[e] = new int[list.size()];
+                for (int i = 0; i < list.size(); i++) {
+                    if (maxScore == DEFAULT_MAX_SCORE || list.getScore(i) <= maxScore) {
+                        kept[e][keptSize[e]++] = i;
+                    }
+                }
+            }
+        }
+        
+        // the current (minimum) position and the largest remaining offset for each term
+        int[] current = new int[k];
+        int[] maxOffsets = new int[k];
+        int maxEntry = -1;
+        for (int e = 0; e < k; e++) {
+            int o = owner[e];
+            PackedTermPositions list = positions.get(o);
+            if (next[o] >= keptSize[o]) {
+                return false;
+            }
+            int maxOffset = Integer.MIN_VALUE;
+            for (int i = next[o]; i < keptSize[o]; i++) {
+                maxOffset = Math.max(maxOffset, list.getOffset(kept[o][i]));
+            }
+            maxOffsets[e] = maxOffset;
+            current[e] = kept[o][next[o]++];
+            if (maxEntry < 0 || compare(positions, owner, e, current[e], maxEntry, current[maxEntry]) > 0) {
+                maxEntry = e;
+            }
+        }
+        int maxLow = positions.get(owner[maxEntry]).getLowOffset(current[maxEntry]);
+        int maxOffset = positions.get(owner[maxEntry]).getOffset(current[maxEntry]);
+        
+        while (true) {
+            int min = 0;
+            for (int e = 1; e < k; e++) {
+                if (compare(positions, owner, e, current[e], min, current[min]) < 0) {
+                    min = e;
+                }
+            }
+            
+            PackedTermPositions list = positions.get(owner[min]);
+            if (maxLow - list.getOffset(current[min]) <= distance) {
+                return true;
+            }
+            
+            // if the maxOffset is more than distance from the largest value in this list, there is no way to satisfy
+            if (maxLow - maxOffsets[min] > distance) {
+                return false;
+            }
+            
+            int o = owner[min];
+            if (next[o] >= keptSize[o]) {
+                return false;
+            }
+            current[min] = kept[o][next[o]++];
+            
+            int low = list.getLowOffset(current[min]);
+            int offset = list.getOffset(current[min]);
+            if (low > maxLow || (low == maxLow && offset > maxOffset)) {
+                maxLow = low;
+                maxOffset = offset;
+            }
+        }
+    }
+    
+    private static int compare(List<PackedTermPositions> positions, int[] owner, int e1, int i1, int e2, int i2) {
+        PackedTermPositions list1 = positions.get(owner[e1]);
+        PackedTermPositions list2 = positions.get(owner[e2]);
+        int result = Integer.compare(list1.getLowOffset(i1), list2.getLowOffset(i2));
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(list1.getOffset(i1), list2.getOffset(i2));
+    }
+    
     private void filterOffsets(List<List<TermWeightPosition>> offsets) {
         // if max score is maximum possible value short circuit
         if (maxScore == DEFAULT_MAX_SCORE) {
@@ -0,0 +1,306 @@
+package datawave.query.jexl.functions;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import datawave.ingest.protobuf.TermWeightPosition;
+
+import org.apache.log4j.Logger;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+/**
+ * The positions of a term within a single zone, held as parallel primitive arrays instead of a set of {@link TermWeightPosition}s. The arrays are decoded
+ * lazily, straight from the serialized TermWeight protocol buffer, the first time they are needed and are sorted in the same order as TermWeightPositions
+ * (lowest possible offset, then offset). Duplicate positions are dropped, as they would be from a TreeMultimap.
+ * <p>
+ * A TermWeight which cannot be decoded leaves no positions and marks them {@link #isMalformed() malformed}, so that the document can be skipped rather than
+ * failing the scan.
+ */
+public class PackedTermPositions {
+    private static final Logger log = Logger.getLogger(PackedTermPositions.class);
+    
+    private static final int TERM_OFFSET_FIELD = 3;
+    private static final int PREV_SKIPS_FIELD = 4;
+    private static final int SCORE_FIELD = 5;
+    private static final int ZERO_OFFSET_MATCH_FIELD = 6;
+    
+    private byte[] termWeight;
+    
+    private int size;
+    private int[] offsets;
+    private int[] prevSkips;
+    private int[] scores;
+    private boolean zeroOffsetMatch = TermWeightPosition.DEFAULT_ZERO_OFFSET_MATCH;
+    private boolean malformed = false;
+    
+    /**
+     * @param termWeight
+     *            the serialized TermWeight.Info, which is not decoded until the positions are used
+     */
+    public PackedTermPositions(byte[] termWeight) {
+        this.termWeight = termWeight;
+    }
+    
+    private PackedTermPositions(int size, int[] offsets, int[] prevSkips, int[] scores, boolean zeroOffsetMatch) {
+        this.size = size;
+        this.offsets = offsets;
+        this.prevSkips = prevSkips;
+        this.scores = scores;
+        this.zeroOffsetMatch = zeroOffsetMatch;
+    }
+    
+    public int size() {
+        decode();
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    /**
+     * @return true if the TermWeight could not be decoded, in which case there are no positions
+     */
+    public boolean isMalformed() {
+        decode();
+        return malformed;
+    }
+    
+    /**
+     * @return the maximum possible offset of the i'th position
+     */
+    public int getOffset(int i) {
+        decode();
+        return offsets[i];
+    }
+    
+    /**
+     * @return the lowest possible offset of the i'th position, with respect to skips
+     */
+    public int getLowOffset(int i) {
+        decode();
+        if (prevSkips != null && prevSkips[i] >= 0) {
+            return offsets[i] - prevSkips[i];
+        }
+        return offsets[i];
+    }
+    
+    public int getPrevSkips(int i) {
+        decode();
+        return prevSkips == null ? TermWeightPosition.DEFAULT_PREV_SKIPS : prevSkips[i];
+    }
+    
+    public int getScore(int i) {
+        decode();
+        return scores == null ? TermWeightPosition.DEFAULT_SCORE : scores[i];
+    }
+    
+    public boolean getZeroOffsetMatch() {
+        decode();
+        return zeroOffsetMatch;
+    }
+    
+    /**
+     * @return the positions as TermWeightPositions, for callers that need the object form
+     */
+    public List<TermWeightPosition> toTermWeightPositions() {
+        decode();
+        List<TermWeightPosition> positions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            positions.add(new TermWeightPosition.Builder().setOffset(offsets[i]).setPrevSkips(getPrevSkips(i)).setScore(getScore(i))
+                            .setZeroOffsetMatch(zeroOffsetMatch).build());
+        }
+        return positions;
+    }
+    
+    /**
+     * Merge the positions of the same term within the same zone.
+     *
+     * @return a new set of positions holding the union of both
+     */
+    public static PackedTermPositions merge(PackedTermPositions a, PackedTermPositions b) {
+        a.decode();
+        b.decode();
+        int capacity = a.size + b.size;
+        int[] offsets = new int[capacity];
+        int[] prevSkips = (a.prevSkips != null || b.prevSkips != null) ? new int[capacity] : null;
+        int[] scores = (a.scores != null || b.scores != null) ? new int[capacity] : null;
+        
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            PackedTermPositions from;
+            int index;
+            if (j >= b.size || (i < a.size && compare(a, i, b, j) <= 0)) {
+                from = a;
+                index = i++;
+            } else {
+                from = b;
+                index = j++;
+            }
+            if (size > 0 && from.getLowOffset(index) == lowOffset(offsets, prevSkips, size - 1) && from.offsets[index] == offsets[size - 1]) {
+                // already have this position
+                continue;
+            }
+            offsets[size] = from.offsets[index];
+            if (prevSkips != null) {
+                prevSkips[size] = from.getPrevSkips(index);
+            }
+            if (scores != null) {
+                scores[size] = from.getScore(index);
+            }
+            size++;
+        }
+        PackedTermPositions merged = new PackedTermPositions(size, offsets, prevSkips, scores, a.zeroOffsetMatch && b.zeroOffsetMatch);
+        merged.malformed = a.malformed || b.malformed;
+        return merged;
+    }
+    
+    private static int lowOffset(int[] offsets, int[] prevSkips, int i) {
+        if (prevSkips != null && prevSkips[i] >= 0) {
+            return offsets[i] - prevSkips[i];
+        }
+        return offsets[i];
+    }
+    
+    private static int compare(PackedTermPositions a, int i, PackedTermPositions b, int j) {
+        int result = Integer.compare(a.getLowOffset(i), b.getLowOffset(j));
+        if (result != 0) {
+            return result;
+        }
+        return Integer.compare(a.offsets[i], b.offsets[j]);
+    }
+    
+    private void decode() {
+        if (termWeight == null) {
+            return;
+        }
+        
+        try {
+            IntList offsetList = new IntList();
+            IntList prevSkipsList = new IntList();
+            IntList scoreList = new IntList();
+            
+            CodedInputStream input = CodedInputStream.newInstance(termWeight);
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                int field = WireFormat.getTagFieldNumber(tag);
+                if (field == TERM_OFFSET_FIELD) {
+                    read(input, tag, offsetList);
+                } else if (field == PREV_SKIPS_FIELD) {
+                    read(input, tag, prevSkipsList);
+                } else if (field == SCORE_FIELD) {
+                    read(input, tag, scoreList);
+                } else if (field == ZERO_OFFSET_MATCH_FIELD) {
+                    zeroOffsetMatch = input.readBool();
+                } else if (!input.skipField(tag)) {
+                    break;
+                }
+            }
+            
+            size = offsetList.size;
+            offsets = offsetList.values;
+            // skips and scores are linked to the offsets by index, so they are only used when the counts match
+            prevSkips = prevSkipsList.size == size ? prevSkipsList.values : null;
+            scores = scoreList.size == size ? scoreList.values : null;
+        } catch (IOException e) {
+            log.warn("Could not deserialize TermWeight protocol buffer", e);
+            size = 0;
+            offsets = new int[0];
+            prevSkips = null;
+            scores = null;
+            malformed = true;
+        }
+        termWeight = null;
+        
+        sort();
+    }
+    
+    private static void read(CodedInputStream input, int tag, IntList list) throws IOException {
+        if (WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+            int limit = input.pushLimit(input.readRawVarint32());
+            while (input.getBytesUntilLimit() > 0) {
+                list.add(input.readUInt32());
+            }
+            input.popLimit(limit);
+        } else if (WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_VARINT) {
+            list.add(input.readUInt32());
+        } else {
+            throw new InvalidProtocolBufferException("Unexpected wire type for tag " + tag);
+        }
+    }
+    
+    /**
+     * Offsets are written in order, but skips can reorder the low offsets; an insertion sort is linear over positions which are already (nearly) sorted.
+     */
+    private void sort() {
+        int newSize = 0;
+        for (int i = 0; i < size; i++) {
+            int offset = offsets[i];
+            int skips = prevSkips == null ? 0 : prevSkips[i];
+            int score = scores == null ? 0 : scores[i];
+            int low = lowOffset(offsets, prevSkips, i);
+            
+            int j = newSize;
+            while (j > 0 && (lowOffset(offsets, prevSkips, j - 1) > low || (lowOffset(offsets, prevSkips, j - 1) == low && offsets[j - 1] > offset))) {
+                j--;
+            }
+            if (j > 0 && lowOffset(offsets, prevSkips, j - 1) == low && offsets[j - 1] == offset) {
+                // a duplicate, keep the first
+                continue;
+            }
+            if (j < newSize) {
+                System.arraycopy(offsets, j, offsets, j + 1, newSize - j);
+                if (prevSkips != null) {
+                    System.arraycopy(prevSkips, j, prevSkips, j + 1, newSize - j);
+                }
+                if (scores != null) {
+                    System.arraycopy(scores, j, scores, j + 1, newSize - j);
+                }
+            }
+            offsets[j] = offset;
+            if (prevSkips != null) {
+                prevSkips[j] = skips;
+            }
+            if (scores != null) {
+                scores[j] = score;
+            }
+            newSize++;
+        }
+        size = newSize;
+    }
+    
+    @Override
+    public String toString() {
+        decode();
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(getLowOffset(i)).append('-').append(offsets[i]);
+        }
+        return sb.append(']').toString();
+    }
+    
+    /**
+     * A growable array of primitive ints
+     */
+    private static class IntList {
+        private int[] values = new int[8];
+        private int size = 0;
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -5,8 +5,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
 
 import datawave.ingest.protobuf.TermWeightPosition;
 import org.apache.accumulo.core.data.Key;
@@ -18,6 +20,9 @@ import com.google.common.collect.TreeMultimap;
 /**
  * Represents a List of offsets represented as TermWeightPositions, corresponding to word positions, in a given field, for a term. This is intended to be used
  * in the scope of a Map from term to {@link TermFrequencyList}
+ *
+ * The offsets may instead be held packed, as a {@link PackedTermPositions} per zone, in which case the TermWeightPositions are only created if something asks
+ * for them through {@link #fetchOffsets()}.
  */
 public class TermFrequencyList {
     
@@ -95,7 +100,27 @@ public class TermFrequencyList {
         return eventId.toString();
     }
     
-    protected final TreeMultimap<Zone,TermWeightPosition> offsetsPerField;
+    protected TreeMultimap<Zone,TermWeightPosition> offsetsPerField;
+    
+    /**
+     * The packed offsets, or null if this list holds TermWeightPositions
+     */
+    protected TreeMap<Zone,PackedTermPositions> packedPerField = null;
+    
+    /**
+     * Create a list holding packed offsets
+     * 
+     * @param field
+     * @param positions
+     * @return
+     */
+    public static TermFrequencyList packed(Zone field, PackedTermPositions positions) {
+        TermFrequencyList list = new TermFrequencyList(TreeMultimap.create());
+        list.offsetsPerField = null;
+        list.packedPerField = new TreeMap<>();
+        list.packedPerField.put(field, positions);
+        return list;
+    }
     
     public TermFrequencyList(TreeMultimap<Zone,TermWeightPosition> offsetsByField) {
         checkNotNull(offsetsByField);
@@ -120,9 +145,18 @@ public class TermFrequencyList {
     }
     
     public static TermFrequencyList merge(TermFrequencyList list1, TermFrequencyList list2) {
+        if (list1.isPacked() && list2.isPacked()) {
+            TermFrequencyList merged = packed(list1.packedPerField.firstKey(), list1.packedPerField.firstEntry().getValue());
+            merged.packedPerField.putAll(list1.packedPerField);
+            for (Map.Entry<Zone,PackedTermPositions> entry : list2.packedPerField.entrySet()) {
+                merged.addOffsets(entry.getKey(), entry.getValue());
+            }
+            return merged;
+        }
+        
         TreeMultimap<Zone,TermWeightPosition> offsetsPerField = TreeMultimap.create();
-        offsetsPerField.putAll(list1.offsetsPerField);
-        offsetsPerField.putAll(list2.offsetsPerField);
+        offsetsPerField.putAll(list1.fetchOffsets());
+        offsetsPerField.putAll(list2.fetchOffsets());
         return new TermFrequencyList(offsetsPerField);
     }
     
@@ -130,7 +164,41 @@ public class TermFrequencyList {
         checkNotNull(field);
         checkNotNull(offsets);
         
-        this.offsetsPerField.putAll(field, offsets);
+        fetchOffsets().putAll(field, offsets);
+        // the packed offsets are no longer complete
+        this.packedPerField = null;
+    }
+    
+    public void addOffsets(Zone field, PackedTermPositions positions) {
+        checkNotNull(field);
+        checkNotNull(positions);
+        
+        if (isPacked()) {
+            PackedTermPositions existing = this.packedPerField.get(field);
+            this.packedPerField.put(field, existing == null ? positions : PackedTermPositions.merge(existing, positions));
+            this.offsetsPerField = null;
+        } else {
+            this.offsetsPerField.putAll(field, positions.toTermWeightPositions());
+        }
+    }
+    
+    /**
+     * @return true if the offsets are held packed
+     */
+    public boolean isPacked() {
+        return this.packedPerField != null;
+    }
+    
+    /**
+     * @param field
+     * @return the packed offsets for the zone, or null if there are none or this list is not packed
+     */
+    public PackedTermPositions fetchPackedOffsets(Zone field) {
+        return isPacked() ? this.packedPerField.get(field) : null;
+    }
+    
+    public boolean isEmpty() {
+        return isPacked() ? this.packedPerField.isEmpty() : this.offsetsPerField.isEmpty();
     }
     
     public void addOffsets(Entry<Zone,Iterable<TermWeightPosition>> offsetForField) {
@@ -161,6 +229,13 @@ public class TermFrequencyList {
      * @return
      */
     public TreeMultimap<Zone,TermWeightPosition> fetchOffsets() {
+        if (this.offsetsPerField == null) {
+            TreeMultimap<Zone,TermWeightPosition> offsets = TreeMultimap.create();
+            for (Map.Entry<Zone,PackedTermPositions> entry : this.packedPerField.entrySet()) {
+                offsets.putAll(entry.getKey(), entry.getValue().toTermWeightPositions());
+            }
+            this.offsetsPerField = offsets;
+        }
         return this.offsetsPerField;
     }
     
@@ -173,18 +248,18 @@ public class TermFrequencyList {
     public TreeMultimap<Zone,TermWeightPosition> fetchOffsets(Set<Zone> fields) {
         checkNotNull(fields);
         
-        return (TreeMultimap<Zone,TermWeightPosition>) Multimaps.filterKeys(this.offsetsPerField, new FieldFilterPredicate(fields));
+        return (TreeMultimap<Zone,TermWeightPosition>) Multimaps.filterKeys(fetchOffsets(), new FieldFilterPredicate(fields));
     }
     
     /**
      * Let clients ask what fields we are currently tracking.
      */
     public Set<String> fields() {
-        if (this.offsetsPerField.isEmpty()) {
+        if (isEmpty()) {
             return Collections.emptySet();
         } else {
             Set<String> fields = new HashSet<>();
-            for (Zone zone : this.offsetsPerField.keySet()) {
+            for (Zone zone : zones()) {
                 fields.add(zone.getZone());
             }
             return fields;
@@ -195,11 +270,11 @@ public class TermFrequencyList {
      * Let clients ask what event ids we are currently tracking.
      */
     public Set<String> eventIds() {
-        if (this.offsetsPerField.isEmpty()) {
+        if (isEmpty()) {
             return Collections.emptySet();
         } else {
             Set<String> eventIds = new HashSet<>();
-            for (Zone zone : this.offsetsPerField.keySet()) {
+            for (Zone zone : zones()) {
                 eventIds.add(zone.getEventId());
             }
             return eventIds;
@@ -210,17 +285,20 @@ public class TermFrequencyList {
      * Let clients ask what zones we are currently tracking.
      */
     public Set<Zone> zones() {
-        return this.offsetsPerField.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(this.offsetsPerField.keySet());
+        if (isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(isPacked() ? this.packedPerField.keySet() : this.offsetsPerField.keySet());
     }
     
     @Override
     public String toString() {
-        return this.offsetsPerField.toString();
+        return isPacked() ? this.packedPerField.toString() : this.offsetsPerField.toString();
     }
     
     @Override
     public int hashCode() {
-        return this.offsetsPerField.hashCode();
+        return fetchOffsets().hashCode();
     }
     
     @Override
@@ -228,7 +306,7 @@ public class TermFrequencyList {
         if (o instanceof TermFrequencyList) {
             TermFrequencyList other = (TermFrequencyList) o;
             
-            return this.offsetsPerField.equals(other.offsetsPerField);
+            return fetchOffsets().equals(other.fetchOffsets());
         }
         
         return false;
@@ -544,6 +544,9 @@ public class ShardIndexQueryTableStaticMethods {
         if (limitToUniqueTerms) {
             cfg.addOption(GlobalIndexTermMatchingIterator.UNIQUE_TERMS_IN_FIELD, Boolean.toString(limitToUniqueTerms));
         }
+        if (config.isAutomatonRegexExpansion()) {
+            cfg.addOption(GlobalIndexTermMatchingIterator.AUTOMATON_SEEK, Boolean.toString(true));
+        }
         
         return cfg;
     }
@@ -0,0 +1,101 @@
+package datawave.query.jexl.visitors;
+
+import java.util.Set;
+
+import datawave.query.Constants;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.functions.ContentFunctions;
+
+import org.apache.commons.jexl2.parser.ASTAndNode;
+import org.apache.commons.jexl2.parser.ASTFalseNode;
+import org.apache.commons.jexl2.parser.ASTFunctionNode;
+import org.apache.commons.jexl2.parser.ASTIdentifier;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ASTNotNode;
+import org.apache.commons.jexl2.parser.ASTOrNode;
+import org.apache.commons.jexl2.parser.ASTReference;
+import org.apache.commons.jexl2.parser.ASTReferenceExpression;
+import org.apache.commons.jexl2.parser.ASTTrueNode;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.commons.jexl2.parser.JexlNodes;
+import org.apache.commons.jexl2.parser.ParserTreeConstants;
+
+/**
+ * Build the query used to evaluate a document before its term frequencies have been fetched. Every term which cannot be decided from the document alone
+ * (content functions, terms against the supplied fields, and delayed predicates) is treated as unknown: it is replaced by TRUE where it appears un-negated and
+ * by FALSE where it appears negated. The resulting query can only be false for a document if the original query is false for that document, whatever the term
+ * frequencies turn out to be, so a document it rejects never needs its term frequencies.
+ */
+public class TermFrequencyPrefilterVisitor {
+    
+    private final Set<String> deferredFields;
+    private int deferred = 0;
+    
+    private TermFrequencyPrefilterVisitor(Set<String> deferredFields) {
+        this.deferredFields = deferredFields;
+    }
+    
+    /**
+     * Build the prefilter query
+     *
+     * @param script
+     *            the query, which is not modified
+     * @param deferredFields
+     *            the fields whose values may not be in the document until the term frequencies (or other delayed lookups) have been done
+     * @return a copy of the query with the undecidable terms replaced, or null if the query has no such terms
+     */
+    public static ASTJexlScript prefilter(ASTJexlScript script, Set<String> deferredFields) {
+        ASTJexlScript copy = (ASTJexlScript) RebuildingVisitor.copy(script);
+        
+        TermFrequencyPrefilterVisitor visitor = new TermFrequencyPrefilterVisitor(deferredFields);
+        visitor.replace(copy, false);
+        
+        return visitor.deferred == 0 ? null : copy;
+    }
+    
+    private void replace(JexlNode node, boolean negated) {
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            JexlNode child = node.jjtGetChild(i);
+            if (isBoolean(child) && !QueryPropertyMarkerVisitor.isDelayedPredicate(child)) {
+                replace(child, child instanceof ASTNotNode ? !negated : negated);
+            } else if (isDeferred(child)) {
+                // unknown, so assume whichever value lets the document through
+                JexlNode unknown = negated ? new ASTFalseNode(ParserTreeConstants.JJTFALSENODE) : new ASTTrueNode(ParserTreeConstants.JJTTRUENODE);
+                JexlNodes.replaceChild(node, child, unknown);
+                child.jjtSetParent(null);
+                deferred++;
+            }
+        }
+    }
+    
+    /**
+     * @return true if the node combines boolean expressions, rather than being an expression itself
+     */
+    private static boolean isBoolean(JexlNode node) {
+        if (node instanceof ASTReference || node instanceof ASTReferenceExpression) {
+            // a reference with more than one child is a method call or similar
+            return node.jjtGetNumChildren() == 1;
+        }
+        return node instanceof ASTAndNode || node instanceof ASTOrNode || node instanceof ASTNotNode || node instanceof ASTJexlScript;
+    }
+    
+    private boolean isDeferred(JexlNode node) {
+        if (QueryPropertyMarkerVisitor.isDelayedPredicate(node)) {
+            return true;
+        }
+        
+        for (ASTFunctionNode function : JexlASTHelper.getFunctionNodes(node)) {
+            if (ContentFunctions.CONTENT_FUNCTION_NAMESPACE.equals(function.jjtGetChild(0).image)) {
+                return true;
+            }
+        }
+        
+        for (ASTIdentifier identifier : JexlASTHelper.getIdentifiers(node)) {
+            String field = JexlASTHelper.deconstructIdentifier(identifier.image);
+            if (Constants.TERM_OFFSET_MAP_JEXL_VARIABLE_NAME.equals(field) || deferredFields.contains(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
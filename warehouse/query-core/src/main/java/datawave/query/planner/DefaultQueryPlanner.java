@@ -379,8 +379,27 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         }
         
         ASTJexlScript queryTree = null;
+        String planKey = null;
         try {
-            queryTree = updateQueryTree(scannerFactory, metadataHelper, dateIndexHelper, config, query, queryData, settings);
+            if (isPlanCacheable(config, settings)) {
+                planKey = QueryPlanCache.key(getClass().getName(), query, settings, config, config.getQueryPlanCacheTtl());
+                QueryPlanCache.Plan plan = QueryPlanCache.get(planKey, config.getQueryPlanCacheTtl());
+                if (plan != null) {
+                    TraceStopwatch stopwatch = config.getTimers().newStartedStopwatch("DefaultQueryPlanner - Restore cached query plan");
+                    capDateRange(config);
+                    queryTree = plan.restore(config);
+                    stopwatch.stop();
+                    log.info("Reusing the cached query plan for query " + settings.getId());
+                }
+            }
+            if (queryTree == null) {
+                queryTree = updateQueryTree(scannerFactory, metadataHelper, dateIndexHelper, config, query, queryData, settings);
+                if (planKey != null && QueryPlanCache.isCacheable(queryTree)) {
+                    TraceStopwatch stopwatch = config.getTimers().newStartedStopwatch("DefaultQueryPlanner - Cache query plan");
+                    QueryPlanCache.put(planKey, new QueryPlanCache.Plan(queryTree, config));
+                    stopwatch.stop();
+                }
+            }
         } catch (StackOverflowError e) {
             if (log.isTraceEnabled()) {
                 log.trace("Stack trace for overflow " + e);
@@ -410,6 +429,8 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
                 PreConditionFailedQueryException qe = new PreConditionFailedQueryException(DatawaveErrorCode.FULL_TABLE_SCAN_REQUIRED_BUT_DISABLED);
                 throw new FullTableScansDisallowedException(qe);
             }
+            
+            queryRanges = sampleQueryRanges(config, queryRanges);
         }
         
         final QueryStopwatch timers = config.getTimers();
@@ -501,7 +522,41 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         addOption(cfg, QueryOptions.GROUP_FIELDS, config.getGroupFieldsAsString(), true);
         addOption(cfg, QueryOptions.GROUP_FIELDS_BATCH_SIZE, config.getGroupFieldsBatchSizeAsString(), true);
         addOption(cfg, QueryOptions.UNIQUE_FIELDS, config.getUniqueFieldsAsString(), true);
+        if (config.isAggregateResults()) {
+            addOption(cfg, QueryOptions.AGGREGATE_RESULTS, Boolean.toString(true), false);
+            addOption(cfg, QueryOptions.HISTOGRAM_FIELDS, config.getHistogramFieldsAsString(), true);
+            addOption(cfg, QueryOptions.DISTINCT_COUNT_FIELDS, config.getDistinctCountFieldsAsString(), true);
+            addOption(cfg, QueryOptions.MAX_HISTOGRAM_VALUES, Integer.toString(config.getMaxHistogramValues()), false);
+        }
         addOption(cfg, QueryOptions.HIT_LIST, Boolean.toString(config.isHitList()), false);
+        if (config.isCompiledEvaluation()) {
+            addOption(cfg, QueryOptions.COMPILED_EVALUATION, Boolean.toString(true), false);
+        }
+        if (config.isPackedTermOffsets()) {
+            addOption(cfg, QueryOptions.PACKED_TERM_OFFSETS, Boolean.toString(true), false);
+        }
+        if (config.isLazyTermFrequencies()) {
+            addOption(cfg, QueryOptions.LAZY_TERM_FREQUENCIES, Boolean.toString(true), false);
+            addOption(cfg, QueryOptions.TERM_FREQUENCY_BATCH_SIZE, Integer.toString(config.getTermFrequencyBatchSize()), false);
+        }
+        if (config.isCompactDocuments()) {
+            addOption(cfg, QueryOptions.COMPACT_DOCUMENTS, Boolean.toString(true), false);
+        }
+        if (config.isLazyAttributeNormalization()) {
+            addOption(cfg, QueryOptions.LAZY_ATTRIBUTE_NORMALIZATION, Boolean.toString(true), false);
+        }
+        if (!config.isQueryTemplateCache()) {
+            addOption(cfg, QueryOptions.QUERY_TEMPLATE_CACHE, Boolean.toString(false), false);
+        }
+        if (config.getTopK() > 0) {
+            addOption(cfg, QueryOptions.TOP_K, Integer.toString(config.getTopK()), false);
+            addOption(cfg, QueryOptions.TOP_K_FIELD, config.getTopKField(), false);
+        }
+        if (config.getDocumentFetchBatchSize() > 1) {
+            addOption(cfg, QueryOptions.DOCUMENT_FETCH_BATCH_SIZE, Integer.toString(config.getDocumentFetchBatchSize()), false);
+            addOption(cfg, QueryOptions.DOCUMENT_FETCH_MAX_NEXTS, Integer.toString(config.getDocumentFetchMaxNexts()), false);
+        }
+        addOption(cfg, QueryOptions.UNIQUE_MAX_MEMORY, Long.toString(config.getUniqueMaxMemory()), false);
         addOption(cfg, QueryOptions.TYPE_METADATA_IN_HDFS, Boolean.toString(config.isTypeMetadataInHdfs()), true);
         addOption(cfg, QueryOptions.TERM_FREQUENCY_FIELDS, Joiner.on(',').join(config.getQueryTermFrequencyFields()), false);
         addOption(cfg, QueryOptions.TERM_FREQUENCIES_REQUIRED, Boolean.toString(config.isTermFrequenciesRequired()), true);
@@ -1608,6 +1663,26 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         }
     }
     
+    /**
+     * A plan may be reused when the query plan cache is enabled, unless only the plan is wanted or the query is on a date type other than the default, whose
+     * date index lookups are not part of the plan key
+     *
+     * @param config
+     * @param settings
+     * @return true if the plan of this query may be taken from and put into the {@link QueryPlanCache}
+     */
+    protected boolean isPlanCacheable(ShardQueryConfiguration config, Query settings) {
+        if (!config.isQueryPlanCache() || config.getQueryPlanCacheTtl() <= 0 || config.isGeneratePlanOnly()) {
+            return false;
+        }
+        Parameter dateTypeParameter = settings.findParameter(QueryParameters.DATE_RANGE_TYPE);
+        if (dateTypeParameter != null && dateTypeParameter.getParameterValue() != null) {
+            String dateType = dateTypeParameter.getParameterValue().trim();
+            return dateType.isEmpty() || dateType.equalsIgnoreCase(config.getDefaultDateTypeName());
+        }
+        return true;
+    }
+    
     /**
      * Create a date filter function node:
      *
@@ -2015,6 +2090,29 @@ public class DefaultQueryPlanner extends QueryPlanner implements Cloneable {
         return new CloseableListIterable<>(Collections.singletonList(new QueryPlan(queryTree, r)));
     }
     
+    /**
+     * Restricts the ranges of a sampled query to the sampled shards, and sets the sampler which estimates the count of results on the config. A query which
+     * requires a full table scan is not sampled.
+     *
+     * @param config
+     * @param queryRanges
+     *            the ranges of the query, and whether it is a full table scan
+     * @return the ranges to scan
+     */
+    protected Tuple2<CloseableIterable<QueryPlan>,Boolean> sampleQueryRanges(ShardQueryConfiguration config,
+                    Tuple2<CloseableIterable<QueryPlan>,Boolean> queryRanges) {
+        if (config.getSampleRate() > 0 && config.getSampleRate() < 1) {
+            if (queryRanges.second()) {
+                log.warn("Not sampling the query as a full table scan is required");
+            } else {
+                ShardSampler sampler = new ShardSampler(config.getSampleRate(), config.getSampleSeed());
+                config.setShardSampler(sampler);
+                return new Tuple2<>(sampler.sample(queryRanges.first()), false);
+            }
+        }
+        return queryRanges;
+    }
+    
     /**
      * Returns a Tuple2&lt;Iterable&lt;Range&gt;,Boolean&gt; whose elements represent the Ranges to use for querying the shard table and whether or not this is
      * a "full-table-scan" query.
@@ -0,0 +1,270 @@
+package datawave.query.planner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import datawave.data.type.DiscreteIndexType;
+import datawave.data.type.Type;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.jexl.nodes.ExceededOrThresholdMarkerJexlNode;
+import datawave.query.jexl.visitors.RebuildingVisitor;
+import datawave.query.model.QueryModel;
+import datawave.webservice.query.Query;
+import datawave.webservice.query.QueryImpl.Parameter;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.JexlNode;
+import org.apache.log4j.Logger;
+
+/**
+ * A cache of the fully expanded query trees planned for queries, so that a query which is submitted again (a dashboard refreshing every minute, for example)
+ * skips the rewriting, model expansion and index expansion of the planner and goes straight to streaming its ranges. A plan is keyed by the planner, the
+ * query logic, the query, its parameters and auths, and its dates rounded down to the ttl, and is only reused within the ttl, so the ttl bounds how stale the
+ * index expansions of a reused plan may be. Plans which reference files written for their query (the FSTs of large value lists) are not cached.
+ */
+public class QueryPlanCache {
+    private static final Logger log = Logger.getLogger(QueryPlanCache.class);
+    
+    static final int MAX_SIZE = 500;
+    
+    /**
+     * plans are dropped after this long regardless of the ttl of the queries using them
+     */
+    static final long MAX_TTL_MS = 60 * 60 * 1000;
+    
+    private static final Cache<String,Plan> plans = CacheBuilder.newBuilder().maximumSize(MAX_SIZE).expireAfterWrite(MAX_TTL_MS, TimeUnit.MILLISECONDS)
+                    .build();
+    
+    private QueryPlanCache() {}
+    
+    /**
+     * @param planner
+     *            the name of the planner
+     * @param query
+     *            the query before planning
+     * @param settings
+     *            the query settings
+     * @param config
+     *            the configuration, holding the auths and the dates of the query before planning
+     * @param ttl
+     *            the time a plan may be reused, which is also the size of the date buckets
+     * @return the key of the plan
+     */
+    public static String key(String planner, String query, Query settings, ShardQueryConfiguration config, long ttl) {
+        SortedMap<String,SortedSet<String>> parameters = new TreeMap<>();
+        if (settings.getParameters() != null) {
+            for (Parameter parameter : settings.getParameters()) {
+                String value = parameter.getParameterValue() == null ? "" : parameter.getParameterValue();
+                parameters.computeIfAbsent(parameter.getParameterName(), name -> new TreeSet<>()).add(value);
+            }
+        }
+        SortedSet<String> auths = new TreeSet<>();
+        if (config.getAuthorizations() != null) {
+            for (Authorizations authorizations : config.getAuthorizations()) {
+                auths.add(authorizations.toString());
+            }
+        }
+        
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putString(hasher, planner);
+        putString(hasher, settings.getQueryLogicName());
+        putString(hasher, query);
+        for (Map.Entry<String,SortedSet<String>> entry : parameters.entrySet()) {
+            putString(hasher, entry.getKey());
+            hasher.putInt(entry.getValue().size());
+            for (String value : entry.getValue()) {
+                putString(hasher, value);
+            }
+        }
+        for (String auth : auths) {
+            putString(hasher, auth);
+        }
+        hasher.putLong(config.getBeginDate().getTime() / ttl).putLong(config.getEndDate().getTime() / ttl);
+        return hasher.hash().toString();
+    }
+    
+    private static void putString(Hasher hasher, String value) {
+        if (value == null) {
+            hasher.putInt(-1);
+        } else {
+            hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+        }
+    }
+    
+    /**
+     * @return the plan with this key if it was planned within the ttl, or null
+     */
+    public static Plan get(String key, long ttl) {
+        Plan plan = plans.getIfPresent(key);
+        if (plan != null && System.currentTimeMillis() - plan.created > ttl) {
+            plans.invalidate(key);
+            return null;
+        }
+        return plan;
+    }
+    
+    public static void put(String key, Plan plan) {
+        plans.put(key, plan);
+    }
+    
+    static void clear() {
+        plans.invalidateAll();
+    }
+    
+    /**
+     * @return false if the query tree references the FST file of a large value list, which belongs to the query it was written for
+     */
+    public static boolean isCacheable(JexlNode node) {
+        if (ExceededOrThresholdMarkerJexlNode.instanceOf(node)) {
+            try {
+                ExceededOrThresholdMarkerJexlNode.ExceededOrParams params = ExceededOrThresholdMarkerJexlNode.getParameters(node);
+                return params == null || params.getFstURI() == null;
+            } catch (IOException e) {
+                log.debug("Unable to read the parameters of " + node, e);
+                return false;
+            }
+        }
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            if (!isCacheable(node.jjtGetChild(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * A planned query tree, along with the state the planner derived for it in the configuration
+     */
+    public static class Plan {
+        private final long created = System.currentTimeMillis();
+        private final ASTJexlScript queryTree;
+        
+        private final String shardTableName;
+        private final QueryModel queryModel;
+        private final boolean bypassExecutabilityCheck;
+        private final boolean expandAllTerms;
+        private final Set<String> indexedFields;
+        private final Set<String> reverseIndexedFields;
+        private final Multimap<String,Type<?>> queryFieldsDatatypes;
+        private final Multimap<String,Type<?>> normalizedFieldsDatatypes;
+        private final Multimap<String,String> compositeToFieldMap;
+        private final Map<String,Date> compositeTransitionDates;
+        private final Map<String,String> compositeFieldSeparators;
+        private final Map<String,DiscreteIndexType<?>> fieldToDiscreteIndexTypes;
+        private final Set<String> projectFields;
+        private final Set<String> blacklistedFields;
+        private final Set<String> groupFields;
+        private final int groupFieldsBatchSize;
+        private final Set<String> uniqueFields;
+        private final Set<String> limitFields;
+        private final boolean includeGroupingContext;
+        private final boolean hitList;
+        private final boolean typeMetadataInHdfs;
+        private final boolean containsIndexOnlyTerms;
+        private final boolean containsCompositeTerms;
+        private final boolean sortedUIDs;
+        private final Set<String> queryTermFrequencyFields;
+        private final boolean termFrequenciesRequired;
+        
+        /**
+         * @param queryTree
+         *            the planned query tree, which is copied
+         * @param config
+         *            the configuration after planning
+         */
+        public Plan(ASTJexlScript queryTree, ShardQueryConfiguration config) {
+            this.queryTree = (ASTJexlScript) RebuildingVisitor.copy(queryTree);
+            this.shardTableName = config.getShardTableName();
+            this.queryModel = config.getQueryModel();
+            this.bypassExecutabilityCheck = config.isBypassExecutabilityCheck();
+            this.expandAllTerms = config.isExpandAllTerms();
+            this.indexedFields = copy(config.getIndexedFields());
+            this.reverseIndexedFields = copy(config.getReverseIndexedFields());
+            this.queryFieldsDatatypes = copy(config.getQueryFieldsDatatypes());
+            this.normalizedFieldsDatatypes = copy(config.getNormalizedFieldsDatatypes());
+            this.compositeToFieldMap = copy(config.getCompositeToFieldMap());
+            this.compositeTransitionDates = copy(config.getCompositeTransitionDates());
+            this.compositeFieldSeparators = copy(config.getCompositeFieldSeparators());
+            this.fieldToDiscreteIndexTypes = copy(config.getFieldToDiscreteIndexTypes());
+            this.projectFields = copy(config.getProjectFields());
+            this.blacklistedFields = copy(config.getBlacklistedFields());
+            this.groupFields = copy(config.getGroupFields());
+            this.groupFieldsBatchSize = config.getGroupFieldsBatchSize();
+            this.uniqueFields = copy(config.getUniqueFields());
+            this.limitFields = copy(config.getLimitFields());
+            this.includeGroupingContext = config.getIncludeGroupingContext();
+            this.hitList = config.isHitList();
+            this.typeMetadataInHdfs = config.isTypeMetadataInHdfs();
+            this.containsIndexOnlyTerms = config.isContainsIndexOnlyTerms();
+            this.containsCompositeTerms = config.isContainsCompositeTerms();
+            this.sortedUIDs = config.isSortedUIDs();
+            this.queryTermFrequencyFields = copy(config.getQueryTermFrequencyFields());
+            this.termFrequenciesRequired = config.isTermFrequenciesRequired();
+        }
+        
+        /**
+         * Restore the state the planner derived into the configuration
+         *
+         * @param config
+         *            the configuration of the query reusing the plan
+         * @return a copy of the planned query tree
+         */
+        public ASTJexlScript restore(ShardQueryConfiguration config) {
+            config.setShardTableName(shardTableName);
+            config.setQueryModel(queryModel);
+            config.setBypassExecutabilityCheck(bypassExecutabilityCheck);
+            config.setExpandAllTerms(expandAllTerms);
+            config.setIndexedFields(copy(indexedFields));
+            config.setReverseIndexedFields(copy(reverseIndexedFields));
+            config.setQueryFieldsDatatypes(copy(queryFieldsDatatypes));
+            config.setNormalizedFieldsDatatypes(copy(normalizedFieldsDatatypes));
+            config.setCompositeToFieldMap(copy(compositeToFieldMap));
+            config.setCompositeTransitionDates(copy(compositeTransitionDates));
+            config.setCompositeFieldSeparators(copy(compositeFieldSeparators));
+            config.setFieldToDiscreteIndexTypes(copy(fieldToDiscreteIndexTypes));
+            config.setProjectFields(copy(projectFields));
+            config.setBlacklistedFields(copy(blacklistedFields));
+            config.setGroupFields(copy(groupFields));
+            config.setGroupFieldsBatchSize(groupFieldsBatchSize);
+            config.setUniqueFields(copy(uniqueFields));
+            config.setLimitFields(copy(limitFields));
+            config.setIncludeGroupingContext(includeGroupingContext);
+            config.setHitList(hitList);
+            config.setTypeMetadataInHdfs(typeMetadataInHdfs);
+            config.setContainsIndexOnlyTerms(containsIndexOnlyTerms);
+            config.setContainsCompositeTerms(containsCompositeTerms);
+            config.setSortedUIDs(sortedUIDs);
+            config.setQueryTermFrequencyFields(copy(queryTermFrequencyFields));
+            config.setTermFrequenciesRequired(termFrequenciesRequired);
+            return (ASTJexlScript) RebuildingVisitor.copy(queryTree);
+        }
+        
+        private static <T> Set<T> copy(Set<T> set) {
+            return set == null ? null : new HashSet<>(set);
+        }
+        
+        private static <K,V> Map<K,V> copy(Map<K,V> map) {
+            return map == null ? null : new HashMap<>(map);
+        }
+        
+        private static <K,V> Multimap<K,V> copy(Multimap<K,V> multimap) {
+            return multimap == null ? null : HashMultimap.create(multimap);
+        }
+    }
+}
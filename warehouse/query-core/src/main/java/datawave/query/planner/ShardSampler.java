@@ -0,0 +1,238 @@
+package datawave.query.planner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.collect.Iterators;
+import com.google.common.hash.Hashing;
+import datawave.query.CloseableIterable;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.log4j.Logger;
+
+/**
+ * Restricts a query to a deterministic sample of its shards, and estimates the count of results the query would return over all of its shards from the
+ * results of the sample.
+ * <p>
+ * The sample is stratified by day: for a sampling period of k, every k-th shard number of each day is kept, starting from an offset drawn per day from the
+ * seed, so that every day contributes the same fraction of its shards. Days for which the index only lists the day rather than its shards are kept whole with a
+ * probability of 1/k. Every shard is therefore sampled with a probability of 1/k, and the count of results is estimated as k times the count of sampled
+ * results, with a variance of (k^2 - k) times the sum of the squared counts per sampled shard (or whole day).
+ * <p>
+ * The results arrive shard by shard rather than at random, so the count of results seen part way through a query says little about the shards yet to be read.
+ * The estimate is therefore only reported once the results are exhausted, when every sampled shard has been counted.
+ */
+public class ShardSampler {
+    private static final Logger log = Logger.getLogger(ShardSampler.class);
+    
+    private static final double Z_95 = 1.96;
+    
+    private final int period;
+    private final long seed;
+    
+    // the days sampled whole, whose results are counted per day rather than per shard
+    private final Set<String> wholeDays = ConcurrentHashMap.newKeySet();
+    
+    private final Map<String,Long> counts = new HashMap<>();
+    private long count = 0;
+    
+    private volatile boolean exhausted = false;
+    
+    /**
+     * @param rate
+     *            the fraction of shards to sample, which is rounded to the nearest 1/k
+     * @param seed
+     *            the seed which selects the shards of the sample
+     */
+    public ShardSampler(double rate, long seed) {
+        if (rate <= 0 || rate > 1) {
+            throw new IllegalArgumentException("The sample rate must be within (0, 1]: " + rate);
+        }
+        this.period = Math.max(1, (int) Math.round(1 / rate));
+        this.seed = seed;
+    }
+    
+    /**
+     * @return k, where one in every k shards is sampled
+     */
+    public int getPeriod() {
+        return period;
+    }
+    
+    /**
+     * @param shardOrDay
+     *            a shard id (yyyyMMdd_n) or a day (yyyyMMdd)
+     * @return true if the shard or the whole day is part of the sample
+     */
+    public boolean isSampled(String shardOrDay) {
+        int index = shardOrDay.indexOf('_');
+        if (index < 0) {
+            return Math.floorMod(hash(shardOrDay, 1), period) == 0;
+        }
+        String day = shardOrDay.substring(0, index);
+        try {
+            int shard = Integer.parseInt(shardOrDay.substring(index + 1));
+            return Math.floorMod(shard, period) == Math.floorMod(hash(day, 0), period);
+        } catch (NumberFormatException e) {
+            return Math.floorMod(hash(shardOrDay, 0), period) == 0;
+        }
+    }
+    
+    private long hash(String value, int kind) {
+        return Hashing.murmur3_128().newHasher().putLong(seed).putInt(kind).putString(value, StandardCharsets.UTF_8).hash().asLong();
+    }
+    
+    /**
+     * @return the plan with only the ranges of sampled shards and days, which may leave it with no ranges
+     */
+    public QueryPlan sample(QueryPlan plan) {
+        List<Range> sampled = new ArrayList<>();
+        for (Range range : plan.getRanges()) {
+            if (range.isInfiniteStartKey()) {
+                sampled.add(range);
+                continue;
+            }
+            String row = range.getStartKey().getRow().toString();
+            if (!range.isInfiniteStopKey() && !range.getEndKey().getRow().toString().startsWith(row)) {
+                // a day range, which spans every shard of the day
+                String day = row.indexOf('_') < 0 ? row : row.substring(0, row.indexOf('_'));
+                if (isSampled(day)) {
+                    wholeDays.add(day);
+                    sampled.add(range);
+                }
+            } else if (isSampled(row)) {
+                sampled.add(range);
+            }
+        }
+        plan.setRanges(sampled);
+        return plan;
+    }
+    
+    public CloseableIterable<QueryPlan> sample(final CloseableIterable<QueryPlan> plans) {
+        return new CloseableIterable<QueryPlan>() {
+            @Override
+            public Iterator<QueryPlan> iterator() {
+                return Iterators.filter(Iterators.transform(plans.iterator(), ShardSampler.this::sample), plan -> plan.getRanges().iterator().hasNext());
+            }
+            
+            @Override
+            public void close() throws IOException {
+                plans.close();
+            }
+        };
+    }
+    
+    /**
+     * Counts a result towards the estimate
+     *
+     * @param key
+     *            the key of the result, whose row is its shard
+     */
+    public synchronized void count(Key key) {
+        String row = key.getRow().toString();
+        int index = row.indexOf('_');
+        String unit = index >= 0 && wholeDays.contains(row.substring(0, index)) ? row.substring(0, index) : row;
+        counts.merge(unit, 1L, Long::sum);
+        count++;
+    }
+    
+    /**
+     * @param results
+     *            the results of the sampled query
+     * @return the results, which mark the sample as exhausted once they have all been read and log the estimate then, as the results may run out on a
+     *         request for a page which gets no response
+     */
+    public Iterator<Entry<Key,Value>> track(final Iterator<Entry<Key,Value>> results) {
+        return new Iterator<Entry<Key,Value>>() {
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = results.hasNext();
+                if (!hasNext && !exhausted) {
+                    exhausted = true;
+                    log.info(getEstimate());
+                }
+                return hasNext;
+            }
+            
+            @Override
+            public Entry<Key,Value> next() {
+                return results.next();
+            }
+        };
+    }
+    
+    /**
+     * @return true once every result of the sampled query has been read, after which the estimate covers the whole sample
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+    
+    public synchronized Estimate getEstimate() {
+        double sumOfSquares = 0;
+        for (long unitCount : counts.values()) {
+            sumOfSquares += (double) unitCount * unitCount;
+        }
+        double estimate = (double) period * count;
+        double margin = Z_95 * Math.sqrt(((double) period * period - period) * sumOfSquares);
+        Estimate result = new Estimate(count, period, Math.round(estimate), Math.max(count, Math.round(estimate - margin)), Math.round(estimate + margin));
+        if (log.isDebugEnabled()) {
+            log.debug(result + " from " + counts.size() + " shards or days");
+        }
+        return result;
+    }
+    
+    /**
+     * An estimate of the count of results, with its 95% confidence bounds
+     */
+    public static class Estimate {
+        private final long sampled;
+        private final int period;
+        private final long count;
+        private final long lower;
+        private final long upper;
+        
+        public Estimate(long sampled, int period, long count, long lower, long upper) {
+            this.sampled = sampled;
+            this.period = period;
+            this.count = count;
+            this.lower = lower;
+            this.upper = upper;
+        }
+        
+        public long getSampled() {
+            return sampled;
+        }
+        
+        public int getPeriod() {
+            return period;
+        }
+        
+        public long getCount() {
+            return count;
+        }
+        
+        public long getLower() {
+            return lower;
+        }
+        
+        public long getUpper() {
+            return upper;
+        }
+        
+        @Override
+        public String toString() {
+            return "Sampled 1 in " + period + " shards: " + sampled + " results returned, estimated count " + count + " (95% confidence bounds " + lower
+                            + " to " + upper + ")";
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package datawave.query.postprocessing.tf;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import datawave.query.attributes.Document;
+import datawave.query.util.Tuple2;
+import datawave.query.util.Tuple3;
+import datawave.query.util.Tuples;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+
+/**
+ * Applies the {@link TermOffsetFunction} to each document, gathering the term frequencies of the upcoming documents in the same row together with those of
+ * the current one: up to batchSize documents are covered by a single scan, rather than a seek per document. The upcoming documents are those read ahead by
+ * the serial pipeline, so without them every document is fetched on its own.
+ * <p>
+ * The fields of an upcoming document are not known until it has been aggregated, so a batch is scanned without field pruning and each document's pruning is
+ * applied when its context map is built. Documents which are dropped before reaching this iterator, such as those rejected by the term frequency prefilter,
+ * still have their term frequencies read as part of the batch.
+ */
+public class BatchedTermOffsetIterator implements Iterator<Tuple3<Key,Document,Map<String,Object>>> {
+    
+    private final Iterator<Tuple2<Key,Document>> source;
+    private final TermOffsetPopulator tfPopulator;
+    private final int batchSize;
+    private final Supplier<List<Key>> upcoming;
+    
+    // the row of the last batch, and the term frequencies read for each datatype\0uid in it
+    private ByteSequence fetchedRow = null;
+    private Map<String,List<Entry<Key,Value>>> fetched = Collections.emptyMap();
+    
+    public BatchedTermOffsetIterator(Iterator<Tuple2<Key,Document>> source, TermOffsetPopulator tfPopulator, int batchSize, Supplier<List<Key>> upcoming) {
+        this.source = source;
+        this.tfPopulator = tfPopulator;
+        this.batchSize = Math.max(1, batchSize);
+        this.upcoming = upcoming;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        return source.hasNext();
+    }
+    
+    @Override
+    public Tuple3<Key,Document,Map<String,Object>> next() {
+        Tuple2<Key,Document> from = source.next();
+        Key docKey = from.first();
+        Set<Key> docKeys = TermOffsetFunction.getDocKeys(from);
+        Set<String> fields = TermOffsetFunction.getFieldsToRemove(from.second(), tfPopulator.getTermFrequencyFieldValues());
+        
+        List<Entry<Key,Value>> termFrequencies = null;
+        if (docKey.getRowData().equals(fetchedRow)) {
+            termFrequencies = TermOffsetPopulator.getTermFrequencies(fetched, docKeys);
+        }
+        if (termFrequencies == null) {
+            termFrequencies = fetch(docKey, docKeys, fields);
+        }
+        
+        Tuple2<Document,Map<String,Object>> context = tfPopulator.buildContextMap(docKey, termFrequencies, fields);
+        Document merged = from.second();
+        Map<String,Object> map = new HashMap<>();
+        if (context.second() != null) {
+            map.putAll(context.second());
+        }
+        merged.putAll(context.first(), false);
+        return Tuples.tuple(docKey, merged, map);
+    }
+    
+    /**
+     * Read the term frequencies of the document, and of the upcoming documents in the same row
+     *
+     * @return the term frequencies of the document
+     */
+    private List<Entry<Key,Value>> fetch(Key docKey, Set<Key> docKeys, Set<String> fields) {
+        Set<Key> keys = new HashSet<>(docKeys);
+        int documents = 1;
+        if (batchSize > 1 && upcoming != null) {
+            for (Key key : upcoming.get()) {
+                // the term frequencies are scanned within a single row
+                if (documents >= batchSize || !key.getRowData().equals(docKey.getRowData())) {
+                    break;
+                }
+                keys.add(key);
+                documents++;
+            }
+        }
+        
+        if (documents == 1) {
+            // nothing will be reused, so prune the scan to the fields of this document
+            fetchedRow = null;
+            fetched = Collections.emptyMap();
+            return TermOffsetPopulator.getTermFrequencies(tfPopulator.fetchTermFrequencies(keys, fields), docKeys);
+        }
+        
+        fetchedRow = docKey.getRowData();
+        fetched = tfPopulator.fetchTermFrequencies(keys, null);
+        return TermOffsetPopulator.getTermFrequencies(fetched, docKeys);
+    }
+}
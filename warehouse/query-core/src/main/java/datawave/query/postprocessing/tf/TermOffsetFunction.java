@@ -23,11 +23,28 @@ public class TermOffsetFunction implements com.google.common.base.Function<Tuple
         this.tfPopulator = tfPopulator;
     }
     
+    public TermOffsetPopulator getPopulator() {
+        return tfPopulator;
+    }
+    
     @Override
     public Tuple3<Key,Document,Map<String,Object>> apply(Tuple2<Key,Document> from) {
         Document merged = from.second();
         Map<String,Object> map = new HashMap<>();
-        Attribute<?> docKeyAttr = merged.get(Document.DOCKEY_FIELD_NAME);
+        
+        Set<Key> docKeys = getDocKeys(from);
+        Set<String> fields = getFieldsToRemove(from.second(), tfPopulator.getTermFrequencyFieldValues());
+        
+        map.putAll(tfPopulator.getContextMap(from.first(), docKeys, fields));
+        merged.putAll(tfPopulator.document(), false);
+        return Tuples.tuple(from.first(), merged, map);
+    }
+    
+    /**
+     * @return the set of keys for the documents merged into this one
+     */
+    static Set<Key> getDocKeys(Tuple2<Key,Document> from) {
+        Attribute<?> docKeyAttr = from.second().get(Document.DOCKEY_FIELD_NAME);
         
         // gather the set of doc keys
         Set<Key> docKeys = new HashSet<>();
@@ -46,15 +63,10 @@ public class TermOffsetFunction implements com.google.common.base.Function<Tuple
         } else {
             throw new IllegalStateException("Unexpected Attribute type for " + Document.DOCKEY_FIELD_NAME + ": " + docKeys.getClass());
         }
-        
-        Set<String> fields = getFieldsToRemove(from.second(), tfPopulator.getTermFrequencyFieldValues());
-        
-        map.putAll(tfPopulator.getContextMap(from.first(), docKeys, fields));
-        merged.putAll(tfPopulator.document(), false);
-        return Tuples.tuple(from.first(), merged, map);
+        return docKeys;
     }
     
-    private Set<String> getFieldsToRemove(Document doc, Multimap<String,String> tfFVs) {
+    static Set<String> getFieldsToRemove(Document doc, Multimap<String,String> tfFVs) {
         Set<String> fieldsToRemove = new HashSet<>();
         Set<String> docFields = doc.getDictionary().keySet();
         Set<String> tfFields = tfFVs.keySet();
@@ -16,6 +16,7 @@ import datawave.data.type.NoOpType;
 import datawave.data.type.Type;
 import datawave.ingest.protobuf.TermWeight;
 import datawave.ingest.protobuf.TermWeightPosition;
+import datawave.query.jexl.functions.PackedTermPositions;
 import datawave.query.jexl.functions.TermFrequencyList;
 import datawave.query.predicate.EventDataQueryFilter;
 import datawave.query.Constants;
@@ -23,6 +24,7 @@ import datawave.query.attributes.Content;
 import datawave.query.attributes.Document;
 import datawave.query.jexl.functions.ContentFunctions;
 import datawave.query.jexl.visitors.LiteralNodeSubsetVisitor;
+import datawave.query.util.Tuple2;
 
 import datawave.util.StringUtils;
 import org.apache.accumulo.core.data.Key;
@@ -61,6 +63,7 @@ public class TermOffsetPopulator {
     private SortedKeyValueIterator<Key,Value> source;
     private Document document;
     private Set<String> contentExpansionFields;
+    private boolean packedOffsets = false;
     
     public TermOffsetPopulator(Multimap<String,String> termFrequencyFieldValues, Set<String> contentExpansionFields, EventDataQueryFilter evaluationFilter,
                     SortedKeyValueIterator<Key,Value> source) {
@@ -78,6 +81,18 @@ public class TermOffsetPopulator {
         return termFrequencyFieldValues;
     }
     
+    public boolean isPackedOffsets() {
+        return packedOffsets;
+    }
+    
+    /**
+     * @param packedOffsets
+     *            if true, the term offsets are left packed in the TermWeight and only decoded, into primitive arrays, when a content function needs them
+     */
+    public void setPackedOffsets(boolean packedOffsets) {
+        this.packedOffsets = packedOffsets;
+    }
+    
     // merge two maps presuming both came from getContextMap()
     @SuppressWarnings("unchecked")
     public static Map<String,Object> mergeContextMap(Map<String,Object> map1, Map<String,Object> map2) {
@@ -174,28 +189,209 @@ public class TermOffsetPopulator {
         Map<String,TermFrequencyList> termOffsetMap = Maps.newHashMap();
         
         while (tfSource.hasTop()) {
-            Key key = tfSource.getTopKey();
-            FieldValue fv = FieldValue.getFieldValue(key);
-            
-            // add the zone and term to our internal document
-            Content attr = new Content(fv.getValue(), source.getTopKey(), evaluationFilter == null || evaluationFilter.keep(key));
-            
-            // no need to apply the evaluation filter here as the TermFrequencyIterator above is already doing more filtering than we can do here.
-            // So this filter is simply extraneous. However if the an EventDataQueryFilter implementation gets smarter somehow, then it can be added back in
-            // here.
-            // For example the AncestorQueryLogic may require this....
-            // if (evaluationFilter == null || evaluationFilter.apply(Maps.immutableEntry(key, StringUtils.EMPTY_STRING))) {
+            if (!addTermFrequency(tfSource.getTopKey(), tfSource.getTopValue(), document, termOffsetMap)) {
+                return null;
+            }
             
-            this.document.put(fv.getField(), attr);
+            try {
+                tfSource.next();
+            } catch (IOException ioe) {
+                log.error("Next failed: " + range, ioe);
+                break;
+            }
+        }
+        
+        // Load the actual map into map that will be put into the JexlContext
+        Map<String,Object> map = new HashMap<>();
+        map.put(Constants.TERM_OFFSET_MAP_JEXL_VARIABLE_NAME, termOffsetMap);
+        
+        return map;
+    }
+    
+    /**
+     * Build the TermOffset maps for a batch of documents in the same row, using a single scan of the term frequencies spanning all of them.
+     *
+     * @param docKeys
+     *            the key of each document
+     * @param keys
+     *            for each document, the set of keys that map to hits on tf fields
+     * @param fields
+     *            for each document, the set of fields to remove from the search space
+     * @return for each document, the document of term frequency content and the context map, or null where the context map could not be built
+     */
+    public List<Tuple2<Document,Map<String,Object>>> getContextMaps(List<Key> docKeys, List<Set<Key>> keys, List<Set<String>> fields) {
+        // only the fields which may be removed from every document's search space are pruned from the scan
+        Set<Key> allKeys = new HashSet<>();
+        Set<String> removable = null;
+        for (int i = 0; i < docKeys.size(); i++) {
+            allKeys.addAll(keys.get(i));
+            if (removable == null) {
+                removable = new HashSet<>(pruned(fields.get(i)));
+            } else {
+                removable.retainAll(pruned(fields.get(i)));
+            }
+        }
+        
+        Map<String,List<Entry<Key,Value>>> termFrequencies = fetchTermFrequencies(allKeys, removable);
+        
+        List<Tuple2<Document,Map<String,Object>>> contexts = new ArrayList<>(docKeys.size());
+        for (int i = 0; i < docKeys.size(); i++) {
+            contexts.add(buildContextMap(docKeys.get(i), getTermFrequencies(termFrequencies, keys.get(i)), fields.get(i)));
+        }
+        return contexts;
+    }
+    
+    /**
+     * Gather the term frequencies of a set of documents in the same row, in one pass over the range spanning them all.
+     *
+     * @param keys
+     *            the keys of the documents
+     * @param fields
+     *            the set of fields to remove from the search space, may be null
+     * @return the term frequency keys and values of each datatype\0uid, with an entry for each of the given keys
+     */
+    public Map<String,List<Entry<Key,Value>>> fetchTermFrequencies(Set<Key> keys, Set<String> fields) {
+        Map<String,List<Entry<Key,Value>>> termFrequencies = new HashMap<>();
+        for (Key key : keys) {
+            termFrequencies.put(key.getColumnFamily().toString(), new ArrayList<>());
+        }
+        
+        Set<String> removable = pruned(fields);
+        Multimap<String,String> tfFVs = termFrequencyFieldValues;
+        if (!removable.isEmpty()) {
+            tfFVs = HashMultimap.create(termFrequencyFieldValues);
+            removable.forEach(tfFVs::removeAll);
+        }
+        
+        TermFrequencyIterator tfSource = new TermFrequencyIterator(tfFVs, keys);
+        Range range = getRange(keys);
+        try {
+            tfSource.init(source, null, null);
+            tfSource.seek(range, null, false);
+            while (tfSource.hasTop()) {
+                Key key = tfSource.getTopKey();
+                List<Entry<Key,Value>> documentTermFrequencies = termFrequencies.get(getDataTypeUid(key));
+                if (documentTermFrequencies != null) {
+                    documentTermFrequencies.add(Maps.immutableEntry(new Key(key), new Value(tfSource.getTopValue())));
+                }
+                tfSource.next();
+            }
+        } catch (IOException e) {
+            log.error("Scan of the range failed: " + range, e);
+        }
+        return termFrequencies;
+    }
+    
+    /**
+     * @param termFrequencies
+     *            the term frequencies of each datatype\0uid, as returned by {@link #fetchTermFrequencies(Set, Set)}
+     * @param keys
+     *            the keys of a document
+     * @return the term frequencies of the document, or null if they were not all fetched
+     */
+    public static List<Entry<Key,Value>> getTermFrequencies(Map<String,List<Entry<Key,Value>>> termFrequencies, Set<Key> keys) {
+        List<Entry<Key,Value>> documentTermFrequencies = new ArrayList<>();
+        for (Key key : keys) {
+            List<Entry<Key,Value>> fetched = termFrequencies.get(key.getColumnFamily().toString());
+            if (fetched == null) {
+                return null;
+            }
+            documentTermFrequencies.addAll(fetched);
+        }
+        return documentTermFrequencies;
+    }
+    
+    /**
+     * Build the TermOffset map of a document from its fetched term frequencies
+     *
+     * @param docKey
+     *            key that maps to a document
+     * @param termFrequencies
+     *            the term frequencies of the document
+     * @param fields
+     *            set of fields to remove from the search space
+     * @return the document of term frequency content and the context map, or null where the context map could not be built
+     */
+    public Tuple2<Document,Map<String,Object>> buildContextMap(Key docKey, List<Entry<Key,Value>> termFrequencies, Set<String> fields) {
+        Set<String> removable = pruned(fields);
+        Document tfDocument = new Document();
+        if (evaluationFilter != null) {
+            evaluationFilter.startNewDocument(docKey);
+        }
+        
+        Map<String,TermFrequencyList> termOffsetMap = Maps.newHashMap();
+        Map<String,Object> map = new HashMap<>();
+        map.put(Constants.TERM_OFFSET_MAP_JEXL_VARIABLE_NAME, termOffsetMap);
+        for (Entry<Key,Value> tf : termFrequencies) {
+            if (removable.contains(FieldValue.getFieldValue(tf.getKey()).getField())) {
+                continue;
+            }
+            if (!addTermFrequency(tf.getKey(), tf.getValue(), tfDocument, termOffsetMap)) {
+                map = null;
+                break;
+            }
+        }
+        return new Tuple2<>(tfDocument, map);
+    }
+    
+    /**
+     * @return the fields which would be removed from the search space, following {@link #getContextMap(Key, Set, Set)}
+     */
+    private Set<String> pruned(Set<String> fields) {
+        if (fields == null || fields.size() == termFrequencyFieldValues.size()) {
+            return Collections.emptySet();
+        }
+        return fields;
+    }
+    
+    /**
+     * @return the datatype\0uid of a term frequency key
+     */
+    private static String getDataTypeUid(Key tfKey) {
+        String cq = tfKey.getColumnQualifier().toString();
+        int datatypeEnd = cq.indexOf('\0');
+        int uidEnd = datatypeEnd < 0 ? -1 : cq.indexOf('\0', datatypeEnd + 1);
+        return uidEnd < 0 ? cq : cq.substring(0, uidEnd);
+    }
+    
+    /**
+     * Add a term frequency to the document and term offset map
+     *
+     * @return false if the term frequency could not be deserialized
+     */
+    private boolean addTermFrequency(Key key, Value value, Document document, Map<String,TermFrequencyList> termOffsetMap) {
+        FieldValue fv = FieldValue.getFieldValue(key);
+        
+        // add the zone and term to our internal document
+        Content attr = new Content(fv.getValue(), key, evaluationFilter == null || evaluationFilter.keep(key));
+        
+        // no need to apply the evaluation filter here as the TermFrequencyIterator above is already doing more filtering than we can do here.
+        // So this filter is simply extraneous. However if the an EventDataQueryFilter implementation gets smarter somehow, then it can be added back in
+        // here.
+        // For example the AncestorQueryLogic may require this....
+        // if (evaluationFilter == null || evaluationFilter.apply(Maps.immutableEntry(key, StringUtils.EMPTY_STRING))) {
+        
+        document.put(fv.getField(), attr);
+        
+        // if no content expansion fields then assume every field is permitted for unfielded content functions
+        TermFrequencyList.Zone twZone = new TermFrequencyList.Zone(fv.getField(),
+                        (contentExpansionFields == null || contentExpansionFields.isEmpty() || contentExpansionFields.contains(fv.getField())),
+                        TermFrequencyList.getEventId(key));
+        
+        if (packedOffsets) {
+            // copy the value, as it will not be decoded until after the source has moved on
+            PackedTermPositions positions = new PackedTermPositions(value.get().clone());
             
+            TermFrequencyList tfl = termOffsetMap.get(fv.getValue());
+            if (null == tfl) {
+                termOffsetMap.put(fv.getValue(), TermFrequencyList.packed(twZone, positions));
+            } else {
+                tfl.addOffsets(twZone, positions);
+            }
+        } else {
             TreeMultimap<TermFrequencyList.Zone,TermWeightPosition> offsets = TreeMultimap.create();
             try {
-                TermWeight.Info twInfo = TermWeight.Info.parseFrom(tfSource.getTopValue().get());
-                
-                // if no content expansion fields then assume every field is permitted for unfielded content functions
-                TermFrequencyList.Zone twZone = new TermFrequencyList.Zone(fv.getField(),
-                                (contentExpansionFields == null || contentExpansionFields.isEmpty() || contentExpansionFields.contains(fv.getField())),
-                                TermFrequencyList.getEventId(key));
+                TermWeight.Info twInfo = TermWeight.Info.parseFrom(value.get());
                 
                 TermWeightPosition.Builder position = new TermWeightPosition.Builder();
                 for (int i = 0; i < twInfo.getTermOffsetCount(); i++) {
@@ -205,9 +401,9 @@ public class TermOffsetPopulator {
                 }
                 
             } catch (InvalidProtocolBufferException e) {
-                log.error("Could not deserialize TermWeight protocol buffer for: " + source.getTopKey());
+                log.error("Could not deserialize TermWeight protocol buffer for: " + key);
                 
-                return null;
+                return false;
             }
             
             // First time looking up this term in a field
@@ -219,20 +415,8 @@ public class TermOffsetPopulator {
                 // offsets from other fields in the same term
                 tfl.addOffsets(offsets);
             }
-            
-            try {
-                tfSource.next();
-            } catch (IOException ioe) {
-                log.error("Next failed: " + range, ioe);
-                break;
-            }
         }
-        
-        // Load the actual map into map that will be put into the JexlContext
-        Map<String,Object> map = new HashMap<>();
-        map.put(Constants.TERM_OFFSET_MAP_JEXL_VARIABLE_NAME, termOffsetMap);
-        
-        return map;
+        return true;
     }
     
     public static boolean isContentFunctionTerm(String functionName) {
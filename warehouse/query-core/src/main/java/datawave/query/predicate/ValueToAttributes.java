@@ -15,6 +15,7 @@ import datawave.query.Constants;
 import datawave.query.attributes.Attribute;
 import datawave.query.attributes.AttributeFactory;
 import datawave.query.attributes.Attributes;
+import datawave.query.attributes.MaterializationCounts;
 import datawave.query.attributes.TypeAttribute;
 import datawave.query.composite.CompositeMetadata;
 import datawave.query.jexl.JexlASTHelper;
@@ -56,7 +57,13 @@ public class ValueToAttributes implements Function<Entry<Key,String>,Iterable<En
     private LRUMap cvCache = new LRUMap(256);
     
     public ValueToAttributes(CompositeMetadata compositeMetadata, TypeMetadata typeMetadata, EventDataQueryFilter attrFilter, MarkingFunctions markingFunctions) {
+        this(compositeMetadata, typeMetadata, attrFilter, markingFunctions, null);
+    }
+    
+    public ValueToAttributes(CompositeMetadata compositeMetadata, TypeMetadata typeMetadata, EventDataQueryFilter attrFilter, MarkingFunctions markingFunctions,
+                    MaterializationCounts lazyNormalization) {
         this.attrFactory = new AttributeFactory(typeMetadata);
+        this.attrFactory.setLazyNormalization(lazyNormalization);
         this.markingFunctions = markingFunctions;
         this.attrFilter = attrFilter;
         if (compositeMetadata != null) {
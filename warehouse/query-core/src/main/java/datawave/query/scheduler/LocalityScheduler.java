@@ -0,0 +1,28 @@
+package datawave.query.scheduler;
+
+import java.util.Set;
+
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.tables.BatchScannerSession;
+import datawave.query.tables.LocalityBatchScannerSession;
+import datawave.query.tables.ScannerFactory;
+import datawave.query.util.MetadataHelperFactory;
+import org.apache.accumulo.core.security.Authorizations;
+
+/**
+ * Purpose: Pushes down individual queries to the Tservers as the {@link PushdownScheduler} does, but scans the chunks of each tserver from a queue of its own,
+ * limiting the scans in flight per tserver for this query and, through the {@link datawave.query.tables.async.ServerScanBudget}, across the web server, and
+ * starting the scans of the least busy tservers first.
+ */
+public class LocalityScheduler extends PushdownScheduler {
+    
+    public LocalityScheduler(ShardQueryConfiguration config, ScannerFactory scannerFactory, MetadataHelperFactory metaFactory) {
+        super(config, scannerFactory, metaFactory);
+    }
+    
+    @Override
+    protected BatchScannerSession newSession(String tableName, Set<Authorizations> auths) throws Exception {
+        return scannerFactory.newQueryScanner(LocalityBatchScannerSession.class, tableName, auths, config.getQuery())
+                        .setMaxScansPerServer(config.getMaxScansPerServer());
+    }
+}
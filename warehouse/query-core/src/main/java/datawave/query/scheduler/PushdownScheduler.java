@@ -149,12 +149,18 @@ public class PushdownScheduler extends Scheduler {
         Iterator<List<ScannerChunk>> chunkIter = Iterators.transform(getQueryDataIterator(), new PushdownFunction(tl, config, settings, tableId));
         
         try {
-            session = scannerFactory.newQueryScanner(tableName, auths, config.getQuery());
+            session = newSession(tableName, auths);
             
             if (config.getSpeculativeScanning()) {
                 session.setSpeculativeScanning(true);
             }
             
+            if (config.getHedgedScanning()) {
+                session.setHedgedScanning(true);
+                session.setHedgeLatencyPercentile(config.getHedgeLatencyPercentile());
+                session.setMaxHedgeFraction(config.getMaxHedgeFraction());
+            }
+            
             session.addVisitor(new VisitorFunction(config, metadataHelper));
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -175,6 +181,16 @@ public class PushdownScheduler extends Scheduler {
         return session;
     }
     
+    /**
+     * @param tableName
+     * @param auths
+     * @return the session which scans the chunks of this scheduler
+     * @throws Exception
+     */
+    protected BatchScannerSession newSession(String tableName, Set<Authorizations> auths) throws Exception {
+        return scannerFactory.newQueryScanner(tableName, auths, config.getQuery());
+    }
+    
     protected Iterator<QueryData> getQueryDataIterator() {
         return config.getQueries();
     }
@@ -39,16 +39,21 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Service;
 
+import datawave.query.tables.async.HedgeArbiter;
+import datawave.query.tables.async.HedgeBudget;
+import datawave.query.tables.async.HedgedScan;
 import datawave.query.tables.async.Scan;
 import datawave.query.tables.async.ScannerChunk;
 import datawave.query.tables.async.SessionArbiter;
 import datawave.query.tables.async.SpeculativeScan;
+import datawave.query.tables.stats.ScanLatencyTracker;
 import datawave.webservice.query.Query;
 
 /**
  * 
  */
-public class BatchScannerSession extends ScannerSession implements Iterator<Entry<Key,Value>>, FutureCallback<Scan>, SessionArbiter, UncaughtExceptionHandler {
+public class BatchScannerSession extends ScannerSession implements Iterator<Entry<Key,Value>>, FutureCallback<Scan>, SessionArbiter, HedgeArbiter,
+                UncaughtExceptionHandler {
     
     private static final int THIRTY_MINUTES = 108000000;
     
@@ -104,6 +109,35 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     
     protected int threadCount = 5;
     
+    /**
+     * Hedge scans that run longer than the given percentile of recent scan latencies
+     */
+    protected boolean hedgedScanning = false;
+    
+    protected double hedgeLatencyPercentile = 0.95;
+    
+    /**
+     * The maximum number of hedges launched by this session, as a fraction of the scans it has submitted
+     */
+    protected double maxHedgeFraction = 0.1;
+    
+    /**
+     * The number of completed scans required before the latency percentile is trusted
+     */
+    protected int minHedgeSamples = 10;
+    
+    protected ScanLatencyTracker latencyTracker = new ScanLatencyTracker(256);
+    
+    protected AtomicInteger scansSubmitted = new AtomicInteger(0);
+    
+    protected AtomicInteger hedgesLaunched = new AtomicInteger(0);
+    
+    /**
+     * Runs the primary and hedge scans of every hedged chunk in this session. It is unbounded since each hedged scan holds a thread of the session while it
+     * waits on its children, so at most two child threads are busy per session thread.
+     */
+    protected ExecutorService hedgeService = null;
+    
     private class BatchReaderThreadFactory implements ThreadFactory {
         
         private ThreadFactory dtf = Executors.defaultThreadFactory();
@@ -356,49 +390,63 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
             } else
                 numChunks.incrementAndGet();
             
-            Scan scan = null;
+            submitScan(newScan(chunk), true);
+        }
+        
+    }
+    
+    /**
+     * Builds the scan of a chunk, speculative or hedged if so configured
+     * 
+     * @param chunk
+     * @return the scan
+     */
+    protected Scan newScan(ScannerChunk chunk) {
+        Scan scan = null;
+        
+        if (speculativeScanning) {
             
-            if (speculativeScanning) {
-                
-                if (log.isTraceEnabled()) {
-                    log.trace("Using speculative execution");
-                }
-                
-                chunk.setQueryId(settings.getId().toString());
-                
-                scan = new SpeculativeScan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService);
-                
-                scan.setVisitors(visitorFunctions);
-                
-                Scan childScan = new Scan(localTableName, localAuths, new ScannerChunk(chunk), delegatorReference, BatchResource.class,
-                                ((SpeculativeScan) scan).getQueue(), listenerService);
-                
-                childScan.setVisitors(visitorFunctions);
-                
-                ((SpeculativeScan) scan).addScan(childScan);
-                
-                childScan = new Scan(localTableName, localAuths, new ScannerChunk(chunk), delegatorReference, delegatedResourceInitializer,
-                                ((SpeculativeScan) scan).getQueue(), listenerService);
-                
-                childScan.setVisitors(visitorFunctions);
-                
-                ((SpeculativeScan) scan).addScan(childScan);
-                
-            } else {
-                scan = new Scan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService);
+            if (log.isTraceEnabled()) {
+                log.trace("Using speculative execution");
             }
             
-            if (backoffEnabled) {
-                scan.setSessionArbiter(this);
-            }
+            chunk.setQueryId(settings.getId().toString());
+            
+            scan = new SpeculativeScan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService);
+            
             scan.setVisitors(visitorFunctions);
-            scan.setTimeout(scanLimitTimeout);
-            if (log.isTraceEnabled()) {
-                log.trace("Adding scanner " + chunk);
-            }
-            submitScan(scan, true);
+            
+            Scan childScan = new Scan(localTableName, localAuths, new ScannerChunk(chunk), delegatorReference, BatchResource.class,
+                            ((SpeculativeScan) scan).getQueue(), listenerService);
+            
+            childScan.setVisitors(visitorFunctions);
+            
+            ((SpeculativeScan) scan).addScan(childScan);
+            
+            childScan = new Scan(localTableName, localAuths, new ScannerChunk(chunk), delegatorReference, delegatedResourceInitializer,
+                            ((SpeculativeScan) scan).getQueue(), listenerService);
+            
+            childScan.setVisitors(visitorFunctions);
+            
+            ((SpeculativeScan) scan).addScan(childScan);
+            
+        } else if (hedgedScanning) {
+            chunk.setQueryId(settings.getId().toString());
+            scan = new HedgedScan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService,
+                            hedgeService, this);
+        } else {
+            scan = new Scan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService);
         }
         
+        if (backoffEnabled) {
+            scan.setSessionArbiter(this);
+        }
+        scan.setVisitors(visitorFunctions);
+        scan.setTimeout(scanLimitTimeout);
+        if (log.isTraceEnabled()) {
+            log.trace("Adding scanner " + chunk);
+        }
+        return scan;
     }
     
     /**
@@ -434,6 +482,10 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
                 ((SpeculativeScan) scan).addScan(new Scan(localTableName, localAuths, new ScannerChunk(chunk), delegatorReference,
                                 delegatedResourceInitializer, ((SpeculativeScan) scan).getQueue(), listenerService));
                 
+            } else if (hedgedScanning) {
+                chunk.setQueryId(settings.getId().toString());
+                scan = new HedgedScan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService,
+                                hedgeService, this);
             } else {
                 scan = new Scan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, resultQueue, listenerService);
             }
@@ -453,8 +505,10 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
     
     protected void submitScan(Scan scan, boolean increment) {
         ListenableFuture<Scan> future = (ListenableFuture<Scan>) service.submit(scan);
-        if (increment)
+        if (increment) {
             runnableCount.incrementAndGet();
+            scansSubmitted.incrementAndGet();
+        }
         Futures.addCallback(future, this);
     }
     
@@ -511,6 +565,8 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
             
             finishedScan.close();
             
+            latencyTracker.record(finishedScan.elapsedMillis());
+            
             if (null != stats && null != finishedScan.getStats()) {
                 synchronized (stats) {
                     stats.merge(finishedScan.getStats());
@@ -633,6 +689,9 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         protected void shutdownServices() {
             service.shutdownNow();
             listenerService.shutdownNow();
+            if (null != hedgeService) {
+                hedgeService.shutdownNow();
+            }
             int count = 0;
             try {
                 while (!service.awaitTermination(250, TimeUnit.MILLISECONDS) && count < MAX_WAIT) {
@@ -653,6 +712,9 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         stopAsync();
         service.shutdownNow();
         listenerService.shutdownNow();
+        if (null != hedgeService) {
+            hedgeService.shutdownNow();
+        }
     }
     
     public void addVisitor(Function<ScannerChunk,ScannerChunk> visitorFunction) {
@@ -695,6 +757,73 @@ public class BatchScannerSession extends ScannerSession implements Iterator<Entr
         this.speculativeScanning = speculative;
     }
     
+    public void setHedgedScanning(boolean hedgedScanning) {
+        this.hedgedScanning = hedgedScanning;
+        if (hedgedScanning && null == hedgeService) {
+            hedgeService = Executors.newCachedThreadPool(new BatchReaderThreadFactory(threadId, this));
+        }
+    }
+    
+    public void setHedgeLatencyPercentile(double hedgeLatencyPercentile) {
+        this.hedgeLatencyPercentile = hedgeLatencyPercentile;
+    }
+    
+    public void setMaxHedgeFraction(double maxHedgeFraction) {
+        this.maxHedgeFraction = maxHedgeFraction;
+    }
+    
+    public void setMinHedgeSamples(int minHedgeSamples) {
+        this.minHedgeSamples = minHedgeSamples;
+    }
+    
+    @Override
+    public long getHedgeDelay() {
+        if (latencyTracker.getSampleCount() < minHedgeSamples) {
+            return -1;
+        }
+        return latencyTracker.getPercentile(hedgeLatencyPercentile);
+    }
+    
+    @Override
+    public ScannerChunk tryStartHedge(ScannerChunk chunk) {
+        if (!reserveHedge()) {
+            return null;
+        }
+        // a tablet is only served by one tablet server, so the hedge goes to the same server in a scan session of its own
+        return new ScannerChunk(chunk);
+    }
+    
+    /**
+     * Reserve a hedge against both the limit for this session and the limit across the JVM
+     * 
+     * @return true if a hedge may be launched
+     */
+    protected boolean reserveHedge() {
+        int launched;
+        do {
+            launched = hedgesLaunched.get();
+            if (launched + 1 > maxHedgeFraction * scansSubmitted.get()) {
+                return false;
+            }
+        } while (!hedgesLaunched.compareAndSet(launched, launched + 1));
+        
+        if (!HedgeBudget.global().tryAcquire()) {
+            hedgesLaunched.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+    
+    @Override
+    public void hedgeFinished(boolean won) {
+        HedgeBudget.global().release();
+        if (null != stats) {
+            synchronized (stats) {
+                stats.incrementHedgedScans(won);
+            }
+        }
+    }
+    
     @Override
     public void uncaughtException(Thread t, Throwable e) {
         t.interrupt();
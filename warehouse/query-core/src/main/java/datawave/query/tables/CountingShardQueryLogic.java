@@ -1,23 +1,35 @@
 package datawave.query.tables;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import datawave.core.iterators.ResultAggregatingIterator;
 import datawave.core.iterators.ResultCountingIterator;
+import datawave.query.Constants;
+import datawave.query.QueryParameters;
 import datawave.query.config.ShardQueryConfiguration;
 import datawave.query.scheduler.PushdownScheduler;
 import datawave.query.scheduler.Scheduler;
 import datawave.query.tables.shard.CountAggregatingIterator;
+import datawave.query.tables.shard.ResultAggregateMergingIterator;
 import datawave.query.transformer.ShardQueryCountTableTransformer;
 import datawave.webservice.query.Query;
+import datawave.webservice.query.exception.QueryException;
 import datawave.webservice.query.logic.QueryLogicTransformer;
 
 import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.commons.collections4.iterators.TransformIterator;
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 /**
  * A simple extension of the basic ShardQueryTable which applies a counting iterator on top of the "normal" iterator stack.
  * 
- * 
- * 
+ * If the {@link QueryParameters#HISTOGRAM_FIELDS} or {@link QueryParameters#DISTINCT_COUNT_FIELDS} parameters are given, the documents are instead aggregated
+ * within the QueryIterator into a count, approximate distinct value counts and value histograms, which are merged per range on the tservers and then on the
+ * web server. Each histogram keeps at most {@link QueryParameters#MAX_HISTOGRAM_VALUES} distinct values, with the documents holding any other value counted
+ * together.
  */
 public class CountingShardQueryLogic extends ShardQueryLogic {
     private static final Logger log = Logger.getLogger(CountingShardQueryLogic.class);
@@ -42,14 +54,67 @@ public class CountingShardQueryLogic extends ShardQueryLogic {
     
     @Override
     public TransformIterator getTransformIterator(Query settings) {
+        if (getConfig().isAggregateResults()) {
+            return new ResultAggregateMergingIterator(this.iterator(), (ShardQueryCountTableTransformer) getTransformer(settings));
+        }
         return new CountAggregatingIterator(this.iterator(), getTransformer(settings));
     }
     
     @Override
     public Scheduler getScheduler(ShardQueryConfiguration config, ScannerFactory scannerFactory) {
         PushdownScheduler scheduler = new PushdownScheduler(config, scannerFactory, this.metadataHelperFactory);
-        scheduler.addSetting(new IteratorSetting(config.getBaseIteratorPriority() + 50, "counter", ResultCountingIterator.class.getName()));
+        if (config.isAggregateResults()) {
+            scheduler.addSetting(new IteratorSetting(config.getBaseIteratorPriority() + 50, "aggregator", ResultAggregatingIterator.class.getName()));
+        } else {
+            scheduler.addSetting(new IteratorSetting(config.getBaseIteratorPriority() + 50, "counter", ResultCountingIterator.class.getName()));
+        }
         return scheduler;
     }
     
+    @Override
+    protected void loadQueryParameters(ShardQueryConfiguration config, Query settings) throws QueryException {
+        super.loadQueryParameters(config, settings);
+        
+        Set<String> histogramFields = getFieldsParameter(settings, QueryParameters.HISTOGRAM_FIELDS);
+        Set<String> distinctCountFields = getFieldsParameter(settings, QueryParameters.DISTINCT_COUNT_FIELDS);
+        if (!histogramFields.isEmpty() || !distinctCountFields.isEmpty()) {
+            config.setAggregateResults(true);
+            config.setHistogramFields(histogramFields);
+            config.setDistinctCountFields(distinctCountFields);
+            
+            String maxHistogramValues = settings.findParameter(QueryParameters.MAX_HISTOGRAM_VALUES).getParameterValue().trim();
+            if (StringUtils.isNotBlank(maxHistogramValues)) {
+                config.setMaxHistogramValues(parsePositiveInt(QueryParameters.MAX_HISTOGRAM_VALUES, maxHistogramValues));
+            }
+            
+            // the aggregated fields must be kept on the documents, along with any projection given by the user
+            Set<String> projectFields = new HashSet<>(histogramFields);
+            projectFields.addAll(distinctCountFields);
+            if (config.getProjectFields() != null && !config.getProjectFields().isEmpty()) {
+                projectFields.addAll(config.getProjectFields());
+            }
+            config.setProjectFields(projectFields);
+        } else {
+            config.setAggregateResults(false);
+        }
+    }
+    
+    private Set<String> getFieldsParameter(Query settings, String parameter) {
+        Set<String> fields = new HashSet<>();
+        String value = settings.findParameter(parameter).getParameterValue().trim();
+        if (StringUtils.isNotBlank(value)) {
+            fields.addAll(Arrays.asList(StringUtils.split(value, Constants.PARAM_VALUE_SEP)));
+        }
+        return fields;
+    }
+    
+    @Override
+    public Set<String> getOptionalQueryParameters() {
+        Set<String> optionalParams = super.getOptionalQueryParameters();
+        optionalParams.add(QueryParameters.HISTOGRAM_FIELDS);
+        optionalParams.add(QueryParameters.DISTINCT_COUNT_FIELDS);
+        optionalParams.add(QueryParameters.MAX_HISTOGRAM_VALUES);
+        return optionalParams;
+    }
+    
 }
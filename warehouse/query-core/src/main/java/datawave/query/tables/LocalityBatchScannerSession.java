@@ -0,0 +1,281 @@
+package datawave.query.tables;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import datawave.query.tables.async.Scan;
+import datawave.query.tables.async.ScannerChunk;
+import datawave.query.tables.async.ServerScanBudget;
+import org.apache.log4j.Logger;
+
+/**
+ * A batch scanner session which queues its chunks per tablet server rather than in one shared queue, and only runs as many scans at once against each tablet
+ * server as the per server limit of the query and the {@link ServerScanBudget} of this JVM allow. Queued scans are started on the least busy tablet servers
+ * first, so that a query with most of its shards on a few tablet servers does not overload them while the others idle.
+ * <p>
+ * Tablets which move while they are scanned are followed by the Accumulo client itself, which never surfaces a NotServingTabletException, so a scan is not
+ * relocated here: it stays counted against the tablet server it was started against until it finishes.
+ */
+public class LocalityBatchScannerSession extends BatchScannerSession {
+    
+    private static final Logger log = Logger.getLogger(LocalityBatchScannerSession.class);
+    
+    private static final int QUEUE_MULTIPLIER = 25;
+    
+    private static final int RANGE_MULTIPLIER = 5;
+    
+    /**
+     * The longest the session waits for a slot before trying its queues again. Scans of this session signal when they finish, but slots of the budget released
+     * by other sessions are not signalled.
+     */
+    private static final long SLOT_WAIT_MS = 100;
+    
+    /**
+     * The scans waiting to run, per tablet server
+     */
+    protected final Map<String,Deque<Scan>> serverQueues = new HashMap<>();
+    
+    /**
+     * The scans of this session running, per tablet server
+     */
+    protected final Map<String,AtomicInteger> serverInFlight = Maps.newConcurrentMap();
+    
+    /**
+     * The tablet server each running scan was started against, so that its slot is released there
+     */
+    protected final Map<Scan,String> runningScans = Maps.newConcurrentMap();
+    
+    protected int queuedScans = 0;
+    
+    protected int maxScansPerServer = 4;
+    
+    protected ServerScanBudget budget = ServerScanBudget.global();
+    
+    public LocalityBatchScannerSession(ScannerSession other) {
+        super(other);
+    }
+    
+    public LocalityBatchScannerSession setMaxScansPerServer(int maxScansPerServer) {
+        Preconditions.checkArgument(maxScansPerServer > 0, "maxScansPerServer must be positive: %s", maxScansPerServer);
+        this.maxScansPerServer = maxScansPerServer;
+        return this;
+    }
+    
+    public LocalityBatchScannerSession setBudget(ServerScanBudget budget) {
+        this.budget = budget;
+        return this;
+    }
+    
+    @Override
+    protected void run() throws Exception {
+        try {
+            while (scannerBatches.hasNext() || hasQueuedScans() || runnableCount.get() > 0) {
+                // keep the queues full enough to choose among the tablet servers
+                while (scannerBatches.hasNext() && getQueuedScans() < threadCount * QUEUE_MULTIPLIER) {
+                    pushChunks(scannerBatches.next());
+                }
+                
+                synchronized (this) {
+                    if (submitQueuedScans() == 0 && isRunning()) {
+                        // every tablet server with queued scans is at its limit, or the session is at its limit of running scans
+                        wait(SLOT_WAIT_MS);
+                    }
+                }
+                
+                if (!isRunning()) {
+                    if (log.isTraceEnabled())
+                        log.trace(" no longer running");
+                    service.shutdownNow();
+                    releaseAll();
+                    return;
+                }
+                if (Thread.interrupted()) {
+                    service.shutdownNow();
+                    releaseAll();
+                    throw new InterruptedException("Interrupted while parking");
+                }
+            }
+            service.shutdown();
+            while (!service.awaitTermination(250, TimeUnit.MILLISECONDS)) {}
+        } catch (Exception e) {
+            uncaughtExceptionHandler.uncaughtException(Thread.currentThread(), e);
+            Throwables.propagate(e);
+        }
+    }
+    
+    @Override
+    protected void pushChunks(List<ScannerChunk> chunks) {
+        for (ScannerChunk chunk : chunks) {
+            countChunk(chunk.getLastKnownLocation());
+            enqueue(newScan(chunk), false);
+        }
+    }
+    
+    protected void countChunk(String server) {
+        AtomicInteger numChunks = serverMap.get(server);
+        if (numChunks == null) {
+            numChunks = new AtomicInteger(1);
+            serverMap.put(server, numChunks);
+        } else
+            numChunks.incrementAndGet();
+    }
+    
+    protected synchronized void enqueue(Scan scan, boolean first) {
+        String server = scan.getScanLocation();
+        Deque<Scan> queue = serverQueues.computeIfAbsent(server, s -> new ArrayDeque<>());
+        if (first) {
+            queue.addFirst(scan);
+        } else {
+            queue.addLast(scan);
+        }
+        queuedScans++;
+        updateQueueDepth(server, queue.size());
+    }
+    
+    protected synchronized boolean hasQueuedScans() {
+        return queuedScans > 0;
+    }
+    
+    protected synchronized int getQueuedScans() {
+        return queuedScans;
+    }
+    
+    /**
+     * Starts queued scans one tablet server at a time, least busy first, until every tablet server with queued scans is at its limit or the session is at its
+     * limit of running scans.
+     *
+     * @return the number of scans started
+     */
+    protected synchronized int submitQueuedScans() {
+        int submitted = 0;
+        boolean progress = true;
+        while (progress && runnableCount.get() < threadCount * RANGE_MULTIPLIER) {
+            progress = false;
+            // order by a snapshot of the running scans, as they change while sorting
+            Map<String,Integer> inFlight = new HashMap<>();
+            for (String server : serverQueues.keySet()) {
+                inFlight.put(server, getInFlight(server));
+            }
+            List<String> servers = new ArrayList<>(inFlight.keySet());
+            servers.sort(Comparator.comparing(inFlight::get));
+            for (String server : servers) {
+                if (runnableCount.get() >= threadCount * RANGE_MULTIPLIER) {
+                    break;
+                }
+                if (getInFlight(server) >= maxScansPerServer || !budget.tryAcquire(server)) {
+                    continue;
+                }
+                Deque<Scan> queue = serverQueues.get(server);
+                Scan scan = queue.poll();
+                queuedScans--;
+                updateQueueDepth(server, queue.size());
+                if (queue.isEmpty()) {
+                    serverQueues.remove(server);
+                }
+                
+                serverInFlight.computeIfAbsent(server, s -> new AtomicInteger(0)).incrementAndGet();
+                runningScans.put(scan, server);
+                submitScan(scan, true);
+                submitted++;
+                progress = true;
+            }
+        }
+        return submitted;
+    }
+    
+    protected int getInFlight(String server) {
+        AtomicInteger inFlight = serverInFlight.get(server);
+        return null == inFlight ? 0 : inFlight.get();
+    }
+    
+    protected void updateQueueDepth(String server, int depth) {
+        if (null != stats) {
+            stats.setServerQueueDepth(server, depth);
+        }
+    }
+    
+    /**
+     * Releases the slot of a scan on the tablet server it was started against
+     *
+     * @param scan
+     */
+    protected void release(Scan scan) {
+        String server = runningScans.remove(scan);
+        if (null != server) {
+            serverInFlight.get(server).decrementAndGet();
+            budget.release(server);
+        }
+    }
+    
+    /**
+     * Releases the slots of every scan still running, as scans which were submitted but never started will never complete
+     */
+    protected void releaseAll() {
+        for (Scan scan : new ArrayList<>(runningScans.keySet())) {
+            release(scan);
+        }
+    }
+    
+    /**
+     * Wakes the session to start the queued scans which may now run
+     */
+    protected synchronized void scanCompleted() {
+        notifyAll();
+    }
+    
+    @Override
+    public void close() {
+        super.close();
+        releaseAll();
+        scanCompleted();
+    }
+    
+    @Override
+    protected void submitScan(final Scan scan, boolean increment) {
+        ListenableFuture<Scan> future = (ListenableFuture<Scan>) service.submit(scan);
+        if (increment) {
+            runnableCount.incrementAndGet();
+            scansSubmitted.incrementAndGet();
+        }
+        Futures.addCallback(future, new FutureCallback<Scan>() {
+            @Override
+            public void onSuccess(Scan finishedScan) {
+                LocalityBatchScannerSession.this.onSuccess(finishedScan);
+            }
+            
+            @Override
+            public void onFailure(Throwable t) {
+                LocalityBatchScannerSession.this.onFailure(scan, t);
+            }
+        });
+    }
+    
+    @Override
+    public void onSuccess(Scan finishedScan) {
+        // a time sliced scan is resubmitted and keeps its slot
+        if (finishedScan.finished()) {
+            release(finishedScan);
+        }
+        super.onSuccess(finishedScan);
+        scanCompleted();
+    }
+    
+    protected void onFailure(Scan scan, Throwable t) {
+        release(scan);
+        scanCompleted();
+        onFailure(t);
+    }
+}
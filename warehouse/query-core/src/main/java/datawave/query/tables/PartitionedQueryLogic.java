@@ -105,26 +105,39 @@ public class PartitionedQueryLogic extends ShardQueryLogic {
     public Iterator<Entry<Key,Value>> iterator() {
         return new Iterator<Entry<Key,Value>>() {
             Iterator<Entry<Key,Value>> currentChunk = scanIterator();
+            long chunkResults = 0;
+            boolean chunkComplete = false;
             
             @Override
             public boolean hasNext() {
-                while (chunker.hasNext() && !currentChunk.hasNext()) {
+                while (!currentChunk.hasNext()) {
+                    // let the chunker see the results of the chunk before it decides on the next one
+                    if (!chunkComplete) {
+                        chunker.chunkComplete(chunkResults);
+                        chunkComplete = true;
+                    }
+                    if (!chunker.hasNext()) {
+                        return false;
+                    }
                     try {
                         close();
                         GenericQueryConfiguration nextConfig = initializeNextChunk();
                         setupQuery(nextConfig);
                         this.currentChunk = scanIterator();
+                        this.chunkResults = 0;
+                        this.chunkComplete = false;
                     } catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
                     } catch (Exception e) {
                         log.warn("Could not process a chunk.", e);
                     }
                 }
-                return currentChunk.hasNext();
+                return true;
             }
             
             @Override
             public Entry<Key,Value> next() {
+                chunkResults++;
                 return this.currentChunk.next();
             }
             
@@ -210,6 +210,14 @@ public class RangeStreamScanner extends ScannerSession implements Callable<Range
         return (null != currentEntry);
     }
     
+    /**
+     * The scanner runs on the executor rather than as a service, so it has completed once it has finished its ranges and returned all of their results.
+     */
+    @Override
+    public boolean isComplete() {
+        return finished && !forceClose && uncaughtExceptionHandler.getThrowable() == null && null == currentEntry && resultQueue.isEmpty() && !flushNeeded();
+    }
+    
     private void submitTask() {
         // wait on results. submit the task if we can
         Future<RangeStreamScanner> future = myExecutor.submit(this);
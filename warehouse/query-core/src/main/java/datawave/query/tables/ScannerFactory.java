@@ -144,7 +144,24 @@ public class ScannerFactory {
      */
     public synchronized BatchScannerSession newQueryScanner(final String tableName, final Set<Authorizations> auths, Query settings) throws Exception {
         
-        return newLimitedScanner(BatchScannerSession.class, tableName, auths, settings).setThreads(scanQueue.getCapacity());
+        return newQueryScanner(BatchScannerSession.class, tableName, auths, settings);
+    }
+    
+    /**
+     * Builds a new batch scanner session of the given type, with as many threads as the scanner queue
+     * 
+     * @param wrapper
+     * @param tableName
+     * @param auths
+     * @param settings
+     * @return
+     * @throws Exception
+     */
+    public synchronized <T extends BatchScannerSession> T newQueryScanner(Class<T> wrapper, final String tableName, final Set<Authorizations> auths,
+                    Query settings) throws Exception {
+        T session = newLimitedScanner(wrapper, tableName, auths, settings);
+        session.setThreads(scanQueue.getCapacity());
+        return session;
     }
     
     /**
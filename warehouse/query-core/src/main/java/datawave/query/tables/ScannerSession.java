@@ -348,6 +348,19 @@ public class ScannerSession extends AbstractExecutionThreadService implements It
         return 1;
     }
     
+    /**
+     * A session stops returning results when it has read all of its ranges, but also when it is closed or fails.
+     * 
+     * @return true if every range has been read and all of its results returned, false if the session is still running, was closed, or failed
+     */
+    public boolean isComplete() {
+        if (forceClose || uncaughtExceptionHandler.getThrowable() != null || null != currentEntry || !resultQueue.isEmpty() || flushNeeded()) {
+            return false;
+        }
+        State state = state();
+        return state == State.STOPPING || state == State.TERMINATED;
+    }
+    
     /**
      * Place all timers in a suspended state.
      */
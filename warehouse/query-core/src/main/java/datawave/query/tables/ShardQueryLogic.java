@@ -33,9 +33,11 @@ import datawave.query.planner.DefaultQueryPlanner;
 import datawave.query.planner.MetadataHelperQueryModelProvider;
 import datawave.query.planner.QueryModelProvider;
 import datawave.query.planner.QueryPlanner;
+import datawave.query.scheduler.LocalityScheduler;
 import datawave.query.scheduler.PushdownScheduler;
 import datawave.query.scheduler.Scheduler;
 import datawave.query.scheduler.SequentialScheduler;
+import datawave.query.tables.shard.TopKMergingIterator;
 import datawave.query.tables.stats.ScanSessionStats;
 import datawave.query.transformer.DocumentTransformer;
 import datawave.query.transformer.EventQueryDataDecoratorTransformer;
@@ -54,7 +56,10 @@ import datawave.webservice.query.Query;
 import datawave.webservice.query.QueryImpl.Parameter;
 import datawave.webservice.query.configuration.GenericQueryConfiguration;
 import datawave.webservice.query.configuration.QueryData;
+import datawave.webservice.query.exception.BadRequestQueryException;
+import datawave.webservice.query.exception.DatawaveErrorCode;
 import datawave.webservice.query.exception.QueryException;
+import datawave.webservice.query.iterator.DatawaveTransformIterator;
 import datawave.webservice.query.logic.BaseQueryLogic;
 import datawave.webservice.query.logic.QueryLogicTransformer;
 import datawave.webservice.query.logic.WritesQueryMetrics;
@@ -68,10 +73,12 @@ import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.collections4.iterators.TransformIterator;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -184,6 +191,11 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
     
     private CardinalityConfiguration cardinalityConfiguration = null;
     
+    /**
+     * the unique transform handed to the last transformer created, whose spilled signatures are released on close
+     */
+    private UniqueTransform uniqueTransform = null;
+    
     /**
      * Basic constructor
      */
@@ -559,6 +571,10 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             this.iterator = new DedupingIterator(this.iterator);
         }
         
+        if (null != config.getShardSampler()) {
+            this.iterator = config.getShardSampler().track(this.iterator);
+        }
+        
         stopwatch.stop();
         
         log.info(getStopwatchHeader(config));
@@ -593,8 +609,10 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         if (getConfig() != null) {
             transformer.setProjectFields(getConfig().getProjectFields());
             transformer.setBlacklistedFields(getConfig().getBlacklistedFields());
+            transformer.setShardSampler(getConfig().getShardSampler());
             if (getConfig().getUniqueFields() != null && !getConfig().getUniqueFields().isEmpty()) {
-                transformer.addTransform(new UniqueTransform(this, getConfig().getUniqueFields()));
+                uniqueTransform = new UniqueTransform(this, getConfig().getUniqueFields());
+                transformer.addTransform(uniqueTransform);
             }
             if (getConfig().getGroupFields() != null && !getConfig().getGroupFields().isEmpty()) {
                 transformer.addTransform(new GroupingTransform(this, getConfig().getGroupFields()));
@@ -604,6 +622,50 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         return transformer;
     }
     
+    @Override
+    public TransformIterator getTransformIterator(Query settings) {
+        if (getConfig() != null && getConfig().getTopK() > 0) {
+            // the tservers return the top k of each range, so merge them before transforming
+            return new DatawaveTransformIterator(new TopKMergingIterator(this.iterator(), getConfig().getTopK()), this.getTransformer(settings));
+        }
+        return super.getTransformIterator(settings);
+    }
+    
+    /**
+     * @return the value of the parameter, which must be a positive integer
+     * @throws BadRequestQueryException
+     *             if it is not
+     */
+    protected int parsePositiveInt(String parameter, String value) throws BadRequestQueryException {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the bad request
+        }
+        throw new BadRequestQueryException(DatawaveErrorCode.INVALID_FORMAT, MessageFormat.format("{0} must be a positive integer: {1}", parameter, value));
+    }
+    
+    /**
+     * @return the sample rate, which must be within (0, 1)
+     * @throws BadRequestQueryException
+     *             if it is not
+     */
+    protected double parseSampleRate(String value) throws BadRequestQueryException {
+        try {
+            double rate = Double.parseDouble(value);
+            if (rate > 0 && rate < 1) {
+                return rate;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the bad request
+        }
+        throw new BadRequestQueryException(DatawaveErrorCode.INVALID_FORMAT, MessageFormat.format("{0} must be a number within (0, 1): {1}",
+                        QueryParameters.SAMPLE_RATE, value));
+    }
+    
     protected void loadQueryParameters(ShardQueryConfiguration config, Query settings) throws QueryException {
         TraceStopwatch stopwatch = config.getTimers().newStartedStopwatch("ShardQueryLogic - Parse query parameters");
         boolean rawDataOnly = false;
@@ -760,6 +822,29 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
             }
         }
         
+        // Get the TOP_K and TOP_K_FIELD parameters if given
+        String topKString = settings.findParameter(QueryParameters.TOP_K).getParameterValue().trim();
+        if (org.apache.commons.lang.StringUtils.isNotBlank(topKString)) {
+            config.setTopK(parsePositiveInt(QueryParameters.TOP_K, topKString));
+            String topKField = settings.findParameter(QueryParameters.TOP_K_FIELD).getParameterValue().trim();
+            config.setTopKField(org.apache.commons.lang.StringUtils.isNotBlank(topKField) ? topKField : null);
+        }
+        
+        // Get the SAMPLE_RATE and SAMPLE_SEED parameters if given
+        String sampleRateString = settings.findParameter(QueryParameters.SAMPLE_RATE).getParameterValue().trim();
+        if (org.apache.commons.lang.StringUtils.isNotBlank(sampleRateString)) {
+            config.setSampleRate(parseSampleRate(sampleRateString));
+            String sampleSeedString = settings.findParameter(QueryParameters.SAMPLE_SEED).getParameterValue().trim();
+            if (org.apache.commons.lang.StringUtils.isNotBlank(sampleSeedString)) {
+                try {
+                    config.setSampleSeed(Long.parseLong(sampleSeedString));
+                } catch (NumberFormatException e) {
+                    throw new BadRequestQueryException(DatawaveErrorCode.INVALID_FORMAT, MessageFormat.format("{0} must be an integer: {1}",
+                                    QueryParameters.SAMPLE_SEED, sampleSeedString));
+                }
+            }
+        }
+        
         // Get the HIT_LIST parameter if given
         String hitListString = settings.findParameter(QueryParameters.HIT_LIST).getParameterValue().trim();
         if (org.apache.commons.lang.StringUtils.isNotBlank(hitListString)) {
@@ -1007,6 +1092,8 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
     protected Scheduler getScheduler(ShardQueryConfiguration config, ScannerFactory scannerFactory) {
         if (config.getSequentialScheduler()) {
             return new SequentialScheduler(config, scannerFactory);
+        } else if (config.getLocalityScheduler()) {
+            return new LocalityScheduler(config, scannerFactory, this.metadataHelperFactory);
         } else {
             return new PushdownScheduler(config, scannerFactory, this.metadataHelperFactory);
         }
@@ -1032,6 +1119,11 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         
         log.debug("Closing ShardQueryLogic: " + System.identityHashCode(this));
         
+        if (null != uniqueTransform) {
+            uniqueTransform.close();
+            uniqueTransform = null;
+        }
+        
         if (null == scannerFactory) {
             log.debug("ScannerFactory was never initialized because, therefore there are no connections to close: " + System.identityHashCode(this));
         } else {
@@ -1887,6 +1979,10 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         optionalParams.add(QueryParameters.LIMIT_FIELDS);
         optionalParams.add(QueryParameters.GROUP_FIELDS);
         optionalParams.add(QueryParameters.UNIQUE_FIELDS);
+        optionalParams.add(QueryParameters.TOP_K);
+        optionalParams.add(QueryParameters.TOP_K_FIELD);
+        optionalParams.add(QueryParameters.SAMPLE_RATE);
+        optionalParams.add(QueryParameters.SAMPLE_SEED);
         optionalParams.add(QueryOptions.LOG_TIMING_DETAILS);
         return optionalParams;
     }
@@ -2015,6 +2111,217 @@ public class ShardQueryLogic extends BaseQueryLogic<Entry<Key,Value>> {
         getConfig().setSpeculativeScanning(speculativeScanning);
     }
     
+    public boolean getHedgedScanning() {
+        return getConfig().getHedgedScanning();
+    }
+    
+    public void setHedgedScanning(boolean hedgedScanning) {
+        getConfig().setHedgedScanning(hedgedScanning);
+    }
+    
+    public double getHedgeLatencyPercentile() {
+        return getConfig().getHedgeLatencyPercentile();
+    }
+    
+    public void setHedgeLatencyPercentile(double hedgeLatencyPercentile) {
+        getConfig().setHedgeLatencyPercentile(hedgeLatencyPercentile);
+    }
+    
+    public double getMaxHedgeFraction() {
+        return getConfig().getMaxHedgeFraction();
+    }
+    
+    public void setMaxHedgeFraction(double maxHedgeFraction) {
+        getConfig().setMaxHedgeFraction(maxHedgeFraction);
+    }
+    
+    public boolean isCompiledEvaluation() {
+        return getConfig().isCompiledEvaluation();
+    }
+    
+    public void setCompiledEvaluation(boolean compiledEvaluation) {
+        getConfig().setCompiledEvaluation(compiledEvaluation);
+    }
+    
+    public boolean isPackedTermOffsets() {
+        return getConfig().isPackedTermOffsets();
+    }
+    
+    public void setPackedTermOffsets(boolean packedTermOffsets) {
+        getConfig().setPackedTermOffsets(packedTermOffsets);
+    }
+    
+    public boolean isLazyTermFrequencies() {
+        return getConfig().isLazyTermFrequencies();
+    }
+    
+    public void setLazyTermFrequencies(boolean lazyTermFrequencies) {
+        getConfig().setLazyTermFrequencies(lazyTermFrequencies);
+    }
+    
+    public int getTermFrequencyBatchSize() {
+        return getConfig().getTermFrequencyBatchSize();
+    }
+    
+    public void setTermFrequencyBatchSize(int termFrequencyBatchSize) {
+        getConfig().setTermFrequencyBatchSize(termFrequencyBatchSize);
+    }
+    
+    public boolean isCompactDocuments() {
+        return getConfig().isCompactDocuments();
+    }
+    
+    public void setCompactDocuments(boolean compactDocuments) {
+        getConfig().setCompactDocuments(compactDocuments);
+    }
+    
+    public boolean isLazyAttributeNormalization() {
+        return getConfig().isLazyAttributeNormalization();
+    }
+    
+    public void setLazyAttributeNormalization(boolean lazyAttributeNormalization) {
+        getConfig().setLazyAttributeNormalization(lazyAttributeNormalization);
+    }
+    
+    public long getUniqueMaxMemory() {
+        return getConfig().getUniqueMaxMemory();
+    }
+    
+    public void setUniqueMaxMemory(long uniqueMaxMemory) {
+        getConfig().setUniqueMaxMemory(uniqueMaxMemory);
+    }
+    
+    public boolean isQueryTemplateCache() {
+        return getConfig().isQueryTemplateCache();
+    }
+    
+    public void setQueryTemplateCache(boolean queryTemplateCache) {
+        getConfig().setQueryTemplateCache(queryTemplateCache);
+    }
+    
+    public int getTopK() {
+        return getConfig().getTopK();
+    }
+    
+    public void setTopK(int topK) {
+        getConfig().setTopK(topK);
+    }
+    
+    public String getTopKField() {
+        return getConfig().getTopKField();
+    }
+    
+    public void setTopKField(String topKField) {
+        getConfig().setTopKField(topKField);
+    }
+    
+    public int getDocumentFetchBatchSize() {
+        return getConfig().getDocumentFetchBatchSize();
+    }
+    
+    public void setDocumentFetchBatchSize(int documentFetchBatchSize) {
+        getConfig().setDocumentFetchBatchSize(documentFetchBatchSize);
+    }
+    
+    public int getDocumentFetchMaxNexts() {
+        return getConfig().getDocumentFetchMaxNexts();
+    }
+    
+    public void setDocumentFetchMaxNexts(int documentFetchMaxNexts) {
+        getConfig().setDocumentFetchMaxNexts(documentFetchMaxNexts);
+    }
+    
+    public boolean getLocalityScheduler() {
+        return getConfig().getLocalityScheduler();
+    }
+    
+    public void setLocalityScheduler(boolean localityScheduler) {
+        getConfig().setLocalityScheduler(localityScheduler);
+    }
+    
+    public int getMaxScansPerServer() {
+        return getConfig().getMaxScansPerServer();
+    }
+    
+    public void setMaxScansPerServer(int maxScansPerServer) {
+        if (maxScansPerServer <= 0) {
+            throw new IllegalArgumentException("maxScansPerServer must be positive: " + maxScansPerServer);
+        }
+        getConfig().setMaxScansPerServer(maxScansPerServer);
+    }
+    
+    public double getSampleRate() {
+        return getConfig().getSampleRate();
+    }
+    
+    public void setSampleRate(double sampleRate) {
+        getConfig().setSampleRate(sampleRate);
+    }
+    
+    public long getSampleSeed() {
+        return getConfig().getSampleSeed();
+    }
+    
+    public void setSampleSeed(long sampleSeed) {
+        getConfig().setSampleSeed(sampleSeed);
+    }
+    
+    public boolean isQueryPlanCache() {
+        return getConfig().isQueryPlanCache();
+    }
+    
+    public void setQueryPlanCache(boolean queryPlanCache) {
+        getConfig().setQueryPlanCache(queryPlanCache);
+    }
+    
+    public long getQueryPlanCacheTtl() {
+        return getConfig().getQueryPlanCacheTtl();
+    }
+    
+    public void setQueryPlanCacheTtl(long queryPlanCacheTtl) {
+        getConfig().setQueryPlanCacheTtl(queryPlanCacheTtl);
+    }
+    
+    public boolean isIndexLookupCache() {
+        return getConfig().isIndexLookupCache();
+    }
+    
+    public void setIndexLookupCache(boolean indexLookupCache) {
+        getConfig().setIndexLookupCache(indexLookupCache);
+    }
+    
+    public int getIndexLookupCacheHorizon() {
+        return getConfig().getIndexLookupCacheHorizon();
+    }
+    
+    public void setIndexLookupCacheHorizon(int indexLookupCacheHorizon) {
+        getConfig().setIndexLookupCacheHorizon(indexLookupCacheHorizon);
+    }
+    
+    public long getIndexLookupCacheMaxBytes() {
+        return getConfig().getIndexLookupCacheMaxBytes();
+    }
+    
+    public void setIndexLookupCacheMaxBytes(long indexLookupCacheMaxBytes) {
+        getConfig().setIndexLookupCacheMaxBytes(indexLookupCacheMaxBytes);
+    }
+    
+    public long getIndexLookupCacheTtl() {
+        return getConfig().getIndexLookupCacheTtl();
+    }
+    
+    public void setIndexLookupCacheTtl(long indexLookupCacheTtl) {
+        getConfig().setIndexLookupCacheTtl(indexLookupCacheTtl);
+    }
+    
+    public boolean isAutomatonRegexExpansion() {
+        return getConfig().isAutomatonRegexExpansion();
+    }
+    
+    public void setAutomatonRegexExpansion(boolean automatonRegexExpansion) {
+        getConfig().setAutomatonRegexExpansion(automatonRegexExpansion);
+    }
+    
     public boolean getAllowShortcutEvaluation() {
         return getConfig().getAllowShortcutEvaluation();
     }
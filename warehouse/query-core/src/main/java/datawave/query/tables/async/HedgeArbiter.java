@@ -0,0 +1,29 @@
+package datawave.query.tables.async;
+
+/**
+ * Decides when and how often a {@link HedgedScan} may launch a duplicate of its chunk, and where that duplicate should be sent.
+ */
+public interface HedgeArbiter {
+    
+    /**
+     * @return how long, in milliseconds, a scan may run before it is hedged, or a negative value if scans should not currently be hedged
+     */
+    long getHedgeDelay();
+    
+    /**
+     * Reserve budget for a hedge of the given chunk. A non null result must be followed by a call to {@link #hedgeFinished(boolean)}.
+     *
+     * @param chunk
+     *            the chunk whose scan is running slowly
+     * @return a copy of the chunk for the hedge to scan, or null if the chunk may not be hedged
+     */
+    ScannerChunk tryStartHedge(ScannerChunk chunk);
+    
+    /**
+     * Release the budget reserved for a hedge.
+     *
+     * @param won
+     *            true if the hedge finished before the scan it duplicated
+     */
+    void hedgeFinished(boolean won);
+}
@@ -0,0 +1,54 @@
+package datawave.query.tables.async;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of hedged scans that may be in flight at once across every scanner session in this JVM, so that hedging cannot multiply the load placed
+ * on the cluster when many scans are slow at the same time. The limit is configured once for the web server, when the query logic factory is loaded.
+ */
+public class HedgeBudget {
+    
+    public static final int DEFAULT_MAX_CONCURRENT_HEDGES = 32;
+    
+    private static final HedgeBudget GLOBAL = new HedgeBudget(DEFAULT_MAX_CONCURRENT_HEDGES);
+    
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    
+    private volatile int maxConcurrentHedges;
+    
+    public HedgeBudget(int maxConcurrentHedges) {
+        this.maxConcurrentHedges = maxConcurrentHedges;
+    }
+    
+    public static HedgeBudget global() {
+        return GLOBAL;
+    }
+    
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxConcurrentHedges) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+    
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    public int getMaxConcurrentHedges() {
+        return maxConcurrentHedges;
+    }
+    
+    public void setMaxConcurrentHedges(int maxConcurrentHedges) {
+        this.maxConcurrentHedges = maxConcurrentHedges;
+    }
+}
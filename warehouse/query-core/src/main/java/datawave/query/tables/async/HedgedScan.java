@@ -0,0 +1,302 @@
+package datawave.query.tables.async;
+
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.log4j.Logger;
+
+import datawave.query.tables.AccumuloResource;
+import datawave.query.tables.ResourceQueue;
+
+/**
+ * A scan of a single {@link ScannerChunk} that hedges against a slow or paused tablet server. The chunk is scanned by a primary {@link Scan}; if the primary
+ * has returned nothing after the delay given by the {@link HedgeArbiter}, a duplicate scan of the whole chunk is launched against the same tablet server in a
+ * scan session of its own, and whichever of the two responds first completes the chunk while the other is cancelled and its results discarded.
+ * <p>
+ * Hedging only from the start of the chunk means the results of the two scans are never merged, so nothing is assumed about the order in which the query
+ * iterator returns its keys. Both scans run on the hedge service shared by the session and write to private queues, and this scan waits to be signalled by
+ * either of them rather than polling.
+ */
+public class HedgedScan extends Scan {
+    private static final Logger log = Logger.getLogger(HedgedScan.class);
+    
+    private static final int QUEUE_CAPACITY = 1000;
+    
+    /**
+     * The longest wait between checks that the calling service has not been shut down
+     */
+    private static final long MAX_WAIT_MS = 100;
+    
+    private final String localTableName;
+    
+    private final Set<Authorizations> localAuths;
+    
+    private final ResourceQueue delegatorReference;
+    
+    private final Class<? extends AccumuloResource> delegatedResourceInitializer;
+    
+    private final ExecutorService hedgeService;
+    
+    private final HedgeArbiter hedgeArbiter;
+    
+    /**
+     * Released whenever a child scan queues an entry or stops running
+     */
+    private final Semaphore progress = new Semaphore(0);
+    
+    private volatile boolean complete = false;
+    
+    private volatile boolean hedged = false;
+    
+    public HedgedScan(String localTableName, Set<Authorizations> localAuths, ScannerChunk chunk, ResourceQueue delegatorReference,
+                    Class<? extends AccumuloResource> delegatedResourceInitializer, BlockingQueue<Entry<Key,Value>> results, ExecutorService callingService,
+                    ExecutorService hedgeService, HedgeArbiter hedgeArbiter) {
+        super(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, results, callingService);
+        this.localTableName = localTableName;
+        this.localAuths = localAuths;
+        this.delegatorReference = delegatorReference;
+        this.delegatedResourceInitializer = delegatedResourceInitializer;
+        this.hedgeService = hedgeService;
+        this.hedgeArbiter = hedgeArbiter;
+    }
+    
+    @Override
+    public boolean finished() {
+        return complete || caller.isShutdown();
+    }
+    
+    @Override
+    public Scan call() throws Exception {
+        markStarted();
+        ChildScan primary = new ChildScan(new ScannerChunk(myScan));
+        ChildScan hedge = null;
+        ChildScan winner = null;
+        boolean hedgeWon = false;
+        
+        long hedgeDelay = hedgeArbiter.getHedgeDelay();
+        try {
+            primary.submit();
+            
+            // race the primary, and the hedge once launched, until one of them responds
+            while (null == winner && !caller.isShutdown()) {
+                primary.update();
+                if (null != hedge) {
+                    hedge.update();
+                }
+                
+                if (primary.responded()) {
+                    winner = primary;
+                } else if (null != hedge && hedge.responded()) {
+                    winner = hedge;
+                    hedgeWon = true;
+                } else if (primary.failed() && (null == hedge || hedge.failed())) {
+                    throw primary.getFailure();
+                } else {
+                    long wait = MAX_WAIT_MS;
+                    if (null == hedge && hedgeDelay >= 0) {
+                        long remaining = hedgeDelay - elapsedMillis();
+                        if (remaining <= 0) {
+                            hedge = startHedge();
+                            // don't ask again for this chunk
+                            hedgeDelay = -1;
+                            continue;
+                        }
+                        wait = Math.min(wait, remaining);
+                    }
+                    awaitProgress(wait);
+                }
+            }
+            
+            if (null != winner) {
+                ChildScan loser = (winner == primary) ? hedge : primary;
+                if (null != loser) {
+                    loser.cancel();
+                }
+                forward(winner);
+            }
+            complete = true;
+        } finally {
+            primary.cancel();
+            if (null != hedge) {
+                hedge.cancel();
+            }
+            if (hedged) {
+                hedgeArbiter.hedgeFinished(hedgeWon);
+            }
+            if (log.isTraceEnabled()) {
+                log.trace("Hedged scan done, hedged: " + hedged + ", hedge won: " + hedgeWon);
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * @return the running hedge, or null if the arbiter would not allow one
+     */
+    private ChildScan startHedge() {
+        ScannerChunk hedgeChunk = hedgeArbiter.tryStartHedge(myScan);
+        if (null == hedgeChunk) {
+            return null;
+        }
+        hedged = true;
+        if (log.isDebugEnabled()) {
+            log.debug("Hedging a scan against " + myScan.getLastKnownLocation() + " on " + hedgeChunk.getLastKnownLocation() + " after " + elapsedMillis()
+                            + "ms");
+        }
+        hedgeChunk.setQueryId(myScan.getQueryId());
+        ChildScan hedge = new ChildScan(hedgeChunk);
+        hedge.submit();
+        return hedge;
+    }
+    
+    /**
+     * Forward every entry of the winning scan to the shared result queue
+     *
+     * @param winner
+     *            the scan which responded first
+     */
+    private void forward(ChildScan winner) throws Exception {
+        while (!caller.isShutdown()) {
+            Entry<Key,Value> entry = winner.queue.poll();
+            if (null != entry) {
+                while (!caller.isShutdown() && !results.offer(entry, 25, TimeUnit.MILLISECONDS)) {
+                    if (log.isTraceEnabled())
+                        log.trace("offering");
+                }
+                continue;
+            }
+            
+            winner.update();
+            if (winner.failed()) {
+                throw winner.getFailure();
+            }
+            // the scan has stopped, so nothing more can be queued behind the empty queue
+            if (winner.done) {
+                return;
+            }
+            awaitProgress(MAX_WAIT_MS);
+        }
+    }
+    
+    private void awaitProgress(long waitMs) throws InterruptedException {
+        if (progress.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+            progress.drainPermits();
+        }
+    }
+    
+    protected Scan newChildScan(ScannerChunk chunk, BlockingQueue<Entry<Key,Value>> queue) {
+        Scan scan = new Scan(localTableName, localAuths, chunk, delegatorReference, delegatedResourceInitializer, queue, caller);
+        scan.setVisitors(getVisitors());
+        scan.disableStats();
+        return scan;
+    }
+    
+    public boolean isHedged() {
+        return hedged;
+    }
+    
+    /**
+     * A queue which signals the hedged scan whenever an entry is offered to it
+     */
+    private class SignallingQueue extends LinkedBlockingDeque<Entry<Key,Value>> {
+        private static final long serialVersionUID = 1L;
+        
+        SignallingQueue() {
+            super(QUEUE_CAPACITY);
+        }
+        
+        @Override
+        public boolean offer(Entry<Key,Value> entry, long timeout, TimeUnit unit) throws InterruptedException {
+            boolean offered = super.offer(entry, timeout, unit);
+            if (offered) {
+                progress.release();
+            }
+            return offered;
+        }
+    }
+    
+    /**
+     * One of the scans racing to complete the chunk
+     */
+    private class ChildScan {
+        private final SignallingQueue queue = new SignallingQueue();
+        
+        private final Scan scan;
+        
+        private Future<Scan> future;
+        
+        private boolean done = false;
+        
+        private Throwable failure = null;
+        
+        ChildScan(ScannerChunk chunk) {
+            this.scan = newChildScan(chunk, queue);
+        }
+        
+        void submit() {
+            future = hedgeService.submit(() -> {
+                try {
+                    return scan.call();
+                } finally {
+                    progress.release();
+                }
+            });
+        }
+        
+        /**
+         * Check whether the scan has stopped, resubmitting it if it was time sliced
+         */
+        void update() throws InterruptedException {
+            if (!done && future.isDone()) {
+                try {
+                    if (future.get().finished()) {
+                        done = true;
+                    } else {
+                        // time sliced, so pick up where we left off
+                        submit();
+                    }
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                    done = true;
+                } catch (CancellationException e) {
+                    failure = e;
+                    done = true;
+                }
+            }
+        }
+        
+        /**
+         * @return true if the scan has queued an entry, or has finished the chunk without returning anything
+         */
+        boolean responded() {
+            return !queue.isEmpty() || (done && null == failure);
+        }
+        
+        boolean failed() {
+            return null != failure;
+        }
+        
+        Exception getFailure() {
+            return (failure instanceof Exception) ? (Exception) failure : new RuntimeException(failure);
+        }
+        
+        void cancel() {
+            if (null != future && !done) {
+                future.cancel(true);
+            }
+            scan.close();
+            queue.clear();
+        }
+    }
+}
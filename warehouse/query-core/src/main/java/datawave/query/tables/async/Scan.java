@@ -72,6 +72,11 @@ public class Scan implements Callable<Scan> {
     
     private AccumuloResource delegatedResource = null;
     
+    /**
+     * Wall clock time at which this scan first started running
+     */
+    protected long startTime = -1;
+    
     public Scan(String localTableName, Set<Authorizations> localAuths, ScannerChunk chunk, ResourceQueue delegatorReference,
                     Class<? extends AccumuloResource> delegatedResourceInitializer, BlockingQueue<Entry<Key,Value>> results, ExecutorService callingService) {
         myScan = chunk;
@@ -119,6 +124,7 @@ public class Scan implements Callable<Scan> {
      */
     @Override
     public Scan call() throws Exception {
+        markStarted();
         try {
             
             /**
@@ -337,6 +343,19 @@ public class Scan implements Callable<Scan> {
         return myStats;
     }
     
+    protected void markStarted() {
+        if (startTime < 0) {
+            startTime = System.currentTimeMillis();
+        }
+    }
+    
+    /**
+     * @return the time elapsed since this scan first started running, including any time spent waiting to be resubmitted after being time sliced
+     */
+    public long elapsedMillis() {
+        return startTime < 0 ? 0 : System.currentTimeMillis() - startTime;
+    }
+    
     public void setSessionArbiter(SessionArbiter arbiter) {
         this.arbiter = arbiter;
     }
@@ -107,6 +107,10 @@ public class ScannerChunk {
         return lastKnownLocation;
     }
     
+    public void setLastKnownLocation(String lastKnownLocation) {
+        this.lastKnownLocation = lastKnownLocation;
+    }
+    
     @Override
     public String toString() {
         return new StringBuilder().append(options).append(ranges).append(lastKnownLocation).toString();
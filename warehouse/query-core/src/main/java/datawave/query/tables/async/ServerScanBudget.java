@@ -0,0 +1,71 @@
+package datawave.query.tables.async;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Limits the number of scans that may be in flight against each tablet server at once across every scanner session in this JVM, so that the queries of a web
+ * server cannot together overload the few tablet servers that host most of their shards. The limit is configured once for the web server, when the query logic
+ * factory is loaded.
+ */
+public class ServerScanBudget {
+    
+    public static final int DEFAULT_MAX_SCANS_PER_SERVER = 32;
+    
+    private static final ServerScanBudget GLOBAL = new ServerScanBudget(DEFAULT_MAX_SCANS_PER_SERVER);
+    
+    private final Map<String,AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    
+    private volatile int maxScansPerServer;
+    
+    public ServerScanBudget(int maxScansPerServer) {
+        setMaxScansPerServer(maxScansPerServer);
+    }
+    
+    public static ServerScanBudget global() {
+        return GLOBAL;
+    }
+    
+    public boolean tryAcquire(String server) {
+        AtomicInteger count = inFlight.computeIfAbsent(server, s -> new AtomicInteger(0));
+        while (true) {
+            int current = count.get();
+            if (current >= maxScansPerServer) {
+                return false;
+            }
+            if (count.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    public void release(String server) {
+        AtomicInteger count = inFlight.get(server);
+        if (null != count) {
+            count.decrementAndGet();
+        }
+    }
+    
+    public int getInFlight(String server) {
+        AtomicInteger count = inFlight.get(server);
+        return null == count ? 0 : count.get();
+    }
+    
+    public int getMaxScansPerServer() {
+        return maxScansPerServer;
+    }
+    
+    /**
+     * Changes the limit, which applies to the scans started from now on
+     *
+     * @param maxScansPerServer
+     *            the most scans which may be in flight against a tablet server at once
+     */
+    public void setMaxScansPerServer(int maxScansPerServer) {
+        Preconditions.checkArgument(maxScansPerServer > 0, "maxScansPerServer must be positive: %s", maxScansPerServer);
+        this.maxScansPerServer = maxScansPerServer;
+    }
+}
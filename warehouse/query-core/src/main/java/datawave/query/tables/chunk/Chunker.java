@@ -24,5 +24,14 @@ public abstract class Chunker implements Iterator<Query>, Cloneable {
      */
     public void initialize(GenericQueryConfiguration config) {}
     
+    /**
+     * Called when all of the results of the last chunk have been read, before asking for the next chunk. Override this to decide the next chunks from the
+     * results of the previous ones.
+     *
+     * @param results
+     *            the number of results returned by the last chunk
+     */
+    public void chunkComplete(long results) {}
+    
     public abstract Chunker clone();
 }
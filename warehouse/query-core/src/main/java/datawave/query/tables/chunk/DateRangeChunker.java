@@ -0,0 +1,147 @@
+package datawave.query.tables.chunk;
+
+import java.util.Date;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import datawave.webservice.query.Query;
+import org.apache.log4j.Logger;
+
+/**
+ * Splits a query into slices of its date range, newest first, so that the newest results of a query are found without scanning all of its older data. Each
+ * slice is planned and scanned as a query of its own, and when there is a limit on the results, no more slices are planned once the slices so far have returned
+ * that many results. Without a limit the slices continue to the begin date of the query, but as they are only planned when the results of the previous one
+ * have been read, a query which stops reading at the max results of its logic stops planning slices too.
+ * <p>
+ * Slices start at the initial slice size and adapt to the rate of results: a slice is sized to hold the results still wanted at the rate of the previous
+ * slice, growing by at most the growth factor per slice and never beyond the max slice size.
+ */
+public class DateRangeChunker extends Chunker {
+    private static final Logger log = Logger.getLogger(DateRangeChunker.class);
+    
+    private long initialSliceMillis = TimeUnit.DAYS.toMillis(1);
+    private long maxSliceMillis = TimeUnit.DAYS.toMillis(30);
+    private double growthFactor = 4.0;
+    private long maxResults = -1;
+    
+    private Query baseQuery;
+    private long targetResults;
+    private long results;
+    private long sliceMillis;
+    private Date sliceEnd;
+    private long lastSliceMillis;
+    private int slices;
+    
+    public DateRangeChunker() {}
+    
+    public DateRangeChunker(DateRangeChunker other) {
+        this.initialSliceMillis = other.initialSliceMillis;
+        this.maxSliceMillis = other.maxSliceMillis;
+        this.growthFactor = other.growthFactor;
+        this.maxResults = other.maxResults;
+    }
+    
+    @Override
+    public void setBaseQuery(Query query) {
+        this.baseQuery = query;
+        if (maxResults > 0) {
+            this.targetResults = maxResults;
+        } else {
+            // the page size only bounds a page, not the results of the query, so without a limit every slice is wanted
+            this.targetResults = query.isMaxResultsOverridden() ? query.getMaxResultsOverride() : -1;
+        }
+        this.results = 0;
+        this.sliceMillis = initialSliceMillis;
+        this.lastSliceMillis = 0;
+        this.sliceEnd = query.getEndDate();
+        this.slices = 0;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (baseQuery == null || sliceEnd.before(baseQuery.getBeginDate())) {
+            return false;
+        }
+        return targetResults <= 0 || results < targetResults;
+    }
+    
+    @Override
+    public Query next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        long begin = Math.max(baseQuery.getBeginDate().getTime(), sliceEnd.getTime() - sliceMillis + 1);
+        Query slice = baseQuery.duplicate(baseQuery.getQueryName() + "-" + slices++);
+        slice.setBeginDate(new Date(begin));
+        slice.setEndDate(sliceEnd);
+        if (log.isDebugEnabled()) {
+            log.debug("Querying " + slice.getBeginDate() + " to " + sliceEnd + " with " + results + " of " + targetResults + " results found");
+        }
+        
+        lastSliceMillis = sliceEnd.getTime() - begin + 1;
+        sliceEnd = new Date(begin - 1);
+        return slice;
+    }
+    
+    /**
+     * Size the next slice from the rate of results of the slice just completed
+     */
+    @Override
+    public void chunkComplete(long chunkResults) {
+        results += chunkResults;
+        if (lastSliceMillis == 0) {
+            return;
+        }
+        long next = (long) (sliceMillis * growthFactor);
+        if (chunkResults > 0 && targetResults > results) {
+            // the time it should take to find the rest of the results at the rate of the last slice
+            next = Math.min(next, (long) Math.ceil((double) (targetResults - results) * lastSliceMillis / chunkResults));
+        }
+        sliceMillis = Math.max(1, Math.min(maxSliceMillis, next));
+    }
+    
+    public long getResults() {
+        return results;
+    }
+    
+    public long getInitialSliceMillis() {
+        return initialSliceMillis;
+    }
+    
+    public void setInitialSliceMillis(long initialSliceMillis) {
+        this.initialSliceMillis = initialSliceMillis;
+    }
+    
+    public long getMaxSliceMillis() {
+        return maxSliceMillis;
+    }
+    
+    public void setMaxSliceMillis(long maxSliceMillis) {
+        this.maxSliceMillis = maxSliceMillis;
+    }
+    
+    public double getGrowthFactor() {
+        return growthFactor;
+    }
+    
+    public void setGrowthFactor(double growthFactor) {
+        this.growthFactor = growthFactor;
+    }
+    
+    public long getMaxResults() {
+        return maxResults;
+    }
+    
+    /**
+     * @param maxResults
+     *            the number of results after which no more slices are planned, or 0 or less to use the max results override of the query, if any
+     */
+    public void setMaxResults(long maxResults) {
+        this.maxResults = maxResults;
+    }
+    
+    @Override
+    public DateRangeChunker clone() {
+        return new DateRangeChunker(this);
+    }
+}
@@ -0,0 +1,90 @@
+package datawave.query.tables.shard;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import datawave.core.iterators.ResultAggregate;
+import datawave.marking.MarkingFunctions;
+import datawave.query.transformer.ShardQueryCountTableTransformer;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.commons.collections4.iterators.TransformIterator;
+import org.apache.log4j.Logger;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.collect.Sets;
+
+/**
+ * The web server side of the aggregation push-down: merges the {@link ResultAggregate} returned for each scanned range into a single aggregate, in the same
+ * way the {@link CountAggregatingIterator} sums the counts returned by the ResultCountingIterator.
+ */
+public class ResultAggregateMergingIterator extends TransformIterator {
+    private static final Logger log = Logger.getLogger(ResultAggregateMergingIterator.class);
+    
+    private ResultAggregate aggregate = null;
+    private boolean done = false;
+    
+    protected Set<ColumnVisibility> columnVisibilities = Sets.newHashSet();
+    
+    private MarkingFunctions markingFunctions = MarkingFunctions.Factory.createMarkingFunctions();
+    
+    private Kryo kryo = new Kryo();
+    
+    private final ShardQueryCountTableTransformer countTransformer;
+    
+    public ResultAggregateMergingIterator(Iterator<Entry<Key,Value>> iterator, ShardQueryCountTableTransformer transformer) {
+        super(iterator, transformer);
+        this.countTransformer = transformer;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (done) {
+            return false;
+        }
+        
+        if (aggregate == null) {
+            // the partial aggregates carry the histogram limit of the query
+            aggregate = new ResultAggregate(Integer.MAX_VALUE);
+            while (getIterator().hasNext()) {
+                @SuppressWarnings("unchecked")
+                Entry<Key,Value> entry = (Entry<Key,Value>) getIterator().next();
+                
+                if (null == entry || entry.getKey() == null || entry.getValue() == null) {
+                    break;
+                }
+                
+                ResultAggregate partial = ResultAggregate.fromValue(kryo, entry.getValue());
+                this.columnVisibilities.add(partial.getVisibility());
+                aggregate.merge(partial);
+            }
+            
+            if (columnVisibilities.isEmpty()) {
+                // no results, return a zero count
+                columnVisibilities.add(new ColumnVisibility(""));
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            return null;
+        }
+        done = true;
+        
+        try {
+            // Calculate the columnVisibility for the aggregate from the combination.
+            aggregate.setVisibility(markingFunctions.combine(columnVisibilities));
+        } catch (Exception e) {
+            log.error("Could not create combined columnVisibilities for the aggregate", e);
+            return null;
+        }
+        
+        return countTransformer.transform(aggregate);
+    }
+}
@@ -0,0 +1,79 @@
+package datawave.query.tables.shard;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import com.esotericsoftware.kryo.Kryo;
+import datawave.query.iterator.TopKHeap;
+import datawave.query.iterator.profile.FinalDocumentTrackingIterator;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.log4j.Logger;
+
+/**
+ * The web server side of the top k push-down: merges the {@link TopKHeap} returned for each scanned range into the overall top k, and then returns those
+ * documents highest first, so that the transformer sees them as if they had been returned one by one.
+ * <p>
+ * Each partial heap is merged as it is read, so no more than k documents are held however many ranges are scanned. The overall top k is not known until every
+ * range has been scanned, so the first document is only returned once the scan is exhausted; the timing details documents are passed through as they arrive,
+ * which returns control to the caller to check for cancellation and the page timeout while the ranges are still being scanned.
+ */
+public class TopKMergingIterator implements Iterator<Entry<Key,Value>> {
+    private static final Logger log = Logger.getLogger(TopKMergingIterator.class);
+    
+    private final Iterator<Entry<Key,Value>> iterator;
+    private final Kryo kryo = new Kryo();
+    
+    private TopKHeap heap;
+    private long heaps = 0;
+    // the merged top k, once every partial heap has been merged
+    private Iterator<Entry<Key,Value>> documents = null;
+    private Entry<Key,Value> next = null;
+    
+    public TopKMergingIterator(Iterator<Entry<Key,Value>> iterator, int k) {
+        this.iterator = iterator;
+        this.heap = new TopKHeap(k);
+    }
+    
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (documents == null) {
+            while (iterator.hasNext()) {
+                Entry<Key,Value> entry = iterator.next();
+                if (null == entry || entry.getKey() == null || entry.getValue() == null) {
+                    break;
+                }
+                if (FinalDocumentTrackingIterator.isFinalDocumentKey(entry.getKey())) {
+                    next = entry;
+                    return true;
+                }
+                heap.merge(TopKHeap.fromValue(kryo, entry.getValue()));
+                heaps++;
+            }
+            
+            if (log.isDebugEnabled()) {
+                log.debug("Merged " + heaps + " partial heaps into " + heap);
+            }
+            documents = heap.getDocuments().iterator();
+            heap = null;
+        }
+        if (documents.hasNext()) {
+            next = documents.next();
+        }
+        return next != null;
+    }
+    
+    @Override
+    public Entry<Key,Value> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Entry<Key,Value> entry = next;
+        next = null;
+        return entry;
+    }
+}
@@ -0,0 +1,51 @@
+package datawave.query.tables.stats;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a sliding window of the most recent scan latencies for a scanner session so that a latency percentile can be computed for the session.
+ */
+public class ScanLatencyTracker {
+    
+    private final long[] window;
+    
+    private int count = 0;
+    
+    private int next = 0;
+    
+    public ScanLatencyTracker(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+        window = new long[windowSize];
+    }
+    
+    public synchronized void record(long latencyMillis) {
+        window[next] = latencyMillis;
+        next = (next + 1) % window.length;
+        if (count < window.length) {
+            count++;
+        }
+    }
+    
+    public synchronized int getSampleCount() {
+        return count;
+    }
+    
+    /**
+     * Get the latency at the given percentile of the recorded window.
+     *
+     * @param percentile
+     *            a value between 0 and 1
+     * @return the latency in milliseconds, or -1 if nothing has been recorded
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(window, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(Math.max(0.0, Math.min(1.0, percentile)) * count) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
@@ -3,8 +3,10 @@ package datawave.query.tables.stats;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import datawave.query.util.QueryStopwatch;
@@ -30,6 +32,14 @@ public class ScanSessionStats {
     
     protected MutableLong keysSeen;
     
+    protected MutableLong hedgedScans;
+    
+    protected MutableLong hedgedScanWins;
+    
+    protected MutableLong maxServerQueueDepth;
+    
+    protected final Map<String,Integer> serverQueueDepths = new TreeMap<>();
+    
     public ScanSessionStats() {
         timers = new EnumMap<>(TIMERS.class);
         
@@ -41,6 +51,12 @@ public class ScanSessionStats {
         }
         
         keysSeen = new MutableLong();
+        
+        hedgedScans = new MutableLong();
+        
+        hedgedScanWins = new MutableLong();
+        
+        maxServerQueueDepth = new MutableLong();
     }
     
     public ScanSessionStats merge(ScanSessionStats other) {
@@ -52,6 +68,9 @@ public class ScanSessionStats {
             long otherTimer = other.getValue(timer);
             timerValue.add(otherTimer);
         }
+        hedgedScans.add(other.getHedgedScans());
+        hedgedScanWins.add(other.getHedgedScanWins());
+        maxServerQueueDepth.setValue(Math.max(maxServerQueueDepth.longValue(), other.getMaxServerQueueDepth()));
         return this;
     }
     
@@ -71,6 +90,52 @@ public class ScanSessionStats {
         keysSeen.add(keys);
     }
     
+    /**
+     * @return the number of scans for which a hedged duplicate was launched
+     */
+    public long getHedgedScans() {
+        return hedgedScans.longValue();
+    }
+    
+    /**
+     * @return the number of hedged duplicates that finished before the scan they duplicated
+     */
+    public long getHedgedScanWins() {
+        return hedgedScanWins.longValue();
+    }
+    
+    public void incrementHedgedScans(boolean won) {
+        hedgedScans.increment();
+        if (won) {
+            hedgedScanWins.increment();
+        }
+    }
+    
+    /**
+     * @return the most scans that were queued for any one tablet server at once
+     */
+    public long getMaxServerQueueDepth() {
+        return maxServerQueueDepth.longValue();
+    }
+    
+    /**
+     * @return the number of scans currently queued for each tablet server
+     */
+    public synchronized Map<String,Integer> getServerQueueDepths() {
+        return Collections.unmodifiableMap(new TreeMap<>(serverQueueDepths));
+    }
+    
+    public synchronized void setServerQueueDepth(String server, int depth) {
+        if (depth > 0) {
+            serverQueueDepths.put(server, depth);
+        } else {
+            serverQueueDepths.remove(server);
+        }
+        if (depth > maxServerQueueDepth.longValue()) {
+            maxServerQueueDepth.setValue(depth);
+        }
+    }
+    
     public void initializeTimers() {
         timers.get(TIMERS.HASNEXT).start();
         timers.get(TIMERS.HASNEXT).suspend();
@@ -124,6 +189,10 @@ public class ScanSessionStats {
         sb.append(QueryStopwatch.INDENT).append("Total elapsed: ").append(formatMillis(totalDurationMillis));
         logToUse.debug(sb.toString());
         
+        if (getMaxServerQueueDepth() > 0) {
+            logToUse.debug(QueryStopwatch.INDENT + "Max scans queued per tablet server: " + getMaxServerQueueDepth());
+        }
+        
     }
     
     protected String formatMillis(long elapsedMillis) {
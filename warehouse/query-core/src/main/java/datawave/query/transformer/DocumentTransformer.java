@@ -3,6 +3,7 @@ package datawave.query.transformer;
 import com.google.common.base.Preconditions;
 import datawave.marking.MarkingFunctions;
 import datawave.query.attributes.Document;
+import datawave.query.iterator.profile.FinalDocumentTrackingIterator;
 import datawave.util.StringUtils;
 import datawave.webservice.query.Query;
 import datawave.webservice.query.exception.EmptyObjectException;
@@ -88,6 +89,10 @@ public class DocumentTransformer extends DocumentTransformerSupport<Entry<Key,Va
     @Override
     public EventBase transform(Entry<Key,Value> entry) throws EmptyObjectException {
         
+        if (null != shardSampler && !FinalDocumentTrackingIterator.isFinalDocumentKey(entry.getKey())) {
+            shardSampler.count(entry.getKey());
+        }
+        
         Entry<Key,Document> documentEntry = deserializer.apply(entry);
         for (DocumentTransform transform : transforms) {
             if (documentEntry != null) {
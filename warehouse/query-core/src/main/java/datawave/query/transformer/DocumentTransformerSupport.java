@@ -16,6 +16,7 @@ import datawave.query.function.deserializer.DocumentDeserializer;
 import datawave.query.iterator.QueryOptions;
 import datawave.query.iterator.profile.QuerySpan;
 import datawave.query.jexl.JexlASTHelper;
+import datawave.query.planner.ShardSampler;
 import datawave.util.StringUtils;
 import datawave.util.time.DateHelper;
 import datawave.webservice.query.Query;
@@ -50,6 +51,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Transforms a document into a web service Event Object.
@@ -70,6 +72,12 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
     private long nextCount = 0;
     private long seekCount = 0;
     private long yieldCount = 0L;
+    private long throttleCount = 0L;
+    private long templateHits = 0L;
+    private long templateMisses = 0L;
+    private long templateSavedNanos = 0L;
+    private long fetchedDocuments = 0L;
+    private long fetchSeeks = 0L;
     private long docRanges = 0;
     private long fiRanges = 0;
     private boolean logTimingDetails = false;
@@ -80,6 +88,7 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
     private long logicCreated = System.currentTimeMillis();
     private Set<String> projectFields = Collections.emptySet();
     private Set<String> blacklistedFields = Collections.emptySet();
+    protected ShardSampler shardSampler = null;
     
     protected List<DocumentTransform> transforms = new ArrayList<>();
     
@@ -223,6 +232,12 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
             nextCount += currentNextCount;
             seekCount += currentSeekCount;
             yieldCount += currentYieldCount;
+            throttleCount += timingMetadata.getThrottleCount();
+            templateHits += timingMetadata.getTemplateHits();
+            templateMisses += timingMetadata.getTemplateMisses();
+            templateSavedNanos += timingMetadata.getTemplateSavedNanos();
+            fetchedDocuments += timingMetadata.getFetchedDocuments();
+            fetchSeeks += timingMetadata.getFetchSeeks();
             Map<String,Long> stageTimers = timingMetadata.getStageTimers();
             if (stageTimers.containsKey(QuerySpan.Stage.DocumentSpecificTree.toString())) {
                 docRanges++;
@@ -235,7 +250,11 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
                 sb.append("retrieved document from host:").append(host).append(" at key:").append(documentKey.toStringNoTime()).append(" stageTimers:")
                                 .append(stageTimers);
                 sb.append(" sourceCount:").append(currentSourceCount).append(" nextCount:").append(currentNextCount).append(" seekCount:")
-                                .append(currentSeekCount).append(" yieldCount:").append(currentYieldCount);
+                                .append(currentSeekCount).append(" yieldCount:").append(currentYieldCount).append(" pipelinesGranted:")
+                                .append(timingMetadata.getPipelinesGranted()).append(" throttleCount:").append(timingMetadata.getThrottleCount())
+                                .append(" templateHits:").append(timingMetadata.getTemplateHits()).append(" templateMisses:")
+                                .append(timingMetadata.getTemplateMisses()).append(" fetchedDocuments:").append(timingMetadata.getFetchedDocuments())
+                                .append(" fetchSeeks:").append(timingMetadata.getFetchSeeks());
                 if (log.isTraceEnabled()) {
                     log.trace(sb.toString());
                 } else {
@@ -257,6 +276,16 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
             metric.setNextCount(nextCount);
             metric.setSeekCount(seekCount);
             metric.setYieldCount(yieldCount);
+            if (throttleCount > 0) {
+                log.info("Evaluation pipelines were throttled " + throttleCount + " times for query " + metric.getQueryId());
+            }
+            if (templateHits > 0) {
+                log.info("Query templates were reused by " + templateHits + " of " + (templateHits + templateMisses) + " iterator inits, saving "
+                                + TimeUnit.NANOSECONDS.toMillis(templateSavedNanos) + "ms for query " + metric.getQueryId());
+            }
+            if (fetchedDocuments > 0) {
+                log.info("Batched document fetches issued " + fetchSeeks + " seeks for " + fetchedDocuments + " documents for query " + metric.getQueryId());
+            }
             metric.setDocRanges(docRanges);
             metric.setFiRanges(fiRanges);
         }
@@ -468,6 +497,11 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
         response.setEvents(eventList);
         response.setReturnedEvents((long) eventList.size());
         
+        // the estimate is only unbiased once every sampled shard has been read
+        if (null != shardSampler && shardSampler.isExhausted()) {
+            response.addMessage(shardSampler.getEstimate().toString());
+        }
+        
         return response;
     }
     
@@ -539,6 +573,15 @@ public abstract class DocumentTransformerSupport<I,O> extends EventQueryTransfor
         this.blacklistedFields = blacklistedFields;
     }
     
+    /**
+     * @param shardSampler
+     *            the sampler of a sampled query, which counts the results transformed and adds its estimate of the count of results to the response of
+     *            the last page of results
+     */
+    public void setShardSampler(ShardSampler shardSampler) {
+        this.shardSampler = shardSampler;
+    }
+    
     public void setPrimaryToSecondaryFieldMap(Map<String,List<String>> primaryToSecondaryFieldMap) {
         addTransform(new FieldMappingTransform(primaryToSecondaryFieldMap, reducedResponse));
     }
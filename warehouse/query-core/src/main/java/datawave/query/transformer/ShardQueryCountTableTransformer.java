@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import datawave.core.iterators.ResultAggregate;
 import datawave.marking.MarkingFunctions;
 import datawave.marking.MarkingFunctions.Exception;
 import datawave.query.Constants;
@@ -27,6 +28,9 @@ import org.apache.log4j.Logger;
 
 public class ShardQueryCountTableTransformer extends BaseQueryLogicTransformer<Entry<Long,ColumnVisibility>,EventBase> implements CacheableLogic {
     public static final String COUNT_CELL = "count";
+    public static final String DISTINCT_COUNT_SUFFIX = "_DISTINCT_COUNT";
+    public static final String HISTOGRAM_COUNT_SUFFIX = "_COUNT";
+    public static final String HISTOGRAM_OTHER_COUNT_SUFFIX = "_OTHER_COUNT";
     
     private Authorizations auths = null;
     
@@ -47,26 +51,69 @@ public class ShardQueryCountTableTransformer extends BaseQueryLogicTransformer<E
         Long count = untypedEntry.getKey();
         ColumnVisibility vis = untypedEntry.getValue();
         
-        Map<String,String> markings;
+        Map<String,String> markings = translateMarkings(vis);
+        
+        FieldBase field = this.makeField(COUNT_CELL, markings, vis, System.currentTimeMillis(), count);
+        
+        List<FieldBase> fields = new ArrayList<>();
+        fields.add(field);
+        
+        return makeEvent(markings, fields);
+    }
+    
+    /**
+     * Transform the merged aggregate into a single event holding the count, a {@code FIELD_DISTINCT_COUNT} field for each distinct count field, and a
+     * {@code FIELD.n}/{@code FIELD_COUNT.n} pair for each value of each histogram field. A histogram which reached its limit also gets a
+     * {@code FIELD_OTHER_COUNT} field with the number of values that were not kept.
+     * 
+     * @param aggregate
+     *            the merged aggregate
+     * @return the event
+     */
+    public EventBase transform(ResultAggregate aggregate) {
+        ColumnVisibility vis = aggregate.getVisibility();
+        Map<String,String> markings = translateMarkings(vis);
+        long timestamp = System.currentTimeMillis();
+        
+        List<FieldBase> fields = new ArrayList<>();
+        fields.add(this.makeField(COUNT_CELL, markings, vis, timestamp, aggregate.getCount()));
+        
+        for (Entry<String,Long> distinct : aggregate.getDistinctCounts().entrySet()) {
+            fields.add(this.makeField(distinct.getKey() + DISTINCT_COUNT_SUFFIX, markings, vis, timestamp, distinct.getValue()));
+        }
+        
+        for (Entry<String,Map<String,Long>> histogram : aggregate.getHistograms().entrySet()) {
+            int index = 0;
+            for (Entry<String,Long> bucket : histogram.getValue().entrySet()) {
+                String context = "." + index++;
+                fields.add(this.makeField(histogram.getKey() + context, markings, vis, timestamp, bucket.getKey()));
+                fields.add(this.makeField(histogram.getKey() + HISTOGRAM_COUNT_SUFFIX + context, markings, vis, timestamp, bucket.getValue()));
+            }
+        }
+        
+        for (Entry<String,Long> overflow : aggregate.getHistogramOverflows().entrySet()) {
+            fields.add(this.makeField(overflow.getKey() + HISTOGRAM_OTHER_COUNT_SUFFIX, markings, vis, timestamp, overflow.getValue()));
+        }
+        
+        return makeEvent(markings, fields);
+    }
+    
+    private Map<String,String> translateMarkings(ColumnVisibility vis) {
         try {
-            markings = markingFunctions.translateFromColumnVisibilityForAuths(vis, auths);
+            return markingFunctions.translateFromColumnVisibilityForAuths(vis, auths);
         } catch (Exception e1) {
             throw new IllegalArgumentException("Unable to translate markings", e1);
         }
-        
+    }
+    
+    private EventBase makeEvent(Map<String,String> markings, List<FieldBase> fields) {
         EventBase e = this.responseObjectFactory.getEvent();
         e.setMarkings(markings);
-        
-        FieldBase field = this.makeField(COUNT_CELL, markings, vis, System.currentTimeMillis(), count);
-        e.setMarkings(markings);
-        
-        List<FieldBase> fields = new ArrayList<>();
-        fields.add(field);
         e.setFields(fields);
         
         Metadata metadata = new Metadata();
         metadata.setDataType(Constants.EMPTY_STRING);
-        metadata.setInternalId(field.getName()); // There is only one item returned for the entire query logic.
+        metadata.setInternalId(COUNT_CELL); // There is only one item returned for the entire query logic.
         metadata.setRow(Constants.EMPTY_STRING);
         e.setMetadata(metadata);
         
@@ -4,7 +4,6 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.hash.BloomFilter;
 import com.google.common.hash.Funnel;
 import com.google.common.hash.PrimitiveSink;
 import datawave.query.attributes.Attribute;
@@ -13,6 +12,10 @@ import datawave.query.attributes.Document;
 import datawave.query.jexl.JexlASTHelper;
 import datawave.query.model.QueryModel;
 import datawave.query.tables.ShardQueryLogic;
+import datawave.query.util.sortedset.BufferedFileBackedSortedSet;
+import datawave.query.util.sortedset.FileSortedSet;
+import datawave.query.util.sortedset.SortedSetTempFileHandler;
+import datawave.query.util.sortedset.SpillableByteArraySet;
 import datawave.util.StringUtils;
 import datawave.webservice.query.logic.BaseQueryLogic;
 import org.apache.accumulo.core.data.Key;
@@ -40,22 +43,47 @@ import java.util.stream.Collectors;
 /**
  * This iterator will filter documents based on uniqueness across a set of configured fields. Only the first instance of an event with a unique set of those
  * fields will be returned. This transform is thread safe.
+ *
+ * On the web server the set of document signatures seen is exact, spilling to local temporary files once it exceeds its memory budget. On the tserver the
+ * transform only serves to reduce the documents returned, so once over budget it forgets what it has seen; any duplicates let through as a result are removed
+ * by the web server.
  */
 public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform {
     
     private static final Logger log = Logger.getLogger(GroupingTransform.class);
     
-    private BloomFilter<byte[]> bloom = null;
+    private SpillableByteArraySet seen;
     private Set<String> fields;
     private Multimap<String,String> modelMapping;
     
+    /**
+     * the memory budget for the signatures seen, or -1 if they are spilled to disk rather than forgotten
+     */
+    private long forgetAfter = -1;
+    
+    /**
+     * Every signature seen is held in memory, and none are forgotten
+     *
+     * @param fields
+     */
     public UniqueTransform(Set<String> fields) {
         this.fields = deconstruct(fields);
-        this.bloom = BloomFilter.create(new ByteFunnel(), 500000, 1e-15);
+        this.seen = new SpillableByteArraySet(Long.MAX_VALUE, Collections.emptyList());
         if (log.isTraceEnabled())
             log.trace("unique fields: " + this.fields);
     }
     
+    /**
+     * The tserver constructor: signatures are held in memory, and forgotten once they exceed the given number of bytes
+     *
+     * @param fields
+     * @param maxMemory
+     */
+    public UniqueTransform(Set<String> fields, long maxMemory) {
+        this(fields);
+        this.forgetAfter = maxMemory;
+    }
+    
     private Set<String> deconstruct(Collection<String> fields) {
         return fields.stream().map(field -> JexlASTHelper.deconstructIdentifier(field)).collect(Collectors.toSet());
     }
@@ -68,6 +96,8 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
      */
     public UniqueTransform(BaseQueryLogic<Entry<Key,Value>> logic, Set<String> fields) {
         this(fields);
+        long maxMemory = ((ShardQueryLogic) logic).getUniqueMaxMemory();
+        this.seen = new SpillableByteArraySet(maxMemory, Collections.singletonList(new TempFileHandlerFactory()));
         QueryModel model = ((ShardQueryLogic) logic).getQueryModel();
         if (model != null) {
             modelMapping = HashMultimap.create();
@@ -117,13 +147,21 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
      */
     private boolean isDuplicate(Document document) throws IOException {
         byte[] bytes = getBytes(document);
-        synchronized (bloom) {
-            if (bloom.mightContain(bytes)) {
-                return true;
+        synchronized (seen) {
+            if (forgetAfter >= 0 && seen.getMemoryUsed() > forgetAfter) {
+                if (log.isDebugEnabled())
+                    log.debug("Forgetting " + seen.size() + " unique signatures");
+                seen.clear();
             }
-            bloom.put(bytes);
+            return !seen.add(bytes);
         }
-        return false;
+    }
+    
+    /**
+     * Release the signatures seen, deleting any spilled to disk
+     */
+    public void close() {
+        seen.clear();
     }
     
     /**
@@ -387,6 +425,27 @@ public class UniqueTransform extends DocumentTransform.DefaultDocumentTransform
         return false;
     }
     
+    /**
+     * Creates local temporary files for the signatures spilled by the web server
+     */
+    private static class TempFileHandlerFactory implements BufferedFileBackedSortedSet.SortedSetFileHandlerFactory {
+        
+        @Override
+        public FileSortedSet.SortedSetFileHandler createHandler() throws IOException {
+            return new SortedSetTempFileHandler();
+        }
+        
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+        
+        @Override
+        public String toString() {
+            return "local temporary files";
+        }
+    }
+    
     public static class ByteFunnel implements Funnel<byte[]>, Serializable {
         
         private static final long serialVersionUID = -2126172579955897986L;
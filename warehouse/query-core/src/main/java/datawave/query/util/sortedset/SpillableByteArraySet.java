@@ -0,0 +1,267 @@
+package datawave.query.util.sortedset;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import datawave.query.util.sortedset.BufferedFileBackedSortedSet.SortedSetFileHandlerFactory;
+import datawave.query.util.sortedset.FileSortedSet.SortedSetFileHandler;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * An exact set of byte arrays which holds its values in memory up to a configured number of bytes, and then spills them to a sorted file. Each spilled file is
+ * fronted by a bloom filter so that a value which was never added (the common case) is rejected without reading any file. A value which passes the bloom
+ * filter is looked up through a sparse index of the file, held in memory, so that only the one block of the file which could hold it is read.
+ *
+ * This set supports add and contains only, which is all that is needed to de-duplicate a stream of values.
+ */
+public class SpillableByteArraySet {
+    private static final Logger log = Logger.getLogger(SpillableByteArraySet.class);
+    
+    public static final long DEFAULT_MAX_MEMORY = 64L * 1024 * 1024;
+    
+    /**
+     * estimated bytes used by the tree entry and array header for each value held in memory
+     */
+    protected static final int ENTRY_OVERHEAD = 64;
+    protected static final double SPILL_FPP = 1e-4;
+    protected static final int NUM_RETRIES = 2;
+    /**
+     * the number of values in each block of a spilled file, of which the first is held in the sparse index
+     */
+    protected static final int INDEX_INTERVAL = 128;
+    
+    private final long maxMemory;
+    private final List<SortedSetFileHandlerFactory> handlerFactories;
+    private final Comparator<byte[]> comparator = new ByteArrayComparator();
+    
+    private TreeSet<byte[]> buffer = new TreeSet<>(comparator);
+    private long bufferBytes = 0;
+    private final List<SpilledSet> spilled = new ArrayList<>();
+    private long size = 0;
+    private boolean spillFailed = false;
+    
+    /**
+     * A spilled file of sorted values, each written as a vint length followed by its bytes
+     */
+    private static class SpilledSet {
+        private final SortedSetFileHandler handler;
+        private final BloomFilter<byte[]> bloom;
+        private final int count;
+        // the first value of each block, and the offset in the file at which the block starts
+        private final byte[][] indexValues;
+        private final long[] indexOffsets;
+        
+        private SpilledSet(SortedSetFileHandler handler, BloomFilter<byte[]> bloom, int count, byte[][] indexValues, long[] indexOffsets) {
+            this.handler = handler;
+            this.bloom = bloom;
+            this.count = count;
+            this.indexValues = indexValues;
+            this.indexOffsets = indexOffsets;
+        }
+        
+        private boolean contains(byte[] value, Comparator<byte[]> comparator) throws IOException {
+            // find the last block starting at or before the value
+            int block = Arrays.binarySearch(indexValues, value, comparator);
+            if (block >= 0) {
+                return true;
+            }
+            block = -block - 2;
+            if (block < 0) {
+                return false;
+            }
+            
+            int values = Math.min(INDEX_INTERVAL, count - block * INDEX_INTERVAL);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(handler.getInputStream()))) {
+                skipFully(in, indexOffsets[block]);
+                for (int i = 0; i < values; i++) {
+                    byte[] next = new byte[WritableUtils.readVInt(in)];
+                    in.readFully(next);
+                    int cmp = comparator.compare(next, value);
+                    if (cmp >= 0) {
+                        return cmp == 0;
+                    }
+                }
+            }
+            return false;
+        }
+        
+        private static void skipFully(InputStream in, long bytes) throws IOException {
+            while (bytes > 0) {
+                long skipped = in.skip(bytes);
+                if (skipped <= 0) {
+                    throw new EOFException("Unable to skip to the block at " + bytes + " bytes");
+                }
+                bytes -= skipped;
+            }
+        }
+        
+        @Override
+        public String toString() {
+            return handler.toString();
+        }
+    }
+    
+    /**
+     * @param maxMemory
+     *            the number of bytes of values to hold in memory before spilling them to a file
+     * @param handlerFactories
+     *            the factories for the spilled files; if none are supplied, or none of them work, the values are simply kept in memory
+     */
+    public SpillableByteArraySet(long maxMemory, List<SortedSetFileHandlerFactory> handlerFactories) {
+        this.maxMemory = maxMemory;
+        this.handlerFactories = handlerFactories;
+    }
+    
+    /**
+     * Add a value to the set
+     *
+     * @param value
+     * @return true if the value was not already in the set
+     */
+    public synchronized boolean add(byte[] value) {
+        if (contains(value)) {
+            return false;
+        }
+        
+        buffer.add(value);
+        bufferBytes += value.length + ENTRY_OVERHEAD;
+        size++;
+        if (bufferBytes > maxMemory && !spillFailed) {
+            spill();
+        }
+        return true;
+    }
+    
+    public synchronized boolean contains(byte[] value) {
+        if (buffer.contains(value)) {
+            return true;
+        }
+        for (SpilledSet s : spilled) {
+            // only a value which was spilled, or a rare false positive, requires a read of the file
+            try {
+                if (s.bloom.mightContain(value) && s.contains(value, comparator)) {
+                    return true;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read the spilled set " + s, e);
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Write the values held in memory to a new sorted file
+     */
+    private void spill() {
+        BloomFilter<byte[]> bloom = BloomFilter.create(Funnels.byteArrayFunnel(), buffer.size(), SPILL_FPP);
+        for (byte[] value : buffer) {
+            bloom.put(value);
+        }
+        
+        SpilledSet set = null;
+        for (Iterator<SortedSetFileHandlerFactory> it = handlerFactories.iterator(); set == null && it.hasNext();) {
+            SortedSetFileHandlerFactory handlerFactory = it.next();
+            if (!handlerFactory.isValid()) {
+                continue;
+            }
+            Exception cause = null;
+            for (int attempts = 0; attempts <= NUM_RETRIES && set == null; attempts++) {
+                SortedSetFileHandler handler = null;
+                try {
+                    handler = handlerFactory.createHandler();
+                    set = write(handler, bloom);
+                } catch (IOException e) {
+                    cause = e;
+                    if (handler != null) {
+                        handler.deleteFile();
+                    }
+                }
+            }
+            if (set == null) {
+                log.warn("Unable to spill the set using the file handler factory: " + handlerFactory, cause);
+            }
+        }
+        
+        if (set == null) {
+            // keep the values in memory rather than lose exactness
+            log.warn("Unable to spill " + buffer.size() + " values to a file; holding " + size + " values in memory");
+            spillFailed = true;
+            return;
+        }
+        
+        if (log.isDebugEnabled()) {
+            log.debug("Spilled " + buffer.size() + " values (" + bufferBytes + " bytes) to " + set);
+        }
+        spilled.add(set);
+        buffer = new TreeSet<>(comparator);
+        bufferBytes = 0;
+    }
+    
+    /**
+     * Write the values held in memory to the file of the handler, indexing the first value of each block
+     */
+    private SpilledSet write(SortedSetFileHandler handler, BloomFilter<byte[]> bloom) throws IOException {
+        int blocks = (buffer.size() + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+        byte[][] indexValues = new byte[blocks][];
+        long[] indexOffsets = new long[blocks];
+        
+        long offset = 0;
+        int count = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(handler.getOutputStream()))) {
+            for (byte[] value : buffer) {
+                if (count % INDEX_INTERVAL == 0) {
+                    indexValues[count / INDEX_INTERVAL] = value;
+                    indexOffsets[count / INDEX_INTERVAL] = offset;
+                }
+                WritableUtils.writeVInt(out, value.length);
+                out.write(value);
+                offset += WritableUtils.getVIntSize(value.length) + value.length;
+                count++;
+            }
+        }
+        return new SpilledSet(handler, bloom, count, indexValues, indexOffsets);
+    }
+    
+    public synchronized long size() {
+        return size;
+    }
+    
+    /**
+     * @return the estimated number of bytes of values held in memory
+     */
+    public synchronized long getMemoryUsed() {
+        return bufferBytes;
+    }
+    
+    public synchronized int getSpilledCount() {
+        return spilled.size();
+    }
+    
+    /**
+     * Empty the set, deleting any spilled files
+     */
+    public synchronized void clear() {
+        for (SpilledSet s : spilled) {
+            s.handler.deleteFile();
+        }
+        spilled.clear();
+        buffer.clear();
+        bufferBytes = 0;
+        size = 0;
+        spillFailed = false;
+    }
+}
@@ -0,0 +1,87 @@
+package datawave.core.iterators;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EvaluationSlotControllerTest {
+    
+    private final ThreadPoolExecutor pool = new ThreadPoolExecutor(12, 12, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+    
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+    
+    @Test
+    public void testFairShare() {
+        EvaluationSlotController controller = new EvaluationSlotController(pool, () -> 0.0, 2.0);
+        EvaluationSlotController.Grant first = controller.grant("query1", 25);
+        Assert.assertEquals(12, first.getSlots());
+        
+        EvaluationSlotController.Grant second = controller.grant("query2", 25);
+        Assert.assertEquals(6, second.getSlots());
+        EvaluationSlotController.Grant third = controller.grant("query3", 2);
+        Assert.assertEquals(2, third.getSlots());
+        Assert.assertEquals(3, controller.getActiveGrants(System.currentTimeMillis()));
+        
+        second.release();
+        third.release();
+        Assert.assertEquals(1, controller.getActiveGrants(System.currentTimeMillis()));
+        // the grant is reused, so it counts again
+        Assert.assertEquals(2, third.getSlots());
+        Assert.assertEquals(2, controller.getActiveGrants(System.currentTimeMillis()));
+    }
+    
+    @Test
+    public void testGrantsAreCountedByQuery() {
+        EvaluationSlotController controller = new EvaluationSlotController(pool, () -> 0.0, 2.0);
+        EvaluationSlotController.Grant first = controller.grant("query1", 25);
+        Assert.assertEquals(12, first.getSlots());
+        
+        // another scan session of the same query, e.g. the one replacing a session which has not released its grant, does not reduce the fair share
+        EvaluationSlotController.Grant second = controller.grant("query1", 25);
+        Assert.assertEquals(12, second.getSlots());
+        Assert.assertEquals(2, controller.getActiveGrants(System.currentTimeMillis()));
+        Assert.assertEquals(1, controller.getActiveQueries(System.currentTimeMillis()));
+        
+        // grants without a query id each count as a query of their own
+        EvaluationSlotController.Grant third = controller.grant(null, 25);
+        EvaluationSlotController.Grant fourth = controller.grant(null, 25);
+        Assert.assertEquals(4, fourth.getSlots());
+        Assert.assertEquals(3, controller.getActiveQueries(System.currentTimeMillis()));
+        
+        third.release();
+        fourth.release();
+        Assert.assertEquals(1, controller.getActiveQueries(System.currentTimeMillis()));
+    }
+    
+    @Test
+    public void testOverloaded() {
+        AtomicReference<Double> load = new AtomicReference<>(0.0);
+        EvaluationSlotController controller = new EvaluationSlotController(pool, load::get, 2.0);
+        Assert.assertFalse(controller.isOverloaded());
+        load.set(2.5);
+        Assert.assertTrue(controller.isOverloaded());
+        controller.setLoadThreshold(0);
+        Assert.assertFalse(controller.isOverloaded());
+    }
+    
+    @Test
+    public void testAdjust() {
+        // shrink by half while overloaded, but never below one slot
+        Assert.assertEquals(5, EvaluationSlotController.adjust(10, 25, 12, true));
+        Assert.assertEquals(1, EvaluationSlotController.adjust(1, 25, 12, true));
+        // grow by one up to the fair share and the request
+        Assert.assertEquals(6, EvaluationSlotController.adjust(5, 25, 12, false));
+        Assert.assertEquals(12, EvaluationSlotController.adjust(12, 25, 12, false));
+        Assert.assertEquals(4, EvaluationSlotController.adjust(4, 4, 12, false));
+        // a shrinking fair share takes effect immediately
+        Assert.assertEquals(3, EvaluationSlotController.adjust(10, 25, 3, false));
+    }
+}
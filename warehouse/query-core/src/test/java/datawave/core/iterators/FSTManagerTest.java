@@ -0,0 +1,120 @@
+package datawave.core.iterators;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import datawave.query.jexl.DatawaveArithmetic;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.fst.FST;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FSTManagerTest {
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    private FileSystem fs;
+    private Path fstFile;
+    
+    @Before
+    public void setup() throws IOException {
+        fs = FileSystem.getLocal(new Configuration());
+        fstFile = writeFST("values.fst", new TreeSet<>(Arrays.asList("bar", "baz", "foo")));
+    }
+    
+    private Path writeFST(String name, SortedSet<String> values) throws IOException {
+        File file = temporaryFolder.newFile(name);
+        FST<?> fst = DatawaveFieldIndexListIteratorJexl.getFST(values);
+        try (OutputStream out = new FileOutputStream(file)) {
+            fst.save(new OutputStreamDataOutput(out));
+        }
+        return new Path(file.toURI());
+    }
+    
+    @After
+    public void cleanup() {
+        DatawaveFieldIndexListIteratorJexl.FSTManager.clear();
+        DatawaveFieldIndexListIteratorJexl.FSTManager.setLocalDir(null);
+        DatawaveFieldIndexListIteratorJexl.FSTManager.setMaxBytes(DatawaveFieldIndexListIteratorJexl.FSTManager.DEFAULT_MAX_BYTES);
+    }
+    
+    @Test
+    public void testLoadedOnce() throws IOException {
+        FST<Object> fst = DatawaveFieldIndexListIteratorJexl.FSTManager.get(fstFile, null, fs);
+        Assert.assertSame(fst, DatawaveFieldIndexListIteratorJexl.FSTManager.get(fstFile, null, fs));
+        Assert.assertTrue(DatawaveArithmetic.matchesFst("baz", fst));
+        Assert.assertFalse(DatawaveArithmetic.matchesFst("qux", fst));
+    }
+    
+    @Test
+    public void testEvictedWhenTooLarge() throws IOException {
+        DatawaveFieldIndexListIteratorJexl.FSTManager.setMaxBytes(1);
+        FST<Object> fst = DatawaveFieldIndexListIteratorJexl.FSTManager.get(fstFile, null, fs);
+        Assert.assertTrue(DatawaveArithmetic.matchesFst("foo", fst));
+        Assert.assertNotSame(fst, DatawaveFieldIndexListIteratorJexl.FSTManager.get(fstFile, null, fs));
+    }
+    
+    @Test
+    public void testLargeFSTIsKept() throws IOException {
+        SortedSet<String> values = new TreeSet<>();
+        for (int i = 0; i < 200000; i++) {
+            values.add(String.format("value%08d", i * 7919L % 1000003));
+        }
+        Path largeFile = writeFST("large.fst", values);
+        long size = DatawaveFieldIndexListIteratorJexl.FSTManager.loadFSTFromFile(largeFile, null, fs).ramBytesUsed();
+        
+        // the FST is most of the cache, which is more than a segment of the cache could hold if the cache were split into several
+        DatawaveFieldIndexListIteratorJexl.FSTManager.setMaxBytes(size + size / 2);
+        FST<Object> fst = DatawaveFieldIndexListIteratorJexl.FSTManager.get(largeFile, null, fs);
+        Assert.assertSame(fst, DatawaveFieldIndexListIteratorJexl.FSTManager.get(largeFile, null, fs));
+        Assert.assertTrue(DatawaveArithmetic.matchesFst(values.first(), fst));
+        Assert.assertTrue(DatawaveArithmetic.matchesFst(values.last(), fst));
+    }
+    
+    @Test
+    public void testLocalCopyMadeAgain() throws IOException {
+        File localDir = new File(temporaryFolder.getRoot(), "local");
+        DatawaveFieldIndexListIteratorJexl.FSTManager.setLocalDir(localDir.getPath());
+        DatawaveFieldIndexListIteratorJexl.FSTManager.setMaxBytes(1);
+        Assert.assertTrue(DatawaveArithmetic.matchesFst("bar", DatawaveFieldIndexListIteratorJexl.FSTManager.get(fstFile, null, fs)));
+        File[] copies = localDir.listFiles();
+        Assert.assertEquals(1, copies.length);
+        
+        // a local copy which went missing is made again under the same name, and kept
+        Assert.assertTrue(copies[0].delete());
+        Assert.assertTrue(DatawaveArithmetic.matchesFst("baz", DatawaveFieldIndexListIteratorJexl.FSTManager.get(fstFile, null, fs)));
+        Assert.assertTrue(copies[0].exists());
+        Assert.assertEquals(1, localDir.listFiles().length);
+    }
+    
+    @Test
+    public void testLocalCopy() throws IOException {
+        File localDir = new File(temporaryFolder.getRoot(), "local");
+        DatawaveFieldIndexListIteratorJexl.FSTManager.setLocalDir(localDir.getPath());
+        FST<Object> fst = DatawaveFieldIndexListIteratorJexl.FSTManager.get(fstFile, null, fs);
+        Assert.assertTrue(DatawaveArithmetic.matchesFst("bar", fst));
+        Assert.assertFalse(DatawaveArithmetic.matchesFst("qux", fst));
+        Assert.assertEquals(1, localDir.listFiles().length);
+        
+        // the local copy is used once the original is gone
+        Assert.assertTrue(new File(fstFile.toUri()).delete());
+        DatawaveFieldIndexListIteratorJexl.FSTManager.setMaxBytes(1);
+        Assert.assertTrue(DatawaveArithmetic.matchesFst("foo", DatawaveFieldIndexListIteratorJexl.FSTManager.get(fstFile, null, fs)));
+        
+        DatawaveFieldIndexListIteratorJexl.FSTManager.clear();
+        Assert.assertEquals(0, localDir.listFiles().length);
+    }
+}
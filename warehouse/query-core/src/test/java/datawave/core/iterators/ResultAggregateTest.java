@@ -0,0 +1,86 @@
+package datawave.core.iterators;
+
+import java.util.Map;
+
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+
+public class ResultAggregateTest {
+    
+    private final Kryo kryo = new Kryo();
+    
+    @Test
+    public void testSerializationRoundTrip() {
+        ResultAggregate aggregate = new ResultAggregate();
+        aggregate.setVisibility(new ColumnVisibility("A&B"));
+        aggregate.incrementCount();
+        aggregate.incrementCount();
+        aggregate.addHistogramValue("GENDER", "MALE");
+        aggregate.addHistogramValue("GENDER", "FEMALE");
+        aggregate.addHistogramValue("GENDER", "MALE");
+        aggregate.offerDistinctValue("NAME", "alice");
+        aggregate.offerDistinctValue("NAME", "bob");
+        
+        ResultAggregate copy = ResultAggregate.fromValue(kryo, aggregate.toValue(kryo));
+        
+        Assert.assertEquals(2, copy.getCount());
+        Assert.assertEquals(new ColumnVisibility("A&B"), copy.getVisibility());
+        Assert.assertEquals(Long.valueOf(2), copy.getHistograms().get("GENDER").get("MALE"));
+        Assert.assertEquals(Long.valueOf(1), copy.getHistograms().get("GENDER").get("FEMALE"));
+        Assert.assertEquals(Long.valueOf(2), copy.getDistinctCounts().get("NAME"));
+    }
+    
+    @Test
+    public void testMerge() {
+        ResultAggregate first = new ResultAggregate();
+        first.incrementCount();
+        first.addHistogramValue("GENDER", "MALE");
+        first.offerDistinctValue("NAME", "alice");
+        
+        ResultAggregate second = new ResultAggregate();
+        second.incrementCount();
+        second.incrementCount();
+        second.addHistogramValue("GENDER", "MALE");
+        second.addHistogramValue("AGE", "40");
+        second.offerDistinctValue("NAME", "alice");
+        second.offerDistinctValue("NAME", "bob");
+        
+        first.merge(ResultAggregate.fromValue(kryo, second.toValue(kryo)));
+        
+        Assert.assertEquals(3, first.getCount());
+        Map<String,Map<String,Long>> histograms = first.getHistograms();
+        Assert.assertEquals(Long.valueOf(2), histograms.get("GENDER").get("MALE"));
+        Assert.assertEquals(Long.valueOf(1), histograms.get("AGE").get("40"));
+        // alice was seen in both partial aggregates but is only counted once
+        Assert.assertEquals(Long.valueOf(2), first.getDistinctCounts().get("NAME"));
+    }
+    
+    @Test
+    public void testHistogramLimit() {
+        ResultAggregate first = new ResultAggregate(2);
+        first.addHistogramValue("GENDER", "MALE");
+        first.addHistogramValue("GENDER", "FEMALE");
+        first.addHistogramValue("GENDER", "OTHER");
+        first.addHistogramValue("GENDER", "MALE");
+        Assert.assertEquals(2, first.getHistograms().get("GENDER").size());
+        Assert.assertEquals(Long.valueOf(2), first.getHistograms().get("GENDER").get("MALE"));
+        Assert.assertEquals(Long.valueOf(1), first.getHistogramOverflows().get("GENDER"));
+        
+        ResultAggregate second = new ResultAggregate(3);
+        second.addHistogramValue("GENDER", "UNKNOWN");
+        second.addHistogramValue("GENDER", "FEMALE");
+        second.addHistogramValue("GENDER", "OTHER");
+        
+        // the limit and the overflow survive serialization, and the smaller limit wins a merge
+        ResultAggregate merged = ResultAggregate.fromValue(kryo, second.toValue(kryo));
+        merged.merge(ResultAggregate.fromValue(kryo, first.toValue(kryo)));
+        Assert.assertEquals(2, merged.getMaxHistogramValues());
+        Assert.assertEquals(3, merged.getHistograms().get("GENDER").size());
+        Assert.assertEquals(Long.valueOf(2), merged.getHistograms().get("GENDER").get("FEMALE"));
+        Assert.assertNull(merged.getHistograms().get("GENDER").get("MALE"));
+        Assert.assertEquals(Long.valueOf(3), merged.getHistogramOverflows().get("GENDER"));
+    }
+}
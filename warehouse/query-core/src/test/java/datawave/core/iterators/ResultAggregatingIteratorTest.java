@@ -0,0 +1,70 @@
+package datawave.core.iterators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.collect.Maps;
+
+import datawave.query.iterator.SortedListKeyValueIterator;
+import datawave.query.iterator.profile.FinalDocumentTrackingIterator;
+
+public class ResultAggregatingIteratorTest {
+    
+    private final Kryo kryo = new Kryo();
+    
+    private Map.Entry<Key,Value> partial(String uid, String visibility, String... genders) {
+        ResultAggregate aggregate = new ResultAggregate(2);
+        aggregate.setVisibility(new ColumnVisibility(visibility));
+        for (String gender : genders) {
+            aggregate.incrementCount();
+            aggregate.addHistogramValue("GENDER", gender);
+        }
+        return Maps.immutableEntry(new Key("20190101_0", "datatype\u0000" + uid, "", visibility), aggregate.toValue(kryo));
+    }
+    
+    @Test
+    public void testMergesPartialsPerRange() throws Exception {
+        List<Map.Entry<Key,Value>> partials = new ArrayList<>();
+        partials.add(partial("a", "A", "MALE", "FEMALE"));
+        partials.add(partial("b", "B", "MALE", "OTHER", "MALE"));
+        // the timing details are appended after the aggregates and are not merged
+        Key finalKey = new Key("20190101_0", "datatype\u0000b", "\u2735FinalDocument\u2735");
+        Assert.assertTrue(FinalDocumentTrackingIterator.isFinalDocumentKey(finalKey));
+        partials.add(Maps.immutableEntry(finalKey, new Value(new byte[0])));
+        
+        ResultAggregatingIterator iterator = new ResultAggregatingIterator();
+        iterator.init(new SortedListKeyValueIterator(partials.iterator()), Collections.emptyMap(), null);
+        iterator.seek(new Range(), Collections.emptyList(), false);
+        
+        Assert.assertTrue(iterator.hasTop());
+        Assert.assertEquals("datatype\u0000b", iterator.getTopKey().getColumnFamily().toString());
+        ResultAggregate aggregate = ResultAggregate.fromValue(kryo, iterator.getTopValue());
+        Assert.assertEquals(5, aggregate.getCount());
+        Assert.assertEquals(new ColumnVisibility("A&B"), aggregate.getVisibility());
+        Assert.assertEquals(Long.valueOf(3), aggregate.getHistograms().get("GENDER").get("MALE"));
+        Assert.assertEquals(Long.valueOf(1), aggregate.getHistograms().get("GENDER").get("FEMALE"));
+        // the histogram was full when OTHER was merged in
+        Assert.assertEquals(Long.valueOf(1), aggregate.getHistogramOverflows().get("GENDER"));
+        
+        iterator.next();
+        Assert.assertFalse(iterator.hasTop());
+    }
+    
+    @Test
+    public void testEmptyRange() throws Exception {
+        ResultAggregatingIterator iterator = new ResultAggregatingIterator();
+        iterator.init(new SortedListKeyValueIterator(Collections.emptyIterator()), Collections.emptyMap(), null);
+        iterator.seek(new Range(), Collections.emptyList(), false);
+        Assert.assertFalse(iterator.hasTop());
+    }
+}
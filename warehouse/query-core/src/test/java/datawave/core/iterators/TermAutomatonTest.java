@@ -0,0 +1,128 @@
+package datawave.core.iterators;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import datawave.core.iterators.filter.GlobalIndexTermMatchingFilter;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.hadoop.io.WritableComparator;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TermAutomatonTest {
+    
+    private static final List<String> TERMS = Arrays.asList("", "a", "aa", "ab", "abc", "abcd", "b", "ba", "bar", "barn", "baz", "bazaar", "c", "car", "cat",
+                    "catalog", "dog", "dot", "foo", "foo.bar", "foo1", "foo12", "foo123", "fooa", "x-y", "x.y", "xy", "z", "z z", "z\tz", "\u00e9t\u00e9",
+                    "\u4e2d\u6587", "\ud83d\ude00x");
+    
+    private static final List<String> PATTERNS = Arrays.asList("a.*", ".*a", "ba[rz]", "ba(r|z)+.*", "foo\\d+", "foo\\d{2}", "foo\\d{1,2}", "foo\\..*",
+                    "[^a-c].*", "x[.-]y", "z\\sz", "z\\Sz", "\\w+", "\\W.*", ".*t.*", "^cat$", "(?:ca)t?.*", "[a-c&&[b]]", "\u00e9.*", ".*\u6587",
+                    "\ud83d\ude00.*", ".*?a", "d[^aeiou]g|dot");
+    
+    @Test
+    public void testMatchesJavaRegex() {
+        for (String pattern : PATTERNS) {
+            TermAutomaton automaton = TermAutomaton.create(Collections.singleton(pattern), Collections.emptySet(), false);
+            if (automaton == null) {
+                continue;
+            }
+            Pattern regex = Pattern.compile(pattern);
+            for (String term : TERMS) {
+                byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+                Assert.assertEquals(pattern + " on " + term, regex.matcher(term).matches(), automaton.accepts(bytes, 0, bytes.length));
+            }
+        }
+    }
+    
+    @Test
+    public void testUnsupportedPatterns() {
+        for (String pattern : Arrays.asList("a(?=b)", "(?i)abc", "a++", "\\bab", "(a)\\1", "[a-c&&[b]]", "\\p{Alpha}", "a{1000}", "\\Qa.b\\E", "a^b")) {
+            Assert.assertNull(pattern, TermAutomaton.create(Collections.singleton(pattern), Collections.emptySet(), false));
+        }
+    }
+    
+    @Test
+    public void testNextSkipsNoMatches() {
+        TreeSet<byte[]> rows = new TreeSet<>((a, b) -> WritableComparator.compareBytes(a, 0, a.length, b, 0, b.length));
+        for (String term : TERMS) {
+            rows.add(term.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        for (String pattern : PATTERNS) {
+            for (boolean reverse : new boolean[] {false, true}) {
+                TermAutomaton automaton = TermAutomaton.create(Collections.singleton(pattern), Collections.singleton("foo"), reverse);
+                if (automaton == null) {
+                    continue;
+                }
+                for (byte[] row : rows) {
+                    byte[] next = automaton.next(row, 0, row.length);
+                    if (next != null) {
+                        Assert.assertTrue(WritableComparator.compareBytes(next, 0, next.length, row, 0, row.length) > 0);
+                    }
+                    // every accepted row after this one must sort at or after the seek target
+                    for (byte[] later : rows.tailSet(row, false)) {
+                        if (automaton.accepts(later, 0, later.length)) {
+                            Assert.assertNotNull(pattern + " after " + new String(row, StandardCharsets.UTF_8), next);
+                            Assert.assertTrue(pattern, WritableComparator.compareBytes(later, 0, later.length, next, 0, next.length) >= 0);
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testIteratorSeeksToSameMatches() throws IOException {
+        TreeMap<Key,Value> data = new TreeMap<>();
+        for (String term : TERMS) {
+            for (String field : Arrays.asList("FIELD_A", "FIELD_B")) {
+                data.put(new Key(term, field, "20190101_0\u0000datatype"), new Value(new byte[0]));
+                data.put(new Key(new StringBuilder(term).reverse().toString(), field, "20190101_1\u0000datatype"), new Value(new byte[0]));
+            }
+        }
+        
+        for (String pattern : PATTERNS) {
+            if (TermAutomaton.create(Collections.singleton(pattern), Collections.emptySet(), false) == null) {
+                continue;
+            }
+            for (boolean reverse : new boolean[] {false, true}) {
+                List<Key> expected = scan(data, pattern, reverse, false);
+                List<Key> actual = scan(data, pattern, reverse, true);
+                Assert.assertEquals(pattern, expected, actual);
+            }
+        }
+    }
+    
+    private static List<Key> scan(TreeMap<Key,Value> data, String pattern, boolean reverse, boolean automaton) throws IOException {
+        Map<String,String> options = new HashMap<>();
+        options.put(GlobalIndexTermMatchingFilter.PATTERN + 1, pattern);
+        options.put(GlobalIndexTermMatchingFilter.LITERAL + 1, "dog");
+        options.put(GlobalIndexTermMatchingFilter.REVERSE_INDEX, Boolean.toString(reverse));
+        options.put(GlobalIndexTermMatchingIterator.AUTOMATON_SEEK, Boolean.toString(automaton));
+        
+        GlobalIndexTermMatchingIterator iterator = new GlobalIndexTermMatchingIterator();
+        iterator.init(new SortedMapIterator(data), options, null);
+        Assert.assertEquals(automaton, iterator.automaton != null);
+        iterator.seek(new Range(), Collections.emptySet(), false);
+        
+        List<Key> keys = new ArrayList<>();
+        while (iterator.hasTop()) {
+            keys.add(iterator.getTopKey());
+            iterator.next();
+        }
+        return keys;
+    }
+}
@@ -4,6 +4,8 @@ import com.google.common.collect.Sets;
 import datawave.data.type.LcNoDiacriticsType;
 import datawave.data.type.NoOpType;
 import datawave.data.type.NumberType;
+import datawave.query.util.TypeMetadata;
+import org.apache.accumulo.core.data.Key;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
@@ -45,4 +47,38 @@ public class AttributeFactoryTest {
         
     }
     
+    @Test
+    public void testLazyNormalization() {
+        TypeMetadata typeMetadata = new TypeMetadata();
+        typeMetadata.put("NUM", "datatype", NumberType.class.getName());
+        Key key = new Key("20190101_0", "datatype\u0000uid", "", "A", 1000L);
+        
+        AttributeFactory eagerFactory = new AttributeFactory(typeMetadata);
+        AttributeFactory lazyFactory = new AttributeFactory(typeMetadata);
+        MaterializationCounts counts = new MaterializationCounts();
+        lazyFactory.setLazyNormalization(counts);
+        
+        TypeAttribute<?> eager = (TypeAttribute<?>) eagerFactory.create("NUM", "12", key, true);
+        TypeAttribute<?> lazy = (TypeAttribute<?>) lazyFactory.create("NUM", "12", key, true);
+        TypeAttribute<?> unused = (TypeAttribute<?>) lazyFactory.create("NUM", "13", key, true);
+        TypeAttribute<?> unparsable = (TypeAttribute<?>) lazyFactory.create("NUM", "twelve", key, true);
+        
+        Assert.assertTrue(eager.isMaterialized());
+        Assert.assertFalse(lazy.isMaterialized());
+        Assert.assertEquals(3, counts.getCreated());
+        Assert.assertEquals(3, counts.getUnmaterialized());
+        
+        // the size estimate does not change when the type is built
+        long size = lazy.sizeInBytes();
+        Assert.assertEquals(eager.getType().normalize(), lazy.getType().normalize());
+        Assert.assertEquals(eager, lazy);
+        Assert.assertTrue(lazy.isMaterialized());
+        Assert.assertEquals(size, lazy.sizeInBytes());
+        
+        Assert.assertEquals(NoOpType.class, unparsable.getType().getClass());
+        Assert.assertEquals(2, counts.getMaterialized());
+        Assert.assertEquals(1, counts.getUnmaterialized());
+        Assert.assertFalse(unused.isMaterialized());
+    }
+    
 }
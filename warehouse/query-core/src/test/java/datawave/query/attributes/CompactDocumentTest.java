@@ -0,0 +1,142 @@
+package datawave.query.attributes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.accumulo.core.data.Key;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactDocumentTest {
+    
+    private static final Key DOC_KEY = new Key("20190101_0", "datatype\u0000uid", "", "A&B", 1000L);
+    
+    @Test
+    public void testSetMatchesLinkedHashSet() {
+        Set<Attribute<? extends Comparable<?>>> expected = new LinkedHashSet<>();
+        CompactAttributeSet compact = new CompactAttributeSet();
+        
+        // enough values to move past the linear search, with duplicates
+        for (int i = 0; i < 50; i++) {
+            Content content = new Content("value" + (i * 7 % 30), DOC_KEY, true);
+            Assert.assertEquals(expected.add(content), compact.add(content));
+        }
+        Assert.assertEquals(expected, compact);
+        Assert.assertEquals(compact, expected);
+        Assert.assertEquals(expected.hashCode(), compact.hashCode());
+        Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(compact));
+        
+        // remove every third value through the iterator, then make sure lookups still work
+        int i = 0;
+        for (Iterator<Attribute<? extends Comparable<?>>> it = compact.iterator(); it.hasNext(); i++) {
+            Attribute<?> attr = it.next();
+            if (i % 3 == 0) {
+                it.remove();
+                expected.remove(attr);
+            }
+        }
+        compact.trim();
+        Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(compact));
+        for (int j = 0; j < 30; j++) {
+            Content content = new Content("value" + j, DOC_KEY, true);
+            Assert.assertEquals(expected.contains(content), compact.contains(content));
+        }
+    }
+    
+    @Test
+    public void testCompactDocumentMatches() throws IOException {
+        Document document = new Document(DOC_KEY, true, true, false);
+        Document compact = new Document(DOC_KEY, true, true, true);
+        for (Document d : new Document[] {document, compact}) {
+            populate(d);
+        }
+        
+        Assert.assertEquals(document.size(), compact.size());
+        Assert.assertEquals(document.getDictionary(), compact.getDictionary());
+        Assert.assertArrayEquals(serialize(document), serialize(compact));
+        Assert.assertArrayEquals(serialize(document.copy()), serialize(compact.copy()));
+        Assert.assertTrue(compact.isCompact());
+        Assert.assertTrue(compact.copy().isCompact());
+        Assert.assertTrue(((Attributes) compact.get("FOO")).isCompact());
+        Assert.assertTrue(compact.sizeInBytes() < document.sizeInBytes());
+    }
+    
+    @Test
+    public void testCompactDocumentSharesMetadata() {
+        Document compact = new Document(DOC_KEY, true, true, true);
+        populate(compact);
+        
+        List<Attribute<?>> attrs = new ArrayList<>();
+        for (Attribute<?> attr : compact.getAttributes()) {
+            if (attr instanceof Attributes) {
+                attrs.addAll(((Attributes) attr).getAttributes());
+            } else {
+                attrs.add(attr);
+            }
+        }
+        Assert.assertTrue(attrs.size() > 1);
+        for (Attribute<?> attr : attrs) {
+            Assert.assertSame(attrs.get(0).getMetadata(), attr.getMetadata());
+        }
+        
+        // field names are interned across documents
+        Document other = new Document(DOC_KEY, true, true, true);
+        populate(other);
+        Iterator<String> otherFields = other.getDictionary().keySet().iterator();
+        for (String field : compact.getDictionary().keySet()) {
+            Assert.assertSame(field, otherFields.next());
+        }
+    }
+    
+    /**
+     * Fill the document with attributes which each carry their own copy of the document key, as they do when read from separate keys
+     */
+    @Test
+    public void testSharingMetadataLeavesTheAttributesPutUnchanged() {
+        Document compact = new Document(DOC_KEY, true, true, true);
+        compact.put("FOO", new Content("foo", new Key(DOC_KEY), true));
+        
+        // attributes which are held elsewhere as well, one on its own and one within a set
+        Content bar = new Content("bar", new Key(DOC_KEY), true);
+        Key barMetadata = bar.getMetadata();
+        Content baz = new Content("baz", new Key(DOC_KEY), true);
+        Key bazMetadata = baz.getMetadata();
+        Attributes bazs = new Attributes(true);
+        bazs.add(baz);
+        bazs.add(new Content("baz2", new Key(DOC_KEY), true));
+        compact.put("BAR", bar);
+        compact.put("BAZ", bazs);
+        
+        Assert.assertSame(barMetadata, bar.getMetadata());
+        Assert.assertSame(bazMetadata, baz.getMetadata());
+        
+        // while the document holds copies pointing at the shared key
+        Key shared = compact.get("FOO").getMetadata();
+        Assert.assertEquals(bar, compact.get("BAR"));
+        Assert.assertSame(shared, compact.get("BAR").getMetadata());
+        for (Attribute<?> attr : ((Attributes) compact.get("BAZ")).getAttributes()) {
+            Assert.assertSame(shared, attr.getMetadata());
+        }
+    }
+    
+    private static void populate(Document d) {
+        for (int i = 0; i < 20; i++) {
+            d.put(new String("FOO"), new Content("foo" + i, new Key(DOC_KEY), true));
+        }
+        d.put(new String("BAR"), new Content("bar", new Key(DOC_KEY), true));
+        d.put(new String("BAR"), new Content("bar", new Key(DOC_KEY), true));
+        d.put(new String("BAZ"), new Content("baz", new Key(DOC_KEY), true));
+    }
+    
+    private static byte[] serialize(Document d) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        d.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
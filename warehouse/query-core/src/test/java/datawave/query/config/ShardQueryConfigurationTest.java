@@ -8,6 +8,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import datawave.core.iterators.ResultAggregate;
 import datawave.data.type.DateType;
 import datawave.data.type.DiscreteIndexType;
 import datawave.data.type.GeometryType;
@@ -18,6 +19,7 @@ import datawave.query.DocumentSerialization;
 import datawave.query.function.DocumentPermutation;
 import datawave.query.function.DocumentProjection;
 import datawave.query.model.QueryModel;
+import datawave.query.util.sortedset.SpillableByteArraySet;
 import datawave.util.TableName;
 import datawave.webservice.query.QueryImpl;
 import org.junit.Assert;
@@ -143,6 +145,9 @@ public class ShardQueryConfigurationTest {
         Assert.assertTrue(config.getAllowShortcutEvaluation());
         Assert.assertFalse(config.getBypassAccumulo());
         Assert.assertFalse(config.getSpeculativeScanning());
+        Assert.assertFalse(config.getHedgedScanning());
+        Assert.assertEquals(0.95, config.getHedgeLatencyPercentile(), 0.0);
+        Assert.assertEquals(0.1, config.getMaxHedgeFraction(), 0.0);
         Assert.assertFalse(config.isDisableEvaluation());
         Assert.assertFalse(config.isContainsIndexOnlyTerms());
         Assert.assertFalse(config.isContainsCompositeTerms());
@@ -190,6 +195,33 @@ public class ShardQueryConfigurationTest {
         Assert.assertFalse(config.getAccrueStats());
         Assert.assertEquals(Sets.newHashSet(), config.getGroupFields());
         Assert.assertEquals(Sets.newHashSet(), config.getUniqueFields());
+        Assert.assertFalse(config.isAggregateResults());
+        Assert.assertEquals(Sets.newHashSet(), config.getHistogramFields());
+        Assert.assertEquals(Sets.newHashSet(), config.getDistinctCountFields());
+        Assert.assertEquals(ResultAggregate.DEFAULT_MAX_HISTOGRAM_VALUES, config.getMaxHistogramValues());
+        Assert.assertFalse(config.isCompiledEvaluation());
+        Assert.assertFalse(config.isPackedTermOffsets());
+        Assert.assertFalse(config.isLazyTermFrequencies());
+        Assert.assertEquals(32, config.getTermFrequencyBatchSize());
+        Assert.assertFalse(config.isCompactDocuments());
+        Assert.assertFalse(config.isLazyAttributeNormalization());
+        Assert.assertEquals(SpillableByteArraySet.DEFAULT_MAX_MEMORY, config.getUniqueMaxMemory());
+        Assert.assertTrue(config.isQueryTemplateCache());
+        Assert.assertEquals(0, config.getTopK());
+        Assert.assertNull(config.getTopKField());
+        Assert.assertFalse(config.getLocalityScheduler());
+        Assert.assertEquals(4, config.getMaxScansPerServer());
+        Assert.assertEquals(0.0, config.getSampleRate(), 0.0);
+        Assert.assertEquals(0L, config.getSampleSeed());
+        Assert.assertEquals(0, config.getDocumentFetchBatchSize());
+        Assert.assertEquals(10, config.getDocumentFetchMaxNexts());
+        Assert.assertFalse(config.isQueryPlanCache());
+        Assert.assertEquals(5 * 60 * 1000L, config.getQueryPlanCacheTtl());
+        Assert.assertFalse(config.isIndexLookupCache());
+        Assert.assertEquals(7, config.getIndexLookupCacheHorizon());
+        Assert.assertEquals(256L * 1024 * 1024, config.getIndexLookupCacheMaxBytes());
+        Assert.assertEquals(60 * 60 * 1000L, config.getIndexLookupCacheTtl());
+        Assert.assertFalse(config.isAutomatonRegexExpansion());
         Assert.assertFalse(config.getCacheModel());
         Assert.assertTrue(config.isTrackSizes());
         Assert.assertEquals(Lists.newArrayList(), config.getContentFieldNames());
@@ -437,7 +469,7 @@ public class ShardQueryConfigurationTest {
      */
     @Test
     public void testCheckForNewAdditions() throws IOException {
-        int expectedObjectCount = 176;
+        int expectedObjectCount = 209;
         ShardQueryConfiguration config = ShardQueryConfiguration.create();
         ObjectMapper mapper = new ObjectMapper();
         JsonNode root = mapper.readTree(mapper.writeValueAsString(config));
@@ -244,6 +244,49 @@ public class DiscoveryIteratorTest {
         
     }
     
+    @Test
+    public void testRollups() throws Throwable {
+        DiscoveryIterator disc = new DiscoveryIterator();
+        
+        Map<String,String> map = Maps.newHashMap();
+        map.put(DiscoveryLogic.ROLLUP, "true");
+        
+        TreeMap<Key,Value> ohMap = Maps.newTreeMap();
+        ohMap.put(new Key("term", "field", "2019\u0000t1", "FOO"), new Value(makeUidList(50).toByteArray()));
+        ohMap.put(new Key("term", "field", "201901\u0000t1", "FOO"), new Value(makeUidList(20).toByteArray()));
+        ohMap.put(new Key("term", "field", "201901\u0000t2", "FOO"), new Value(makeUidList(30).toByteArray()));
+        ohMap.put(new Key("term", "field", "201902\u0000t1", "FOO"), new Value(makeUidList(40).toByteArray()));
+        disc.init(new SortedMapIterator(ohMap), map, null);
+        
+        disc.seek(new Range(), Collections.emptyList(), false);
+        
+        // the year and each month are separate periods, although the year is a prefix of the months
+        Map<String,Long> counts = Maps.newHashMap();
+        while (disc.hasTop()) {
+            Key key = disc.getTopKey();
+            assertEquals("term", key.getRow().toString());
+            assertEquals("field", key.getColumnFamily().toString());
+            
+            DataInputBuffer in = new DataInputBuffer();
+            in.reset(disc.getTopValue().get(), disc.getTopValue().getSize());
+            ArrayWritable valWrapper = new ArrayWritable(DiscoveredThing.class);
+            valWrapper.readFields(in);
+            for (Writable value : valWrapper.get()) {
+                DiscoveredThing thing = (DiscoveredThing) value;
+                assertEquals(thing.getDate() + "\uffff", key.getColumnQualifier().toString());
+                assertEquals(null, counts.put(thing.getDate() + "/" + thing.getType(), thing.getCount()));
+            }
+            disc.next();
+        }
+        
+        Map<String,Long> expected = Maps.newHashMap();
+        expected.put("2019/t1", 50L);
+        expected.put("201901/t1", 20L);
+        expected.put("201901/t2", 30L);
+        expected.put("201902/t1", 40L);
+        assertEquals(expected, counts);
+    }
+    
     void writeSample(BatchWriter writer) throws MutationsRejectedException {
         writeSample(writer, false);
     }
@@ -151,6 +151,16 @@ public class DiscoveryLogicTest {
         }
     }
     
+    protected void insertIndex(String term, String field, String day, int count) throws Throwable {
+        BatchWriterConfig config = new BatchWriterConfig().setMaxMemory(1024L).setMaxLatency(1, TimeUnit.SECONDS).setMaxWriteThreads(1);
+        try (BatchWriter writer = client.createBatchWriter(QueryTestTableHelper.SHARD_INDEX_TABLE_NAME, config)) {
+            Mutation m = new Mutation(term);
+            m.put(field, day + "_0\u0000datatype", new ColumnVisibility("FOO"), dateFormatter.parse(day).getTime(),
+                            new Value(makeUidList(count).toByteArray()));
+            writer.addMutation(m);
+        }
+    }
+    
     protected void insertForwardModel(String from, String to) throws Throwable {
         BatchWriterConfig config = new BatchWriterConfig().setMaxMemory(1024L).setMaxLatency(1, TimeUnit.SECONDS).setMaxWriteThreads(1);
         ColumnVisibility viz = new ColumnVisibility("FOO");
@@ -197,6 +207,62 @@ public class DiscoveryLogicTest {
         return logic.iterator();
     }
     
+    /**
+     * @return the count of each term and field, summed over the dates discovered
+     */
+    protected Map<String,Long> sumCounts(Iterator<DiscoveredThing> things, Set<String> dates) {
+        Map<String,Long> counts = new HashMap<>();
+        while (things.hasNext()) {
+            DiscoveredThing thing = things.next();
+            counts.merge(thing.getTerm() + ":" + thing.getField(), thing.getCount(), Long::sum);
+            dates.add(thing.getDate());
+        }
+        return counts;
+    }
+    
+    @Test
+    public void testRollupsAgreeWithTheIndex() throws Throwable {
+        // a day after the high-water mark, which is read from the index either way
+        insertIndex("onyx", "ROCK", "20130205", 7);
+        
+        long run = System.currentTimeMillis();
+        String rollupTable = "discoveryRollups";
+        client.tableOperations().create(rollupTable);
+        BatchWriterConfig config = new BatchWriterConfig().setMaxMemory(1024L).setMaxLatency(1, TimeUnit.SECONDS).setMaxWriteThreads(1);
+        ColumnVisibility viz = new ColumnVisibility("FOO");
+        try (BatchWriter writer = client.createBatchWriter(rollupTable, config)) {
+            // each term was indexed in 10 shards on three days of January, with a count of 24
+            for (Pair<String,String> p : terms) {
+                Mutation m = new Mutation(p.getValue0().toLowerCase());
+                m.put(p.getValue1().toUpperCase(), "201301\u0000datatype", viz, run, new Value(makeUidList(720).toByteArray()));
+                writer.addMutation(m);
+            }
+            // left behind by an earlier run, for a field which has since aged off the index
+            Mutation stale = new Mutation("onyx");
+            stale.put("NETWORK", "201301\u0000datatype", viz, run - 1, new Value(makeUidList(5).toByteArray()));
+            writer.addMutation(stale);
+            
+            Mutation mark = new Mutation(DiscoveryRollups.HIGH_WATER_MARK_ROW);
+            mark.put(DiscoveryRollups.HIGH_WATER_MARK_COLF, "", run, new Value("20130201".getBytes()));
+            writer.addMutation(mark);
+        }
+        logic.setRollupTableName(rollupTable);
+        
+        Date begin = dateFormatter.parse("20130101");
+        Date end = dateFormatter.parse("20130228");
+        Set<String> indexDates = Sets.newHashSet();
+        Map<String,Long> index = sumCounts(runTestQuery("onyx OR bbc", begin, end), indexDates);
+        Set<String> rollupDates = Sets.newHashSet();
+        Map<String,String> params = new HashMap<>();
+        params.put(DiscoveryLogic.USE_ROLLUPS, "true");
+        Map<String,Long> rollups = sumCounts(runTestQuery("onyx OR bbc", params, begin, end), rollupDates);
+        
+        assertEquals(ImmutableSet.of("20130101", "20130102", "20130103", "20130205"), indexDates);
+        assertEquals(ImmutableSet.of("201301", "20130205"), rollupDates);
+        assertEquals(727L, index.get("onyx:ROCK").longValue());
+        assertEquals(index, rollups);
+    }
+    
     @Test
     public void testUnfieldedLiterals() throws Throwable {
         Set<Pair<String,String>> matches = Sets.newHashSet();
@@ -0,0 +1,89 @@
+package datawave.query.discovery;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.apache.commons.lang.math.LongRange;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DiscoveryRollupsTest {
+    
+    private static final Date HIGH_WATER_MARK = date("20200301 00:00:00");
+    
+    @Test
+    public void testWholeYearsAndEdges() {
+        DiscoveryRollups rollups = DiscoveryRollups.split(date("20170620 08:00:00"), date("20191110 23:59:59"), HIGH_WATER_MARK);
+        Assert.assertEquals(Arrays.asList("201707", "201708", "201709", "201710", "201711", "201712", "2018", "201901", "201902", "201903", "201904", "201905",
+                        "201906", "201907", "201908", "201909", "201910"), Arrays.asList(rollups.getPeriods().toArray()));
+        Assert.assertEquals(Arrays.asList(range("20170620 00:00:00", date("20170701 00:00:00").getTime() - 1),
+                        range("20191101 00:00:00", date("20191110 23:59:59").getTime())), rollups.getRawDateRanges());
+    }
+    
+    @Test
+    public void testPartialMonthOnly() {
+        DiscoveryRollups rollups = DiscoveryRollups.split(date("20190102 00:00:00"), date("20190130 00:00:00"), HIGH_WATER_MARK);
+        Assert.assertTrue(rollups.getPeriods().isEmpty());
+        Assert.assertEquals(Collections.singletonList(range("20190102 00:00:00", date("20190130 00:00:00").getTime())), rollups.getRawDateRanges());
+    }
+    
+    @Test
+    public void testEndOfMonthIsIncluded() {
+        // the end date only has to reach the start of the last day, as the index timestamps are truncated to the day
+        DiscoveryRollups rollups = DiscoveryRollups.split(date("20190101 00:00:00"), date("20190131 00:00:00"), HIGH_WATER_MARK);
+        Assert.assertEquals(Collections.singletonList("201901"), Arrays.asList(rollups.getPeriods().toArray()));
+        Assert.assertTrue(rollups.getRawDateRanges().isEmpty());
+    }
+    
+    @Test
+    public void testCurrentPeriodsAreNotRolledUp() {
+        DiscoveryRollups rollups = DiscoveryRollups.split(date("20200101 00:00:00"), date("20201231 00:00:00"), HIGH_WATER_MARK);
+        Assert.assertEquals(Arrays.asList("202001", "202002"), Arrays.asList(rollups.getPeriods().toArray()));
+        Assert.assertEquals(Collections.singletonList(range("20200301 00:00:00", date("20201231 00:00:00").getTime())), rollups.getRawDateRanges());
+    }
+    
+    @Test
+    public void testPeriodsEndingAfterTheHighWaterMarkAreNotRolledUp() {
+        // a mark part way through a month, as when the job is run with an explicit mark
+        DiscoveryRollups rollups = DiscoveryRollups.split(date("20190101 00:00:00"), date("20191231 00:00:00"), date("20190315 00:00:00"));
+        Assert.assertEquals(Arrays.asList("201901", "201902"), Arrays.asList(rollups.getPeriods().toArray()));
+        Assert.assertEquals(Collections.singletonList(range("20190301 00:00:00", date("20191231 00:00:00").getTime())), rollups.getRawDateRanges());
+    }
+    
+    @Test
+    public void testDefaultHighWaterMarkIsTheStartOfTheMonth() {
+        Assert.assertEquals("20200301", DiscoveryRollups.highWaterMark(date("20200315 12:00:00")));
+        Assert.assertEquals("20200301", DiscoveryRollups.highWaterMark(date("20200301 00:00:00")));
+        Assert.assertEquals(date("20200301 00:00:00"), DiscoveryRollups.parseDay("20200301"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidHighWaterMark() {
+        DiscoveryRollups.parseDay("20201301");
+    }
+    
+    @Test
+    public void testEmptyRange() {
+        DiscoveryRollups rollups = DiscoveryRollups.split(date("20190201 00:00:00"), date("20190101 00:00:00"), HIGH_WATER_MARK);
+        Assert.assertTrue(rollups.getPeriods().isEmpty());
+        Assert.assertTrue(rollups.getRawDateRanges().isEmpty());
+    }
+    
+    private static LongRange range(String begin, long end) {
+        return new LongRange(date(begin).getTime(), end);
+    }
+    
+    private static Date date(String date) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd HH:mm:ss");
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(date);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package datawave.query.discovery;
+
+import datawave.ingest.protobuf.Uid;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TermInfoTest {
+    
+    private static final Value COUNT = new Value(Uid.List.newBuilder().setIGNORE(true).setCOUNT(42).build().toByteArray());
+    
+    @Test
+    public void testRollupPeriods() {
+        TermInfo year = new TermInfo(new Key("term", "FIELD", "2019\0csv", "FOO"), COUNT, true);
+        assertTrue(year.valid);
+        assertEquals("2019", year.date);
+        assertEquals("csv", year.datatype);
+        assertEquals(42L, year.count);
+        assertEquals("FOO", new String(year.vis.getExpression()));
+        
+        TermInfo month = new TermInfo(new Key("term", "FIELD", "201901\0csv", "FOO"), COUNT, true);
+        assertTrue(month.valid);
+        assertEquals("201901", month.date);
+        assertEquals("csv", month.datatype);
+    }
+    
+    @Test
+    public void testInvalidRollups() {
+        // too short to be a year, a tasking entry, and the high-water mark
+        assertFalse(new TermInfo(new Key("term", "FIELD", "201\0csv", "FOO"), COUNT, true).valid);
+        assertFalse(new TermInfo(new Key("term", "FIELD", "csv\u000020190101\0task", "FOO"), COUNT, true).valid);
+        assertFalse(new TermInfo(new Key(DiscoveryRollups.HIGH_WATER_MARK_ROW, DiscoveryRollups.HIGH_WATER_MARK_COLF, ""), new Value("20200301".getBytes()),
+                        true).valid);
+    }
+}
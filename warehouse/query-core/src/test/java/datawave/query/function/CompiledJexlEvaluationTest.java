@@ -0,0 +1,104 @@
+package datawave.query.function;
+
+import datawave.query.attributes.Content;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.ValueTuple;
+import datawave.query.jexl.DatawaveJexlContext;
+import datawave.query.jexl.DefaultArithmetic;
+import datawave.query.jexl.HitListArithmetic;
+import datawave.query.util.Tuple3;
+import org.apache.accumulo.core.data.Key;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+public class CompiledJexlEvaluationTest {
+    
+    private static final String[] QUERIES = {"FOO == 'bar'", "FOO != 'bar'", "FOO == 'bar' && BAZ == 'qux'", "FOO == 'nope' || BAZ == 'qux'",
+            "!(FOO == 'bar')", "FOO =~ 'b.*'", "FOO !~ 'b.*'", "NUM > 5", "NUM <= 5", "FOO == 'bar' && (BAZ == 'nope' || NUM >= 10)",
+            "FOO == 'bar' && filter:includeRegex(BAZ, 'q.*')", "(_Delayed_ = true) && (FOO == 'bar')", "MISSING == 'bar'", "MISSING == null"};
+    
+    @Test
+    public void testCompiledMatchesInterpreted() {
+        for (String query : QUERIES) {
+            for (DatawaveJexlContext context : new DatawaveJexlContext[] {context("bar", "qux", 10), context("baz", "nope", 3), new DatawaveJexlContext()}) {
+                boolean interpreted = new JexlEvaluation(query, new DefaultArithmetic()).apply(new Tuple3<>(new Key(), new Document(), context));
+                boolean compiled = new CompiledJexlEvaluation(query, new DefaultArithmetic()).apply(new Tuple3<>(new Key(), new Document(), context));
+                Assert.assertEquals(query + " against " + context, interpreted, compiled);
+            }
+        }
+    }
+    
+    private static DatawaveJexlContext context(String foo, String baz, int num) {
+        DatawaveJexlContext context = new DatawaveJexlContext();
+        context.set("FOO", foo);
+        context.set("BAZ", baz);
+        context.set("NUM", num);
+        return context;
+    }
+    
+    @Test
+    public void testCompiledHitsMatchInterpreted() {
+        for (boolean exhaustive : new boolean[] {false, true}) {
+            for (String query : QUERIES) {
+                for (DatawaveJexlContext context : new DatawaveJexlContext[] {hitContext("bar", "qux", "10"), hitContext("baz", "nope", "3")}) {
+                    HitListArithmetic interpretedHits = new HitListArithmetic(exhaustive);
+                    boolean interpreted = new JexlEvaluation(query, interpretedHits).evaluate(context);
+                    HitListArithmetic compiledHits = new HitListArithmetic(exhaustive);
+                    boolean compiled = new CompiledJexlEvaluation(query, compiledHits).evaluate(context);
+                    
+                    Assert.assertEquals(query + " against " + context, interpreted, compiled);
+                    Assert.assertEquals(query + " against " + context, interpretedHits.getHitSet(), compiledHits.getHitSet());
+                }
+            }
+        }
+        
+        HitListArithmetic hits = new HitListArithmetic(true);
+        Assert.assertTrue(new CompiledJexlEvaluation("FOO == 'nope' || BAZ == 'qux'", hits).evaluate(hitContext("bar", "qux", "10")));
+        Assert.assertEquals(Collections.singleton("BAZ:qux"), hits.getHitSet());
+    }
+    
+    @Test
+    public void testFieldsAreResolvedOncePerDocument() {
+        Map<String,Integer> lookups = new HashMap<>();
+        DatawaveJexlContext context = new DatawaveJexlContext() {
+            @Override
+            public Object get(String name) {
+                lookups.merge(name, 1, Integer::sum);
+                return super.get(name);
+            }
+        };
+        context.set("FOO", "bar");
+        context.set("BAZ", "qux");
+        
+        CompiledJexlEvaluation evaluation = new CompiledJexlEvaluation("FOO == 'x' || FOO == 'y' || (BAZ == 'qux' && FOO == 'bar')", new DefaultArithmetic());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(evaluation.apply(new Tuple3<>(new Key(), new Document(), context)));
+        }
+        
+        // the slots are rebound for each document, but a field referred to several times is only looked up once per document
+        Assert.assertEquals(Integer.valueOf(3), lookups.get("FOO"));
+        Assert.assertEquals(Integer.valueOf(3), lookups.get("BAZ"));
+    }
+    
+    private static DatawaveJexlContext hitContext(String foo, String baz, String num) {
+        DatawaveJexlContext context = new DatawaveJexlContext();
+        context.set("FOO", tuples("FOO", foo, "other"));
+        context.set("BAZ", tuples("BAZ", baz));
+        context.set("NUM", tuples("NUM", num));
+        return context;
+    }
+    
+    private static HashSet<ValueTuple> tuples(String field, String... values) {
+        HashSet<ValueTuple> tuples = new HashSet<>();
+        for (String value : Arrays.asList(values)) {
+            tuples.add(new ValueTuple(field, value, value, new Content(value, new Key("row", "datatype\u0000uid"), true)));
+        }
+        return tuples;
+    }
+}
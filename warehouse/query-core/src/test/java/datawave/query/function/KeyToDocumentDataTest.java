@@ -0,0 +1,128 @@
+package datawave.query.function;
+
+import com.google.common.collect.Maps;
+import datawave.query.attributes.Document;
+import datawave.query.iterator.SortedListKeyValueIterator;
+import datawave.query.iterator.aggregation.DocumentData;
+import datawave.query.iterator.profile.QuerySpan;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyToDocumentDataTest {
+    
+    private static final String ROW = "20190101_0";
+    
+    private final TreeMap<Key,Value> data = new TreeMap<>();
+    
+    // the documents to fetch, skipping over those between them
+    private final List<Key> documents = Arrays.asList(docKey(0), docKey(1), docKey(5), docKey(9));
+    
+    private int current = 0;
+    
+    @Before
+    public void setup() {
+        for (int i = 0; i < 10; i++) {
+            String cf = "datatype\0uid" + i;
+            for (int j = 0; j < 20; j++) {
+                data.put(new Key(ROW, cf, "FIELD" + j + "\0value" + i), new Value(("" + i).getBytes()));
+            }
+            data.put(new Key(ROW, "d", "datatype\0uid" + i + "\0document"), new Value());
+            data.put(new Key(ROW, "tf", "datatype\0uid" + i + "\0value\0FIELD"), new Value());
+        }
+    }
+    
+    private static Key docKey(int uid) {
+        return new Key(ROW, "datatype\0uid" + uid);
+    }
+    
+    private List<Key> upcoming() {
+        return new ArrayList<>(documents.subList(current + 1, documents.size()));
+    }
+    
+    private List<DocumentData> fetch(KeyToDocumentData keyToDocumentData) {
+        List<DocumentData> fetched = new ArrayList<>();
+        for (current = 0; current < documents.size(); current++) {
+            Entry<DocumentData,Document> entry = keyToDocumentData.apply(Maps.immutableEntry(documents.get(current), new Document()));
+            fetched.add(entry.getKey());
+        }
+        return fetched;
+    }
+    
+    @Test
+    public void testBatchedFetchMatchesUnbatched() {
+        QuerySpan unbatchedSpan = new QuerySpan(null);
+        List<DocumentData> unbatched = fetch(new KeyToDocumentData(new SortedListKeyValueIterator(data)).withQuerySpan(unbatchedSpan));
+        
+        QuerySpan batchedSpan = new QuerySpan(null);
+        List<DocumentData> batched = fetch(new KeyToDocumentData(new SortedListKeyValueIterator(data)).withBatchedFetch(4, 10, this::upcoming)
+                        .withQuerySpan(batchedSpan));
+        
+        assertEquals(unbatched.size(), batched.size());
+        for (int i = 0; i < unbatched.size(); i++) {
+            List<Entry<Key,Value>> attributes = batched.get(i).getData();
+            assertEquals(20, attributes.size());
+            assertEquals(unbatched.get(i).getData(), attributes);
+            assertEquals(unbatched.get(i).getDocKeys(), batched.get(i).getDocKeys());
+            for (Entry<Key,Value> attribute : attributes) {
+                assertTrue(attribute.getKey().equals(documents.get(i), PartialKey.ROW_COLFAM));
+            }
+        }
+        
+        assertEquals(4, unbatchedSpan.getFetchedDocuments());
+        assertEquals(4, unbatchedSpan.getFetchSeeks());
+        
+        // one seek for the batch, and one over each of the two gaps of 60 keys
+        assertEquals(4, batchedSpan.getFetchedDocuments());
+        assertEquals(3, batchedSpan.getFetchSeeks());
+    }
+    
+    @Test
+    public void testSmallGapsAreCrossedWithoutSeeking() {
+        QuerySpan span = new QuerySpan(null);
+        List<DocumentData> batched = fetch(new KeyToDocumentData(new SortedListKeyValueIterator(data)).withBatchedFetch(4, 100, this::upcoming)
+                        .withQuerySpan(span));
+        
+        assertEquals(4, batched.size());
+        assertEquals(4, span.getFetchedDocuments());
+        assertEquals(1, span.getFetchSeeks());
+    }
+    
+    @Test
+    public void testBatchesAreRefetched() {
+        QuerySpan span = new QuerySpan(null);
+        List<DocumentData> batched = fetch(new KeyToDocumentData(new SortedListKeyValueIterator(data)).withBatchedFetch(2, 100, this::upcoming)
+                        .withQuerySpan(span));
+        
+        assertEquals(4, batched.size());
+        for (DocumentData documentData : batched) {
+            assertFalse(documentData.getData().isEmpty());
+        }
+        assertEquals(4, span.getFetchedDocuments());
+        assertEquals(2, span.getFetchSeeks());
+    }
+    
+    @Test
+    public void testMissingDocument() {
+        KeyToDocumentData keyToDocumentData = new KeyToDocumentData(new SortedListKeyValueIterator(data)).withBatchedFetch(4, 10,
+                        () -> Collections.singletonList(docKey(3)));
+        Entry<DocumentData,Document> entry = keyToDocumentData.apply(Maps.immutableEntry(new Key(ROW, "datatype\0uid10"), new Document()));
+        assertTrue(entry.getKey().getData().isEmpty());
+        
+        entry = keyToDocumentData.apply(Maps.immutableEntry(docKey(3), new Document()));
+        assertEquals(20, entry.getKey().getData().size());
+    }
+}
@@ -0,0 +1,152 @@
+package datawave.query.index.lookup;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import datawave.query.tables.ScannerSession;
+import datawave.util.time.DateHelper;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexLookupCacheTest {
+    
+    private static final List<String> DAYS = Arrays.asList("20190101", "20190102", "20190103");
+    
+    private final AtomicLong nanos = new AtomicLong();
+    
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+    
+    @Before
+    public void setup() {
+        IndexLookupCache.reset(IndexLookupCache.DEFAULT_MAX_BYTES, IndexLookupCache.DEFAULT_TTL, ticker);
+    }
+    
+    @After
+    public void clear() {
+        IndexLookupCache.reset(IndexLookupCache.DEFAULT_MAX_BYTES, IndexLookupCache.DEFAULT_TTL, Ticker.systemTicker());
+    }
+    
+    private static Map.Entry<Key,Value> entry(String shard) {
+        return new AbstractMap.SimpleImmutableEntry<>(new Key("bar", "FOO", shard), new Value(new byte[] {1, 2, 3}));
+    }
+    
+    private static List<Map.Entry<Key,Value>> scan() {
+        return Lists.newArrayList(entry("20190101_1"), entry("20190101_2"), entry("20190103"));
+    }
+    
+    private static List<String> shards(Iterator<Map.Entry<Key,Value>> entries) {
+        List<String> shards = new ArrayList<>();
+        entries.forEachRemaining(entry -> shards.add(entry.getKey().getColumnQualifier().toString()));
+        return shards;
+    }
+    
+    @Test
+    public void testDays() {
+        Assert.assertEquals(DAYS, IndexLookupCache.days(DateHelper.parse("20190101"), DateHelper.parse("20190103")));
+        Assert.assertEquals("20190103", DateHelper.format(IndexLookupCache.horizon(7, DateHelper.parse("20190110").getTime() + 1000)));
+    }
+    
+    @Test
+    public void testCachedOnceExhausted() {
+        String context = IndexLookupCache.context("shardIndex", "[A, B]");
+        Assert.assertNull(IndexLookupCache.get(context, "FOO", "bar", DAYS));
+        
+        Iterator<Map.Entry<Key,Value>> recording = IndexLookupCache.recording(scan().iterator(), context, "FOO", "bar", DAYS);
+        recording.next();
+        Assert.assertNull(IndexLookupCache.get(context, "FOO", "bar", DAYS));
+        recording.forEachRemaining(entry -> {});
+        
+        Assert.assertEquals(Arrays.asList("20190101_1", "20190101_2", "20190103"), shards(IndexLookupCache.get(context, "FOO", "bar", DAYS)));
+        // the empty day is cached as well
+        Assert.assertEquals(new ArrayList<>(), shards(IndexLookupCache.get(context, "FOO", "bar", DAYS.subList(1, 2))));
+        Assert.assertNull(IndexLookupCache.get(context, "FOO", "bar", Arrays.asList("20190103", "20190104")));
+    }
+    
+    @Test
+    public void testContextSeparatesAuths() {
+        String context = IndexLookupCache.context("shardIndex", "[A, B]");
+        IndexLookupCache.recording(scan().iterator(), context, "FOO", "bar", DAYS).forEachRemaining(entry -> {});
+        Assert.assertNotNull(IndexLookupCache.get(context, "FOO", "bar", DAYS));
+        Assert.assertNull(IndexLookupCache.get(IndexLookupCache.context("shardIndex", "[A]"), "FOO", "bar", DAYS));
+    }
+    
+    @Test
+    public void testFrequentTermNotCached() {
+        IndexLookupCache.reset(16, IndexLookupCache.DEFAULT_TTL, ticker);
+        String context = IndexLookupCache.context("shardIndex", "[A, B]");
+        IndexLookupCache.recording(scan().iterator(), context, "FOO", "bar", DAYS).forEachRemaining(entry -> {});
+        Assert.assertNull(IndexLookupCache.get(context, "FOO", "bar", DAYS));
+    }
+    
+    @Test
+    public void testConfiguredOnce() {
+        String context = IndexLookupCache.context("shardIndex", "[A, B]");
+        IndexLookupCache.recording(scan().iterator(), context, "FOO", "bar", DAYS).forEachRemaining(entry -> {});
+        
+        // a query with other settings shares the cache as it is
+        IndexLookupCache.configure(16, 1);
+        Assert.assertNotNull(IndexLookupCache.get(context, "FOO", "bar", DAYS));
+    }
+    
+    @Test
+    public void testExpiredAfterTtl() {
+        String context = IndexLookupCache.context("shardIndex", "[A, B]");
+        IndexLookupCache.recording(scan().iterator(), context, "FOO", "bar", DAYS).forEachRemaining(entry -> {});
+        
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(IndexLookupCache.DEFAULT_TTL - 1));
+        Assert.assertNotNull(IndexLookupCache.get(context, "FOO", "bar", DAYS));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        Assert.assertNull(IndexLookupCache.get(context, "FOO", "bar", DAYS));
+    }
+    
+    @Test
+    public void testIncompleteSessionNotCached() {
+        String context = IndexLookupCache.context("shardIndex", "[A, B]");
+        
+        // a session which was closed after its first entry
+        ScannerSession closed = EasyMock.createMock(ScannerSession.class);
+        EasyMock.expect(closed.hasNext()).andReturn(true).times(2);
+        EasyMock.expect(closed.next()).andReturn(entry("20190101_1"));
+        EasyMock.expect(closed.hasNext()).andReturn(false);
+        EasyMock.expect(closed.isComplete()).andReturn(false);
+        EasyMock.replay(closed);
+        
+        Assert.assertEquals(Arrays.asList("20190101_1"), shards(IndexLookupCache.recording(closed, context, "FOO", "bar", DAYS)));
+        EasyMock.verify(closed);
+        Assert.assertNull(IndexLookupCache.get(context, "FOO", "bar", DAYS));
+    }
+    
+    @Test
+    public void testCompleteSessionCached() {
+        String context = IndexLookupCache.context("shardIndex", "[A, B]");
+        
+        ScannerSession complete = EasyMock.createMock(ScannerSession.class);
+        EasyMock.expect(complete.hasNext()).andReturn(true).times(2);
+        EasyMock.expect(complete.next()).andReturn(entry("20190101_1"));
+        EasyMock.expect(complete.hasNext()).andReturn(false);
+        EasyMock.expect(complete.isComplete()).andReturn(true);
+        EasyMock.replay(complete);
+        
+        Assert.assertEquals(Arrays.asList("20190101_1"), shards(IndexLookupCache.recording(complete, context, "FOO", "bar", DAYS)));
+        EasyMock.verify(complete);
+        Assert.assertEquals(Arrays.asList("20190101_1"), shards(IndexLookupCache.get(context, "FOO", "bar", DAYS)));
+    }
+}
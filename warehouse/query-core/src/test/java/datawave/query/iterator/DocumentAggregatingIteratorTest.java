@@ -0,0 +1,114 @@
+package datawave.query.iterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.collect.Maps;
+import datawave.core.iterators.ResultAggregate;
+import datawave.query.attributes.Content;
+import datawave.query.attributes.Document;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.YieldCallback;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DocumentAggregatingIteratorTest {
+    
+    private final Kryo kryo = new Kryo();
+    
+    private static Entry<Key,Document> document(String uid, String gender, String name) {
+        Key key = new Key("20190101_0", "datatype\u0000" + uid);
+        Document document = new Document();
+        document.put("GENDER", new Content(gender, key, true));
+        document.put("NAME", new Content(name, key, true));
+        return Maps.immutableEntry(key, document);
+    }
+    
+    private static List<Entry<Key,Document>> documents() {
+        return Arrays.asList(document("a", "MALE", "alice"), document("b", "FEMALE", "bob"), document("c", "MALE", "carol"), document("d", "OTHER", "alice"));
+    }
+    
+    private ResultAggregate aggregate(Iterator<Entry<Key,Value>> aggregates, String lastUid) {
+        Assert.assertTrue(aggregates.hasNext());
+        Entry<Key,Value> entry = aggregates.next();
+        Assert.assertEquals("datatype\u0000" + lastUid, entry.getKey().getColumnFamily().toString());
+        Assert.assertFalse(aggregates.hasNext());
+        return ResultAggregate.fromValue(kryo, entry.getValue());
+    }
+    
+    @Test
+    public void testAggregate() {
+        DocumentAggregatingIterator aggregates = new DocumentAggregatingIterator(documents().iterator(), Collections.singleton("GENDER"),
+                        Collections.singleton("NAME"), ResultAggregate.DEFAULT_MAX_HISTOGRAM_VALUES, null);
+        
+        // a single aggregate keyed by the last document
+        ResultAggregate aggregate = aggregate(aggregates, "d");
+        Assert.assertEquals(4, aggregate.getCount());
+        Assert.assertEquals(Long.valueOf(2), aggregate.getHistograms().get("GENDER").get("MALE"));
+        Assert.assertEquals(Long.valueOf(1), aggregate.getHistograms().get("GENDER").get("FEMALE"));
+        Assert.assertFalse(aggregate.getHistograms().containsKey("NAME"));
+        Assert.assertEquals(Long.valueOf(3), aggregate.getDistinctCounts().get("NAME"));
+        Assert.assertTrue(aggregate.getHistogramOverflows().isEmpty());
+    }
+    
+    @Test
+    public void testHistogramLimit() {
+        DocumentAggregatingIterator aggregates = new DocumentAggregatingIterator(documents().iterator(), Collections.singleton("GENDER"),
+                        Collections.emptySet(), 1, null);
+        
+        ResultAggregate aggregate = aggregate(aggregates, "d");
+        Assert.assertEquals(Collections.singletonMap("MALE", 2L), aggregate.getHistograms().get("GENDER"));
+        Assert.assertEquals(Long.valueOf(2), aggregate.getHistogramOverflows().get("GENDER"));
+        Assert.assertEquals(1, aggregate.getMaxHistogramValues());
+    }
+    
+    @Test
+    public void testNoDocuments() {
+        DocumentAggregatingIterator aggregates = new DocumentAggregatingIterator(Collections.emptyIterator(), Collections.singleton("GENDER"),
+                        Collections.emptySet(), ResultAggregate.DEFAULT_MAX_HISTOGRAM_VALUES, new YieldCallback<>());
+        Assert.assertFalse(aggregates.hasNext());
+    }
+    
+    @Test
+    public void testYield() {
+        YieldCallback<Key> yield = new YieldCallback<>();
+        Key yieldKey = new Key("20190101_0", "datatype\u0000e");
+        List<Entry<Key,Document>> documents = documents();
+        // the source yields after the first two documents
+        Iterator<Entry<Key,Document>> source = new Iterator<Entry<Key,Document>>() {
+            private int next = 0;
+            private boolean yielded = false;
+            
+            @Override
+            public boolean hasNext() {
+                if (next == 2 && !yielded) {
+                    yield.yield(yieldKey);
+                    yielded = true;
+                }
+                return next < 2;
+            }
+            
+            @Override
+            public Entry<Key,Document> next() {
+                return documents.get(next++);
+            }
+        };
+        
+        DocumentAggregatingIterator aggregates = new DocumentAggregatingIterator(source, Collections.singleton("GENDER"), Collections.emptySet(),
+                        ResultAggregate.DEFAULT_MAX_HISTOGRAM_VALUES, yield);
+        
+        // the aggregate of what was consumed is returned at the yield position, and the yield is reset so that a rebuilt iterator resumes after it
+        List<Entry<Key,Value>> returned = new ArrayList<>();
+        aggregates.forEachRemaining(returned::add);
+        Assert.assertEquals(1, returned.size());
+        Assert.assertEquals(yieldKey, returned.get(0).getKey());
+        Assert.assertEquals(2, ResultAggregate.fromValue(kryo, returned.get(0).getValue()).getCount());
+        Assert.assertFalse(yield.hasYielded());
+    }
+}
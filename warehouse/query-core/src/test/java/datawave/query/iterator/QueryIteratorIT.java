@@ -1,5 +1,6 @@
 package datawave.query.iterator;
 
+import com.esotericsoftware.kryo.Kryo;
 import com.google.common.io.Files;
 import datawave.data.type.NoOpType;
 import datawave.ingest.protobuf.TermWeight;
@@ -11,6 +12,7 @@ import datawave.query.attributes.Content;
 import datawave.query.attributes.Document;
 import datawave.query.function.deserializer.KryoDocumentDeserializer;
 import datawave.query.iterator.ivarator.IvaratorCacheDirConfig;
+import datawave.query.jexl.visitors.JexlStringBuildingVisitor;
 import datawave.query.predicate.EventDataQueryFilter;
 import datawave.query.util.TypeMetadata;
 import org.apache.accumulo.core.conf.DefaultConfiguration;
@@ -19,6 +21,7 @@ import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.YieldCallback;
 import org.easymock.EasyMock;
 import org.easymock.EasyMockSupport;
 import org.junit.After;
@@ -40,6 +43,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 import static datawave.query.iterator.QueryOptions.ALLOW_FIELD_INDEX_EVALUATION;
@@ -53,15 +57,20 @@ import static datawave.query.iterator.QueryOptions.INDEXED_FIELDS;
 import static datawave.query.iterator.QueryOptions.INDEX_ONLY_FIELDS;
 import static datawave.query.iterator.QueryOptions.IVARATOR_CACHE_DIR_CONFIG;
 import static datawave.query.iterator.QueryOptions.NON_INDEXED_DATATYPES;
+import static datawave.query.iterator.QueryOptions.PROJECTION_FIELDS;
 import static datawave.query.iterator.QueryOptions.QUERY;
 import static datawave.query.iterator.QueryOptions.QUERY_ID;
 import static datawave.query.iterator.QueryOptions.SERIAL_EVALUATION_PIPELINE;
 import static datawave.query.iterator.QueryOptions.START_TIME;
 import static datawave.query.iterator.QueryOptions.TERM_FREQUENCIES_REQUIRED;
 import static datawave.query.iterator.QueryOptions.TERM_FREQUENCY_FIELDS;
+import static datawave.query.iterator.QueryOptions.TOP_K;
+import static datawave.query.iterator.QueryOptions.YIELD_THRESHOLD_MS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -840,6 +849,140 @@ public class QueryIteratorIT extends EasyMockSupport {
         tf_test(seekRange, query, getBaseExpectedEvent("123.345.456"), Collections.EMPTY_LIST, Collections.EMPTY_LIST);
     }
     
+    @Test
+    public void template_reinit_test() throws IOException {
+        QueryTemplateCache.clear();
+        List<Map.Entry<Key,Value>> listSource = configureTestData(11);
+        configureIterator();
+        
+        options.put(QUERY, "EVENT_FIELD1 == 'a' && EVENT_FIELD2 == 'b'");
+        options.put(INDEX_ONLY_FIELDS, "");
+        options.put(PROJECTION_FIELDS, "EVENT_FIELD1,EVENT_FIELD2,EVENT_FIELD4");
+        
+        replayAll();
+        
+        iterator.init(new SortedListKeyValueIterator(listSource), options, environment);
+        TypeMetadata builtTypeMetadata = iterator.typeMetadata;
+        Object builtScript = iterator.script;
+        Object builtEvaluation = iterator.myEvaluationFunction;
+        Object builtProjection = iterator.getProjection();
+        String builtTypes = builtTypeMetadata.toString();
+        String builtQuery = JexlStringBuildingVisitor.buildQuery(iterator.script);
+        Set<String> builtWhitelist = new HashSet<>(iterator.getProjection().getProjection().getWhitelist());
+        iterator.seek(getShardRange(), Collections.EMPTY_LIST, true);
+        List<Map.Entry<Key,Map<String,String>>> built = drain();
+        
+        // init again, as after a teardown or yield, and the objects built by the first init are reused
+        long hits = QueryTemplateCache.stats().hitCount();
+        iterator.init(new SortedListKeyValueIterator(listSource), options, environment);
+        assertEquals(hits + 1, QueryTemplateCache.stats().hitCount());
+        assertSame(builtTypeMetadata, iterator.typeMetadata);
+        assertSame(builtScript, iterator.script);
+        // the evaluation function is built for each iterator, since it may hold state
+        assertNotSame(builtEvaluation, iterator.myEvaluationFunction);
+        assertSame(builtProjection, iterator.getProjection());
+        iterator.seek(getShardRange(), Collections.EMPTY_LIST, true);
+        List<Map.Entry<Key,Map<String,String>>> reused = drain();
+        
+        verifyAll();
+        
+        // the shared objects are not written by the scans which used them
+        assertEquals(builtTypes, iterator.typeMetadata.toString());
+        assertEquals(builtQuery, JexlStringBuildingVisitor.buildQuery(iterator.script));
+        assertEquals(builtWhitelist, iterator.getProjection().getProjection().getWhitelist());
+        
+        assertFalse(built.isEmpty());
+        assertEquals(built, reused);
+        for (Map.Entry<Key,Map<String,String>> document : built) {
+            assertTrue(Arrays.asList("EVENT_FIELD1", "EVENT_FIELD2", "EVENT_FIELD4", "HIT_TERM").containsAll(document.getValue().keySet()));
+        }
+    }
+    
+    @Test
+    public void topK_yield_teardown_test() throws IOException {
+        // three candidate events, the middle one failing evaluation of the unindexed field so that the serial pipeline yields on it
+        List<Map.Entry<Key,Value>> listSource = configureTestData(11);
+        listSource.addAll(addEvent(13, "123.345.458"));
+        for (Map.Entry<Key,Value> entry : addEvent(12, "123.345.457")) {
+            if (!entry.getKey().getColumnQualifier().toString().equals("EVENT_FIELD2" + Constants.NULL + "b")) {
+                listSource.add(entry);
+            }
+        }
+        configureIterator();
+        
+        options.put(QUERY, "EVENT_FIELD1 == 'a' && EVENT_FIELD2 == 'b'");
+        options.put(INDEX_ONLY_FIELDS, "");
+        options.put(TOP_K, "10");
+        // yield on the first document which does not evaluate
+        options.put(YIELD_THRESHOLD_MS, "-1");
+        
+        replayAll();
+        
+        YieldCallback<Key> yield = new YieldCallback<>();
+        iterator.init(new SortedListKeyValueIterator(listSource), options, environment);
+        iterator.enableYielding(yield);
+        iterator.seek(getShardRange(), Collections.EMPTY_LIST, true);
+        
+        // the yield returns the heap so far, keyed by the yield position, rather than leaving the tserver
+        assertTrue(iterator.hasTop());
+        assertFalse(yield.hasYielded());
+        Key yieldKey = iterator.getTopKey();
+        assertTrue(yieldKey.getColumnFamily().toString().endsWith("123.345.457"));
+        assertEquals(Collections.singletonList("123.345.456"), topKUids(iterator.getTopValue()));
+        
+        // the rest of the range is offered to a new heap
+        iterator.next();
+        assertTrue(iterator.hasTop());
+        assertEquals(Collections.singletonList("123.345.458"), topKUids(iterator.getTopValue()));
+        iterator.next();
+        assertFalse(iterator.hasTop());
+        
+        // after a teardown at the yield position, the documents already offered are not offered again
+        QueryIterator rebuilt = new QueryIterator();
+        rebuilt.setEvaluationFilter(filter);
+        rebuilt.setTypeMetadata(typeMetadata);
+        rebuilt.init(new SortedListKeyValueIterator(listSource), options, environment);
+        rebuilt.enableYielding(new YieldCallback<>());
+        rebuilt.seek(new Range(yieldKey, false, getShardRange().getEndKey(), false), Collections.EMPTY_LIST, true);
+        
+        assertTrue(rebuilt.hasTop());
+        assertEquals(Collections.singletonList("123.345.458"), topKUids(rebuilt.getTopValue()));
+        rebuilt.next();
+        assertFalse(rebuilt.hasTop());
+        
+        verifyAll();
+    }
+    
+    /**
+     * @return the uids of the documents in the top k heap, highest first
+     */
+    private static List<String> topKUids(Value value) {
+        List<String> uids = new ArrayList<>();
+        for (Map.Entry<Key,Value> document : TopKHeap.fromValue(new Kryo(), value).getDocuments()) {
+            String colf = document.getKey().getColumnFamily().toString();
+            uids.add(colf.substring(colf.indexOf(Constants.NULL) + 1));
+        }
+        return uids;
+    }
+    
+    /**
+     * @return the document key and the value of each field of the documents remaining in the iterator
+     */
+    private List<Map.Entry<Key,Map<String,String>>> drain() throws IOException {
+        List<Map.Entry<Key,Map<String,String>>> documents = new ArrayList<>();
+        while (iterator.hasTop()) {
+            Map<String,String> fields = new TreeMap<>();
+            for (Map.Entry<String,Attribute<? extends Comparable<?>>> field : deserialize(iterator.getTopValue()).getValue().getDictionary().entrySet()) {
+                if (!field.getKey().equals("RECORD_ID")) {
+                    fields.put(field.getKey(), String.valueOf(field.getValue().getData()));
+                }
+            }
+            documents.add(new AbstractMap.SimpleEntry<>(iterator.getTopKey(), fields));
+            iterator.next();
+        }
+        return documents;
+    }
+    
     protected void configureIterator() {
         // configure iterator
         iterator.setEvaluationFilter(filter);
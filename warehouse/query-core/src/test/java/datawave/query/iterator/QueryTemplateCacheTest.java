@@ -0,0 +1,63 @@
+package datawave.query.iterator;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.util.TypeMetadata;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class QueryTemplateCacheTest {
+    
+    @After
+    public void clear() {
+        QueryTemplateCache.clear();
+    }
+    
+    @Test
+    public void testKeyIgnoresOrder() {
+        Map<String,String> options = new LinkedHashMap<>();
+        options.put(QueryOptions.QUERY, "FOO == 'bar'");
+        options.put(QueryOptions.QUERY_ID, "1234");
+        Map<String,String> reversed = new LinkedHashMap<>();
+        reversed.put(QueryOptions.QUERY_ID, "1234");
+        reversed.put(QueryOptions.QUERY, "FOO == 'bar'");
+        Assert.assertEquals(QueryTemplateCache.key(options), QueryTemplateCache.key(reversed));
+        
+        reversed.put(QueryOptions.QUERY_ID, "5678");
+        Assert.assertNotEquals(QueryTemplateCache.key(options), QueryTemplateCache.key(reversed));
+    }
+    
+    @Test
+    public void testKeySeparatesEntries() {
+        Map<String,String> first = new HashMap<>();
+        first.put("ab", "c");
+        Map<String,String> second = new HashMap<>();
+        second.put("a", "bc");
+        Assert.assertNotEquals(QueryTemplateCache.key(first), QueryTemplateCache.key(second));
+    }
+    
+    @Test
+    public void testReuse() throws ParseException {
+        Map<String,String> options = new HashMap<>();
+        options.put(QueryOptions.QUERY, "FOO == 'bar'");
+        String key = QueryTemplateCache.key(options);
+        long hits = QueryTemplateCache.stats().hitCount();
+        Assert.assertNull(QueryTemplateCache.get(key));
+        
+        TypeMetadata typeMetadata = new TypeMetadata();
+        QueryTemplateCache.put(key, new QueryTemplateCache.Template("FOO == 'bar'", typeMetadata, typeMetadata, JexlASTHelper.parseJexlQuery("FOO == 'bar'"),
+                        null, null, 1000));
+        QueryTemplateCache.Template template = QueryTemplateCache.get(key);
+        Assert.assertNotNull(template);
+        Assert.assertTrue(template.isFor("FOO == 'bar'"));
+        Assert.assertFalse(template.isFor("FOO == 'baz'"));
+        Assert.assertSame(typeMetadata, template.getTypeMetadata());
+        Assert.assertEquals(1000, template.getBuildNanos());
+        Assert.assertEquals(hits + 1, QueryTemplateCache.stats().hitCount());
+    }
+}
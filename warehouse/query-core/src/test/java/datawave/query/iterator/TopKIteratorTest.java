@@ -0,0 +1,125 @@
+package datawave.query.iterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.google.common.base.Function;
+import com.google.common.collect.Maps;
+import datawave.query.attributes.Document;
+import datawave.query.attributes.Numeric;
+import datawave.query.tables.shard.TopKMergingIterator;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TopKIteratorTest {
+    
+    private static final Function<Entry<Key,Document>,Entry<Key,Value>> SERIALIZER = entry -> Maps.immutableEntry(entry.getKey(),
+                    new Value(entry.getKey().getColumnFamily().getBytes()));
+    
+    private static Entry<Key,Document> document(String uid, long timestamp, int size) {
+        Key key = new Key("20190101_0", "datatype\u0000" + uid, "", timestamp);
+        Document document = new Document();
+        document.put("SIZE", new Numeric(size, key, true));
+        return Maps.immutableEntry(key, document);
+    }
+    
+    private static List<Entry<Key,Document>> documents() {
+        return Arrays.asList(document("a", 3, 40), document("b", 1, 50), document("c", 5, 10), document("d", 4, 30), document("e", 2, 20));
+    }
+    
+    private static List<String> uids(List<Map.Entry<Key,Value>> entries) {
+        List<String> uids = new ArrayList<>();
+        for (Map.Entry<Key,Value> entry : entries) {
+            uids.add(entry.getKey().getColumnFamily().toString().split("\u0000")[1]);
+        }
+        return uids;
+    }
+    
+    private static TopKHeap heap(Iterator<Entry<Key,Value>> topK) {
+        Assert.assertTrue(topK.hasNext());
+        Entry<Key,Value> entry = topK.next();
+        Assert.assertFalse(topK.hasNext());
+        return TopKHeap.fromValue(new Kryo(), entry.getValue());
+    }
+    
+    @Test
+    public void testByEventDate() {
+        TopKIterator topK = new TopKIterator(documents().iterator(), 3, null, SERIALIZER, null);
+        TopKHeap heap = heap(topK);
+        Assert.assertEquals(3, heap.getK());
+        Assert.assertEquals(Arrays.asList("c", "d", "a"), uids(heap.getDocuments()));
+    }
+    
+    @Test
+    public void testByField() {
+        TopKIterator topK = new TopKIterator(documents().iterator(), 2, "SIZE", SERIALIZER, null);
+        Assert.assertEquals(Arrays.asList("b", "a"), uids(heap(topK).getDocuments()));
+    }
+    
+    @Test
+    public void testMissingValuesLast() {
+        Entry<Key,Document> empty = Maps.immutableEntry(new Key("20190101_0", "datatype\u0000f"), new Document());
+        List<Entry<Key,Document>> documents = new ArrayList<>(documents());
+        documents.add(0, empty);
+        TopKIterator topK = new TopKIterator(documents.iterator(), 10, "SIZE", SERIALIZER, null);
+        Assert.assertEquals(Arrays.asList("b", "a", "d", "e", "c", "f"), uids(heap(topK).getDocuments()));
+    }
+    
+    @Test
+    public void testMerge() {
+        Kryo kryo = new Kryo();
+        List<Entry<Key,Document>> documents = documents();
+        List<Entry<Key,Value>> heaps = new ArrayList<>();
+        heaps.add(new TopKIterator(documents.subList(0, 2).iterator(), 2, null, SERIALIZER, null).next());
+        heaps.add(new TopKIterator(documents.subList(2, 5).iterator(), 2, null, SERIALIZER, null).next());
+        Assert.assertEquals(2, TopKHeap.fromValue(kryo, heaps.get(1).getValue()).size());
+        
+        List<Entry<Key,Value>> merged = new ArrayList<>();
+        new TopKMergingIterator(heaps.iterator(), 2).forEachRemaining(merged::add);
+        Assert.assertEquals(Arrays.asList("c", "d"), uids(merged));
+        // the serialized documents are returned as they were
+        Assert.assertEquals("datatype\u0000c", new String(merged.get(0).getValue().get()));
+    }
+    
+    @Test(expected = NoSuchElementException.class)
+    public void testNextWhenExhausted() {
+        TopKIterator topK = new TopKIterator(documents().iterator(), 3, null, SERIALIZER, null);
+        topK.next();
+        topK.next();
+    }
+    
+    @Test
+    public void testMergeReturnsTimingDetailsAsTheyArrive() {
+        Entry<Key,Value> timingDetails = Maps.immutableEntry(new Key("20190101_0", "datatype\u0000z", "\u2735FinalDocument\u2735"), new Value());
+        List<Entry<Key,Value>> scanned = new ArrayList<>();
+        scanned.add(new TopKIterator(documents().subList(0, 2).iterator(), 2, null, SERIALIZER, null).next());
+        scanned.add(timingDetails);
+        scanned.add(new TopKIterator(documents().subList(2, 5).iterator(), 2, null, SERIALIZER, null).next());
+        Iterator<Entry<Key,Value>> source = scanned.iterator();
+        
+        TopKMergingIterator merging = new TopKMergingIterator(source, 2);
+        Assert.assertSame(timingDetails, merging.next());
+        // the last partial heap has not been read yet
+        Assert.assertTrue(source.hasNext());
+        
+        List<Entry<Key,Value>> merged = new ArrayList<>();
+        merging.forEachRemaining(merged::add);
+        Assert.assertEquals(Arrays.asList("c", "d"), uids(merged));
+        Assert.assertFalse(merging.hasNext());
+    }
+    
+    @Test
+    public void testSortValue() {
+        Assert.assertEquals(12.5, TopKIterator.sortValue("12.5"), 0);
+        Assert.assertEquals(1000, TopKIterator.sortValue(new java.util.Date(1000)), 0);
+        Assert.assertTrue(Double.isNaN(TopKIterator.sortValue("abc")));
+    }
+}
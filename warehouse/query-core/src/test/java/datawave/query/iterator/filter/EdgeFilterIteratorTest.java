@@ -0,0 +1,216 @@
+package datawave.query.iterator.filter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import datawave.common.test.integration.IntegrationTest;
+
+public class EdgeFilterIteratorTest {
+    private static final Logger log = Logger.getLogger(EdgeFilterIteratorTest.class);
+    
+    private static final int BENCHMARK_SINKS = 5000;
+    
+    private static final int BENCHMARK_ROUNDS = 10;
+    
+    private static final String[] QUERIES = {"SOURCE == 'alpha'", "SOURCE == 'alpha' && SINK == 'sink3'", "SOURCE == 'alpha' && TYPE == 'type1'",
+            "SOURCE == 'alpha' && (RELATION == 'rel1' || RELATION == 'rel3')", "SOURCE == 'beta' && RELATION =~ 'rel[12]'",
+            "TYPE != 'type0' && ATTRIBUTE1 == 'attr2'", "SOURCE == 'alpha' && DATE == '20200103'", "SOURCE == 'Ünicode'", "SOURCE == 'esc\\\\aped'",
+            "RELATION !~ 'rel.*' || ATTRIBUTE2 == 'b'", "not(TYPE == 'type1') and SINK == 'sink0'"};
+    
+    @BeforeClass
+    public static void setLogging() {
+        log.setLevel(Level.INFO);
+    }
+    
+    @Test
+    public void testCompiledMatchesJexl() throws IOException {
+        for (boolean protobuf : new boolean[] {true, false}) {
+            TreeMap<Key,Value> data = createEdges(5, protobuf);
+            for (String query : QUERIES) {
+                for (boolean includeStats : new boolean[] {true, false}) {
+                    List<Key> expected = scan(data, query, protobuf, includeStats, false, new CountingIterator(data));
+                    List<Key> actual = scan(data, query, protobuf, includeStats, true, new CountingIterator(data));
+                    Assert.assertEquals(query + (protobuf ? " (protobuf)" : ""), expected, actual);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testSeeksPastRejectedColumnFamilies() throws IOException {
+        String query = "SOURCE == 'alpha' && TYPE == 'type1' && RELATION == 'rel2'";
+        assertSeeksPastRejectedColumnFamilies(createEdges(200, true), query, true);
+        assertSeeksPastRejectedColumnFamilies(createEdges(200, false), query, false);
+        
+        // in the older format the attributes are part of the column family, so they also let a column family be skipped
+        assertSeeksPastRejectedColumnFamilies(createEdges(200, false), "SOURCE == 'alpha' && RELATION == 'rel2' && ATTRIBUTE1 == 'attr1'", false);
+    }
+    
+    /**
+     * Compares the throughput of the compiled and JEXL filters over a single high degree vertex. This only logs its timings, so it runs with the integration
+     * tests rather than the unit tests.
+     */
+    @Test
+    @Category(IntegrationTest.class)
+    public void benchmarkHighDegreeVertex() throws IOException {
+        String[] queries = {"SOURCE == 'hub' && TYPE == 'type1' && RELATION == 'rel2'", "SOURCE == 'hub' && RELATION =~ 'rel[12]' && ATTRIBUTE1 == 'attr1'"};
+        for (boolean protobuf : new boolean[] {true, false}) {
+            TreeMap<Key,Value> data = createHighDegreeVertex(BENCHMARK_SINKS, protobuf);
+            for (String query : queries) {
+                List<Key> expected = scan(data, query, protobuf, false, false, new CountingIterator(data));
+                Assert.assertEquals(query, expected, scan(data, query, protobuf, false, true, new CountingIterator(data)));
+                
+                long jexlTime = time(data, query, protobuf, false);
+                long compiledTime = time(data, query, protobuf, true);
+                log.info(String.format("%s%s over %d edges: jexl %d ns/edge, compiled %d ns/edge", query, protobuf ? " (protobuf)" : "", data.size(),
+                                jexlTime / data.size(), compiledTime / data.size()));
+            }
+        }
+    }
+    
+    /**
+     * @return the fastest of several scans, after a first scan to warm up
+     */
+    private long time(TreeMap<Key,Value> data, String query, boolean protobuf, boolean compile) throws IOException {
+        scan(data, query, protobuf, false, compile, new CountingIterator(data));
+        long fastest = Long.MAX_VALUE;
+        for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+            long startTime = System.nanoTime();
+            scan(data, query, protobuf, false, compile, new CountingIterator(data));
+            fastest = Math.min(fastest, System.nanoTime() - startTime);
+        }
+        return fastest;
+    }
+    
+    private void assertSeeksPastRejectedColumnFamilies(TreeMap<Key,Value> data, String query, boolean protobuf) throws IOException {
+        CountingIterator jexlSource = new CountingIterator(data);
+        List<Key> expected = scan(data, query, protobuf, false, false, jexlSource);
+        Assert.assertFalse(expected.isEmpty());
+        
+        CountingIterator compiledSource = new CountingIterator(data);
+        Assert.assertEquals(expected, scan(data, query, protobuf, false, true, compiledSource));
+        
+        // the jexl filter reads every key, while the compiled filter seeks over most of the rejected ones
+        Assert.assertEquals(data.size(), jexlSource.nexts);
+        Assert.assertEquals(1, jexlSource.seeks);
+        Assert.assertTrue(query, compiledSource.seeks > 1);
+        Assert.assertTrue(query, compiledSource.nexts + compiledSource.seeks < data.size() / 4);
+    }
+    
+    private List<Key> scan(TreeMap<Key,Value> data, String query, boolean protobuf, boolean includeStats, boolean compile, CountingIterator source)
+                    throws IOException {
+        Map<String,String> options = new HashMap<>();
+        options.put(EdgeFilterIterator.JEXL_OPTION, query);
+        options.put(EdgeFilterIterator.PROTOBUF_OPTION, Boolean.toString(protobuf));
+        options.put(EdgeFilterIterator.INCLUDE_STATS_OPTION, Boolean.toString(includeStats));
+        options.put(EdgeFilterIterator.COMPILE_OPTION, Boolean.toString(compile));
+        options.put(EdgeFilterIterator.SKIP_LIMIT_OPTION, "2");
+        
+        EdgeFilterIterator filter = new EdgeFilterIterator();
+        filter.init(source, options, null);
+        filter.seek(new Range(), new ArrayList<>(), false);
+        
+        List<Key> accepted = new ArrayList<>();
+        while (filter.hasTop()) {
+            accepted.add(filter.getTopKey());
+            filter.next();
+        }
+        return accepted;
+    }
+    
+    /**
+     * Creates edges in the protocol buffer format, with the date and attributes in the column qualifier, or else in the older format with the attributes in
+     * the column family and only the date in the column qualifier
+     */
+    private TreeMap<Key,Value> createEdges(int dates, boolean protobuf) {
+        TreeMap<Key,Value> data = new TreeMap<>();
+        for (String source : new String[] {"alpha", "ALPHA", "beta", "Ünicode", "esc\\\\aped"}) {
+            for (int sink = 0; sink < 4; sink++) {
+                String row = source + '\0' + "sink" + sink;
+                for (int type = 0; type < 3; type++) {
+                    for (int rel = 0; rel < 4; rel++) {
+                        String edgeType = "type" + type + "/rel" + rel;
+                        for (int date = 0; date < dates; date++) {
+                            String day = String.format("2020%04d", date + 101);
+                            String attributes = String.format("attr%d/%s", date % 3, date % 2 == 0 ? "a" : "B");
+                            if (protobuf) {
+                                data.put(new Key(row, edgeType, day + '/' + attributes), new Value());
+                            } else {
+                                data.put(new Key(row, edgeType + '/' + attributes, day), new Value());
+                            }
+                        }
+                        data.put(new Key(source, "STATS/ACTIVITY/" + edgeType, "20200101/attr0"), new Value());
+                    }
+                }
+            }
+        }
+        return data;
+    }
+    
+    /**
+     * Creates the edges of one source vertex to many sinks, with a few dates for each edge type and relationship
+     */
+    private TreeMap<Key,Value> createHighDegreeVertex(int sinks, boolean protobuf) {
+        TreeMap<Key,Value> data = new TreeMap<>();
+        for (int sink = 0; sink < sinks; sink++) {
+            String row = "hub" + '\0' + "sink" + sink;
+            for (int type = 0; type < 3; type++) {
+                for (int rel = 0; rel < 4; rel++) {
+                    String edgeType = "type" + type + "/rel" + rel;
+                    for (int date = 0; date < 3; date++) {
+                        String day = String.format("2020%04d", date + 101);
+                        String attributes = String.format("attr%d/%s", (sink + date) % 3, date % 2 == 0 ? "a" : "B");
+                        if (protobuf) {
+                            data.put(new Key(row, edgeType, day + '/' + attributes), new Value());
+                        } else {
+                            data.put(new Key(row, edgeType + '/' + attributes, day), new Value());
+                        }
+                    }
+                }
+            }
+        }
+        return data;
+    }
+    
+    /**
+     * Counts the calls made on the source of the filter
+     */
+    private static class CountingIterator extends WrappingIterator {
+        private int nexts = 0;
+        private int seeks = 0;
+        
+        CountingIterator(TreeMap<Key,Value> data) {
+            setSource(new SortedMapIterator(data));
+        }
+        
+        @Override
+        public void next() throws IOException {
+            nexts++;
+            super.next();
+        }
+        
+        @Override
+        public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+            seeks++;
+            super.seek(range, columnFamilies, inclusive);
+        }
+    }
+}
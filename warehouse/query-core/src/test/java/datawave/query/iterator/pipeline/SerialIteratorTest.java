@@ -0,0 +1,208 @@
+package datawave.query.iterator.pipeline;
+
+import com.google.common.collect.Maps;
+import datawave.query.attributes.Document;
+import datawave.query.iterator.DocumentSpecificNestedIterator;
+import datawave.query.iterator.NestedIterator;
+import datawave.query.iterator.NestedQueryIterator;
+import datawave.query.iterator.QueryIterator;
+import datawave.query.iterator.profile.QuerySpanCollector;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.YieldCallback;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SerialIteratorTest {
+    
+    private static Key doc(int uid) {
+        return new Key("20190101_0", "dt\0uid" + uid);
+    }
+    
+    private static List<Key> docs(int... uids) {
+        List<Key> docs = new ArrayList<>();
+        for (int uid : uids) {
+            docs.add(doc(uid));
+        }
+        return docs;
+    }
+    
+    private static SerialIterator serialIterator(List<Key> documents, FakeQueryIterator queryIterator, YieldCallback<Key> yield) {
+        SerialIterator iterator = new SerialIterator(new DocumentIterator(documents), 1, 1, null, null, queryIterator, new SortedMapIterator(new TreeMap<>()),
+                        null, yield, -1, Collections.emptySet(), false);
+        iterator.startPipeline();
+        return iterator;
+    }
+    
+    @Test
+    public void testUpcomingDocumentsAreReadAhead() {
+        FakeQueryIterator queryIterator = new FakeQueryIterator(3, docs(0, 1, 2, 3, 4));
+        SerialIterator iterator = serialIterator(docs(0, 1, 2, 3, 4), queryIterator, null);
+        
+        List<Key> results = new ArrayList<>();
+        while (iterator.hasNext()) {
+            results.add(iterator.next().getKey());
+        }
+        
+        assertEquals(docs(0, 1, 2, 3, 4), results);
+        // each document is given the two after it, as far as there are any
+        assertEquals(Arrays.asList(docs(1, 2), docs(2, 3), docs(3, 4), docs(4), docs()), queryIterator.upcoming);
+    }
+    
+    @Test
+    public void testYieldWithDocumentsReadAhead() {
+        FakeQueryIterator queryIterator = new FakeQueryIterator(3, docs(0, 2, 3, 5));
+        YieldCallback<Key> yield = new YieldCallback<>();
+        SerialIterator iterator = serialIterator(docs(0, 1, 2, 3, 4, 5), queryIterator, yield);
+        
+        assertTrue(iterator.hasNext());
+        assertEquals(doc(0), iterator.next().getKey());
+        
+        // the next document does not evaluate, so the iterator yields with the documents after it read ahead but not evaluated
+        assertFalse(iterator.hasNext());
+        assertTrue(yield.hasYielded());
+        assertEquals(docs(2, 3), queryIterator.upcoming.get(1));
+        assertEquals(doc(1), yield.getPositionAndReset());
+        
+        // the documents read ahead are found again once the source is seeked past the yield position
+        FakeQueryIterator resumed = new FakeQueryIterator(3, docs(0, 2, 3, 5));
+        iterator = serialIterator(docs(2, 3, 4, 5), resumed, null);
+        List<Key> results = new ArrayList<>();
+        while (iterator.hasNext()) {
+            results.add(iterator.next().getKey());
+        }
+        assertEquals(docs(2, 3, 5), results);
+        assertEquals(docs(2, 3, 4, 5), resumed.evaluated);
+    }
+    
+    @Test
+    public void testNoLookaheadWithoutBatching() {
+        FakeQueryIterator queryIterator = new FakeQueryIterator(0, docs(0, 1, 2));
+        SerialIterator iterator = serialIterator(docs(0, 1, 2), queryIterator, null);
+        
+        List<Key> results = new ArrayList<>();
+        while (iterator.hasNext()) {
+            results.add(iterator.next().getKey());
+        }
+        
+        assertEquals(docs(0, 1, 2), results);
+        assertEquals(Arrays.asList(docs(), docs(), docs()), queryIterator.upcoming);
+    }
+    
+    /**
+     * A query iterator whose document pipeline passes the documents in {@code matches}, recording the documents it evaluates and the upcoming documents it is
+     * given with each
+     */
+    private static class FakeQueryIterator extends QueryIterator {
+        private final Set<Key> matches;
+        private final List<Key> evaluated = new ArrayList<>();
+        private final List<List<Key>> upcoming = new ArrayList<>();
+        
+        FakeQueryIterator(int documentFetchBatchSize, List<Key> matches) {
+            this.matches = new HashSet<>(matches);
+            setDocumentFetchBatchSize(documentFetchBatchSize);
+        }
+        
+        @Override
+        public Iterator<Entry<Key,Document>> createDocumentPipeline(SortedKeyValueIterator<Key,Value> deepSourceCopy,
+                        final NestedQueryIterator<Key> documentSpecificSource, Collection<ByteSequence> columnFamilies, boolean inclusive,
+                        QuerySpanCollector querySpanCollector) {
+            return new Iterator<Entry<Key,Document>>() {
+                private Entry<Key,Document> next;
+                
+                @Override
+                public boolean hasNext() {
+                    while (next == null && documentSpecificSource.hasNext()) {
+                        Key docKey = documentSpecificSource.next();
+                        evaluated.add(docKey);
+                        upcoming.add(new ArrayList<>(((DocumentSpecificNestedIterator) documentSpecificSource).getUpcoming()));
+                        if (matches.contains(docKey)) {
+                            next = Maps.immutableEntry(docKey, documentSpecificSource.document());
+                        }
+                    }
+                    return next != null;
+                }
+                
+                @Override
+                public Entry<Key,Document> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Entry<Key,Document> result = next;
+                    next = null;
+                    return result;
+                }
+            };
+        }
+    }
+    
+    /**
+     * The documents of a query, in order
+     */
+    private static class DocumentIterator implements NestedIterator<Key> {
+        private final Iterator<Key> documents;
+        
+        DocumentIterator(List<Key> documents) {
+            this.documents = documents.iterator();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return documents.hasNext();
+        }
+        
+        @Override
+        public Key next() {
+            return documents.next();
+        }
+        
+        @Override
+        public void initialize() {}
+        
+        @Override
+        public Key move(Key minimum) {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Collection<NestedIterator<Key>> leaves() {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public Collection<NestedIterator<Key>> children() {
+            return Collections.emptyList();
+        }
+        
+        @Override
+        public Document document() {
+            return new Document();
+        }
+        
+        @Override
+        public boolean isContextRequired() {
+            return false;
+        }
+        
+        @Override
+        public void setContext(Key context) {}
+    }
+}
@@ -1,5 +1,6 @@
 package datawave.query.jexl.functions;
 
+import datawave.ingest.protobuf.TermWeight;
 import datawave.ingest.protobuf.TermWeightPosition;
 import org.junit.Assert;
 import org.junit.Before;
@@ -290,7 +291,27 @@ public class ContentOrderedEvaluatorTest {
         
         @Override
         protected boolean evaluate(List<List<TermWeightPosition>> offsets) {
-            return super.evaluate(offsets);
+            boolean result = super.evaluate(offsets);
+            
+            // the packed evaluation must agree
+            List<PackedTermPositions> positions = new ArrayList<>();
+            for (List<TermWeightPosition> list : offsets) {
+                positions.add(pack(list));
+            }
+            Assert.assertEquals("packed evaluation of " + offsets, result, evaluatePacked(positions));
+            
+            return result;
         }
     }
+    
+    static PackedTermPositions pack(List<TermWeightPosition> positions) {
+        TermWeight.Info.Builder builder = TermWeight.Info.newBuilder();
+        for (TermWeightPosition position : positions) {
+            builder.addTermOffset(position.getOffset());
+            builder.addPrevSkips(position.getPrevSkips());
+            builder.addScore(position.getScore());
+        }
+        builder.setZeroOffsetMatch(positions.isEmpty() || positions.get(0).getZeroOffsetMatch());
+        return new PackedTermPositions(builder.build().toByteArray());
+    }
 }
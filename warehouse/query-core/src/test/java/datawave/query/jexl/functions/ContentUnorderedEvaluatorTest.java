@@ -0,0 +1,119 @@
+package datawave.query.jexl.functions;
+
+import datawave.ingest.protobuf.TermWeightPosition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static datawave.query.jexl.functions.ContentOrderedEvaluatorTest.pack;
+
+public class ContentUnorderedEvaluatorTest {
+    
+    private static TermWeightPosition position(int offset, int prevSkips) {
+        return new TermWeightPosition.Builder().setOffset(offset).setPrevSkips(prevSkips).build();
+    }
+    
+    private static List<TermWeightPosition> positions(int... offsets) {
+        List<TermWeightPosition> positions = new ArrayList<>();
+        for (int offset : offsets) {
+            positions.add(position(offset, 0));
+        }
+        return positions;
+    }
+    
+    private static boolean evaluatePacked(int distance, List<List<TermWeightPosition>> offsets, String... terms) {
+        List<PackedTermPositions> packed = new ArrayList<>();
+        for (List<TermWeightPosition> list : offsets) {
+            packed.add(pack(list));
+        }
+        return new ContentUnorderedEvaluator(null, distance, Float.NEGATIVE_INFINITY, new HashMap<>(), terms).evaluatePacked(packed);
+    }
+    
+    private static boolean evaluate(int distance, List<List<TermWeightPosition>> offsets, String... terms) {
+        List<List<TermWeightPosition>> copies = new ArrayList<>();
+        for (List<TermWeightPosition> list : offsets) {
+            copies.add(new ArrayList<>(list));
+        }
+        return new ContentUnorderedEvaluator(null, distance, Float.NEGATIVE_INFINITY, new HashMap<>(), terms).evaluate(copies);
+    }
+    
+    @Test
+    public void testEvaluatePacked() {
+        // the quick brown fox: quick=1, brown=2, fox=3
+        List<List<TermWeightPosition>> offsets = Arrays.asList(positions(3), positions(1), positions(2));
+        Assert.assertTrue(evaluatePacked(2, offsets, "fox", "quick", "brown"));
+        Assert.assertFalse(evaluatePacked(1, offsets, "fox", "quick", "brown"));
+        
+        // the closest set is not made of the first position of each term
+        offsets = Arrays.asList(positions(1, 20), positions(10, 21), positions(22));
+        Assert.assertTrue(evaluatePacked(2, offsets, "a", "b", "c"));
+        Assert.assertFalse(evaluatePacked(1, offsets, "a", "b", "c"));
+        
+        // skips extend a position back to its lowest possible offset
+        offsets = Arrays.asList(Collections.singletonList(position(5, 3)), positions(1));
+        Assert.assertTrue(evaluatePacked(1, offsets, "a", "b"));
+        Assert.assertFalse(evaluatePacked(0, offsets, "a", "b"));
+    }
+    
+    @Test
+    public void testPackedMatchesBoxed() {
+        Random random = new Random(659);
+        String[][] termSets = {{"a", "b"}, {"a", "b", "c"}, {"a", "b", "a"}, {"a", "b", "c", "d"}};
+        for (int trial = 0; trial < 2000; trial++) {
+            String[] terms = termSets[random.nextInt(termSets.length)];
+            int distance = random.nextInt(8);
+            
+            // a repeated term shares its positions
+            Map<String,List<TermWeightPosition>> byTerm = new HashMap<>();
+            List<List<TermWeightPosition>> offsets = new ArrayList<>();
+            for (String term : terms) {
+                offsets.add(byTerm.computeIfAbsent(term, t -> randomPositions(random)));
+            }
+            
+            boolean expected = evaluate(distance, offsets, terms);
+            Assert.assertEquals(Arrays.toString(terms) + " within " + distance + " over " + offsets, expected, evaluatePacked(distance, offsets, terms));
+        }
+    }
+    
+    /**
+     * @return sorted, distinct positions, as they would come out of a TermFrequencyList
+     */
+    private static List<TermWeightPosition> randomPositions(Random random) {
+        TreeSet<TermWeightPosition> positions = new TreeSet<>();
+        int count = 1 + random.nextInt(5);
+        for (int i = 0; i < count; i++) {
+            positions.add(position(random.nextInt(30), random.nextInt(4) == 0 ? random.nextInt(3) : 0));
+        }
+        return new ArrayList<>(positions);
+    }
+    
+    @Test
+    public void testMalformedOffsetsSkipTheDocument() {
+        // a length delimited term offset field which is cut short
+        PackedTermPositions malformed = new PackedTermPositions(new byte[] {0x1a, 0x05, 0x01});
+        
+        Map<String,TermFrequencyList> termOffsetMap = new HashMap<>();
+        TermFrequencyList a = TermFrequencyList.packed(new TermFrequencyList.Zone("BODY", true, "doc1"), pack(positions(1)));
+        a.addOffsets(new TermFrequencyList.Zone("BODY", true, "doc2"), pack(positions(7)));
+        termOffsetMap.put("a", a);
+        TermFrequencyList b = TermFrequencyList.packed(new TermFrequencyList.Zone("BODY", true, "doc1"), malformed);
+        termOffsetMap.put("b", b);
+        
+        // the only document is skipped rather than failing the evaluation
+        Assert.assertFalse(new ContentUnorderedEvaluator(null, 1, Float.NEGATIVE_INFINITY, termOffsetMap, "a", "b").evaluate());
+        Assert.assertTrue(malformed.isMalformed());
+        Assert.assertTrue(malformed.isEmpty());
+        
+        // while the other documents are still evaluated
+        b.addOffsets(new TermFrequencyList.Zone("BODY", true, "doc2"), pack(positions(8)));
+        Assert.assertTrue(new ContentUnorderedEvaluator(null, 1, Float.NEGATIVE_INFINITY, termOffsetMap, "a", "b").evaluate());
+    }
+}
@@ -0,0 +1,60 @@
+package datawave.query.jexl.visitors;
+
+import java.util.Collections;
+import java.util.Set;
+
+import datawave.query.jexl.JexlASTHelper;
+
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TermFrequencyPrefilterVisitorTest {
+    
+    private static final Set<String> TF_FIELDS = Collections.singleton("BODY");
+    
+    @Test
+    public void testContentFunction() throws Exception {
+        test("FOO == 'bar' && content:phrase(BODY, termOffsetMap, 'a', 'b') && BODY == 'a' && BODY == 'b'", "FOO == 'bar' && true && true && true");
+    }
+    
+    @Test
+    public void testNegatedContentFunction() throws Exception {
+        test("FOO == 'bar' && !(content:phrase(termOffsetMap, 'a', 'b'))", "FOO == 'bar' && !(false)");
+    }
+    
+    @Test
+    public void testDoubleNegation() throws Exception {
+        test("!(FOO == 'bar' || !(content:phrase(termOffsetMap, 'a', 'b')))", "!(FOO == 'bar' || !(true))");
+    }
+    
+    @Test
+    public void testDeferredFieldsInDisjunction() throws Exception {
+        test("FOO == 'bar' || BODY != 'a' || filter:includeRegex(BODY, 'a.*')", "FOO == 'bar' || true || true");
+    }
+    
+    @Test
+    public void testDelayedPredicate() throws Exception {
+        test("FOO == 'bar' && ((_Delayed_ = true) && (BAR == 'baz'))", "FOO == 'bar' && true");
+    }
+    
+    @Test
+    public void testNothingDeferred() throws Exception {
+        ASTJexlScript script = JexlASTHelper.parseJexlQuery("FOO == 'bar' && BAR == 'baz'");
+        Assert.assertNull(TermFrequencyPrefilterVisitor.prefilter(script, TF_FIELDS));
+    }
+    
+    @Test
+    public void testOriginalUnchanged() throws Exception {
+        String query = "FOO == 'bar' && content:phrase(termOffsetMap, 'a', 'b')";
+        ASTJexlScript script = JexlASTHelper.parseJexlQuery(query);
+        TermFrequencyPrefilterVisitor.prefilter(script, TF_FIELDS);
+        Assert.assertEquals(JexlStringBuildingVisitor.buildQuery(JexlASTHelper.parseJexlQuery(query)), JexlStringBuildingVisitor.buildQuery(script));
+    }
+    
+    private void test(String query, String expected) throws Exception {
+        ASTJexlScript prefilter = TermFrequencyPrefilterVisitor.prefilter(JexlASTHelper.parseJexlQuery(query), TF_FIELDS);
+        Assert.assertNotNull(prefilter);
+        Assert.assertEquals(JexlStringBuildingVisitor.buildQuery(JexlASTHelper.parseJexlQuery(expected)), JexlStringBuildingVisitor.buildQuery(prefilter));
+    }
+}
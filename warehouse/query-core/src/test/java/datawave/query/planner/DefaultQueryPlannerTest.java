@@ -0,0 +1,82 @@
+package datawave.query.planner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import datawave.query.CloseableIterable;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.iterator.CloseableListIterable;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.ranges.RangeFactory;
+import datawave.query.util.Tuple2;
+import org.apache.accumulo.core.data.Range;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DefaultQueryPlannerTest {
+    
+    private ShardQueryConfiguration config;
+    private List<Range> ranges;
+    
+    @Before
+    public void setup() {
+        config = new ShardQueryConfiguration();
+        ranges = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ranges.add(RangeFactory.createShardRange("20190101_" + i));
+        }
+    }
+    
+    private Tuple2<CloseableIterable<QueryPlan>,Boolean> queryRanges(boolean fullTable) throws ParseException {
+        QueryPlan plan = new QueryPlan(JexlASTHelper.parseJexlQuery("FOO == 'bar'"), ranges, Collections.<String> emptyList());
+        return new Tuple2<>(new CloseableListIterable<>(Lists.newArrayList(plan)), fullTable);
+    }
+    
+    private static List<Range> ranges(CloseableIterable<QueryPlan> plans) {
+        List<Range> ranges = new ArrayList<>();
+        for (QueryPlan plan : plans) {
+            Iterables.addAll(ranges, plan.getRanges());
+        }
+        return ranges;
+    }
+    
+    @Test
+    public void testSampledRanges() throws ParseException {
+        config.setSampleRate(0.5);
+        config.setSampleSeed(42);
+        Tuple2<CloseableIterable<QueryPlan>,Boolean> sampled = new DefaultQueryPlanner().sampleQueryRanges(config, queryRanges(false));
+        
+        ShardSampler sampler = config.getShardSampler();
+        Assert.assertNotNull(sampler);
+        Assert.assertFalse(sampled.second());
+        List<Range> expected = new ArrayList<>();
+        for (Range range : ranges) {
+            if (sampler.isSampled(range.getStartKey().getRow().toString())) {
+                expected.add(range);
+            }
+        }
+        Assert.assertEquals(5, expected.size());
+        Assert.assertEquals(expected, ranges(sampled.first()));
+    }
+    
+    @Test
+    public void testNotSampled() throws ParseException {
+        Tuple2<CloseableIterable<QueryPlan>,Boolean> queryRanges = queryRanges(false);
+        Assert.assertSame(queryRanges, new DefaultQueryPlanner().sampleQueryRanges(config, queryRanges));
+        Assert.assertNull(config.getShardSampler());
+    }
+    
+    @Test
+    public void testFullTableScanNotSampled() throws ParseException {
+        config.setSampleRate(0.5);
+        Tuple2<CloseableIterable<QueryPlan>,Boolean> queryRanges = queryRanges(true);
+        Assert.assertSame(queryRanges, new DefaultQueryPlanner().sampleQueryRanges(config, queryRanges));
+        Assert.assertNull(config.getShardSampler());
+        Assert.assertEquals(ranges, ranges(queryRanges.first()));
+    }
+}
@@ -0,0 +1,106 @@
+package datawave.query.planner;
+
+import java.util.Collections;
+import java.util.Date;
+
+import com.google.common.collect.Sets;
+import datawave.query.QueryParameters;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.jexl.visitors.JexlStringBuildingVisitor;
+import datawave.webservice.query.QueryImpl;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.commons.jexl2.parser.ASTJexlScript;
+import org.apache.commons.jexl2.parser.ParseException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QueryPlanCacheTest {
+    
+    private static final long TTL = 5 * 60 * 1000L;
+    
+    private ShardQueryConfiguration config;
+    private QueryImpl settings;
+    
+    @Before
+    public void setup() {
+        config = new ShardQueryConfiguration();
+        config.setAuthorizations(Collections.singleton(new Authorizations("A", "B")));
+        config.setBeginDate(new Date(TTL * 100));
+        config.setEndDate(new Date(TTL * 200));
+        settings = new QueryImpl();
+        settings.setQueryLogicName("EventQuery");
+        settings.addParameter(QueryParameters.DATATYPE_FILTER_SET, "csv");
+    }
+    
+    @After
+    public void clear() {
+        QueryPlanCache.clear();
+    }
+    
+    private String key(String query) {
+        return QueryPlanCache.key(DefaultQueryPlanner.class.getName(), query, settings, config, TTL);
+    }
+    
+    @Test
+    public void testKey() {
+        String key = key("FOO == 'bar'");
+        Assert.assertNotEquals(key, key("FOO == 'baz'"));
+        
+        // dates within the same bucket share a plan
+        config.setEndDate(new Date(TTL * 200 + TTL / 2));
+        Assert.assertEquals(key, key("FOO == 'bar'"));
+        config.setEndDate(new Date(TTL * 201));
+        Assert.assertNotEquals(key, key("FOO == 'bar'"));
+        config.setEndDate(new Date(TTL * 200));
+        
+        config.setAuthorizations(Collections.singleton(new Authorizations("A")));
+        Assert.assertNotEquals(key, key("FOO == 'bar'"));
+        config.setAuthorizations(Collections.singleton(new Authorizations("A", "B")));
+        
+        settings.addParameter(QueryParameters.DATATYPE_FILTER_SET, "json");
+        Assert.assertNotEquals(key, key("FOO == 'bar'"));
+    }
+    
+    @Test
+    public void testRestore() throws ParseException {
+        ASTJexlScript queryTree = JexlASTHelper.parseJexlQuery("FOO == 'bar' && BAR == 'baz'");
+        config.setIndexedFields(Sets.newHashSet("FOO"));
+        config.setProjectFields(Sets.newHashSet("FOO", "BAR"));
+        config.setContainsIndexOnlyTerms(true);
+        String key = key("FOO == 'bar'");
+        QueryPlanCache.put(key, new QueryPlanCache.Plan(queryTree, config));
+        
+        ShardQueryConfiguration other = new ShardQueryConfiguration();
+        QueryPlanCache.Plan plan = QueryPlanCache.get(key, TTL);
+        Assert.assertNotNull(plan);
+        ASTJexlScript restored = plan.restore(other);
+        Assert.assertNotSame(queryTree, restored);
+        Assert.assertEquals(JexlStringBuildingVisitor.buildQuery(queryTree), JexlStringBuildingVisitor.buildQuery(restored));
+        Assert.assertEquals(Sets.newHashSet("FOO"), other.getIndexedFields());
+        Assert.assertEquals(Sets.newHashSet("FOO", "BAR"), other.getProjectFields());
+        Assert.assertTrue(other.isContainsIndexOnlyTerms());
+        
+        // changes to the restored state do not reach the plan
+        other.getProjectFields().add("BAZ");
+        ShardQueryConfiguration another = new ShardQueryConfiguration();
+        plan.restore(another);
+        Assert.assertEquals(Sets.newHashSet("FOO", "BAR"), another.getProjectFields());
+    }
+    
+    @Test
+    public void testExpired() throws ParseException, InterruptedException {
+        String key = key("FOO == 'bar'");
+        QueryPlanCache.put(key, new QueryPlanCache.Plan(JexlASTHelper.parseJexlQuery("FOO == 'bar'"), config));
+        Thread.sleep(5);
+        Assert.assertNull(QueryPlanCache.get(key, 1));
+        Assert.assertNull(QueryPlanCache.get(key, TTL));
+    }
+    
+    @Test
+    public void testCacheable() throws ParseException {
+        Assert.assertTrue(QueryPlanCache.isCacheable(JexlASTHelper.parseJexlQuery("FOO == 'bar' || BAR =~ 'ba.*'")));
+    }
+}
@@ -0,0 +1,92 @@
+package datawave.query.planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import datawave.query.jexl.JexlASTHelper;
+import datawave.query.ranges.RangeFactory;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShardSamplerTest {
+    
+    private static final List<String> DAYS = Arrays.asList("20190101", "20190102", "20190103", "20190104");
+    
+    private static List<String> sampledShards(ShardSampler sampler, String day) {
+        List<String> shards = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            if (sampler.isSampled(day + "_" + i)) {
+                shards.add(day + "_" + i);
+            }
+        }
+        return shards;
+    }
+    
+    @Test
+    public void testStratifiedByDay() {
+        ShardSampler sampler = new ShardSampler(0.25, 42);
+        Assert.assertEquals(4, sampler.getPeriod());
+        for (String day : DAYS) {
+            Assert.assertEquals(10, sampledShards(sampler, day).size());
+        }
+    }
+    
+    @Test
+    public void testDeterministic() {
+        List<String> sampled = new ArrayList<>();
+        List<String> resampled = new ArrayList<>();
+        List<String> reseeded = new ArrayList<>();
+        for (String day : DAYS) {
+            sampled.addAll(sampledShards(new ShardSampler(0.1, 42), day));
+            resampled.addAll(sampledShards(new ShardSampler(0.1, 42), day));
+            reseeded.addAll(sampledShards(new ShardSampler(0.1, 7), day));
+        }
+        Assert.assertEquals(sampled, resampled);
+        Assert.assertNotEquals(sampled, reseeded);
+    }
+    
+    @Test
+    public void testSamplePlan() throws Exception {
+        ShardSampler sampler = new ShardSampler(0.5, 42);
+        String sampledShard = sampledShards(sampler, "20190101").get(0);
+        String skippedShard = sampledShard.equals("20190101_0") ? "20190101_1" : "20190101_0";
+        
+        List<Range> ranges = Lists.newArrayList(RangeFactory.createShardRange(sampledShard), RangeFactory.createShardRange(skippedShard),
+                        RangeFactory.createDocumentSpecificRange(sampledShard, "datatype\u0000uid"));
+        QueryPlan plan = sampler.sample(new QueryPlan(JexlASTHelper.parseJexlQuery("FOO == 'bar'"), ranges, Collections.<String> emptyList()));
+        Assert.assertEquals(Arrays.asList(ranges.get(0), ranges.get(2)), Lists.newArrayList(plan.getRanges()));
+        
+        // day ranges are sampled whole
+        for (String day : DAYS) {
+            List<Range> dayRange = Collections.singletonList(RangeFactory.createDayRange(day));
+            plan = sampler.sample(new QueryPlan(JexlASTHelper.parseJexlQuery("FOO == 'bar'"), dayRange, Collections.<String> emptyList()));
+            Assert.assertEquals(sampler.isSampled(day), plan.getRanges().iterator().hasNext());
+        }
+    }
+    
+    @Test
+    public void testEstimate() {
+        ShardSampler sampler = new ShardSampler(0.25, 42);
+        for (int i = 0; i < 3; i++) {
+            sampler.count(new Key("20190101_3", "datatype\u0000uid" + i));
+        }
+        sampler.count(new Key("20190102_5", "datatype\u0000uid"));
+        
+        ShardSampler.Estimate estimate = sampler.getEstimate();
+        Assert.assertEquals(4, estimate.getSampled());
+        Assert.assertEquals(16, estimate.getCount());
+        // margin of 1.96 * sqrt((16 - 4) * (3 * 3 + 1 * 1)) = 21.47, and never below the results seen
+        Assert.assertEquals(4, estimate.getLower());
+        Assert.assertEquals(37, estimate.getUpper());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        new ShardSampler(1.5, 42);
+    }
+}
@@ -0,0 +1,136 @@
+package datawave.query.postprocessing.tf;
+
+import datawave.query.attributes.Document;
+import datawave.query.iterator.SortedListKeyValueIterator;
+import datawave.query.util.Tuple2;
+import datawave.query.util.Tuple3;
+import datawave.query.util.Tuples;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static datawave.query.postprocessing.tf.TermOffsetPopulatorTest.DOC_A;
+import static datawave.query.postprocessing.tf.TermOffsetPopulatorTest.DOC_B;
+import static datawave.query.postprocessing.tf.TermOffsetPopulatorTest.DOC_C;
+import static datawave.query.postprocessing.tf.TermOffsetPopulatorTest.DOC_D;
+import static datawave.query.postprocessing.tf.TermOffsetPopulatorTest.document;
+import static datawave.query.postprocessing.tf.TermOffsetPopulatorTest.queryFieldValues;
+import static datawave.query.postprocessing.tf.TermOffsetPopulatorTest.termFrequencies;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class BatchedTermOffsetIteratorTest {
+    
+    private static final List<Key> DOCUMENTS = Arrays.asList(DOC_A, DOC_B, DOC_C, DOC_D);
+    
+    /**
+     * @return each document as the pipeline would see it, the second without a BODY field
+     */
+    private static Tuple2<Key,Document> aggregated(Key docKey) {
+        return Tuples.tuple(docKey, DOC_B.equals(docKey) ? document(docKey, "TEXT") : document(docKey, "TEXT", "BODY"));
+    }
+    
+    /**
+     * Runs the given documents through the iterator, with the documents after the current one read ahead as a serial pipeline would
+     *
+     * @return the context map of each document returned
+     */
+    private static List<Map<String,Object>> run(CountingPopulator populator, List<Key> evaluated, int batchSize, boolean readAhead) {
+        Iterator<Key> keys = evaluated.iterator();
+        Key[] current = new Key[1];
+        Iterator<Tuple2<Key,Document>> source = new Iterator<Tuple2<Key,Document>>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+            
+            @Override
+            public Tuple2<Key,Document> next() {
+                current[0] = keys.next();
+                return aggregated(current[0]);
+            }
+        };
+        // the upcoming documents include those which will be dropped before reaching the iterator
+        Supplier<List<Key>> upcoming = () -> DOCUMENTS.subList(DOCUMENTS.indexOf(current[0]) + 1, DOCUMENTS.size());
+        
+        BatchedTermOffsetIterator iterator = new BatchedTermOffsetIterator(source, populator, batchSize, readAhead ? upcoming : null);
+        List<Map<String,Object>> contexts = new ArrayList<>();
+        for (Key docKey : evaluated) {
+            Tuple3<Key,Document,Map<String,Object>> next = iterator.next();
+            assertEquals(docKey, next.first());
+            contexts.add(next.third());
+        }
+        assertFalse(iterator.hasNext());
+        return contexts;
+    }
+    
+    /**
+     * @return the context maps built by the unbatched term offset function
+     */
+    private static List<Map<String,Object>> expected(List<Key> evaluated) {
+        List<Map<String,Object>> contexts = new ArrayList<>();
+        for (Key docKey : evaluated) {
+            TermOffsetFunction function = new TermOffsetFunction(TermOffsetPopulatorTest.populator(termFrequencies()));
+            contexts.add(function.apply(aggregated(docKey)).third());
+        }
+        return contexts;
+    }
+    
+    @Test
+    public void testUpcomingDocumentsInTheSameRowAreFetchedTogether() {
+        CountingPopulator populator = new CountingPopulator();
+        assertEquals(expected(DOCUMENTS), run(populator, DOCUMENTS, 4, true));
+        
+        // one scan for the first row, and one for the second
+        assertEquals(Arrays.asList(3, 1), populator.fetched);
+    }
+    
+    @Test
+    public void testBatchesAreLimitedToTheBatchSize() {
+        CountingPopulator populator = new CountingPopulator();
+        assertEquals(expected(DOCUMENTS), run(populator, DOCUMENTS, 2, true));
+        assertEquals(Arrays.asList(2, 1, 1), populator.fetched);
+    }
+    
+    @Test
+    public void testEachDocumentIsFetchedWithoutReadAhead() {
+        CountingPopulator populator = new CountingPopulator();
+        assertEquals(expected(DOCUMENTS), run(populator, DOCUMENTS, 4, false));
+        assertEquals(Arrays.asList(1, 1, 1, 1), populator.fetched);
+    }
+    
+    @Test
+    public void testDroppedDocumentsDoNotBreakTheBatch() {
+        // the second document was rejected by the prefilter after being read ahead
+        List<Key> evaluated = Arrays.asList(DOC_A, DOC_C, DOC_D);
+        CountingPopulator populator = new CountingPopulator();
+        assertEquals(expected(evaluated), run(populator, evaluated, 4, true));
+        assertEquals(Arrays.asList(3, 1), populator.fetched);
+    }
+    
+    /**
+     * Records the number of documents covered by each scan of the term frequencies
+     */
+    private static class CountingPopulator extends TermOffsetPopulator {
+        private final List<Integer> fetched = new ArrayList<>();
+        
+        CountingPopulator() {
+            super(queryFieldValues(), null, null, new SortedListKeyValueIterator(termFrequencies()));
+        }
+        
+        @Override
+        public Map<String,List<Entry<Key,Value>>> fetchTermFrequencies(Set<Key> keys, Set<String> fields) {
+            fetched.add(keys.size());
+            return super.fetchTermFrequencies(keys, fields);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package datawave.query.postprocessing.tf;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import datawave.ingest.protobuf.TermWeight;
+import datawave.query.Constants;
+import datawave.query.attributes.Content;
+import datawave.query.attributes.Document;
+import datawave.query.iterator.SortedListKeyValueIterator;
+import datawave.query.util.Tuple2;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TermOffsetPopulatorTest {
+    
+    static final Key DOC_A = new Key("20190101_0", "datatype\0a");
+    static final Key DOC_B = new Key("20190101_0", "datatype\0b");
+    static final Key DOC_C = new Key("20190101_0", "datatype\0c");
+    static final Key DOC_D = new Key("20190102_0", "datatype\0d");
+    
+    /**
+     * @return the term frequencies of the four documents, only some of which are for the terms of the query
+     */
+    static List<Entry<Key,Value>> termFrequencies() {
+        List<Entry<Key,Value>> tfs = new ArrayList<>();
+        tfs.add(tf(DOC_A, "TEXT", "quick", 1));
+        tfs.add(tf(DOC_A, "TEXT", "brown", 2));
+        tfs.add(tf(DOC_A, "BODY", "fox", 3));
+        tfs.add(tf(DOC_B, "TEXT", "quick", 5));
+        tfs.add(tf(DOC_B, "BODY", "fox", 6));
+        tfs.add(tf(DOC_C, "TEXT", "lazy", 1));
+        tfs.add(tf(DOC_D, "TEXT", "brown", 7));
+        return tfs;
+    }
+    
+    static Entry<Key,Value> tf(Key docKey, String field, String value, int offset) {
+        TermWeight.Info info = TermWeight.Info.newBuilder().addTermOffset(offset).addPrevSkips(0).addScore(0).setZeroOffsetMatch(true).build();
+        Key key = new Key(docKey.getRow().toString(), Constants.TERM_FREQUENCY_COLUMN_FAMILY.toString(),
+                        docKey.getColumnFamily() + "\0" + value + "\0" + field);
+        return Maps.immutableEntry(key, new Value(info.toByteArray()));
+    }
+    
+    static Multimap<String,String> queryFieldValues() {
+        Multimap<String,String> fieldValues = HashMultimap.create();
+        fieldValues.put("TEXT", "quick");
+        fieldValues.put("TEXT", "brown");
+        fieldValues.put("BODY", "fox");
+        return fieldValues;
+    }
+    
+    static TermOffsetPopulator populator(List<Entry<Key,Value>> tfs) {
+        return new TermOffsetPopulator(queryFieldValues(), null, null, new SortedListKeyValueIterator(tfs));
+    }
+    
+    /**
+     * @return a document holding the given fields
+     */
+    static Document document(Key docKey, String... fields) {
+        Document document = new Document();
+        for (String field : fields) {
+            document.put(field, new Content("x", docKey, true));
+        }
+        return document;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Set<String> terms(Map<String,Object> context) {
+        return ((Map<String,?>) context.get(Constants.TERM_OFFSET_MAP_JEXL_VARIABLE_NAME)).keySet();
+    }
+    
+    @Test
+    public void testContextMapsMatchSingleDocumentContextMaps() {
+        List<Key> docKeys = Arrays.asList(DOC_A, DOC_B, DOC_C);
+        List<Set<Key>> keys = Arrays.asList(Collections.singleton(DOC_A), Collections.singleton(DOC_B), Collections.singleton(DOC_C));
+        // the second document has no BODY field, so its BODY term frequencies are pruned
+        List<Set<String>> fields = Arrays.asList(Collections.emptySet(), Collections.singleton("BODY"), Collections.emptySet());
+        
+        List<Tuple2<Document,Map<String,Object>>> contexts = populator(termFrequencies()).getContextMaps(docKeys, keys, fields);
+        assertEquals(3, contexts.size());
+        
+        assertEquals(new HashSet<>(Arrays.asList("quick", "brown", "fox")), terms(contexts.get(0).second()));
+        assertEquals(new HashSet<>(Arrays.asList("TEXT", "BODY")), contexts.get(0).first().getDictionary().keySet());
+        assertEquals(Collections.singleton("quick"), terms(contexts.get(1).second()));
+        assertEquals(Collections.singleton("TEXT"), contexts.get(1).first().getDictionary().keySet());
+        assertTrue(terms(contexts.get(2).second()).isEmpty());
+        assertTrue(contexts.get(2).first().getDictionary().isEmpty());
+        
+        // the same as building each document on its own
+        for (int i = 0; i < docKeys.size(); i++) {
+            TermOffsetPopulator single = populator(termFrequencies());
+            assertEquals(single.getContextMap(docKeys.get(i), keys.get(i), fields.get(i)), contexts.get(i).second());
+            assertEquals(single.document().getDictionary().keySet(), contexts.get(i).first().getDictionary().keySet());
+        }
+    }
+    
+    @Test
+    public void testUndecodableTermFrequencyOnlyFailsItsDocument() {
+        List<Entry<Key,Value>> tfs = termFrequencies();
+        Entry<Key,Value> undecodable = tf(DOC_B, "TEXT", "brown", 0);
+        tfs.add(Maps.immutableEntry(undecodable.getKey(), new Value(new byte[] {(byte) 0xff})));
+        
+        List<Tuple2<Document,Map<String,Object>>> contexts = populator(tfs).getContextMaps(Arrays.asList(DOC_A, DOC_B),
+                        Arrays.asList(Collections.singleton(DOC_A), Collections.singleton(DOC_B)), Arrays.asList(null, null));
+        
+        assertNotNull(contexts.get(0).second());
+        assertEquals(new HashSet<>(Arrays.asList("quick", "brown", "fox")), terms(contexts.get(0).second()));
+        assertNull(contexts.get(1).second());
+    }
+    
+    @Test
+    public void testFetchCoversEveryRequestedDocument() {
+        TermOffsetPopulator populator = populator(termFrequencies());
+        Map<String,List<Entry<Key,Value>>> fetched = populator.fetchTermFrequencies(new HashSet<>(Arrays.asList(DOC_A, DOC_C)), null);
+        
+        // a document without term frequencies for the query is covered, one which was not requested is not
+        assertEquals(3, TermOffsetPopulator.getTermFrequencies(fetched, Collections.singleton(DOC_A)).size());
+        assertTrue(TermOffsetPopulator.getTermFrequencies(fetched, Collections.singleton(DOC_C)).isEmpty());
+        assertNull(TermOffsetPopulator.getTermFrequencies(fetched, Collections.singleton(DOC_B)));
+    }
+}
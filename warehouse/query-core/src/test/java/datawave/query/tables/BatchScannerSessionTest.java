@@ -0,0 +1,149 @@
+package datawave.query.tables;
+
+import datawave.accumulo.inmemory.InMemoryAccumuloClient;
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.query.tables.async.HedgeBudget;
+import datawave.query.tables.async.ScannerChunk;
+import datawave.webservice.query.QueryImpl;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.security.Authorizations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class BatchScannerSessionTest {
+    
+    private ResourceQueue resourceQueue;
+    
+    private QueryImpl settings;
+    
+    private final List<BatchScannerSession> sessions = new ArrayList<>();
+    
+    @Before
+    public void setup() throws Exception {
+        resourceQueue = new ResourceQueue(1, new InMemoryAccumuloClient("", new InMemoryInstance()));
+        settings = new QueryImpl();
+        settings.setId(UUID.randomUUID());
+    }
+    
+    @After
+    public void tearDown() {
+        for (BatchScannerSession session : sessions) {
+            session.close();
+        }
+    }
+    
+    private BatchScannerSession newSession() {
+        BatchScannerSession session = new BatchScannerSession("shard", Collections.singleton(new Authorizations()), resourceQueue, 10, settings,
+                        new SessionOptions(), null);
+        session.setHedgedScanning(true);
+        sessions.add(session);
+        return session;
+    }
+    
+    private static ScannerChunk chunk() {
+        return new ScannerChunk(null, Collections.singletonList(new Range("20190101_0")), "tserver1");
+    }
+    
+    @Test
+    public void testHedgeDelayNeedsSamples() {
+        BatchScannerSession session = newSession();
+        session.setMinHedgeSamples(3);
+        session.setHedgeLatencyPercentile(0.5);
+        session.latencyTracker.record(10);
+        session.latencyTracker.record(20);
+        assertEquals(-1, session.getHedgeDelay());
+        session.latencyTracker.record(30);
+        assertEquals(20, session.getHedgeDelay());
+    }
+    
+    @Test
+    public void testHedgeStaysOnTheSameServer() {
+        BatchScannerSession session = newSession();
+        session.scansSubmitted.set(10);
+        int inFlight = HedgeBudget.global().getInFlight();
+        
+        ScannerChunk chunk = chunk();
+        ScannerChunk hedgeChunk = session.tryStartHedge(chunk);
+        assertNotNull(hedgeChunk);
+        assertNotSame(chunk, hedgeChunk);
+        assertEquals("tserver1", hedgeChunk.getLastKnownLocation());
+        assertEquals(new ArrayList<>(chunk.getRanges()), new ArrayList<>(hedgeChunk.getRanges()));
+        assertEquals(1, session.hedgesLaunched.get());
+        assertEquals(inFlight + 1, HedgeBudget.global().getInFlight());
+        
+        session.hedgeFinished(true);
+        assertEquals(inFlight, HedgeBudget.global().getInFlight());
+    }
+    
+    @Test
+    public void testHedgeOverBudgetIsDeclined() {
+        BatchScannerSession session = newSession();
+        session.scansSubmitted.set(10);
+        int inFlight = HedgeBudget.global().getInFlight();
+        int maxConcurrentHedges = HedgeBudget.global().getMaxConcurrentHedges();
+        
+        HedgeBudget.global().setMaxConcurrentHedges(inFlight);
+        try {
+            // the web server wide budget is spent, so the reservation against the session is given back
+            assertNull(session.tryStartHedge(chunk()));
+            assertEquals(0, session.hedgesLaunched.get());
+            assertEquals(inFlight, HedgeBudget.global().getInFlight());
+        } finally {
+            HedgeBudget.global().setMaxConcurrentHedges(maxConcurrentHedges);
+        }
+    }
+    
+    @Test
+    public void testConcurrentHedgesStayWithinFraction() throws Exception {
+        BatchScannerSession session = newSession();
+        session.setMaxHedgeFraction(0.1);
+        session.scansSubmitted.set(100);
+        int inFlight = HedgeBudget.global().getInFlight();
+        
+        AtomicInteger reserved = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(16);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                tasks.add(() -> {
+                    for (int j = 0; j < 50; j++) {
+                        if (session.reserveHedge()) {
+                            reserved.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : threads.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        
+        assertEquals(10, reserved.get());
+        assertEquals(10, session.hedgesLaunched.get());
+        assertEquals(inFlight + 10, HedgeBudget.global().getInFlight());
+        
+        for (int i = 0; i < reserved.get(); i++) {
+            session.hedgeFinished(false);
+        }
+        assertEquals(inFlight, HedgeBudget.global().getInFlight());
+    }
+}
@@ -0,0 +1,213 @@
+package datawave.query.tables;
+
+import datawave.accumulo.inmemory.InMemoryAccumuloClient;
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.query.tables.async.Scan;
+import datawave.query.tables.async.ScannerChunk;
+import datawave.query.tables.async.ServerScanBudget;
+import datawave.webservice.query.QueryImpl;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.security.Authorizations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class LocalityBatchScannerSessionTest {
+    
+    private ResourceQueue resourceQueue;
+    
+    private QueryImpl settings;
+    
+    private ServerScanBudget budget;
+    
+    private final List<LocalityBatchScannerSession> sessions = new ArrayList<>();
+    
+    @Before
+    public void setup() throws Exception {
+        resourceQueue = new ResourceQueue(1, new InMemoryAccumuloClient("", new InMemoryInstance()));
+        settings = new QueryImpl();
+        settings.setId(UUID.randomUUID());
+        budget = new ServerScanBudget(10);
+    }
+    
+    @After
+    public void tearDown() {
+        for (LocalityBatchScannerSession session : sessions) {
+            session.close();
+        }
+    }
+    
+    /**
+     * @return a session which records the scans it starts rather than running them
+     */
+    private RecordingSession newSession(int maxScansPerServer) {
+        RecordingSession session = new RecordingSession(new BatchScannerSession("shard", Collections.singleton(new Authorizations()), resourceQueue, 10,
+                        settings, new SessionOptions(), null));
+        session.setMaxScansPerServer(maxScansPerServer).setBudget(budget);
+        sessions.add(session);
+        return session;
+    }
+    
+    private static List<String> servers(List<Scan> scans) {
+        List<String> servers = new ArrayList<>();
+        for (Scan scan : scans) {
+            servers.add(scan.getScanLocation());
+        }
+        return servers;
+    }
+    
+    @Test
+    public void testScansPerServerAreCapped() {
+        RecordingSession session = newSession(2);
+        for (String server : Arrays.asList("tserver1", "tserver1", "tserver1", "tserver2")) {
+            session.enqueue(new FakeScan(server), false);
+        }
+        
+        assertEquals(3, session.submitQueuedScans());
+        assertEquals(2, Collections.frequency(servers(session.submitted), "tserver1"));
+        assertEquals(1, session.getQueuedScans());
+        assertEquals(2, session.getInFlight("tserver1"));
+        assertEquals(2, budget.getInFlight("tserver1"));
+        
+        // nothing more may start until a scan against the capped server finishes
+        assertEquals(0, session.submitQueuedScans());
+        session.onSuccess(session.submitted.get(servers(session.submitted).indexOf("tserver1")));
+        assertEquals(1, session.submitQueuedScans());
+        assertEquals("tserver1", session.submitted.get(3).getScanLocation());
+        assertFalse(session.hasQueuedScans());
+    }
+    
+    @Test
+    public void testLeastBusyServersFirst() {
+        RecordingSession session = newSession(2);
+        session.enqueue(new FakeScan("tserver1"), false);
+        assertEquals(1, session.submitQueuedScans());
+        session.submitted.clear();
+        
+        for (String server : Arrays.asList("tserver1", "tserver1", "tserver2", "tserver2", "tserver3")) {
+            session.enqueue(new FakeScan(server), false);
+        }
+        assertEquals(4, session.submitQueuedScans());
+        
+        // the idle servers each start a scan before the busy one, then round robin up to the cap
+        List<String> servers = servers(session.submitted);
+        assertEquals(new HashSet<>(Arrays.asList("tserver2", "tserver3")), new HashSet<>(servers.subList(0, 2)));
+        assertEquals(Arrays.asList("tserver1", "tserver2"), servers.subList(2, 4));
+        assertEquals(1, session.getQueuedScans());
+    }
+    
+    @Test
+    public void testBudgetIsSharedBySessions() {
+        budget.setMaxScansPerServer(1);
+        RecordingSession first = newSession(4);
+        RecordingSession second = newSession(4);
+        first.enqueue(new FakeScan("tserver1"), false);
+        second.enqueue(new FakeScan("tserver1"), false);
+        
+        assertEquals(1, first.submitQueuedScans());
+        assertEquals(0, second.submitQueuedScans());
+        first.onSuccess(first.submitted.get(0));
+        assertEquals(1, second.submitQueuedScans());
+    }
+    
+    @Test
+    public void testReleasedOnClose() {
+        RecordingSession session = newSession(4);
+        session.enqueue(new FakeScan("tserver1"), false);
+        session.enqueue(new FakeScan("tserver2"), false);
+        assertEquals(2, session.submitQueuedScans());
+        
+        session.close();
+        assertEquals(0, session.getInFlight("tserver1"));
+        assertEquals(0, budget.getInFlight("tserver1"));
+        assertEquals(0, budget.getInFlight("tserver2"));
+    }
+    
+    @Test
+    public void testReleasedWhenNoLongerRunning() throws Exception {
+        RecordingSession session = newSession(4);
+        session.setThreads(1);
+        List<ScannerChunk> chunks = Arrays.asList(chunk("tserver1"), chunk("tserver2"));
+        session.setChunkIter(Collections.singletonList(chunks).iterator());
+        
+        // a session which was cancelled stops after starting its scans, which will never complete
+        session.run();
+        assertEquals(2, session.submitted.size());
+        assertEquals(0, budget.getInFlight("tserver1"));
+        assertEquals(0, budget.getInFlight("tserver2"));
+    }
+    
+    @Test
+    public void testReleasedOnFailure() {
+        RecordingSession session = newSession(4);
+        session.enqueue(new FakeScan("tserver1"), false);
+        assertEquals(1, session.submitQueuedScans());
+        
+        try {
+            session.onFailure(session.submitted.get(0), new RuntimeException("scan failed"));
+            fail("the failure should be passed on");
+        } catch (RuntimeException e) {
+            assertEquals("scan failed", e.getMessage());
+        }
+        assertEquals(0, session.getInFlight("tserver1"));
+        assertEquals(0, budget.getInFlight("tserver1"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxScansPerServerMustBePositive() {
+        newSession(0);
+    }
+    
+    private static ScannerChunk chunk(String server) {
+        return new ScannerChunk(null, Collections.singletonList(new Range("20190101_0")), server);
+    }
+    
+    private static class RecordingSession extends LocalityBatchScannerSession {
+        private final List<Scan> submitted = new ArrayList<>();
+        
+        RecordingSession(ScannerSession other) {
+            super(other);
+        }
+        
+        @Override
+        protected Scan newScan(ScannerChunk chunk) {
+            return new FakeScan(chunk.getLastKnownLocation());
+        }
+        
+        @Override
+        protected void submitScan(Scan scan, boolean increment) {
+            submitted.add(scan);
+            if (increment) {
+                runnableCount.incrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * A scan which is finished as soon as it is started
+     */
+    private static class FakeScan extends Scan {
+        FakeScan(String server) {
+            super("shard", Collections.emptySet(), chunk(server), null, null, null, null);
+        }
+        
+        @Override
+        public boolean finished() {
+            return true;
+        }
+        
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,69 @@
+package datawave.query.tables;
+
+import datawave.query.QueryParameters;
+import datawave.query.config.ShardQueryConfiguration;
+import datawave.webservice.query.QueryImpl;
+import datawave.webservice.query.exception.BadRequestQueryException;
+import datawave.webservice.query.exception.QueryException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShardQueryLogicTest {
+    
+    private static ShardQueryConfiguration load(String parameter, String value) throws QueryException {
+        QueryImpl settings = new QueryImpl();
+        settings.addParameter(parameter, value);
+        ShardQueryConfiguration config = new ShardQueryConfiguration();
+        new ShardQueryLogic().loadQueryParameters(config, settings);
+        return config;
+    }
+    
+    @Test
+    public void testTopK() throws QueryException {
+        Assert.assertEquals(5, load(QueryParameters.TOP_K, "5").getTopK());
+    }
+    
+    @Test(expected = BadRequestQueryException.class)
+    public void testTopKNotANumber() throws QueryException {
+        load(QueryParameters.TOP_K, "five");
+    }
+    
+    @Test(expected = BadRequestQueryException.class)
+    public void testTopKNotPositive() throws QueryException {
+        load(QueryParameters.TOP_K, "0");
+    }
+    
+    @Test
+    public void testSampleRate() throws QueryException {
+        QueryImpl settings = new QueryImpl();
+        settings.addParameter(QueryParameters.SAMPLE_RATE, "0.25");
+        settings.addParameter(QueryParameters.SAMPLE_SEED, "42");
+        ShardQueryConfiguration config = new ShardQueryConfiguration();
+        new ShardQueryLogic().loadQueryParameters(config, settings);
+        Assert.assertEquals(0.25, config.getSampleRate(), 0.0);
+        Assert.assertEquals(42L, config.getSampleSeed());
+    }
+    
+    @Test(expected = BadRequestQueryException.class)
+    public void testSampleRateNotANumber() throws QueryException {
+        load(QueryParameters.SAMPLE_RATE, "quarter");
+    }
+    
+    @Test(expected = BadRequestQueryException.class)
+    public void testSampleRateOfOne() throws QueryException {
+        load(QueryParameters.SAMPLE_RATE, "1");
+    }
+    
+    @Test(expected = BadRequestQueryException.class)
+    public void testSampleRateNotPositive() throws QueryException {
+        load(QueryParameters.SAMPLE_RATE, "0");
+    }
+    
+    @Test(expected = BadRequestQueryException.class)
+    public void testSampleSeedNotANumber() throws QueryException {
+        QueryImpl settings = new QueryImpl();
+        settings.addParameter(QueryParameters.SAMPLE_RATE, "0.25");
+        settings.addParameter(QueryParameters.SAMPLE_SEED, "seed");
+        new ShardQueryLogic().loadQueryParameters(new ShardQueryConfiguration(), settings);
+    }
+}
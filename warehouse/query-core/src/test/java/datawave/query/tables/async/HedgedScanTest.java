@@ -0,0 +1,277 @@
+package datawave.query.tables.async;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import datawave.query.tables.stats.ScanLatencyTracker;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HedgedScanTest {
+    
+    private final BlockingQueue<Entry<Key,Value>> results = new LinkedBlockingQueue<>();
+    
+    private final List<FakeScan> children = Lists.newArrayList();
+    
+    private final List<ScannerChunk> childChunks = Lists.newArrayList();
+    
+    // never released, for scans which stall
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    
+    private ExecutorService caller;
+    
+    private ExecutorService hedgeService;
+    
+    @Before
+    public void setup() {
+        caller = Executors.newSingleThreadExecutor();
+        hedgeService = Executors.newCachedThreadPool();
+    }
+    
+    @After
+    public void tearDown() {
+        stalled.countDown();
+        caller.shutdownNow();
+        hedgeService.shutdownNow();
+    }
+    
+    private HedgedScan hedgedScan(TestArbiter arbiter, FakeScan... scans) {
+        ScannerChunk chunk = new ScannerChunk(null, Collections.singletonList(new Range("20190101_0")), "tserver1");
+        chunk.setQueryId("query");
+        return new HedgedScan("shard", Collections.emptySet(), chunk, null, null, results, caller, hedgeService, arbiter) {
+            @Override
+            protected Scan newChildScan(ScannerChunk chunk, BlockingQueue<Entry<Key,Value>> queue) {
+                FakeScan scan = scans[children.size()];
+                scan.results = queue;
+                children.add(scan);
+                childChunks.add(chunk);
+                return scan;
+            }
+        };
+    }
+    
+    private List<String> rows() {
+        List<String> rows = Lists.newArrayList();
+        for (Entry<Key,Value> entry : results) {
+            rows.add(entry.getKey().getRow().toString());
+        }
+        return rows;
+    }
+    
+    @Test
+    public void unhedgedScanForwardsUnsortedOutputTest() throws Exception {
+        TestArbiter arbiter = new TestArbiter(-1, "tserver2");
+        HedgedScan scan = hedgedScan(arbiter, new FakeScan(null, 0, "c", "a", "b"));
+        
+        assertTrue(scan.call().finished());
+        
+        // the query iterator need not return its keys in order, so nothing is dropped
+        assertEquals(Lists.newArrayList("c", "a", "b"), rows());
+        assertEquals(0, arbiter.started.get());
+        assertFalse(scan.isHedged());
+    }
+    
+    @Test
+    public void hedgeWinsAgainstStalledPrimaryTest() throws Exception {
+        TestArbiter arbiter = new TestArbiter(10, "tserver2");
+        HedgedScan scan = hedgedScan(arbiter, new FakeScan(stalled, 0, "a"), new FakeScan(null, 0, "c", "a", "b"));
+        
+        assertTrue(scan.call().finished());
+        
+        assertEquals(Lists.newArrayList("c", "a", "b"), rows());
+        assertTrue(scan.isHedged());
+        assertEquals(Boolean.TRUE, arbiter.won);
+        // the hedge is sent to the server the arbiter located, and the stalled primary is cancelled
+        assertEquals("tserver1", childChunks.get(0).getLastKnownLocation());
+        assertEquals("tserver2", childChunks.get(1).getLastKnownLocation());
+        assertTrue(children.get(0).closed);
+    }
+    
+    @Test
+    public void primaryWinsAfterHedgeTest() throws Exception {
+        TestArbiter arbiter = new TestArbiter(10, "tserver2");
+        HedgedScan scan = hedgedScan(arbiter, new FakeScan(null, 100, "c", "a", "b"), new FakeScan(stalled, 0, "x"));
+        
+        assertTrue(scan.call().finished());
+        
+        // only the results of the primary are forwarded
+        assertEquals(Lists.newArrayList("c", "a", "b"), rows());
+        assertEquals(Boolean.FALSE, arbiter.won);
+        assertTrue(children.get(1).closed);
+    }
+    
+    @Test
+    public void declinedHedgeTest() throws Exception {
+        TestArbiter arbiter = new TestArbiter(0, null);
+        HedgedScan scan = hedgedScan(arbiter, new FakeScan(null, 50, "a", "b"));
+        
+        assertTrue(scan.call().finished());
+        
+        assertEquals(Lists.newArrayList("a", "b"), rows());
+        // asked once, and never released since nothing was reserved
+        assertEquals(1, arbiter.started.get());
+        assertEquals(1, children.size());
+        assertFalse(scan.isHedged());
+        assertNull(arbiter.won);
+    }
+    
+    @Test
+    public void failedPrimaryFallsBackToHedgeTest() throws Exception {
+        TestArbiter arbiter = new TestArbiter(10, "tserver2");
+        FakeScan primary = new FakeScan(null, 50);
+        primary.failure = new IOException("primary failed");
+        HedgedScan scan = hedgedScan(arbiter, primary, new FakeScan(null, 100, "a", "b"));
+        
+        assertTrue(scan.call().finished());
+        
+        assertEquals(Lists.newArrayList("a", "b"), rows());
+        assertEquals(Boolean.TRUE, arbiter.won);
+    }
+    
+    @Test
+    public void failureWithoutHedgeTest() throws Exception {
+        TestArbiter arbiter = new TestArbiter(-1, "tserver2");
+        FakeScan primary = new FakeScan(null, 0);
+        primary.failure = new IOException("primary failed");
+        HedgedScan scan = hedgedScan(arbiter, primary);
+        
+        try {
+            scan.call();
+            fail("the failure of the primary should be thrown");
+        } catch (IOException e) {
+            assertEquals("primary failed", e.getMessage());
+        }
+    }
+    
+    @Test
+    public void timeSlicedChildIsResubmittedTest() throws Exception {
+        TestArbiter arbiter = new TestArbiter(-1, "tserver2");
+        FakeScan primary = new FakeScan(null, 0, "a", "b", "c");
+        primary.slice = 1;
+        HedgedScan scan = hedgedScan(arbiter, primary);
+        
+        assertTrue(scan.call().finished());
+        
+        assertEquals(Lists.newArrayList("a", "b", "c"), rows());
+        assertEquals(3, primary.calls);
+    }
+    
+    @Test
+    public void latencyPercentileTest() {
+        ScanLatencyTracker tracker = new ScanLatencyTracker(10);
+        assertEquals(-1, tracker.getPercentile(0.95));
+        for (long i = 1; i <= 20; i++) {
+            tracker.record(i);
+        }
+        // only the last ten samples are kept
+        assertEquals(10, tracker.getSampleCount());
+        assertEquals(20, tracker.getPercentile(0.95));
+        assertEquals(15, tracker.getPercentile(0.5));
+        assertEquals(11, tracker.getPercentile(0.0));
+    }
+    
+    private static class TestArbiter implements HedgeArbiter {
+        private final long delay;
+        private final String location;
+        private final AtomicInteger started = new AtomicInteger();
+        private volatile Boolean won = null;
+        
+        TestArbiter(long delay, String location) {
+            this.delay = delay;
+            this.location = location;
+        }
+        
+        @Override
+        public long getHedgeDelay() {
+            return delay;
+        }
+        
+        @Override
+        public ScannerChunk tryStartHedge(ScannerChunk chunk) {
+            started.incrementAndGet();
+            if (null == location) {
+                return null;
+            }
+            ScannerChunk hedgeChunk = new ScannerChunk(chunk);
+            hedgeChunk.setLastKnownLocation(location);
+            return hedgeChunk;
+        }
+        
+        @Override
+        public void hedgeFinished(boolean won) {
+            this.won = won;
+        }
+    }
+    
+    /**
+     * A scan which returns the given rows after an optional wait, time slicing after every {@code slice} rows if set
+     */
+    private static class FakeScan extends Scan {
+        private final CountDownLatch wait;
+        private final long delayMs;
+        private final List<String> rows;
+        private int next = 0;
+        private int slice = 0;
+        private int calls = 0;
+        private Exception failure = null;
+        private volatile boolean closed = false;
+        
+        FakeScan(CountDownLatch wait, long delayMs, String... rows) {
+            super("shard", Collections.emptySet(), new ScannerChunk(null, Collections.singletonList(new Range())), null, null, null, null);
+            this.wait = wait;
+            this.delayMs = delayMs;
+            this.rows = Lists.newArrayList(rows);
+        }
+        
+        @Override
+        public Scan call() throws Exception {
+            calls++;
+            if (null != wait) {
+                wait.await();
+            }
+            if (calls == 1) {
+                Thread.sleep(delayMs);
+            }
+            if (null != failure) {
+                throw failure;
+            }
+            int returned = 0;
+            while (next < rows.size() && (slice == 0 || returned < slice)) {
+                results.offer(Maps.immutableEntry(new Key(rows.get(next++)), new Value()), 1, TimeUnit.MINUTES);
+                returned++;
+            }
+            return this;
+        }
+        
+        @Override
+        public boolean finished() {
+            return next >= rows.size();
+        }
+        
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package datawave.query.tables.async;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ServerScanBudgetTest {
+    
+    @Test
+    public void testLimitPerServer() {
+        ServerScanBudget budget = new ServerScanBudget(2);
+        Assert.assertTrue(budget.tryAcquire("tserver1:9997"));
+        Assert.assertTrue(budget.tryAcquire("tserver1:9997"));
+        Assert.assertFalse(budget.tryAcquire("tserver1:9997"));
+        // other servers have budgets of their own
+        Assert.assertTrue(budget.tryAcquire("tserver2:9997"));
+        Assert.assertEquals(2, budget.getInFlight("tserver1:9997"));
+        
+        budget.release("tserver1:9997");
+        Assert.assertEquals(1, budget.getInFlight("tserver1:9997"));
+        Assert.assertTrue(budget.tryAcquire("tserver1:9997"));
+        
+        budget.setMaxScansPerServer(3);
+        Assert.assertTrue(budget.tryAcquire("tserver1:9997"));
+        Assert.assertFalse(budget.tryAcquire("tserver1:9997"));
+        Assert.assertEquals(0, budget.getInFlight("tserver3:9997"));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testLimitMustBePositive() {
+        new ServerScanBudget(4).setMaxScansPerServer(0);
+    }
+}
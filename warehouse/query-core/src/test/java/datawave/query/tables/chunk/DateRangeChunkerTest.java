@@ -0,0 +1,107 @@
+package datawave.query.tables.chunk;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import datawave.webservice.query.Query;
+import datawave.webservice.query.QueryImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DateRangeChunkerTest {
+    
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    
+    private QueryImpl query;
+    
+    @Before
+    public void setup() {
+        query = new QueryImpl();
+        query.setQueryName("test");
+        query.setQuery("FOO == 'bar'");
+        query.setBeginDate(new Date(0));
+        query.setEndDate(new Date(100 * DAY - 1));
+        query.setPagesize(10);
+    }
+    
+    @Test
+    public void testNewestFirstUntilSatisfied() {
+        query.setMaxResultsOverride(10);
+        DateRangeChunker chunker = new DateRangeChunker();
+        chunker.setBaseQuery(query);
+        
+        Query first = chunker.next();
+        Assert.assertEquals(new Date(99 * DAY), first.getBeginDate());
+        Assert.assertEquals(new Date(100 * DAY - 1), first.getEndDate());
+        Assert.assertEquals("FOO == 'bar'", first.getQuery());
+        
+        // nothing found, so the next slice grows by the growth factor
+        chunker.chunkComplete(0);
+        Query second = chunker.next();
+        Assert.assertEquals(new Date(95 * DAY), second.getBeginDate());
+        Assert.assertEquals(new Date(99 * DAY - 1), second.getEndDate());
+        
+        // 1 result in 4 days, so the remaining 9 should take 36 days, but growth is limited to 4 times
+        chunker.chunkComplete(1);
+        Query third = chunker.next();
+        Assert.assertEquals(new Date(79 * DAY), third.getBeginDate());
+        
+        // 3 results in 16 days, so the remaining 6 should take 32 days
+        chunker.chunkComplete(3);
+        Query fourth = chunker.next();
+        Assert.assertEquals(new Date(47 * DAY), fourth.getBeginDate());
+        
+        chunker.chunkComplete(6);
+        Assert.assertFalse(chunker.hasNext());
+        Assert.assertEquals(10, chunker.getResults());
+    }
+    
+    @Test
+    public void testStopsAtBeginDate() {
+        DateRangeChunker chunker = new DateRangeChunker();
+        chunker.setMaxSliceMillis(60 * DAY);
+        chunker.setGrowthFactor(100);
+        chunker.setBaseQuery(query);
+        
+        chunker.next();
+        chunker.chunkComplete(0);
+        Query second = chunker.next();
+        Assert.assertEquals(new Date(39 * DAY), second.getBeginDate());
+        chunker.chunkComplete(0);
+        Query third = chunker.next();
+        Assert.assertEquals(new Date(0), third.getBeginDate());
+        Assert.assertEquals(new Date(39 * DAY - 1), third.getEndDate());
+        chunker.chunkComplete(0);
+        Assert.assertFalse(chunker.hasNext());
+    }
+    
+    @Test
+    public void testNoLimitWithoutMaxResults() {
+        // the page size is not a limit on the results, so finding a page of them does not stop the slices
+        DateRangeChunker chunker = new DateRangeChunker();
+        chunker.setBaseQuery(query);
+        chunker.next();
+        chunker.chunkComplete(20);
+        Assert.assertTrue(chunker.hasNext());
+        
+        // without a target the slices grow by the growth factor, whatever the rate of results
+        Query second = chunker.next();
+        Assert.assertEquals(new Date(95 * DAY), second.getBeginDate());
+    }
+    
+    @Test
+    public void testMaxResults() {
+        DateRangeChunker chunker = new DateRangeChunker();
+        chunker.setMaxResults(3);
+        chunker.setBaseQuery(query);
+        chunker.next();
+        chunker.chunkComplete(3);
+        Assert.assertFalse(chunker.hasNext());
+        
+        DateRangeChunker clone = chunker.clone();
+        clone.setBaseQuery(query);
+        Assert.assertTrue(clone.hasNext());
+        Assert.assertEquals(3, clone.getMaxResults());
+    }
+}
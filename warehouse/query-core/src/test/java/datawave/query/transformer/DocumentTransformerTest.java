@@ -6,12 +6,15 @@ import datawave.query.DocumentSerialization;
 import datawave.query.attributes.Document;
 import datawave.query.attributes.Numeric;
 import datawave.query.function.deserializer.KryoDocumentDeserializer;
+import datawave.query.planner.ShardSampler;
 import datawave.webservice.query.Query;
 import datawave.webservice.query.QueryImpl;
 import datawave.webservice.query.logic.BaseQueryLogic;
 import datawave.webservice.query.result.event.ResponseObjectFactory;
 import datawave.webservice.query.result.event.SimpleEvent;
 import datawave.webservice.query.result.event.SimpleField;
+import datawave.webservice.result.BaseQueryResponse;
+import datawave.webservice.result.DefaultEventQueryResponse;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.easymock.EasyMock;
@@ -28,6 +31,7 @@ import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -255,4 +259,34 @@ public class DocumentTransformerTest { // extends EasyMockSupport {
         Assert.assertTrue(foundFields.containsAll(expectedFields));
         Assert.assertTrue(expectedFields.containsAll(foundFields));
     }
+    
+    @Test
+    public void createResponse_sampleEstimateOnceExhaustedTest() throws MarkingFunctions.Exception {
+        Key key = new Key("20190101_3", "dataType" + Constants.NULL + "uid");
+        Value value = new Value();
+        Map.Entry<Key,Value> entry = new AbstractMap.SimpleEntry<>(key, value);
+        Document d = new Document();
+        basicExpects(d, key, entry);
+        EasyMock.expect(mockResponseFactory.getEventQueryResponse()).andReturn(new DefaultEventQueryResponse()).times(2);
+        
+        PowerMock.replayAll();
+        
+        ShardSampler sampler = new ShardSampler(0.25, 42);
+        Iterator<Map.Entry<Key,Value>> results = sampler.track(Collections.singletonList(entry).iterator());
+        transformer = new DocumentTransformer(mockLogic, mockQuery, mockMarkingFunctions, mockResponseFactory, true);
+        transformer.setShardSampler(sampler);
+        List<Object> page = Collections.singletonList(transformer.transform(results.next()));
+        
+        // more results may be on their way, so the count so far says little about the whole sample
+        BaseQueryResponse response = transformer.createResponse(page);
+        Assert.assertTrue(null == response.getMessages() || response.getMessages().isEmpty());
+        
+        Assert.assertFalse(results.hasNext());
+        response = transformer.createResponse(page);
+        
+        PowerMock.verifyAll();
+        
+        Assert.assertEquals(Collections.singletonList(sampler.getEstimate().toString()), response.getMessages());
+        Assert.assertEquals(4, sampler.getEstimate().getCount());
+    }
 }
@@ -0,0 +1,146 @@
+package datawave.query.util.sortedset;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpillableByteArraySetTest {
+    
+    private final List<SortedSetTempFileHandler> handlers = new ArrayList<>();
+    
+    private final BufferedFileBackedSortedSet.SortedSetFileHandlerFactory factory = new BufferedFileBackedSortedSet.SortedSetFileHandlerFactory() {
+        @Override
+        public FileSortedSet.SortedSetFileHandler createHandler() throws IOException {
+            SortedSetTempFileHandler handler = new SortedSetTempFileHandler();
+            handlers.add(handler);
+            return handler;
+        }
+        
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+    };
+    
+    @Test
+    public void testExactAcrossSpills() {
+        // a budget of a few entries forces many spills
+        SpillableByteArraySet set = new SpillableByteArraySet(1000, Collections.singletonList(factory));
+        Set<String> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String value = "value" + random.nextInt(500);
+            Assert.assertEquals(value, expected.add(value), set.add(value.getBytes(StandardCharsets.UTF_8)));
+        }
+        Assert.assertEquals(expected.size(), set.size());
+        Assert.assertTrue(set.getSpilledCount() > 1);
+        Assert.assertTrue(set.getMemoryUsed() <= 1000);
+        for (int i = 0; i < 600; i++) {
+            String value = "value" + i;
+            Assert.assertEquals(value, expected.contains(value), set.contains(value.getBytes(StandardCharsets.UTF_8)));
+        }
+        
+        set.clear();
+        Assert.assertEquals(0, set.size());
+        Assert.assertEquals(0, set.getSpilledCount());
+        for (SortedSetTempFileHandler handler : handlers) {
+            Assert.assertFalse(handler.getFile().exists());
+        }
+    }
+    
+    @Test
+    public void testLookupReadsOneBlock() {
+        AtomicLong bytesRead = new AtomicLong();
+        BufferedFileBackedSortedSet.SortedSetFileHandlerFactory countingFactory = new BufferedFileBackedSortedSet.SortedSetFileHandlerFactory() {
+            @Override
+            public FileSortedSet.SortedSetFileHandler createHandler() throws IOException {
+                SortedSetTempFileHandler handler = new SortedSetTempFileHandler() {
+                    @Override
+                    public InputStream getInputStream() throws IOException {
+                        return new CountingInputStream(super.getInputStream(), bytesRead);
+                    }
+                };
+                handlers.add(handler);
+                return handler;
+            }
+            
+            @Override
+            public boolean isValid() {
+                return true;
+            }
+        };
+        
+        // enough values for a spill to span many blocks
+        SpillableByteArraySet set = new SpillableByteArraySet(400000, Collections.singletonList(countingFactory));
+        int count = 0;
+        while (set.getSpilledCount() == 0) {
+            Assert.assertTrue(set.add(String.format("value%06d", count * 2).getBytes(StandardCharsets.UTF_8)));
+            count++;
+        }
+        Assert.assertTrue(count > SpillableByteArraySet.INDEX_INTERVAL * 8);
+        long fileSize = handlers.get(0).getSize();
+        
+        for (int i = -1; i <= count * 2; i++) {
+            bytesRead.set(0);
+            String value = String.format("value%06d", i);
+            Assert.assertEquals(value, i >= 0 && i % 2 == 0, set.contains(value.getBytes(StandardCharsets.UTF_8)));
+            // at most the block which could hold the value is read
+            Assert.assertTrue(value + " read " + bytesRead.get() + " of " + fileSize + " bytes", bytesRead.get() < fileSize / 4);
+        }
+        set.clear();
+    }
+    
+    @Test
+    public void testUnableToSpill() {
+        SpillableByteArraySet set = new SpillableByteArraySet(100, Collections.emptyList());
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(set.add(("value" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(set.add(("value" + i).getBytes(StandardCharsets.UTF_8)));
+        }
+        Assert.assertEquals(0, set.getSpilledCount());
+        Assert.assertEquals(100, set.size());
+    }
+    
+    /**
+     * Counts the bytes read, but not those skipped
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong bytesRead;
+        
+        CountingInputStream(InputStream in, AtomicLong bytesRead) {
+            super(in);
+            this.bytesRead = bytesRead;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytesRead.incrementAndGet();
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                bytesRead.addAndGet(n);
+            }
+            return n;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package datawave.webservice.common.cache;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -204,7 +203,8 @@ public class AccumuloTableCache {
                 continue;
             }
             long last = entry.getValue().getLastRefresh().getTime();
-            if ((now - last) > entry.getValue().getReloadInterval()) {
+            // the stagger offset spreads scheduled refreshes across servers; an explicit reload resets the last refresh to 0 and is not delayed
+            if ((now - last) > entry.getValue().getReloadInterval() + entry.getValue().getStaggerOffset()) {
                 log.info("Reloading " + entry.getKey());
                 try {
                     Future<Boolean> result = executorService.submit(entry.getValue());
@@ -286,7 +286,7 @@ public class AccumuloTableCache {
     }
     
     private void handleReload(String tableName) {
-        details.get(tableName).setLastRefresh(new Date(0));
+        details.get(tableName).requestFullReload();
     }
     
     /**
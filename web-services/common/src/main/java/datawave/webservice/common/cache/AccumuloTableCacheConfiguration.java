@@ -24,6 +24,18 @@ public class AccumuloTableCacheConfiguration {
     @Inject
     @ConfigProperty(name = "dw.cache.reloadInterval", defaultValue = "86400000")
     private long reloadInterval;
+    @Inject
+    @ConfigProperty(name = "dw.cache.incrementalRefresh", defaultValue = "false")
+    private boolean incrementalRefresh;
+    @Inject
+    @ConfigProperty(name = "dw.cache.incrementalOverlap", defaultValue = "60000")
+    private long incrementalOverlap;
+    @Inject
+    @ConfigProperty(name = "dw.cache.reconcileInterval", defaultValue = "86400000")
+    private long reconcileInterval;
+    @Inject
+    @ConfigProperty(name = "dw.cache.staggerInterval", defaultValue = "0")
+    private long staggerInterval;
     
     private Map<String,TableCache> caches = new HashMap<>();
     
@@ -34,6 +46,10 @@ public class AccumuloTableCacheConfiguration {
             cache.setTableName(tableName);
             cache.setConnectionPoolName(poolName);
             cache.setReloadInterval(reloadInterval);
+            cache.setIncrementalRefresh(incrementalRefresh);
+            cache.setIncrementalOverlap(incrementalOverlap);
+            cache.setReconcileInterval(reconcileInterval);
+            cache.setStaggerInterval(staggerInterval);
             caches.put(tableName, cache);
         }
     }
@@ -7,6 +7,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -23,20 +24,35 @@ import org.apache.accumulo.core.client.BatchWriter;
 import org.apache.accumulo.core.client.BatchWriterConfig;
 import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.client.NamespaceExistsException;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.client.ScannerBase;
 import org.apache.accumulo.core.client.TableNotFoundException;
 import datawave.accumulo.inmemory.InMemoryInstance;
 import org.apache.accumulo.core.client.admin.NamespaceOperations;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.user.RegExFilter;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.log4j.Logger;
 
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
 
+/**
+ * Caches a copy of an Accumulo table in an in-memory instance.
+ * <p>
+ * By default every refresh copies the entire source table into a temporary table which is then swapped in. When incremental refresh is enabled, only the
+ * first load (and any load explicitly requested via {@link #requestFullReload()}) is a full copy; subsequent refreshes pull only the entries whose timestamp
+ * is at or beyond the high-water timestamp seen so far, less a configurable overlap. Since deletes and back-dated writes are invisible to a timestamp scan, a
+ * reconcile pass runs every {@code reconcileInterval} milliseconds which compares the source and cached tables in sorted order and applies only the
+ * differences. A random stagger offset is added to the reload interval so that the web servers in a cluster do not all scan the source table at once.
+ */
 public class BaseTableCache implements Serializable, TableCache {
     
     private static final long serialVersionUID = 1L;
@@ -49,6 +65,10 @@ public class BaseTableCache implements Serializable, TableCache {
     private String auths = null;
     private long reloadInterval = 0;
     private long maxRows = Long.MAX_VALUE;
+    private boolean incrementalRefresh = false;
+    private long incrementalOverlap = 0;
+    private long reconcileInterval = 0;
+    private long staggerInterval = 0;
     
     /** set programatically **/
     private Date lastRefresh = new Date(0);
@@ -56,6 +76,10 @@ public class BaseTableCache implements Serializable, TableCache {
     private transient InMemoryInstance instance = null;
     private SharedCacheCoordinator watcher = null;
     private Future<Boolean> reference = null;
+    private long highWaterTimestamp = 0;
+    private Date lastReconcile = new Date(0);
+    private volatile boolean fullReloadRequested = false;
+    private long staggerOffset = 0;
     
     private ReentrantLock lock = new ReentrantLock();
     
@@ -159,16 +183,74 @@ public class BaseTableCache implements Serializable, TableCache {
         this.maxRows = maxRows;
     }
     
+    @Override
+    public boolean isIncrementalRefresh() {
+        return incrementalRefresh;
+    }
+    
+    @Override
+    public void setIncrementalRefresh(boolean incrementalRefresh) {
+        this.incrementalRefresh = incrementalRefresh;
+    }
+    
+    @Override
+    public long getIncrementalOverlap() {
+        return incrementalOverlap;
+    }
+    
+    @Override
+    public void setIncrementalOverlap(long incrementalOverlap) {
+        this.incrementalOverlap = incrementalOverlap;
+    }
+    
+    @Override
+    public long getReconcileInterval() {
+        return reconcileInterval;
+    }
+    
+    @Override
+    public void setReconcileInterval(long reconcileInterval) {
+        this.reconcileInterval = reconcileInterval;
+    }
+    
+    @Override
+    public long getStaggerInterval() {
+        return staggerInterval;
+    }
+    
+    @Override
+    public void setStaggerInterval(long staggerInterval) {
+        this.staggerInterval = staggerInterval;
+        this.staggerOffset = nextStaggerOffset();
+    }
+    
+    @Override
+    public long getStaggerOffset() {
+        return staggerOffset;
+    }
+    
+    @Override
+    public long getHighWaterTimestamp() {
+        return highWaterTimestamp;
+    }
+    
+    @Override
+    public Date getLastReconcile() {
+        return lastReconcile;
+    }
+    
+    @Override
+    public void requestFullReload() {
+        this.fullReloadRequested = true;
+        this.lastRefresh = new Date(0);
+    }
+    
     @Override
     public Boolean call() throws Exception {
         if (!lock.tryLock(0, TimeUnit.SECONDS))
             return false;
         // Read from the table in the real Accumulo
-        BatchScanner scanner = null;
-        BatchWriter writer = null;
         AccumuloClient accumuloClient = null;
-        
-        String tempTableName = tableName + "Temp";
         try {
             Map<String,String> map = connectionFactory.getTrackingMap(Thread.currentThread().getStackTrace());
             accumuloClient = connectionFactory.getClient(connectionPoolName, Priority.ADMIN, map);
@@ -181,12 +263,47 @@ public class BaseTableCache implements Serializable, TableCache {
             } else {
                 authorizations = new Authorizations(auths);
             }
-            scanner = accumuloClient.createBatchScanner(tableName, authorizations, 10);
             
             AccumuloClient instanceClient = new InMemoryAccumuloClient(AccumuloTableCache.MOCK_USERNAME, instance);
             instanceClient.securityOperations().changeLocalUserPassword(AccumuloTableCache.MOCK_USERNAME, AccumuloTableCache.MOCK_PASSWORD);
             instanceClient.securityOperations().changeUserAuthorizations(AccumuloTableCache.MOCK_USERNAME, authorizations);
             
+            long now = System.currentTimeMillis();
+            if (!incrementalRefresh || fullReloadRequested || highWaterTimestamp <= 0 || !instanceClient.tableOperations().exists(tableName)) {
+                fullReload(accumuloClient, instanceClient, authorizations);
+                this.lastReconcile = new Date(now);
+            } else if (reconcileInterval > 0 && (now - lastReconcile.getTime()) > reconcileInterval) {
+                reconcile(accumuloClient, instanceClient, authorizations);
+                this.lastReconcile = new Date(now);
+            } else {
+                incrementalReload(accumuloClient, instanceClient, authorizations);
+            }
+            this.staggerOffset = nextStaggerOffset();
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            throw e;
+        } finally {
+            try {
+                if (null != accumuloClient)
+                    connectionFactory.returnClient(accumuloClient);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+            lock.unlock();
+        }
+        return true;
+    }
+    
+    /**
+     * Copies the entire source table into a temporary in-memory table and swaps it in for the current copy.
+     */
+    private void fullReload(AccumuloClient accumuloClient, AccumuloClient instanceClient, Authorizations authorizations) throws Exception {
+        BatchScanner scanner = null;
+        BatchWriter writer = null;
+        String tempTableName = tableName + "Temp";
+        try {
+            scanner = accumuloClient.createBatchScanner(tableName, authorizations, 10);
+            
             createNamespaceIfNecessary(instanceClient.namespaceOperations(), tempTableName);
             
             if (instanceClient.tableOperations().exists(tempTableName)) {
@@ -195,10 +312,10 @@ public class BaseTableCache implements Serializable, TableCache {
             
             instanceClient.tableOperations().create(tempTableName);
             
-            writer = instanceClient.createBatchWriter(tempTableName,
-                            new BatchWriterConfig().setMaxMemory(10L * (1024L * 1024L)).setMaxLatency(100L, TimeUnit.MILLISECONDS).setMaxWriteThreads(1));
+            writer = createWriter(instanceClient, tempTableName);
             setupScanner(scanner);
             
+            long maxTimestamp = 0;
             Iterator<Entry<Key,Value>> iter = scanner.iterator();
             long count = 0;
             while (iter.hasNext()) {
@@ -208,13 +325,12 @@ public class BaseTableCache implements Serializable, TableCache {
                 Entry<Key,Value> value = iter.next();
                 
                 Key valueKey = value.getKey();
-                
-                Mutation m = new Mutation(value.getKey().getRow());
-                m.put(valueKey.getColumnFamily(), valueKey.getColumnQualifier(), new ColumnVisibility(valueKey.getColumnVisibility()), valueKey.getTimestamp(),
-                                value.getValue());
-                writer.addMutation(m);
+                maxTimestamp = Math.max(maxTimestamp, valueKey.getTimestamp());
+                writer.addMutation(createMutation(valueKey, value.getValue()));
                 count++;
             }
+            writer.close();
+            writer = null;
             this.lastRefresh = new Date();
             try {
                 instanceClient.tableOperations().delete(tableName);
@@ -222,32 +338,171 @@ public class BaseTableCache implements Serializable, TableCache {
                 // the table will not exist the first time this is run
             }
             instanceClient.tableOperations().rename(tempTableName, tableName);
+            this.highWaterTimestamp = maxTimestamp;
+            this.fullReloadRequested = false;
             log.info("Cached " + count + " k,v for table: " + tableName);
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            throw e;
         } finally {
+            if (null != scanner)
+                scanner.close();
             try {
-                if (null != accumuloClient)
-                    connectionFactory.returnClient(accumuloClient);
+                if (null != writer)
+                    writer.close();
             } catch (Exception e) {
-                log.error(e.getMessage(), e);
+                log.warn("Error closing batch writer for table: " + tempTableName, e);
             }
+        }
+    }
+    
+    /**
+     * Copies only the source entries whose timestamp is at or beyond the high-water timestamp (less the configured overlap) directly into the existing
+     * in-memory table. Re-writing an entry that is already cached is harmless, so the overlap only costs a few duplicate writes.
+     */
+    private void incrementalReload(AccumuloClient accumuloClient, AccumuloClient instanceClient, Authorizations authorizations) throws Exception {
+        BatchScanner scanner = null;
+        BatchWriter writer = null;
+        try {
+            long start = Math.max(0L, highWaterTimestamp - incrementalOverlap);
+            scanner = accumuloClient.createBatchScanner(tableName, authorizations, 10);
+            setupScanner(scanner);
+            IteratorSetting timestampFilter = new IteratorSetting(101, "sinceHighWater", TimestampFilter.class);
+            TimestampFilter.setStart(timestampFilter, start, true);
+            scanner.addScanIterator(timestampFilter);
+            
+            writer = createWriter(instanceClient, tableName);
+            
+            long maxTimestamp = highWaterTimestamp;
+            long count = 0;
+            for (Entry<Key,Value> entry : scanner) {
+                if (count > maxRows)
+                    break;
+                Key key = entry.getKey();
+                maxTimestamp = Math.max(maxTimestamp, key.getTimestamp());
+                writer.addMutation(createMutation(key, entry.getValue()));
+                count++;
+            }
+            writer.close();
+            writer = null;
+            this.lastRefresh = new Date();
+            this.highWaterTimestamp = maxTimestamp;
+            log.info("Incrementally cached " + count + " k,v since " + start + " for table: " + tableName);
+        } finally {
             if (null != scanner)
                 scanner.close();
             try {
                 if (null != writer)
                     writer.close();
             } catch (Exception e) {
-                log.warn("Error closing batch writer for table: " + tempTableName, e);
+                log.warn("Error closing batch writer for table: " + tableName, e);
             }
-            lock.unlock();
         }
-        return true;
+    }
+    
+    /**
+     * Walks the source table and the cached copy side by side, both in sorted order, and applies only the differences to the cached copy. This detects entries
+     * deleted from the source table (which leave nothing behind for a timestamp scan to find) as well as entries written with a timestamp older than the
+     * high-water mark, without rebuilding the in-memory table.
+     */
+    private void reconcile(AccumuloClient accumuloClient, AccumuloClient instanceClient, Authorizations authorizations) throws Exception {
+        Scanner source = null;
+        Scanner cached = null;
+        BatchWriter writer = null;
+        try {
+            source = accumuloClient.createScanner(tableName, authorizations);
+            setupScanner(source);
+            cached = instanceClient.createScanner(tableName, authorizations);
+            writer = createWriter(instanceClient, tableName);
+            
+            PeekingIterator<Entry<Key,Value>> sourceIter = Iterators.peekingIterator(source.iterator());
+            PeekingIterator<Entry<Key,Value>> cachedIter = Iterators.peekingIterator(cached.iterator());
+            
+            long maxTimestamp = highWaterTimestamp;
+            long count = 0, added = 0, removed = 0;
+            boolean truncated = false;
+            while (sourceIter.hasNext() || cachedIter.hasNext()) {
+                if (count > maxRows) {
+                    truncated = true;
+                    break;
+                }
+                int cmp;
+                if (!sourceIter.hasNext()) {
+                    cmp = 1;
+                } else if (!cachedIter.hasNext()) {
+                    cmp = -1;
+                } else {
+                    cmp = sourceIter.peek().getKey().compareTo(cachedIter.peek().getKey(), PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME);
+                }
+                
+                if (cmp < 0) {
+                    // present in the source table, missing from the cache
+                    Entry<Key,Value> entry = sourceIter.next();
+                    maxTimestamp = Math.max(maxTimestamp, entry.getKey().getTimestamp());
+                    writer.addMutation(createMutation(entry.getKey(), entry.getValue()));
+                    count++;
+                    added++;
+                } else if (cmp > 0) {
+                    // present in the cache, deleted from the source table
+                    Key key = cachedIter.next().getKey();
+                    Mutation m = new Mutation(key.getRow());
+                    m.putDelete(key.getColumnFamily(), key.getColumnQualifier(), new ColumnVisibility(key.getColumnVisibility()), key.getTimestamp());
+                    writer.addMutation(m);
+                    removed++;
+                } else {
+                    Entry<Key,Value> entry = sourceIter.next();
+                    Entry<Key,Value> cachedEntry = cachedIter.next();
+                    maxTimestamp = Math.max(maxTimestamp, entry.getKey().getTimestamp());
+                    if (!entry.getValue().equals(cachedEntry.getValue())) {
+                        writer.addMutation(createMutation(entry.getKey(), entry.getValue()));
+                        added++;
+                    }
+                    count++;
+                }
+            }
+            writer.close();
+            writer = null;
+            this.lastRefresh = new Date();
+            this.highWaterTimestamp = maxTimestamp;
+            log.info("Reconciled " + count + " k,v for table: " + tableName + " (" + added + " written, " + removed + " removed"
+                            + (truncated ? ", stopped at maxRows" : "") + ")");
+        } finally {
+            if (null != source)
+                source.close();
+            if (null != cached)
+                cached.close();
+            try {
+                if (null != writer)
+                    writer.close();
+            } catch (Exception e) {
+                log.warn("Error closing batch writer for table: " + tableName, e);
+            }
+        }
+    }
+    
+    private BatchWriter createWriter(AccumuloClient instanceClient, String table) throws TableNotFoundException {
+        return instanceClient.createBatchWriter(table,
+                        new BatchWriterConfig().setMaxMemory(10L * (1024L * 1024L)).setMaxLatency(100L, TimeUnit.MILLISECONDS).setMaxWriteThreads(1));
+    }
+    
+    private Mutation createMutation(Key key, Value value) {
+        Mutation m = new Mutation(key.getRow());
+        m.put(key.getColumnFamily(), key.getColumnQualifier(), new ColumnVisibility(key.getColumnVisibility()), key.getTimestamp(), value);
+        return m;
+    }
+    
+    private long nextStaggerOffset() {
+        return staggerInterval > 0 ? ThreadLocalRandom.current().nextLong(staggerInterval) : 0L;
     }
     
     public void setupScanner(BatchScanner scanner) {
         scanner.setRanges(Lists.newArrayList(new Range()));
+        setupScanner((ScannerBase) scanner);
+    }
+    
+    public void setupScanner(Scanner scanner) {
+        scanner.setRange(new Range());
+        setupScanner((ScannerBase) scanner);
+    }
+    
+    private void setupScanner(ScannerBase scanner) {
         Map<String,String> options = new HashMap<>();
         options.put(RegExFilter.COLF_REGEX, "^f$");
         options.put("negate", "true");
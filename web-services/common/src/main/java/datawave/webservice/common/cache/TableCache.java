@@ -51,6 +51,39 @@ public interface TableCache extends Callable<Boolean>, Serializable {
     
     void setMaxRows(long maxRows);
     
+    boolean isIncrementalRefresh();
+    
+    void setIncrementalRefresh(boolean incrementalRefresh);
+    
+    long getIncrementalOverlap();
+    
+    void setIncrementalOverlap(long incrementalOverlap);
+    
+    long getReconcileInterval();
+    
+    void setReconcileInterval(long reconcileInterval);
+    
+    long getStaggerInterval();
+    
+    void setStaggerInterval(long staggerInterval);
+    
+    /**
+     * @return the random delay, less than the stagger interval, added to the reload interval before the next scheduled refresh
+     */
+    long getStaggerOffset();
+    
+    /**
+     * @return the largest timestamp copied from the source table so far
+     */
+    long getHighWaterTimestamp();
+    
+    Date getLastReconcile();
+    
+    /**
+     * Forces the next refresh to copy the entire source table, regardless of whether incremental refresh is enabled
+     */
+    void requestFullReload();
+    
     Boolean call() throws Exception;
     
 }
@@ -0,0 +1,144 @@
+package datawave.webservice.common.cache;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import datawave.accumulo.inmemory.InMemoryAccumuloClient;
+import datawave.accumulo.inmemory.InMemoryInstance;
+import datawave.webservice.common.connection.AccumuloConnectionFactory;
+import datawave.webservice.common.connection.AccumuloConnectionFactory.Priority;
+import org.apache.accumulo.core.client.AccumuloClient;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
+import org.apache.accumulo.core.client.Scanner;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the full, incremental and reconcile refresh modes of the {@link BaseTableCache}.
+ */
+public class BaseTableCacheTest {
+    
+    private static final String TABLE = "cacheTest";
+    private static final String POOL = "WAREHOUSE";
+    private static final ColumnVisibility VIZ = new ColumnVisibility("A");
+    
+    private AccumuloClient sourceClient;
+    private InMemoryInstance cacheInstance;
+    private BaseTableCache cache;
+    
+    @Before
+    public void setUp() throws Exception {
+        sourceClient = new InMemoryAccumuloClient("root", new InMemoryInstance("source"));
+        sourceClient.securityOperations().changeUserAuthorizations("root", new Authorizations("A"));
+        sourceClient.tableOperations().create(TABLE);
+        
+        AccumuloConnectionFactory connectionFactory = createMock(AccumuloConnectionFactory.class);
+        expect(connectionFactory.getTrackingMap(anyObject())).andReturn(new HashMap<>()).anyTimes();
+        expect(connectionFactory.getClient(eq(POOL), eq(Priority.ADMIN), anyObject())).andReturn(sourceClient).anyTimes();
+        connectionFactory.returnClient(sourceClient);
+        expectLastCall().anyTimes();
+        replay(connectionFactory);
+        
+        cacheInstance = new InMemoryInstance("cache");
+        cache = new BaseTableCache();
+        cache.setTableName(TABLE);
+        cache.setConnectionPoolName(POOL);
+        cache.setAuths("A");
+        cache.setInstance(cacheInstance);
+        cache.setConnectionFactory(connectionFactory);
+        cache.setIncrementalRefresh(true);
+    }
+    
+    @Test
+    public void testIncrementalRefresh() throws Exception {
+        write("row1", 100L, false);
+        write("row2", 200L, false);
+        
+        assertTrue(cache.call());
+        assertEquals(200L, cache.getHighWaterTimestamp());
+        assertEquals(2, readCache().size());
+        
+        write("row3", 300L, false);
+        write("row1", 100L, true);
+        
+        // the incremental pass picks up the new entry but cannot see the delete
+        assertTrue(cache.call());
+        assertEquals(300L, cache.getHighWaterTimestamp());
+        Map<String,Long> cached = readCache();
+        assertEquals(3, cached.size());
+        assertTrue(cached.containsKey("row3"));
+        
+        // an explicit full reload rebuilds the cached table
+        cache.requestFullReload();
+        assertTrue(cache.call());
+        cached = readCache();
+        assertEquals(2, cached.size());
+        assertTrue(cached.containsKey("row2"));
+        assertTrue(cached.containsKey("row3"));
+    }
+    
+    @Test
+    public void testReconcile() throws Exception {
+        write("row1", 100L, false);
+        write("row2", 200L, false);
+        assertTrue(cache.call());
+        
+        // a delete plus a back-dated write, neither of which an incremental pass would find
+        write("row1", 100L, true);
+        write("row0", 50L, false);
+        
+        cache.setReconcileInterval(1L);
+        Thread.sleep(5L);
+        assertTrue(cache.call());
+        
+        Map<String,Long> cached = readCache();
+        assertEquals(2, cached.size());
+        assertEquals(Long.valueOf(50L), cached.get("row0"));
+        assertEquals(Long.valueOf(200L), cached.get("row2"));
+    }
+    
+    @Test
+    public void testStaggerOffset() {
+        cache.setStaggerInterval(1000L);
+        assertTrue(cache.getStaggerOffset() >= 0L && cache.getStaggerOffset() < 1000L);
+    }
+    
+    private void write(String row, long timestamp, boolean delete) throws Exception {
+        Mutation m = new Mutation(row);
+        if (delete) {
+            m.putDelete("cf", "cq", VIZ, timestamp);
+        } else {
+            m.put("cf", "cq", VIZ, timestamp, new Value(row.getBytes()));
+        }
+        try (BatchWriter writer = sourceClient.createBatchWriter(TABLE, new BatchWriterConfig())) {
+            writer.addMutation(m);
+        }
+    }
+    
+    private Map<String,Long> readCache() throws Exception {
+        AccumuloClient client = new InMemoryAccumuloClient(AccumuloTableCache.MOCK_USERNAME, cacheInstance);
+        Map<String,Long> rows = new TreeMap<>();
+        try (Scanner scanner = client.createScanner(TABLE, new Authorizations("A"))) {
+            for (Map.Entry<Key,Value> entry : scanner) {
+                rows.put(entry.getKey().getRow().toString(), entry.getKey().getTimestamp());
+            }
+        }
+        return rows;
+    }
+}
@@ -13,6 +13,7 @@ import datawave.webservice.common.exception.UnauthorizedException;
 import datawave.webservice.modification.cache.ModificationCacheBean;
 import datawave.webservice.modification.configuration.ModificationConfiguration;
 import datawave.webservice.modification.configuration.ModificationServiceConfiguration;
+import datawave.webservice.query.cache.QueryResultCache;
 import datawave.webservice.query.exception.BadRequestQueryException;
 import datawave.webservice.query.exception.DatawaveErrorCode;
 import datawave.webservice.query.exception.QueryException;
@@ -78,6 +79,9 @@ public class ModificationBean {
     @Inject
     private QueryExecutorBean queryService;
     
+    @Inject
+    private QueryResultCache resultCache;
+    
     @Inject
     @SpringBean(refreshable = true)
     private ModificationConfiguration modificationConfiguration;
@@ -198,6 +202,8 @@ public class ModificationBean {
             service.setQueryService(queryService);
             log.info("Processing modification request from user=" + user + ": \n" + request);
             service.process(client, request, cache.getCachedMutableFieldList(), cbAuths, user);
+            // cached query results may no longer match the modified data
+            resultCache.invalidateAll();
             return response;
         } catch (DatawaveWebApplicationException e) {
             throw e;
@@ -3,7 +3,9 @@ package datawave.webservice.websocket;
 import static datawave.webservice.metrics.Constants.REQUEST_LOGIN_TIME_HEADER;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.interceptor.Interceptors;
@@ -24,11 +26,13 @@ import datawave.webservice.result.GenericResponse;
 import datawave.webservice.result.VoidResponse;
 import datawave.webservice.websocket.codec.JsonQueryMessageDecoder;
 import datawave.webservice.websocket.codec.QueryResponseMessageJsonEncoder;
+import datawave.webservice.websocket.codec.QueryResponseMessageProtobufFrame;
 import datawave.webservice.websocket.messages.CancelMessage;
 import datawave.webservice.websocket.messages.CreateQueryMessage;
 import datawave.webservice.websocket.messages.QueryMessage;
 import datawave.webservice.websocket.messages.QueryResponseMessage;
 import datawave.webservice.websocket.messages.QueryResponseMessage.ResponseType;
+import datawave.webservice.websocket.messages.RequestMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +43,12 @@ import org.slf4j.LoggerFactory;
  * {@link CancelMessage} while the query is in progress in order to cancel execution of the query. Note that if there is a problem creating the query, a
  * creation failure message is sent and the websocket is closed.
  * <p>
+ * By default, pages are produced and sent as fast as the query can produce them. A client that cannot keep up may instead include a
+ * {@value #PARAM_STREAM_CREDIT} parameter in its {@link CreateQueryMessage}, holding the number of pages it is initially ready to receive. The server then only
+ * produces a page while the client has credit remaining, and the client grants more credit by sending a {@link RequestMessage}. The client may also include
+ * a {@value #PARAM_STREAM_ENCODING} parameter of {@code protobuf} to receive binary frames encoded by {@link QueryResponseMessageProtobufFrame} instead of
+ * JSON text frames.
+ * <p>
  * Per the JSR-356 specification (section 2.1.1), since we have not configured the endpoint otherwise, there shall be one instance of this class per endpoint,
  * per peer.
  * <p>
@@ -54,6 +64,16 @@ public class QueryWebsocket {
     private static final String LOGIC_NAME = "logicName";
     private static final String ACTIVE_QUERY_FUTURE = "activeQueryFuture";
     private static final String ACTIVE_QUERY_ID = "activeQueryId";
+    private static final String STREAM_CREDIT = "streamCredit";
+    
+    /** Create message parameter holding the initial credit, in pages, for a streaming query. Its presence enables credit-based streaming. */
+    public static final String PARAM_STREAM_CREDIT = "stream.credit";
+    /** Create message parameter selecting the frame encoding for responses: {@code json} (the default) or {@code protobuf}. */
+    public static final String PARAM_STREAM_ENCODING = "stream.encoding";
+    
+    public enum FrameEncoding {
+        JSON, PROTOBUF
+    }
     
     private Logger log = LoggerFactory.getLogger(getClass());
     
@@ -80,7 +100,29 @@ public class QueryWebsocket {
                 } else {
                     CreateQueryMessage cqm = (CreateQueryMessage) message;
                     String logicName = (String) session.getUserProperties().get(LOGIC_NAME);
-                    QueryObserver observer = new QueryObserver(log, session);
+                    
+                    StreamCredit credit = null;
+                    FrameEncoding encoding = FrameEncoding.JSON;
+                    try {
+                        String initialCredit = cqm.getParameters().getFirst(PARAM_STREAM_CREDIT);
+                        if (initialCredit != null) {
+                            credit = new StreamCredit(Long.parseLong(initialCredit));
+                        }
+                        String frameEncoding = cqm.getParameters().getFirst(PARAM_STREAM_ENCODING);
+                        if (frameEncoding != null) {
+                            encoding = FrameEncoding.valueOf(frameEncoding.toUpperCase());
+                        }
+                    } catch (IllegalArgumentException e) {
+                        session.getAsyncRemote().sendObject(new QueryResponseMessage(ResponseType.CREATION_FAILURE, "Invalid streaming parameters: "
+                                        + e.getMessage()));
+                        break;
+                    }
+                    cqm.getParameters().remove(PARAM_STREAM_CREDIT);
+                    cqm.getParameters().remove(PARAM_STREAM_ENCODING);
+                    if (credit != null) {
+                        session.getUserProperties().put(STREAM_CREDIT, credit);
+                    }
+                    QueryObserver observer = new QueryObserver(log, session, encoding, credit);
                     
                     Long startTime = System.nanoTime();
                     Long loginTime = null;
@@ -99,10 +141,22 @@ public class QueryWebsocket {
                 cancelActiveQuery(session);
             }
                 break;
+            case REQUEST: {
+                StreamCredit credit = (StreamCredit) session.getUserProperties().get(STREAM_CREDIT);
+                if (credit != null) {
+                    credit.grant(((RequestMessage) message).getCount());
+                }
+            }
+                break;
         }
     }
     
     protected void cancelActiveQuery(Session session) {
+        // Release the query producer if it is waiting for credit
+        StreamCredit credit = (StreamCredit) session.getUserProperties().remove(STREAM_CREDIT);
+        if (credit != null) {
+            credit.close();
+        }
         Future<?> activeQuery = (Future<?>) session.getUserProperties().get(ACTIVE_QUERY_FUTURE);
         if (activeQuery != null && !activeQuery.isDone()) {
             // Attempt to cancel the async query call. This will cause the async call to return when it is between next calls.
@@ -122,28 +176,67 @@ public class QueryWebsocket {
     private static class QueryObserver implements AsyncQueryStatusObserver {
         private Logger log;
         private Session session;
+        private FrameEncoding encoding;
+        private StreamCredit credit;
         
-        public QueryObserver(Logger log, Session session) {
+        public QueryObserver(Logger log, Session session, FrameEncoding encoding, StreamCredit credit) {
             this.log = log;
             this.session = session;
+            this.encoding = encoding;
+            this.credit = credit;
+        }
+        
+        private Future<Void> send(QueryResponseMessage message) {
+            if (encoding == FrameEncoding.PROTOBUF) {
+                try {
+                    return session.getAsyncRemote().sendBinary(QueryResponseMessageProtobufFrame.encode(message));
+                } catch (IOException e) {
+                    throw new RuntimeException("Unable to encode " + message.getResponseType() + " message", e);
+                }
+            } else {
+                return session.getAsyncRemote().sendObject(message);
+            }
+        }
+        
+        @Override
+        public boolean awaitDemand(long timeoutMillis) throws InterruptedException {
+            if (credit == null || credit.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            if (!credit.isClosed()) {
+                // The client stopped granting credit, so stop the query rather than holding it open
+                log.warn("No credit granted within " + timeoutMillis + "ms for query " + session.getUserProperties().get(ACTIVE_QUERY_ID) + ", stopping it");
+                send(new QueryResponseMessage(ResponseType.ERROR, "No credit was granted within the page timeout"));
+            }
+            return false;
         }
         
         @Override
         public void queryCreated(GenericResponse<String> createQueryResponse) {
             session.getUserProperties().put(ACTIVE_QUERY_ID, createQueryResponse.getResult());
-            session.getAsyncRemote().sendObject(new QueryResponseMessage(ResponseType.CREATED, createQueryResponse.getResult()));
+            send(new QueryResponseMessage(ResponseType.CREATED, createQueryResponse.getResult()));
         }
         
         @Override
         public void queryResultsAvailable(BaseQueryResponse results) {
-            session.getAsyncRemote().sendObject(new QueryResponseMessage(ResponseType.RESULTS, results));
+            Future<Void> sent = send(new QueryResponseMessage(ResponseType.RESULTS, results));
+            if (credit != null) {
+                // When streaming, wait for the page to be handed off to the client so that unsent pages don't accumulate in the send buffer
+                try {
+                    sent.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    log.warn("Failed to send results for query " + session.getUserProperties().get(ACTIVE_QUERY_ID), e);
+                }
+            }
         }
         
         @Override
         public void queryCreateException(QueryException ex) {
             VoidResponse response = new VoidResponse();
             response.addException(ex);
-            session.getAsyncRemote().sendObject(new QueryResponseMessage(ResponseType.CREATION_FAILURE, "Query creation failed", response));
+            send(new QueryResponseMessage(ResponseType.CREATION_FAILURE, "Query creation failed", response));
             try {
                 session.close();
             } catch (IOException e) {
@@ -159,7 +252,8 @@ public class QueryWebsocket {
             
             VoidResponse response = new VoidResponse();
             response.addException(ex);
-            session.getAsyncRemote().sendObject(new QueryResponseMessage(ResponseType.ERROR, response));
+            session.getUserProperties().remove(STREAM_CREDIT);
+            send(new QueryResponseMessage(ResponseType.ERROR, response));
         }
         
         @Override
@@ -167,7 +261,8 @@ public class QueryWebsocket {
             session.getUserProperties().remove(ACTIVE_QUERY_ID);
             session.getUserProperties().remove(ACTIVE_QUERY_FUTURE);
             
-            session.getAsyncRemote().sendObject(new QueryResponseMessage(ResponseType.COMPLETED));
+            session.getUserProperties().remove(STREAM_CREDIT);
+            send(new QueryResponseMessage(ResponseType.COMPLETED));
             try {
                 session.close();
             } catch (IOException e) {
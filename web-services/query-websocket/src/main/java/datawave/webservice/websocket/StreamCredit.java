@@ -0,0 +1,73 @@
+package datawave.webservice.websocket;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the credit a websocket client has granted for a streaming query. The query producer takes one unit of credit before producing each page of results
+ * and blocks while no credit is available, so a slow consumer limits how far ahead of it the server can get rather than having results pile up in server
+ * memory. The producer waits no longer than the page timeout of the query, so a client that stops granting credit cannot hold a query thread forever.
+ */
+public class StreamCredit {
+    private long credit;
+    private boolean closed = false;
+    
+    public StreamCredit(long initialCredit) {
+        this.credit = Math.max(0, initialCredit);
+    }
+    
+    /**
+     * Adds credit, waking up the producer if it is waiting.
+     *
+     * @param count
+     *            the number of additional pages the client is ready to receive
+     */
+    public synchronized void grant(long count) {
+        if (count > 0) {
+            credit = (Long.MAX_VALUE - credit < count) ? Long.MAX_VALUE : credit + count;
+            notifyAll();
+        }
+    }
+    
+    /**
+     * Waits until credit is available and takes one unit of it, giving up once the timeout has passed.
+     *
+     * @param timeout
+     *            the longest time to wait for credit
+     * @param unit
+     *            the unit of the timeout
+     * @return true if credit was taken, or false if no credit was granted in time or this credit was closed while waiting
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public synchronized boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (credit <= 0 && !closed) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        if (closed) {
+            return false;
+        }
+        credit--;
+        return true;
+    }
+    
+    /**
+     * Releases any waiting producer. No further credit will be handed out.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+    
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+    
+    public synchronized long getCredit() {
+        return credit;
+    }
+}
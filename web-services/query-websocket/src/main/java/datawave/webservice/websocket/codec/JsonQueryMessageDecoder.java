@@ -14,6 +14,7 @@ import javax.ws.rs.core.MultivaluedMap;
 import datawave.webservice.websocket.messages.CancelMessage;
 import datawave.webservice.websocket.messages.CreateQueryMessage;
 import datawave.webservice.websocket.messages.QueryMessage;
+import datawave.webservice.websocket.messages.RequestMessage;
 import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
 
 /**
@@ -33,7 +34,13 @@ public class JsonQueryMessageDecoder implements Decoder.Text<QueryMessage> {
         }
         if (map.size() == 1 && map.containsKey("cancel"))
             return new CancelMessage();
-        else
+        else if (map.size() == 1 && map.containsKey("request")) {
+            try {
+                return new RequestMessage(Long.parseLong(map.getFirst("request")));
+            } catch (NumberFormatException e) {
+                throw new DecodeException(s, "Request count must be a number.", e);
+            }
+        } else
             return new CreateQueryMessage(map);
     }
     
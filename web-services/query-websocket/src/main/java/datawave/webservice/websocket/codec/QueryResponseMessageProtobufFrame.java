@@ -0,0 +1,58 @@
+package datawave.webservice.websocket.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import datawave.webservice.result.BaseResponse;
+import datawave.webservice.websocket.messages.QueryResponseMessage;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.Message;
+import io.protostuff.ProtobufIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+
+/**
+ * Encodes a {@link QueryResponseMessage} into a binary websocket frame. This is not registered as an endpoint encoder, since the endpoint already encodes
+ * {@link QueryResponseMessage}s as JSON text and picks the frame format per session, so binary frames are sent with {@code sendBinary} instead. The frame
+ * layout is:
+ * <ol>
+ * <li>one byte holding the ordinal of the {@link QueryResponseMessage.ResponseType}</li>
+ * <li>a four byte length followed by the UTF-8 bytes of the optional message, where a length of -1 means there is no message</li>
+ * <li>the remainder of the frame, if any, is the protobuf encoding of the {@link BaseResponse}, written with the same schema used for
+ * {@code application/x-protobuf} REST responses</li>
+ * </ol>
+ */
+public final class QueryResponseMessageProtobufFrame {
+    
+    private QueryResponseMessageProtobufFrame() {}
+    
+    @SuppressWarnings("unchecked")
+    public static ByteBuffer encode(QueryResponseMessage object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(object.getResponseType().ordinal());
+            if (object.getMessage() == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] message = object.getMessage().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(message.length);
+                out.write(message);
+            }
+            
+            BaseResponse response = object.getBaseResponse();
+            if (response != null) {
+                Schema<Object> schema;
+                if (response instanceof Message) {
+                    schema = ((Message<Object>) response).cachedSchema();
+                } else {
+                    schema = (Schema<Object>) RuntimeSchema.getSchema(response.getClass());
+                }
+                ProtobufIOUtil.writeTo(out, response, schema, LinkedBuffer.allocate(4096));
+            }
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,29 @@
+package datawave.webservice.websocket.messages;
+
+/**
+ * A query message for clients to send to grant the server credit to push more pages of results for a streaming query. Each unit of credit allows the server to
+ * produce and send one page of results. The client should send a JSON message with a single property "request" set to the number of additional pages it is
+ * ready to receive. For example,
+ *
+ * <pre>
+ * <code>
+ * { "request": 5 }
+ * </code>
+ * </pre>
+ */
+public class RequestMessage implements QueryMessage {
+    private long count;
+    
+    public RequestMessage(long count) {
+        this.count = count;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    @Override
+    public Type getType() {
+        return Type.REQUEST;
+    }
+}
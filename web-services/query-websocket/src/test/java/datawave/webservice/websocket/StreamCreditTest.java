@@ -0,0 +1,92 @@
+package datawave.webservice.websocket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class StreamCreditTest {
+    
+    @Test
+    public void testInitialCredit() throws InterruptedException {
+        StreamCredit credit = new StreamCredit(2);
+        assertTrue(credit.tryAcquire(0, TimeUnit.MILLISECONDS));
+        assertTrue(credit.tryAcquire(0, TimeUnit.MILLISECONDS));
+        assertFalse(credit.tryAcquire(0, TimeUnit.MILLISECONDS));
+        assertEquals(0, credit.getCredit());
+        
+        assertEquals(0, new StreamCredit(-5).getCredit());
+    }
+    
+    @Test
+    public void testTimeout() throws InterruptedException {
+        StreamCredit credit = new StreamCredit(0);
+        long start = System.nanoTime();
+        assertFalse(credit.tryAcquire(50, TimeUnit.MILLISECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertFalse(credit.isClosed());
+    }
+    
+    @Test
+    public void testGrantWakesWaitingProducer() throws InterruptedException {
+        StreamCredit credit = new StreamCredit(0);
+        CountDownLatch waiting = new CountDownLatch(1);
+        AtomicBoolean acquired = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            try {
+                waiting.countDown();
+                acquired.set(credit.tryAcquire(1, TimeUnit.MINUTES));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        waiting.await();
+        credit.grant(3);
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        
+        assertTrue(acquired.get());
+        assertEquals(2, credit.getCredit());
+    }
+    
+    @Test
+    public void testGrantSaturates() {
+        StreamCredit credit = new StreamCredit(Long.MAX_VALUE - 1);
+        credit.grant(10);
+        assertEquals(Long.MAX_VALUE, credit.getCredit());
+        credit.grant(-10);
+        assertEquals(Long.MAX_VALUE, credit.getCredit());
+    }
+    
+    @Test
+    public void testCloseReleasesWaitingProducer() throws InterruptedException {
+        StreamCredit credit = new StreamCredit(0);
+        CountDownLatch waiting = new CountDownLatch(1);
+        AtomicBoolean acquired = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> {
+            try {
+                waiting.countDown();
+                acquired.set(credit.tryAcquire(1, TimeUnit.MINUTES));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        waiting.await();
+        credit.close();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        
+        assertFalse(producer.isAlive());
+        assertFalse(acquired.get());
+        assertTrue(credit.isClosed());
+        
+        // no credit is handed out once closed, even if more is granted
+        credit.grant(1);
+        assertFalse(credit.tryAcquire(0, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,48 @@
+package datawave.webservice.websocket.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import datawave.webservice.result.VoidResponse;
+import datawave.webservice.websocket.messages.QueryResponseMessage;
+import datawave.webservice.websocket.messages.QueryResponseMessage.ResponseType;
+import io.protostuff.ProtobufIOUtil;
+import org.junit.Test;
+
+public class QueryResponseMessageProtobufFrameTest {
+    
+    @Test
+    public void testMessageOnly() throws IOException {
+        ByteBuffer frame = QueryResponseMessageProtobufFrame.encode(new QueryResponseMessage(ResponseType.CREATED, "query-id"));
+        
+        assertEquals(ResponseType.CREATED.ordinal(), frame.get());
+        byte[] message = new byte[frame.getInt()];
+        frame.get(message);
+        assertEquals("query-id", new String(message, StandardCharsets.UTF_8));
+        assertFalse(frame.hasRemaining());
+    }
+    
+    @Test
+    public void testResponseWithoutMessage() throws IOException {
+        VoidResponse response = new VoidResponse();
+        response.addMessage("done");
+        response.setOperationTimeMS(42);
+        
+        ByteBuffer frame = QueryResponseMessageProtobufFrame.encode(new QueryResponseMessage(ResponseType.RESULTS, response));
+        
+        assertEquals(ResponseType.RESULTS.ordinal(), frame.get());
+        assertEquals(-1, frame.getInt());
+        byte[] body = new byte[frame.remaining()];
+        frame.get(body);
+        
+        // the remainder is the protobuf encoding used for REST responses
+        VoidResponse decoded = new VoidResponse();
+        ProtobufIOUtil.mergeFrom(body, decoded, decoded.cachedSchema());
+        assertEquals(response.getMessages(), decoded.getMessages());
+        assertEquals(42, decoded.getOperationTimeMS());
+    }
+}
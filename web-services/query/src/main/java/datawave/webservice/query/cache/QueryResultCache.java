@@ -0,0 +1,444 @@
+package datawave.webservice.query.cache;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import datawave.webservice.common.audit.AuditParameters;
+import datawave.webservice.common.audit.PrivateAuditConstants;
+import datawave.webservice.common.cache.SharedCacheCoordinator;
+import datawave.webservice.query.QueryParameters;
+import datawave.webservice.result.BaseQueryResponse;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.shared.SharedCountListener;
+import org.apache.curator.framework.recipes.shared.SharedCountReader;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.deltaspike.core.api.config.ConfigProperty;
+import org.apache.log4j.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the first result page of queries over data old enough to no longer change through ingest. Pages are serialized to the local disk, keyed by a
+ * fingerprint of the normalized query parameters and the authorizations of the user, and evicted least recently used first once the cache is over its size.
+ * <p>
+ * Only queries whose end date is older than the ingest latency horizon are cached, as newer data may still arrive. Modifications change data of any age, so
+ * the cache must be invalidated when they are made. As a modification may be made through any server, invalidations are counted by a shared counter in
+ * Zookeeper, and every server drops its pages when the counter changes. Each page is also scoped to the invalidation version current when its query started,
+ * so that a query which ran across an invalidation is not cached.
+ */
+@Singleton
+// CDI singleton
+public class QueryResultCache {
+    
+    private static final Logger log = Logger.getLogger(QueryResultCache.class);
+    
+    private static final String SUFFIX = ".page";
+    
+    private static final String COORDINATOR_NAMESPACE = "QueryResultCache";
+    
+    private static final String INVALIDATIONS = "invalidations";
+    
+    /**
+     * Parameters which do not change the results of a query, and so are left out of its fingerprint
+     */
+    private static final Set<String> IGNORED_PARAMETERS = new HashSet<>(Arrays.asList(QueryParameters.QUERY_NAME, QueryParameters.QUERY_EXPIRATION,
+                    QueryParameters.QUERY_PERSISTENCE, QueryParameters.QUERY_PAGETIMEOUT, QueryParameters.QUERY_TRACE, AuditParameters.AUDIT_ID));
+    
+    @Inject
+    @ConfigProperty(name = "dw.query.resultCache.enabled", defaultValue = "false")
+    private boolean enabled;
+    
+    @Inject
+    @ConfigProperty(name = "dw.query.resultCache.directory", defaultValue = "")
+    private String directory;
+    
+    @Inject
+    @ConfigProperty(name = "dw.query.resultCache.maxSizeBytes", defaultValue = "1073741824")
+    private long maxSizeBytes;
+    
+    @Inject
+    @ConfigProperty(name = "dw.query.resultCache.horizonMinutes", defaultValue = "1440")
+    private long horizonMinutes;
+    
+    @Inject
+    @ConfigProperty(name = "dw.warehouse.zookeepers", defaultValue = "")
+    private String zookeepers;
+    
+    private File cacheDir;
+    
+    private SharedCacheCoordinator coordinator;
+    
+    // the cached pages, in least recently used order
+    private final LinkedHashMap<String,Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+    
+    // the number of invalidations seen by this server, which scopes the pages cached
+    private volatile long version = 0;
+    
+    // names the files of pages, so that each page has a file of its own
+    private final AtomicLong fileCount = new AtomicLong();
+    
+    private final Map<Class<?>,JAXBContext> contexts = new ConcurrentHashMap<>();
+    
+    public QueryResultCache() {}
+    
+    public QueryResultCache(boolean enabled, String directory, long maxSizeBytes, long horizonMinutes) {
+        this(enabled, directory, maxSizeBytes, horizonMinutes, "");
+    }
+    
+    public QueryResultCache(boolean enabled, String directory, long maxSizeBytes, long horizonMinutes, String zookeepers) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+        this.horizonMinutes = horizonMinutes;
+        this.zookeepers = zookeepers;
+        init();
+    }
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (directory == null || directory.isEmpty()) {
+            directory = new File(System.getProperty("java.io.tmpdir"), "datawave-query-results").getPath();
+        }
+        cacheDir = new File(directory);
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            log.error("Unable to create query result cache directory " + cacheDir + ", disabling the query result cache");
+            enabled = false;
+            return;
+        }
+        // the pages left by a previous run are not indexed, so start empty
+        deleteAll();
+        
+        if (zookeepers == null || zookeepers.isEmpty()) {
+            log.warn("No zookeepers are configured, so the query result cache is only invalidated by modifications made through this server");
+        } else {
+            try {
+                coordinator = new SharedCacheCoordinator(COORDINATOR_NAMESPACE, zookeepers, 30, 300, 10);
+                coordinator.start();
+                coordinator.registerCounter(INVALIDATIONS, new SharedCountListener() {
+                    @Override
+                    public void countHasChanged(SharedCountReader sharedCount, int newCount) throws Exception {
+                        if (!coordinator.checkCounter(INVALIDATIONS, newCount)) {
+                            log.info("The query result cache was invalidated by another server");
+                            clear();
+                        }
+                    }
+                    
+                    @Override
+                    public void stateChanged(CuratorFramework client, ConnectionState newState) {
+                        // the coordinator re-registers the counter itself
+                    }
+                });
+            } catch (Exception e) {
+                log.error("Unable to share invalidations of the query result cache, disabling the query result cache", e);
+                stop();
+                enabled = false;
+                return;
+            }
+        }
+        log.info("Caching query results older than " + horizonMinutes + " minutes in " + cacheDir + ", up to " + maxSizeBytes + " bytes");
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (coordinator != null) {
+            coordinator.stop();
+            coordinator = null;
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * @param endDate
+     *            the end date of a query
+     * @return true if the query covers only data older than the ingest latency horizon
+     */
+    public boolean isCacheable(Date endDate) {
+        return enabled && endDate != null && endDate.getTime() < System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(horizonMinutes);
+    }
+    
+    /**
+     * @return the invalidation version, to be taken before a query is run and given to {@link #put} with its results
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Computes the fingerprint of a query, which is the same for any two requests expected to return the same results to users with the same authorizations
+     *
+     * @param logicName
+     *            the name of the query logic
+     * @param queryParameters
+     *            the parameters of the query, before any private audit parameters are added
+     * @param authorizations
+     *            the authorizations of the user and of any proxies
+     * @return the fingerprint
+     */
+    public String fingerprint(String logicName, MultivaluedMap<String,String> queryParameters, Collection<? extends Collection<String>> authorizations) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(logicName, StandardCharsets.UTF_8).putChar('\0');
+        
+        // order the parameters and their values, as neither order changes the results
+        TreeMap<String,TreeSet<String>> normalized = new TreeMap<>();
+        for (Map.Entry<String,List<String>> entry : queryParameters.entrySet()) {
+            String name = entry.getKey();
+            if (IGNORED_PARAMETERS.contains(name) || name.startsWith(PrivateAuditConstants.PREFIX)) {
+                continue;
+            }
+            TreeSet<String> values = normalized.computeIfAbsent(name, n -> new TreeSet<>());
+            for (String value : entry.getValue()) {
+                if (value != null) {
+                    values.add(QueryParameters.QUERY_STRING.equals(name) ? value.trim().replaceAll("\\s+", " ") : value.trim());
+                }
+            }
+        }
+        for (Map.Entry<String,TreeSet<String>> entry : normalized.entrySet()) {
+            hasher.putString(entry.getKey(), StandardCharsets.UTF_8).putChar('=');
+            for (String value : entry.getValue()) {
+                hasher.putString(value, StandardCharsets.UTF_8).putChar('\0');
+            }
+        }
+        
+        TreeSet<String> auths = new TreeSet<>();
+        if (authorizations != null) {
+            for (Collection<String> entityAuths : authorizations) {
+                auths.add(String.join(",", new TreeSet<>(entityAuths)));
+            }
+        }
+        for (String entityAuths : auths) {
+            hasher.putChar('|').putString(entityAuths, StandardCharsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+    
+    /**
+     * @param fingerprint
+     *            the fingerprint of the query
+     * @return the cached first page of the query, or null if it is not cached
+     */
+    public BaseQueryResponse get(String fingerprint) {
+        Page page;
+        synchronized (this) {
+            page = enabled ? pages.get(fingerprint) : null;
+        }
+        if (page == null) {
+            return null;
+        }
+        
+        // the file of a page is never rewritten, so it can be read outside of the lock, and fails to open if the page was removed since
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(page.file)))) {
+            Class<?> responseClass = Class.forName(in.readUTF());
+            BaseQueryResponse response = (BaseQueryResponse) getContext(responseClass).createUnmarshaller().unmarshal(in);
+            if (log.isDebugEnabled()) {
+                log.debug("Found query results " + fingerprint + " in the query result cache");
+            }
+            return response;
+        } catch (Exception e) {
+            File removed = null;
+            synchronized (this) {
+                if (pages.get(fingerprint) == page) {
+                    log.warn("Unable to read query results " + fingerprint + " from the query result cache", e);
+                    removed = remove(fingerprint);
+                }
+            }
+            delete(removed);
+            return null;
+        }
+    }
+    
+    /**
+     * Caches the first page of a query, evicting the least recently used pages until the cache is within its size
+     *
+     * @param fingerprint
+     *            the fingerprint of the query
+     * @param version
+     *            the invalidation version taken before the query was run, as the page is not cached if the cache has been invalidated since
+     * @param response
+     *            the first page of the query
+     */
+    public void put(String fingerprint, long version, BaseQueryResponse response) {
+        if (!enabled || version != this.version) {
+            return;
+        }
+        File file = new File(cacheDir, fingerprint + "-" + fileCount.incrementAndGet() + SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeUTF(response.getClass().getName());
+            getContext(response.getClass()).createMarshaller().marshal(response, out);
+        } catch (Exception e) {
+            log.warn("Unable to write query results " + fingerprint + " to the query result cache", e);
+            delete(file);
+            return;
+        }
+        
+        long length = file.length();
+        if (length > maxSizeBytes) {
+            delete(file);
+            return;
+        }
+        
+        List<File> removed = new ArrayList<>();
+        synchronized (this) {
+            if (version != this.version) {
+                removed.add(file);
+            } else {
+                removed.add(remove(fingerprint));
+                pages.put(fingerprint, new Page(file, length));
+                size += length;
+                
+                Iterator<Map.Entry<String,Page>> it = pages.entrySet().iterator();
+                while (size > maxSizeBytes && it.hasNext()) {
+                    Page eldest = it.next().getValue();
+                    it.remove();
+                    size -= eldest.length;
+                    removed.add(eldest.file);
+                }
+            }
+        }
+        for (File evicted : removed) {
+            delete(evicted);
+        }
+    }
+    
+    /**
+     * Invalidates the cached page of one query
+     *
+     * @param fingerprint
+     *            the fingerprint of the query
+     */
+    public void invalidate(String fingerprint) {
+        File removed;
+        synchronized (this) {
+            removed = remove(fingerprint);
+        }
+        delete(removed);
+    }
+    
+    /**
+     * Invalidates every cached page on every server, for when data has been changed
+     */
+    public void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        clear();
+        if (coordinator != null) {
+            try {
+                coordinator.incrementCounter(INVALIDATIONS);
+            } catch (Exception e) {
+                log.error("Unable to invalidate the query result cache of the other servers", e);
+            }
+        }
+    }
+    
+    public synchronized int getSize() {
+        return pages.size();
+    }
+    
+    public synchronized long getSizeBytes() {
+        return size;
+    }
+    
+    /**
+     * Drops every page cached by this server, and moves to the next invalidation version so that queries already running are not cached
+     */
+    private void clear() {
+        List<Page> removed;
+        synchronized (this) {
+            version++;
+            removed = new ArrayList<>(pages.values());
+            pages.clear();
+            size = 0;
+        }
+        log.info("Invalidating " + removed.size() + " pages in the query result cache");
+        for (Page page : removed) {
+            delete(page.file);
+        }
+    }
+    
+    private JAXBContext getContext(Class<?> responseClass) throws JAXBException {
+        JAXBContext context = contexts.get(responseClass);
+        if (context == null) {
+            context = JAXBContext.newInstance(responseClass);
+            contexts.putIfAbsent(responseClass, context);
+        }
+        return context;
+    }
+    
+    /**
+     * @return the file of the page removed, to be deleted outside of the lock, or null if the query had no page
+     */
+    private File remove(String fingerprint) {
+        Page page = pages.remove(fingerprint);
+        if (page != null) {
+            size -= page.length;
+            return page.file;
+        }
+        return null;
+    }
+    
+    private void delete(File file) {
+        if (file != null && file.exists() && !file.delete()) {
+            log.warn("Unable to delete " + file);
+        }
+    }
+    
+    private void deleteAll() {
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            List<File> undeleted = new ArrayList<>();
+            for (File file : files) {
+                if (!file.delete()) {
+                    undeleted.add(file);
+                }
+            }
+            if (!undeleted.isEmpty()) {
+                log.warn("Unable to delete " + undeleted);
+            }
+        }
+    }
+    
+    private static class Page {
+        private final File file;
+        private final long length;
+        
+        private Page(File file, long length) {
+            this.file = file;
+            this.length = length;
+        }
+    }
+}
@@ -19,6 +19,7 @@ public class LookupUUIDConfiguration {
     protected int batchLookupUpperLimit = LookupUUIDConstants.DEFAULT_BATCH_LOOKUP_UPPER_LIMIT;
     protected String beginDate = null;
     protected String columnVisibility;
+    protected int maxConcurrentBatchLookups = 1;
     
     /**
      * Returns the maximum number of UUIDs allowed for batch lookup. A zero or negative value is interpreted as unlimited. The default value is 100.
@@ -29,6 +30,16 @@ public class LookupUUIDConfiguration {
         return this.batchLookupUpperLimit;
     }
     
+    /**
+     * Returns the maximum number of content lookup batches that may be executed concurrently for a single request. A value of 1 or less executes the batches
+     * one after another. The default value is 1.
+     * 
+     * @return the maximum number of concurrently executed content lookup batches
+     */
+    public int getMaxConcurrentBatchLookups() {
+        return this.maxConcurrentBatchLookups;
+    }
+    
     public String getBeginDate() {
         return this.beginDate;
     }
@@ -51,6 +62,10 @@ public class LookupUUIDConfiguration {
         this.batchLookupUpperLimit = batchLookupUpperLimit;
     }
     
+    public void setMaxConcurrentBatchLookups(int maxConcurrentBatchLookups) {
+        this.maxConcurrentBatchLookups = maxConcurrentBatchLookups;
+    }
+    
     public void setBeginDate(String beginDate) {
         this.beginDate = beginDate;
     }
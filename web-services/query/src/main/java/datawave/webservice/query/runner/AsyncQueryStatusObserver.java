@@ -17,4 +17,18 @@ public interface AsyncQueryStatusObserver {
     void queryException(QueryException ex);
     
     void queryFinished(String queryId);
+    
+    /**
+     * Called before each page of results is retrieved. Observers that deliver results to a consumer with limited capacity may block here until the consumer is
+     * ready for another page, but no longer than the given timeout. By default the next page is retrieved immediately.
+     * 
+     * @param timeoutMillis
+     *            the longest time, in milliseconds, to wait for the consumer, which is the page timeout of the query
+     * @return true if the next page should be retrieved, or false if the query should stop, including when the consumer did not become ready in time
+     * @throws InterruptedException
+     *             if interrupted while waiting for the consumer
+     */
+    default boolean awaitDemand(long timeoutMillis) throws InterruptedException {
+        return true;
+    }
 }
@@ -43,6 +43,7 @@ import datawave.webservice.query.cache.CreatedQueryLogicCacheBean;
 import datawave.webservice.query.cache.QueryCache;
 import datawave.webservice.query.cache.QueryExpirationConfiguration;
 import datawave.webservice.query.cache.QueryMetricFactory;
+import datawave.webservice.query.cache.QueryResultCache;
 import datawave.webservice.query.cache.QueryTraceCache;
 import datawave.webservice.query.cache.ResultsPage;
 import datawave.webservice.query.cache.RunningQueryTimingImpl;
@@ -74,6 +75,7 @@ import datawave.webservice.query.util.QueryUtil;
 import datawave.webservice.query.util.UIDQueryCriteria;
 import datawave.webservice.result.BaseQueryResponse;
 import datawave.webservice.result.BaseResponse;
+import datawave.webservice.result.EventQueryResponseBase;
 import datawave.webservice.result.GenericResponse;
 import datawave.webservice.result.QueryImplListResponse;
 import datawave.webservice.result.QueryLogicResponse;
@@ -203,6 +205,10 @@ public class QueryExecutorBean implements QueryExecutor {
     @Resource
     private ManagedExecutorService executor;
     
+    // content lookup batches wait on the pages of their queries, which run on the default executor, so they get an executor of their own
+    @Resource(lookup = "java:jboss/ee/concurrency/executor/lookupUUID")
+    private ManagedExecutorService lookupUUIDExecutor;
+    
     @Inject
     private QueryLogicFactory queryLogicFactory;
     
@@ -248,6 +254,9 @@ public class QueryExecutorBean implements QueryExecutor {
     @Inject
     private ClosedQueryCache closedQueryCache;
     
+    @Inject
+    private QueryResultCache resultCache;
+    
     private final int PAGE_TIMEOUT_MIN = 1;
     private final int PAGE_TIMEOUT_MAX = QueryExpirationConfiguration.PAGE_TIMEOUT_MIN_DEFAULT;
     
@@ -279,6 +288,7 @@ public class QueryExecutorBean implements QueryExecutor {
         queryTraceCache.addListener(traceCacheListener);
         
         this.lookupUUIDUtil = new LookupUUIDUtil(this.lookupUUIDConfiguration, this, this.ctx, this.responseObjectFactory);
+        this.lookupUUIDUtil.setBatchLookupExecution(this.lookupUUIDExecutor, () -> sessionContext.getBusinessObject(QueryExecutorBean.class));
     }
     
     @PreDestroy
@@ -1323,10 +1333,146 @@ public class QueryExecutorBean implements QueryExecutor {
                     @Context HttpHeaders httpHeaders) {
         CreateQuerySessionIDFilter.QUERY_ID.set(null);
         
+        // fingerprint the parameters as given, before validation adds the private audit parameters
+        String fingerprint = null;
+        long version = 0;
+        if (resultCache != null && resultCache.isEnabled()) {
+            // taken before the query runs, so that results which may predate a modification made while it ran are not cached
+            version = resultCache.getVersion();
+            Principal p = ctx.getCallerPrincipal();
+            Collection<? extends Collection<String>> authorizations = (p instanceof DatawavePrincipal) ? ((DatawavePrincipal) p).getAuthorizations() : null;
+            fingerprint = resultCache.fingerprint(logicName, queryParameters, authorizations);
+            BaseQueryResponse cached = resultCache.get(fingerprint);
+            if (cached != null) {
+                return createCachedQuery(logicName, queryParameters, httpHeaders, fingerprint, cached);
+            }
+        }
+        
         GenericResponse<String> createResponse = createQuery(logicName, queryParameters, httpHeaders);
         String queryId = createResponse.getResult();
         CreateQuerySessionIDFilter.QUERY_ID.set(queryId);
-        return next(queryId, false);
+        BaseQueryResponse response = next(queryId, false);
+        
+        // only a query which returned all of its results in its first page can be answered from the cache
+        if (fingerprint != null && response.getExceptions() == null) {
+            RunningQuery query = queryCache.get(queryId);
+            if (query != null && query.isExhausted() && resultCache.isCacheable(query.getSettings().getEndDate())) {
+                resultCache.put(fingerprint, version, response);
+            }
+        }
+        return response;
+    }
+    
+    /**
+     * Answers a query from the query result cache. The query is still validated, persisted and audited as if it had run, but it is closed as soon as it is
+     * created, as its first page held all of its results.
+     *
+     * @param logicName
+     * @param queryParameters
+     * @param httpHeaders
+     * @param fingerprint
+     *            the fingerprint the page is cached by
+     * @param cached
+     *            the cached first page of the query
+     * @return the cached page, for the new query id
+     */
+    private BaseQueryResponse createCachedQuery(String logicName, MultivaluedMap<String,String> queryParameters, HttpHeaders httpHeaders, String fingerprint,
+                    BaseQueryResponse cached) {
+        long start = System.currentTimeMillis();
+        QueryData qd = validateQuery(logicName, queryParameters, httpHeaders);
+        
+        // the horizon may have been moved since the page was cached
+        if (!resultCache.isCacheable(qp.getEndDate())) {
+            resultCache.invalidate(fingerprint);
+            GenericResponse<String> createResponse = createQuery(logicName, queryParameters, httpHeaders);
+            CreateQuerySessionIDFilter.QUERY_ID.set(createResponse.getResult());
+            return next(createResponse.getResult(), false);
+        }
+        
+        GenericResponse<String> response = new GenericResponse<>();
+        Query q = null;
+        try {
+            AuditType auditType = qd.logic.getAuditType(null);
+            try {
+                MultivaluedMap<String,String> optionalQueryParameters = qp.getUnknownParameters(queryParameters);
+                q = persister.create(qd.userDn, qd.dnList, marking, logicName, qp, optionalQueryParameters);
+                auditType = qd.logic.getAuditType(q);
+            } finally {
+                queryParameters.add(PrivateAuditConstants.AUDIT_TYPE, auditType.name());
+                
+                if (!auditType.equals(AuditType.NONE)) {
+                    try {
+                        try {
+                            List<String> selectors = qd.logic.getSelectors(q);
+                            if (selectors != null && !selectors.isEmpty()) {
+                                queryParameters.put(PrivateAuditConstants.SELECTORS, selectors);
+                            }
+                        } catch (Exception e) {
+                            log.error("Error accessing query selector", e);
+                        }
+                        // if the user didn't set an audit id, use the query id
+                        if (!queryParameters.containsKey(AuditParameters.AUDIT_ID)) {
+                            queryParameters.putSingle(AuditParameters.AUDIT_ID, q.getId().toString());
+                        }
+                        auditor.audit(queryParameters);
+                    } catch (IllegalArgumentException e) {
+                        log.error("Error validating audit parameters", e);
+                        BadRequestQueryException qe = new BadRequestQueryException(DatawaveErrorCode.MISSING_REQUIRED_PARAMETER, e);
+                        response.addException(qe);
+                        throw new BadRequestException(qe, response);
+                    } catch (Exception e) {
+                        log.error("Error auditing query", e);
+                        QueryException qe = new QueryException(DatawaveErrorCode.QUERY_AUDITING_ERROR, e);
+                        response.addException(qe);
+                        throw qe;
+                    }
+                }
+            }
+            
+            String queryId = q.getId().toString();
+            // the query is done, so a call to next or close finds it as though it had been auto-closed
+            closedQueryCache.add(queryId);
+            CreateQuerySessionIDFilter.QUERY_ID.set(queryId);
+            
+            cached.setQueryId(queryId);
+            cached.setPageNumber(1);
+            cached.addMessage("Results served from the query result cache");
+            
+            if (qd.logic.getCollectQueryMetrics()) {
+                long now = System.currentTimeMillis();
+                BaseQueryMetric metric = metricFactory.createMetric();
+                q.populateMetric(metric);
+                metric.setQueryType(QueryResultCache.class.getSimpleName());
+                metric.setCreateCallTime(now - start);
+                long returned = (cached instanceof EventQueryResponseBase && ((EventQueryResponseBase) cached).getReturnedEvents() != null)
+                                ? ((EventQueryResponseBase) cached).getReturnedEvents() : 0;
+                metric.addPageTime(returned, now - start, start, now);
+                metric.setLifecycle(QueryMetric.Lifecycle.CLOSED);
+                try {
+                    metrics.updateMetric(metric);
+                } catch (Exception e) {
+                    log.error("Error updating query metrics", e);
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Answered query " + queryId + " for " + qd.userid + " from the query result cache");
+            }
+            return cached;
+        } catch (DatawaveWebApplicationException e) {
+            throw e;
+        } catch (Exception e) {
+            try {
+                if (null != q)
+                    persister.remove(q);
+            } catch (Exception e2) {
+                response.addException(new QueryException(DatawaveErrorCode.DEPERSIST_ERROR, e2).getBottomQueryException());
+            }
+            log.error(e.getMessage(), e);
+            QueryException qe = new QueryException(DatawaveErrorCode.RUNNING_QUERY_CACHE_ERROR, e);
+            response.addException(qe.getBottomQueryException());
+            int statusCode = qe.getBottomQueryException().getStatusCode();
+            throw new DatawaveWebApplicationException(qe, response, statusCode);
+        }
     }
     
     @POST
@@ -1907,7 +2053,7 @@ public class QueryExecutorBean implements QueryExecutor {
         return this.next(id, true);
     }
     
-    private BaseQueryResponse next(final String id, boolean checkForContentLookup) {
+    protected BaseQueryResponse next(final String id, boolean checkForContentLookup) {
         // in case we don't make it to creating the response from the QueryLogic
         BaseQueryResponse response = responseObjectFactory.getEventQueryResponse();
         
@@ -3360,10 +3506,22 @@ public class QueryExecutorBean implements QueryExecutor {
             boolean done = false;
             TraceScope span = null;
             List<PageMetric> pageMetrics = rq.getMetric().getPageTimes();
+            // A consumer that never asks for another page holds the query open no longer than a page call would take
+            long demandTimeoutMs = new RunningQueryTimingImpl(queryExpirationConf, rq.getSettings().getPageTimeout()).getMaxCallMs();
             
             // Loop over each page of query results, and notify the observer about each page.
             // If we get any exception, then break out of the loop and notify the observer about the problem.
             do {
+                // Give the observer a chance to hold off production of the next page until its consumer is ready for it
+                try {
+                    if (!observer.awaitDemand(demandTimeoutMs)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                
                 long callStart = System.nanoTime();
                 rq.setActiveCall(true);
                 try {
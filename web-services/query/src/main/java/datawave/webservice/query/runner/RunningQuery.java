@@ -59,6 +59,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
     private transient TransformIterator iter = null;
     private Set<Authorizations> calculatedAuths = null;
     private boolean finished = false;
+    private boolean exhausted = false;
     private volatile boolean canceled = false;
     private TraceInfo traceInfo = null;
     private transient QueryMetricsBean queryMetrics = null;
@@ -200,7 +201,12 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
             // test for any exceptions prior to loop as hasNext() would likely be false;
             testForUncaughtException(resultList.size());
             
-            while (!this.finished && ((future != null) || this.iter.hasNext())) {
+            while (!this.finished) {
+                // if the logic has no more results, then break out
+                if (future == null && !this.iter.hasNext()) {
+                    this.exhausted = true;
+                    break;
+                }
                 // if we are canceled, then break out
                 if (this.canceled) {
                     log.info("Query has been cancelled, aborting query.next call");
@@ -286,6 +292,7 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
                     if (null == o) {
                         log.debug("Null result encountered, no more results");
                         this.finished = true;
+                        this.exhausted = true;
                         break;
                     }
                     resultList.add(o);
@@ -350,6 +357,13 @@ public class RunningQuery extends AbstractRunningQuery implements Runnable {
         return finished;
     }
     
+    /**
+     * @return true if the last call to next found that the logic has no more results
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+    
     public boolean isCanceled() {
         return canceled;
     }
@@ -9,8 +9,15 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.Map;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 import javax.ejb.EJBContext;
 import javax.ejb.EJBException;
 import javax.ws.rs.core.HttpHeaders;
@@ -61,6 +68,11 @@ public class LookupUUIDUtil {
      */
     public static final String PARAM_CONTENT_LOOKUP = "content.lookup";
     
+    /**
+     * Internally assigned parameter identifying which batch of a multi-batch content lookup a ContentQuery belongs to
+     */
+    public static final String PARAM_CONTENT_LOOKUP_BATCH = "content.lookup.batch";
+    
     private static final String PARAM_LUCENE_QUERY_SYNTAX = ";query.syntax:LUCENE-UUID";
     protected static final String QUOTE = "\"";
     private static final String REGEX_GROUPING_CHARS = "[()]";
@@ -89,8 +101,14 @@ public class LookupUUIDUtil {
     
     private int maxAllowedBatchLookupUUIDs = LookupUUIDConstants.DEFAULT_BATCH_LOOKUP_UPPER_LIMIT;
     
+    private int maxConcurrentBatchLookups = 1;
+    
     private final QueryExecutor queryExecutor;
     
+    private ExecutorService executorService;
+    
+    private Supplier<QueryExecutor> batchQueryExecutor;
+    
     private Map<String,UUIDType> uuidTypes = Collections.synchronizedMap(new HashMap<>());
     
     MultivaluedMap<String,String> defaultOptionalParams;
@@ -150,6 +168,8 @@ public class LookupUUIDUtil {
             this.maxAllowedBatchLookupUUIDs = -1;
         }
         
+        this.maxConcurrentBatchLookups = Math.max(1, this.lookupUUIDConfiguration.getMaxConcurrentBatchLookups());
+        
         this.defaultOptionalParams = this.lookupUUIDConfiguration.optionalParamsToMap();
     }
     
@@ -558,114 +578,317 @@ public class LookupUUIDUtil {
     private EventQueryResponseBase lookupPagedContent(final String queryName, final AbstractUUIDLookupCriteria validatedCriteria,
                     final List<StringBuilder> batchedContentQueryStrings, final Date endDate, final Date expireDate, final String userAuths,
                     boolean allEventMockResponse) {
+        // Fan the batches out concurrently if configured to do so and there is more than one batch
+        if ((null != this.executorService) && (null != this.batchQueryExecutor) && (this.maxConcurrentBatchLookups > 1)
+                        && (batchedContentQueryStrings.size() > 1)) {
+            return this.lookupPagedContentConcurrently(queryName, validatedCriteria, batchedContentQueryStrings, endDate, expireDate, userAuths,
+                            allEventMockResponse);
+        }
+        
         // Initialize the return value
         EventQueryResponseBase mergedContentQueryResponse = null;
         
         // Call the ContentQuery for one or more events
         DatawaveWebApplicationException noResultsException = null;
+        int batchNumber = 0;
         for (final StringBuilder contentQuery : batchedContentQueryStrings) {
-            // Submitted query should look like this:
-            //
-            // DOCUMENT:shardId/datatype/uid [DOCUMENT:shardId/datatype/uid]*
-            //
-            MultivaluedMap<String,String> queryParameters = new MultivaluedMapImpl<>();
-            queryParameters.putAll(this.defaultOptionalParams);
-            queryParameters.putSingle(QueryParameters.QUERY_NAME, queryName);
-            queryParameters.putSingle(QueryParameters.QUERY_STRING, contentQuery.toString());
-            try {
-                queryParameters.putSingle(QueryParameters.QUERY_BEGIN, QueryParametersImpl.formatDate(this.beginAsDate));
-            } catch (ParseException e1) {
-                throw new RuntimeException("Error formatting begin date: " + this.beginAsDate);
-            }
-            try {
-                queryParameters.putSingle(QueryParameters.QUERY_END, QueryParametersImpl.formatDate(endDate));
-            } catch (ParseException e1) {
-                throw new RuntimeException("Error formatting end date: " + endDate);
+            boolean preventCloseOfMergedQueryId = ((null == mergedContentQueryResponse) && allEventMockResponse);
+            final ContentBatchResult batchResult = this.lookupContentBatch(this.queryExecutor, queryName, validatedCriteria, contentQuery, endDate,
+                            expireDate, userAuths, batchNumber++, batchedContentQueryStrings.size(), preventCloseOfMergedQueryId);
+            if (null != batchResult.noResultsException) {
+                noResultsException = batchResult.noResultsException;
             }
-            queryParameters.putSingle(QueryParameters.QUERY_AUTHORIZATIONS, userAuths);
-            try {
-                queryParameters.putSingle(QueryParameters.QUERY_EXPIRATION, QueryParametersImpl.formatDate(expireDate));
-            } catch (ParseException e1) {
-                throw new RuntimeException("Error formatting expr date: " + expireDate);
+            mergedContentQueryResponse = this.mergeContentResponse(mergedContentQueryResponse, batchResult.response);
+        }
+        
+        // Conditionally throw a NoResultsException
+        if ((null == mergedContentQueryResponse) && (null != noResultsException)) {
+            throw noResultsException;
+        }
+        
+        return mergedContentQueryResponse;
+    }
+    
+    /*
+     * Re-partitions the content query terms by shard date so that each batch only touches a single day of the shard table, executes up to
+     * maxConcurrentBatchLookups of the batches at a time, and merges their results back together in the order the terms were originally requested.
+     */
+    private EventQueryResponseBase lookupPagedContentConcurrently(final String queryName, final AbstractUUIDLookupCriteria validatedCriteria,
+                    final List<StringBuilder> batchedContentQueryStrings, final Date endDate, final Date expireDate, final String userAuths,
+                    boolean allEventMockResponse) {
+        // Remember the requested order of the terms, then partition them by shard date
+        final Map<String,Integer> requestOrder = new HashMap<>();
+        final List<StringBuilder> partitionedBatches = this.partitionByShardDate(batchedContentQueryStrings, requestOrder);
+        final int numBatches = partitionedBatches.size();
+        
+        // The worker threads must not touch this bean's EJB context, so resolve the executor they call through on the request thread. Each of its calls
+        // runs in a container context of its own, with the caller identity propagated by the managed executor.
+        final QueryExecutor executor = this.batchQueryExecutor.get();
+        
+        // Submit the batches, keeping no more than maxConcurrentBatchLookups in flight at any given time
+        final Semaphore permits = new Semaphore(this.maxConcurrentBatchLookups);
+        final List<Future<ContentBatchResult>> futures = new ArrayList<>(numBatches);
+        // For an all-event lookup, the query ID of the first batch with results is handed back to the caller, which is only known once the batches before it
+        // are done. So every batch is left open, and those left open are closed here once the merged query ID is known, or by their own thread if the lookup
+        // was abandoned by then.
+        final OpenContentBatches openBatches = new OpenContentBatches();
+        String mergedQueryId = null;
+        try {
+            for (int i = 0; i < numBatches; i++) {
+                final int batchNumber = i;
+                final StringBuilder contentQuery = partitionedBatches.get(i);
+                permits.acquire();
+                try {
+                    futures.add(this.executorService.submit(() -> {
+                        try {
+                            final ContentBatchResult batchResult = this.lookupContentBatch(executor, queryName, validatedCriteria, contentQuery, endDate,
+                                            expireDate, userAuths, batchNumber, numBatches, allEventMockResponse);
+                            if (allEventMockResponse && !openBatches.add(batchResult)) {
+                                this.closeContentBatch(executor, batchResult);
+                            }
+                            return batchResult;
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
             }
-            queryParameters.putSingle(QueryParameters.QUERY_PERSISTENCE, QueryPersistence.TRANSIENT.name());
-            queryParameters.putSingle(QueryParameters.QUERY_TRACE, "false");
             
-            for (String key : validatedCriteria.getQueryParameters().keySet()) {
-                if (!queryParameters.containsKey(key)) {
-                    queryParameters.put(key, validatedCriteria.getQueryParameters().get(key));
+            // Merge the results in batch order
+            EventQueryResponseBase mergedContentQueryResponse = null;
+            DatawaveWebApplicationException noResultsException = null;
+            for (final Future<ContentBatchResult> future : futures) {
+                final ContentBatchResult batchResult = future.get();
+                if (null != batchResult.noResultsException) {
+                    noResultsException = batchResult.noResultsException;
                 }
+                mergedContentQueryResponse = this.mergeContentResponse(mergedContentQueryResponse, batchResult.response);
             }
             
-            final GenericResponse<String> createResponse = this.queryExecutor.createQuery(CONTENT_QUERY, queryParameters);
-            final String contentQueryId = createResponse.getResult();
-            boolean preventCloseOfMergedQueryId = ((null == mergedContentQueryResponse) && allEventMockResponse);
-            try {
-                BaseQueryResponse contentQueryResponse = null;
-                do {
-                    try {
-                        // Get the first/next results
-                        contentQueryResponse = this.queryExecutor.next(contentQueryId);
-                        
-                        // Validate the response, which also checks for null
-                        if (!(contentQueryResponse instanceof EventQueryResponseBase)) {
-                            EventQueryResponseBase er = responseObjectFactory.getEventQueryResponse();
-                            er.addMessage("Unhandled response type " + contentQueryResponse + " from ContentQuery");
-                            throw new PreConditionFailedException(null, er);
-                        }
-                        
-                        // Prevent NPE due to attempted merge when total events is null
-                        final EventQueryResponseBase eventQueryResponse = (EventQueryResponseBase) contentQueryResponse;
-                        if (null == eventQueryResponse.getTotalEvents()) {
-                            final Long returnedEvents = eventQueryResponse.getReturnedEvents();
-                            eventQueryResponse.setTotalEvents((null != returnedEvents) ? returnedEvents : 0L);
-                        }
-                        
-                        // Assign the merged response if it hasn't been done yet
-                        if (null == mergedContentQueryResponse) {
-                            mergedContentQueryResponse = (EventQueryResponseBase) contentQueryResponse;
-                        }
-                        // If the merged content has already been assigned, merge into it, but keep the original
-                        // query Id
-                        else {
-                            final String queryId = mergedContentQueryResponse.getQueryId();
-                            mergedContentQueryResponse.merge((EventQueryResponseBase) contentQueryResponse);
-                            mergedContentQueryResponse.setQueryId(queryId);
-                        }
-                    } catch (final NoResultsException e) {
-                        contentQueryResponse = null;
-                        noResultsException = e;
+            // Conditionally throw a NoResultsException
+            if ((null == mergedContentQueryResponse) && (null != noResultsException)) {
+                throw noResultsException;
+            }
+            
+            // Restore the requested order of the events
+            if (null != mergedContentQueryResponse && null != mergedContentQueryResponse.getEvents()) {
+                final List<EventBase> events = new ArrayList<>(mergedContentQueryResponse.getEvents());
+                events.sort(Comparator.comparingInt(event -> {
+                    final Metadata metadata = event.getMetadata();
+                    final String key = (null == metadata) ? null
+                                    : metadata.getRow() + FORWARD_SLASH + metadata.getDataType() + FORWARD_SLASH + metadata.getInternalId();
+                    return requestOrder.getOrDefault(key, Integer.MAX_VALUE);
+                }));
+                mergedContentQueryResponse.setEvents(events);
+            }
+            
+            if (null != mergedContentQueryResponse) {
+                mergedQueryId = mergedContentQueryResponse.getQueryId();
+            }
+            return mergedContentQueryResponse;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EJBException("Interrupted while looking up content for " + queryName, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new EJBException("Unable to look up content for " + queryName, e);
+        } finally {
+            for (final Future<ContentBatchResult> future : futures) {
+                future.cancel(true);
+            }
+            for (final ContentBatchResult batchResult : openBatches.abandon()) {
+                if (!batchResult.queryId.equals(mergedQueryId)) {
+                    this.closeContentBatch(executor, batchResult);
+                }
+            }
+        }
+    }
+    
+    /*
+     * Closes a batch which was left open for the merge
+     */
+    private void closeContentBatch(final QueryExecutor executor, final ContentBatchResult batchResult) {
+        try {
+            executor.close(batchResult.queryId);
+        } catch (RuntimeException e) {
+            this.log.warn("Unable to close content lookup batch " + batchResult.queryId, e);
+        }
+    }
+    
+    /*
+     * Splits the batched content query strings back into their "DOCUMENT:shardId/datatype/uid" terms, recording the position of each term in the original
+     * request, and regroups them by the date portion of the shard ID while honoring the configured batch upper limit.
+     */
+    private List<StringBuilder> partitionByShardDate(final List<StringBuilder> batchedContentQueryStrings, final Map<String,Integer> requestOrder) {
+        final Map<String,List<String>> termsByShardDate = new LinkedHashMap<>();
+        int position = 0;
+        for (final StringBuilder contentQuery : batchedContentQueryStrings) {
+            for (final String term : contentQuery.toString().split(SPACE)) {
+                if (term.isEmpty()) {
+                    continue;
+                }
+                final String eventId = term.startsWith(DOCUMENT_FIELD_NAME) ? term.substring(DOCUMENT_FIELD_NAME.length()) : term;
+                requestOrder.putIfAbsent(eventId, position++);
+                
+                // shard IDs look like yyyyMMdd_n, so everything before the underscore identifies the day
+                final int shardEnd = eventId.indexOf(FORWARD_SLASH);
+                final String shardId = (shardEnd < 0) ? eventId : eventId.substring(0, shardEnd);
+                final int dateEnd = shardId.indexOf('_');
+                final String shardDate = (dateEnd < 0) ? shardId : shardId.substring(0, dateEnd);
+                termsByShardDate.computeIfAbsent(shardDate, k -> new ArrayList<>()).add(term);
+            }
+        }
+        
+        final List<StringBuilder> partitionedBatches = new ArrayList<>();
+        for (final List<String> terms : termsByShardDate.values()) {
+            StringBuilder contentQuery = null;
+            int eventCounter = 0;
+            for (final String term : terms) {
+                if ((null == contentQuery) || ((this.maxAllowedBatchLookupUUIDs > 0) && (eventCounter >= this.maxAllowedBatchLookupUUIDs))) {
+                    contentQuery = new StringBuilder();
+                    partitionedBatches.add(contentQuery);
+                    eventCounter = 0;
+                } else {
+                    contentQuery.append(SPACE);
+                }
+                contentQuery.append(term);
+                eventCounter++;
+            }
+        }
+        
+        return partitionedBatches;
+    }
+    
+    /*
+     * Runs the create/next/close cycle of a single ContentQuery batch, collecting all of its pages into a single response
+     */
+    private ContentBatchResult lookupContentBatch(final QueryExecutor executor, final String queryName, final AbstractUUIDLookupCriteria validatedCriteria,
+                    final StringBuilder contentQuery, final Date endDate, final Date expireDate, final String userAuths, final int batchNumber,
+                    final int numBatches, final boolean preventCloseOfQueryId) {
+        final long start = System.currentTimeMillis();
+        final ContentBatchResult batchResult = new ContentBatchResult();
+        
+        // Submitted query should look like this:
+        //
+        // DOCUMENT:shardId/datatype/uid [DOCUMENT:shardId/datatype/uid]*
+        //
+        MultivaluedMap<String,String> queryParameters = new MultivaluedMapImpl<>();
+        queryParameters.putAll(this.defaultOptionalParams);
+        queryParameters.putSingle(QueryParameters.QUERY_NAME, queryName);
+        queryParameters.putSingle(QueryParameters.QUERY_STRING, contentQuery.toString());
+        try {
+            queryParameters.putSingle(QueryParameters.QUERY_BEGIN, QueryParametersImpl.formatDate(this.beginAsDate));
+        } catch (ParseException e1) {
+            throw new RuntimeException("Error formatting begin date: " + this.beginAsDate);
+        }
+        try {
+            queryParameters.putSingle(QueryParameters.QUERY_END, QueryParametersImpl.formatDate(endDate));
+        } catch (ParseException e1) {
+            throw new RuntimeException("Error formatting end date: " + endDate);
+        }
+        queryParameters.putSingle(QueryParameters.QUERY_AUTHORIZATIONS, userAuths);
+        try {
+            queryParameters.putSingle(QueryParameters.QUERY_EXPIRATION, QueryParametersImpl.formatDate(expireDate));
+        } catch (ParseException e1) {
+            throw new RuntimeException("Error formatting expr date: " + expireDate);
+        }
+        queryParameters.putSingle(QueryParameters.QUERY_PERSISTENCE, QueryPersistence.TRANSIENT.name());
+        queryParameters.putSingle(QueryParameters.QUERY_TRACE, "false");
+        
+        for (String key : validatedCriteria.getQueryParameters().keySet()) {
+            if (!queryParameters.containsKey(key)) {
+                queryParameters.put(key, validatedCriteria.getQueryParameters().get(key));
+            }
+        }
+        
+        // Tag the batch so that its query metric, which records the create and page timings, can be tied back to this lookup
+        if (numBatches > 1) {
+            String params = queryParameters.getFirst(QueryParameters.QUERY_PARAMS);
+            params = ((null == params) ? EMPTY_STRING : params + ';') + PARAM_CONTENT_LOOKUP_BATCH + ':' + (batchNumber + 1) + FORWARD_SLASH + numBatches;
+            queryParameters.putSingle(QueryParameters.QUERY_PARAMS, params);
+        }
+        
+        final GenericResponse<String> createResponse = executor.createQuery(CONTENT_QUERY, queryParameters);
+        final String contentQueryId = createResponse.getResult();
+        batchResult.queryId = contentQueryId;
+        try {
+            BaseQueryResponse contentQueryResponse = null;
+            do {
+                try {
+                    // Get the first/next results
+                    contentQueryResponse = executor.next(contentQueryId);
+                    
+                    // Validate the response, which also checks for null
+                    if (!(contentQueryResponse instanceof EventQueryResponseBase)) {
+                        EventQueryResponseBase er = responseObjectFactory.getEventQueryResponse();
+                        er.addMessage("Unhandled response type " + contentQueryResponse + " from ContentQuery");
+                        throw new PreConditionFailedException(null, er);
                     }
-                    // This used to be the case. Don't know when the executor started
-                    // directly throwing a NoResultsException, but this is kept just
-                    // in case.
-                    catch (final EJBException e) {
-                        final Throwable cause = e.getCause();
-                        if (cause instanceof DatawaveWebApplicationException) {
-                            DatawaveWebApplicationException nwae = (DatawaveWebApplicationException) cause;
-                            if (nwae instanceof NoResultsException) {
-                                contentQueryResponse = null;
-                                noResultsException = nwae;
-                            } else {
-                                throw nwae;
-                            }
-                        }
+                    
+                    // Prevent NPE due to attempted merge when total events is null
+                    final EventQueryResponseBase eventQueryResponse = (EventQueryResponseBase) contentQueryResponse;
+                    if (null == eventQueryResponse.getTotalEvents()) {
+                        final Long returnedEvents = eventQueryResponse.getReturnedEvents();
+                        eventQueryResponse.setTotalEvents((null != returnedEvents) ? returnedEvents : 0L);
                     }
+                    
+                    batchResult.response = this.mergeContentResponse(batchResult.response, eventQueryResponse);
+                } catch (final NoResultsException e) {
+                    contentQueryResponse = null;
+                    batchResult.noResultsException = e;
                 }
-                // Loop if more results are available
-                while (null != contentQueryResponse);
-            } finally {
-                if (!preventCloseOfMergedQueryId) {
-                    this.queryExecutor.close(contentQueryId);
+                // This used to be the case. Don't know when the executor started
+                // directly throwing a NoResultsException, but this is kept just
+                // in case.
+                catch (final EJBException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof DatawaveWebApplicationException) {
+                        DatawaveWebApplicationException nwae = (DatawaveWebApplicationException) cause;
+                        if (nwae instanceof NoResultsException) {
+                            contentQueryResponse = null;
+                            batchResult.noResultsException = nwae;
+                        } else {
+                            throw nwae;
+                        }
+                    }
                 }
             }
+            // Loop if more results are available
+            while (null != contentQueryResponse);
+        } finally {
+            if (!preventCloseOfQueryId) {
+                executor.close(contentQueryId);
+            }
         }
         
-        // Conditionally throw a NoResultsException
-        if ((null == mergedContentQueryResponse) && (null != noResultsException)) {
-            throw noResultsException;
+        if (log.isDebugEnabled()) {
+            log.debug("Content lookup batch " + (batchNumber + 1) + " of " + numBatches + " for " + queryName + " (" + contentQueryId + ") took "
+                            + (System.currentTimeMillis() - start) + "ms");
+        }
+        return batchResult;
+    }
+    
+    /*
+     * Merge a content query response into the merged response, keeping the merged response's original query ID
+     */
+    private EventQueryResponseBase mergeContentResponse(final EventQueryResponseBase mergedContentQueryResponse,
+                    final EventQueryResponseBase contentQueryResponse) {
+        // Assign the merged response if it hasn't been done yet
+        if (null == mergedContentQueryResponse) {
+            return contentQueryResponse;
+        }
+        // If the merged content has already been assigned, merge into it, but keep the original query Id
+        if (null != contentQueryResponse) {
+            final String queryId = mergedContentQueryResponse.getQueryId();
+            mergedContentQueryResponse.merge(contentQueryResponse);
+            mergedContentQueryResponse.setQueryId(queryId);
         }
-        
         return mergedContentQueryResponse;
     }
     
@@ -927,6 +1150,53 @@ public class LookupUUIDUtil {
         return matchingUuidType;
     }
     
+    /**
+     * Sets up the concurrent execution of batched content lookups. Without an executor, batches are always executed one after another.
+     *
+     * @param executorService
+     *            an executor dedicated to content lookup batches, which propagates the caller's security context, such as a container-managed executor. It
+     *            must not be the executor that runs the pages of the queries themselves, as each batch waits on those pages.
+     * @param batchQueryExecutor
+     *            supplies, on the request thread, the query executor that the batches call from the worker threads, such as the business object of the
+     *            calling bean
+     */
+    public void setBatchLookupExecution(final ExecutorService executorService, final Supplier<QueryExecutor> batchQueryExecutor) {
+        this.executorService = executorService;
+        this.batchQueryExecutor = batchQueryExecutor;
+    }
+    
+    /*
+     * The pages collected from a single content lookup batch
+     */
+    private static class ContentBatchResult {
+        private String queryId;
+        private EventQueryResponseBase response;
+        private DatawaveWebApplicationException noResultsException;
+    }
+    
+    /*
+     * The content lookup batches which were left open for the merge, until the merge is done or abandoned
+     */
+    private static class OpenContentBatches {
+        private final List<ContentBatchResult> batches = new ArrayList<>();
+        private boolean abandoned = false;
+        
+        /*
+         * @return false if the merge is already done, in which case the batch should be closed by the caller
+         */
+        synchronized boolean add(final ContentBatchResult batchResult) {
+            if (!abandoned) {
+                batches.add(batchResult);
+            }
+            return !abandoned;
+        }
+        
+        synchronized List<ContentBatchResult> abandon() {
+            abandoned = true;
+            return new ArrayList<>(batches);
+        }
+    }
+    
     private class AllEventMockResponse extends DefaultEventQueryResponse {
         private static final long serialVersionUID = -4399127351489684829L;
         private final AbstractUUIDLookupCriteria criteria;
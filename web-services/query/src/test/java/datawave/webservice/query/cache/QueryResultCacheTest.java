@@ -0,0 +1,177 @@
+package datawave.webservice.query.cache;
+
+import datawave.webservice.query.QueryParameters;
+import datawave.webservice.result.BaseQueryResponse;
+import datawave.webservice.result.DefaultEventQueryResponse;
+import org.apache.curator.test.InstanceSpec;
+import org.apache.curator.test.QuorumConfigBuilder;
+import org.apache.curator.test.TestingZooKeeperServer;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.ws.rs.core.MultivaluedMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueryResultCacheTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private final Collection<List<String>> auths = Collections.singletonList(Arrays.asList("A", "B"));
+    
+    private QueryResultCache cache;
+    
+    @Before
+    public void setup() throws Exception {
+        cache = new QueryResultCache(true, folder.newFolder().getPath(), 1024 * 1024, 60);
+    }
+    
+    private MultivaluedMap<String,String> parameters(String query, String queryName) {
+        MultivaluedMap<String,String> parameters = new MultivaluedMapImpl<>();
+        parameters.putSingle(QueryParameters.QUERY_STRING, query);
+        parameters.putSingle(QueryParameters.QUERY_NAME, queryName);
+        parameters.putSingle(QueryParameters.QUERY_BEGIN, "20190101");
+        parameters.putSingle(QueryParameters.QUERY_END, "20190102");
+        return parameters;
+    }
+    
+    private BaseQueryResponse response(String queryId) {
+        DefaultEventQueryResponse response = new DefaultEventQueryResponse();
+        response.setQueryId(queryId);
+        response.setLogicName("EventQuery");
+        response.setPageNumber(1);
+        response.setReturnedEvents(0L);
+        return response;
+    }
+    
+    @Test
+    public void testFingerprint() {
+        String fingerprint = cache.fingerprint("EventQuery", parameters("FOO == 'bar'", "first"), auths);
+        
+        // the name of the query and the layout of the query string do not change the results
+        assertEquals(fingerprint, cache.fingerprint("EventQuery", parameters(" FOO  ==   'bar' ", "second"), auths));
+        assertEquals(fingerprint, cache.fingerprint("EventQuery", parameters("FOO == 'bar'", "first"), Collections.singletonList(Arrays.asList("B", "A"))));
+        
+        assertNotEquals(fingerprint, cache.fingerprint("EventQuery", parameters("FOO == 'baz'", "first"), auths));
+        assertNotEquals(fingerprint, cache.fingerprint("EdgeQuery", parameters("FOO == 'bar'", "first"), auths));
+        assertNotEquals(fingerprint, cache.fingerprint("EventQuery", parameters("FOO == 'bar'", "first"), Collections.singletonList(Arrays.asList("A"))));
+    }
+    
+    @Test
+    public void testCacheable() {
+        assertTrue(cache.isCacheable(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2))));
+        assertFalse(cache.isCacheable(new Date()));
+        assertFalse(cache.isCacheable(null));
+    }
+    
+    @Test
+    public void testPutGetAndInvalidate() {
+        String first = cache.fingerprint("EventQuery", parameters("FOO == 'bar'", "first"), auths);
+        String second = cache.fingerprint("EventQuery", parameters("FOO == 'baz'", "second"), auths);
+        assertNull(cache.get(first));
+        
+        cache.put(first, cache.getVersion(), response("abc"));
+        cache.put(second, cache.getVersion(), response("def"));
+        BaseQueryResponse cached = cache.get(first);
+        assertNotNull(cached);
+        assertEquals("abc", cached.getQueryId());
+        assertEquals(2, cache.getSize());
+        
+        cache.invalidate(first);
+        assertNull(cache.get(first));
+        assertNotNull(cache.get(second));
+        
+        cache.invalidateAll();
+        assertNull(cache.get(second));
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getSizeBytes());
+    }
+    
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        String first = cache.fingerprint("EventQuery", parameters("FOO == 'bar'", "first"), auths);
+        cache.put(first, cache.getVersion(), response("abc"));
+        long pageSize = cache.getSizeBytes();
+        
+        // room for two pages
+        cache = new QueryResultCache(true, folder.newFolder().getPath(), pageSize * 2 + pageSize / 2, 60);
+        String second = cache.fingerprint("EventQuery", parameters("FOO == 'baz'", "second"), auths);
+        String third = cache.fingerprint("EventQuery", parameters("FOO == 'qux'", "third"), auths);
+        cache.put(first, cache.getVersion(), response("abc"));
+        cache.put(second, cache.getVersion(), response("def"));
+        
+        // use the first page, so that the second is evicted by the third
+        assertNotNull(cache.get(first));
+        cache.put(third, cache.getVersion(), response("ghi"));
+        
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+        assertEquals(2, cache.getSize());
+    }
+    
+    @Test
+    public void testDisabled() {
+        QueryResultCache disabled = new QueryResultCache(false, null, 1024, 60);
+        String fingerprint = disabled.fingerprint("EventQuery", parameters("FOO == 'bar'", "first"), auths);
+        disabled.put(fingerprint, disabled.getVersion(), response("abc"));
+        assertNull(disabled.get(fingerprint));
+        assertFalse(disabled.isCacheable(new Date(0)));
+    }
+    
+    @Test
+    public void testNotCachedAcrossAnInvalidation() {
+        String fingerprint = cache.fingerprint("EventQuery", parameters("FOO == 'bar'", "first"), auths);
+        long version = cache.getVersion();
+        
+        // the data is modified while the query runs
+        cache.invalidateAll();
+        cache.put(fingerprint, version, response("abc"));
+        assertNull(cache.get(fingerprint));
+        assertEquals(0, cache.getSize());
+    }
+    
+    @Test
+    public void testInvalidatedOnEveryServer() throws Exception {
+        InstanceSpec spec = new InstanceSpec(null, -1, -1, -1, true, -1);
+        TestingZooKeeperServer zookeeper = new TestingZooKeeperServer(new QuorumConfigBuilder(spec));
+        zookeeper.start();
+        QueryResultCache first = new QueryResultCache(true, folder.newFolder().getPath(), 1024 * 1024, 60, spec.getConnectString());
+        QueryResultCache second = new QueryResultCache(true, folder.newFolder().getPath(), 1024 * 1024, 60, spec.getConnectString());
+        try {
+            String fingerprint = first.fingerprint("EventQuery", parameters("FOO == 'bar'", "first"), auths);
+            first.put(fingerprint, first.getVersion(), response("abc"));
+            second.put(fingerprint, second.getVersion(), response("abc"));
+            assertNotNull(second.get(fingerprint));
+            
+            // a modification made through the first server
+            first.invalidateAll();
+            assertNull(first.get(fingerprint));
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (second.getSize() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertNull(second.get(fingerprint));
+            assertEquals(1, second.getVersion());
+        } finally {
+            first.stop();
+            second.stop();
+            zookeeper.close();
+        }
+    }
+}
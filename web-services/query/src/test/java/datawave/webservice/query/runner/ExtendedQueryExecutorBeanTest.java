@@ -2216,6 +2216,7 @@ public class ExtendedQueryExecutorBeanTest {
         expect(this.lookupUUIDConfiguration.getUuidTypes()).andReturn(null);
         expect(this.lookupUUIDConfiguration.getBeginDate()).andReturn("not a date");
         expect(this.lookupUUIDConfiguration.getBatchLookupUpperLimit()).andReturn(0);
+        expect(this.lookupUUIDConfiguration.getMaxConcurrentBatchLookups()).andReturn(1);
         expect(this.context.getCallerPrincipal()).andReturn(this.principal).anyTimes();
         LookupUUIDConfiguration tmpCfg = new LookupUUIDConfiguration();
         tmpCfg.setColumnVisibility("PUBLIC");
@@ -3219,7 +3220,7 @@ public class ExtendedQueryExecutorBeanTest {
         setInternalState(subject, AuditBean.class, auditor);
         setInternalState(subject, QueryMetricFactory.class, new QueryMetricFactoryImpl());
         setInternalState(subject, LookupUUIDUtil.class, lookupUUIDUtil);
-        setInternalState(subject, ManagedExecutorService.class, executor);
+        setInternalState(subject, "executor", executor);
         
         subject.lookupUUID("uuidType", "1234567890", uriInfo, httpHeaders);
         
@@ -3253,7 +3254,7 @@ public class ExtendedQueryExecutorBeanTest {
         setInternalState(subject, AuditBean.class, auditor);
         setInternalState(subject, QueryMetricFactory.class, new QueryMetricFactoryImpl());
         setInternalState(subject, LookupUUIDUtil.class, lookupUUIDUtil);
-        setInternalState(subject, ManagedExecutorService.class, executor);
+        setInternalState(subject, "executor", executor);
         setInternalState(subject, Logger.class, Logger.getLogger(QueryExecutorBean.class));
         
         subject.lookupUUID("uuidType", "1234567890", uriInfo, httpHeaders);
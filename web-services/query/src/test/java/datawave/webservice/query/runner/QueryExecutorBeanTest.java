@@ -34,6 +34,7 @@ import datawave.webservice.query.cache.QueryCache;
 import datawave.webservice.query.cache.QueryExpirationConfiguration;
 import datawave.webservice.query.cache.QueryMetricFactory;
 import datawave.webservice.query.cache.QueryMetricFactoryImpl;
+import datawave.webservice.query.cache.QueryResultCache;
 import datawave.webservice.query.cache.QueryTraceCache;
 import datawave.webservice.query.configuration.GenericQueryConfiguration;
 import datawave.webservice.query.configuration.LookupUUIDConfiguration;
@@ -44,10 +45,13 @@ import datawave.webservice.query.logic.BaseQueryLogic;
 import datawave.webservice.query.logic.QueryLogic;
 import datawave.webservice.query.logic.QueryLogicFactory;
 import datawave.webservice.query.logic.QueryLogicFactoryImpl;
+import datawave.webservice.query.metric.BaseQueryMetric;
 import datawave.webservice.query.metric.BaseQueryMetric.Lifecycle;
 import datawave.webservice.query.metric.BaseQueryMetric.Prediction;
 import datawave.webservice.query.metric.QueryMetric;
 import datawave.webservice.query.metric.QueryMetricsBean;
+import datawave.webservice.result.BaseQueryResponse;
+import datawave.webservice.result.DefaultEventQueryResponse;
 import datawave.webservice.result.GenericResponse;
 import org.apache.accumulo.core.client.AccumuloClient;
 import org.apache.accumulo.core.util.Pair;
@@ -55,6 +59,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.time.DateUtils;
 import org.apache.log4j.Logger;
+import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
 import org.jboss.resteasy.core.Dispatcher;
@@ -64,7 +69,9 @@ import org.jboss.resteasy.mock.MockHttpResponse;
 import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.powermock.api.easymock.PowerMock;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
@@ -78,23 +85,29 @@ import org.xml.sax.SAXException;
 
 import javax.ejb.EJBContext;
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.easymock.EasyMock.anyObject;
@@ -112,6 +125,10 @@ import static org.powermock.reflect.Whitebox.setInternalState;
 @PrepareForTest(QueryParameters.class)
 @PowerMockIgnore({"java.*", "javax.*", "com.*", "org.apache.*", "org.w3c.*", "net.sf.*"})
 public class QueryExecutorBeanTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
     // Fields for building generic default queries
     private final String queryLogicName = "EventQueryLogic";
     private final String queryName = "Something";
@@ -763,4 +780,178 @@ public class QueryExecutorBeanTest {
             }
         }
     }
+    
+    /**
+     * @return a bean which answers queries from {@code resultCache}, and which takes the queries it creates from {@code queries} and records those it runs in
+     *         {@code ran}, rather than running them
+     */
+    private QueryExecutorBean resultCachingBean(QueryResultCache resultCache, Deque<QueryImpl> queries, List<String> ran) throws Exception {
+        QueryExecutorBean subject = new QueryExecutorBean() {
+            @Override
+            public GenericResponse<String> createQuery(String logicName, MultivaluedMap<String,String> queryParameters, HttpHeaders httpHeaders) {
+                GenericResponse<String> response = new GenericResponse<>();
+                response.setResult(queries.peek().getId().toString());
+                return response;
+            }
+            
+            @Override
+            protected BaseQueryResponse next(String id, boolean checkForContentLookup) {
+                ran.add(id);
+                return page(queries.poll().getId().toString());
+            }
+        };
+        for (Field field : QueryExecutorBean.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+                field.setAccessible(true);
+                field.set(subject, field.get(bean));
+            }
+        }
+        setInternalState(subject, QueryResultCache.class, resultCache);
+        return subject;
+    }
+    
+    private BaseQueryResponse page(String queryId) {
+        DefaultEventQueryResponse page = new DefaultEventQueryResponse();
+        page.setQueryId(queryId);
+        page.setLogicName(queryLogicName);
+        page.setPageNumber(1);
+        page.setReturnedEvents(1L);
+        return page;
+    }
+    
+    private DatawavePrincipal principal() {
+        DatawaveUser user = new DatawaveUser(SubjectIssuerDNPair.of(userDN, "<CN=MY_CA, OU=MY_SUBDIVISION, OU=MY_DIVISION, O=ORG, C=US>"), UserType.USER,
+                        Arrays.asList(auths), null, null, 0L);
+        return new DatawavePrincipal(Collections.singletonList(user));
+    }
+    
+    /**
+     * Queues a query which runs to exhaustion in its first page
+     */
+    private QueryImpl runningQuery(Deque<QueryImpl> queries) throws Exception {
+        QueryImpl q = createNewQuery();
+        RunningQuery query = createMock(RunningQuery.class);
+        EasyMock.expect(query.isExhausted()).andReturn(true).anyTimes();
+        EasyMock.expect(query.getSettings()).andReturn(q).anyTimes();
+        cache.put(q.getId().toString(), query);
+        queries.add(q);
+        return q;
+    }
+    
+    /**
+     * Expects the query to be validated, as it is before being answered from the result cache
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private QueryLogic validatedLogic(DatawavePrincipal principal) throws Exception {
+        QueryLogic logic = createMock(BaseQueryLogic.class);
+        EasyMock.expect(queryLogicFactory.getQueryLogic(queryLogicName, principal)).andReturn(logic);
+        EasyMock.expect(logic.getRequiredQueryParameters()).andReturn(Collections.emptySet());
+        EasyMock.expect(logic.getMaxPageSize()).andReturn(0).anyTimes();
+        return logic;
+    }
+    
+    /**
+     * Caches the first page of a query, as a query which ran to exhaustion in its first page
+     */
+    private QueryResultCache cachedResults(Deque<QueryImpl> queries, List<String> ran) throws Exception {
+        // the query ended before the horizon of the result cache
+        beginDate = endDate = DateUtils.addHours(new Date(), -2);
+        QueryResultCache resultCache = new QueryResultCache(true, folder.newFolder().getPath(), 1024 * 1024, 60);
+        
+        PowerMock.resetAll();
+        EasyMock.expect(ctx.getCallerPrincipal()).andReturn(principal()).anyTimes();
+        QueryImpl q = runningQuery(queries);
+        PowerMock.replayAll();
+        
+        BaseQueryResponse response = resultCachingBean(resultCache, queries, ran).createQueryAndNext(queryLogicName, createNewQueryParameterMap(), null);
+        
+        PowerMock.verifyAll();
+        assertEquals(q.getId().toString(), response.getQueryId());
+        assertEquals(Collections.singletonList(q.getId().toString()), ran);
+        assertEquals(1, resultCache.getSize());
+        return resultCache;
+    }
+    
+    @Test
+    public void testResultCacheMiss() throws Exception {
+        cachedResults(new ArrayDeque<>(), new ArrayList<>());
+    }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testResultCacheHit() throws Exception {
+        Deque<QueryImpl> queries = new ArrayDeque<>();
+        List<String> ran = new ArrayList<>();
+        QueryResultCache resultCache = cachedResults(queries, ran);
+        QueryImpl q = createNewQuery();
+        
+        PowerMock.resetAll();
+        DatawavePrincipal principal = principal();
+        EasyMock.expect(ctx.getCallerPrincipal()).andReturn(principal).anyTimes();
+        QueryLogic logic = validatedLogic(principal);
+        EasyMock.expect(persister.create(anyObject(), anyObject(), anyObject(), eq(queryLogicName), anyObject(), anyObject())).andReturn(q);
+        EasyMock.expect(logic.getAuditType(EasyMock.<Query> anyObject())).andReturn(AuditType.NONE).anyTimes();
+        EasyMock.expect(logic.getCollectQueryMetrics()).andReturn(Boolean.TRUE);
+        Capture<BaseQueryMetric> metric = EasyMock.newCapture();
+        metrics.updateMetric(EasyMock.capture(metric));
+        PowerMock.replayAll();
+        
+        BaseQueryResponse response = resultCachingBean(resultCache, queries, ran).createQueryAndNext(queryLogicName, createNewQueryParameterMap(), null);
+        
+        PowerMock.verifyAll();
+        // the cached page is returned for the new query, which is closed as it is created
+        assertEquals(1, ran.size());
+        assertEquals(q.getId().toString(), response.getQueryId());
+        assertEquals(1, ((DefaultEventQueryResponse) response).getReturnedEvents().longValue());
+        assertTrue(closedCache.exists(q.getId().toString()));
+        assertEquals(q.getId().toString(), metric.getValue().getQueryId());
+        assertEquals(QueryResultCache.class.getSimpleName(), metric.getValue().getQueryType());
+        assertEquals(Lifecycle.CLOSED, metric.getValue().getLifecycle());
+        assertEquals(1, metric.getValue().getNumResults());
+    }
+    
+    @Test
+    public void testResultCacheHorizonMoved() throws Exception {
+        Deque<QueryImpl> queries = new ArrayDeque<>();
+        List<String> ran = new ArrayList<>();
+        QueryResultCache resultCache = cachedResults(queries, ran);
+        // the query now ends after the horizon, so newer data may still arrive for it
+        setInternalState(resultCache, "horizonMinutes", TimeUnit.HOURS.toMinutes(3));
+        
+        PowerMock.resetAll();
+        DatawavePrincipal principal = principal();
+        EasyMock.expect(ctx.getCallerPrincipal()).andReturn(principal).anyTimes();
+        validatedLogic(principal);
+        QueryImpl q = runningQuery(queries);
+        PowerMock.replayAll();
+        
+        BaseQueryResponse response = resultCachingBean(resultCache, queries, ran).createQueryAndNext(queryLogicName, createNewQueryParameterMap(), null);
+        
+        PowerMock.verifyAll();
+        assertEquals(q.getId().toString(), response.getQueryId());
+        assertEquals(Arrays.asList(ran.get(0), q.getId().toString()), ran);
+        assertEquals(0, resultCache.getSize());
+    }
+    
+    @Test
+    public void testResultCacheInvalidated() throws Exception {
+        Deque<QueryImpl> queries = new ArrayDeque<>();
+        List<String> ran = new ArrayList<>();
+        QueryResultCache resultCache = cachedResults(queries, ran);
+        resultCache.invalidateAll();
+        assertEquals(0, resultCache.getSize());
+        
+        PowerMock.resetAll();
+        EasyMock.expect(ctx.getCallerPrincipal()).andReturn(principal()).anyTimes();
+        QueryImpl q = runningQuery(queries);
+        PowerMock.replayAll();
+        
+        BaseQueryResponse response = resultCachingBean(resultCache, queries, ran).createQueryAndNext(queryLogicName, createNewQueryParameterMap(), null);
+        
+        PowerMock.verifyAll();
+        // the query runs again, and its results are cached again
+        assertEquals(q.getId().toString(), response.getQueryId());
+        assertEquals(Arrays.asList(ran.get(0), q.getId().toString()), ran);
+        assertEquals(1, resultCache.getSize());
+    }
 }
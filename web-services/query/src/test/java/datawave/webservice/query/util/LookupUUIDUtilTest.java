@@ -0,0 +1,274 @@
+package datawave.webservice.query.util;
+
+import datawave.webservice.common.exception.NoResultsException;
+import datawave.webservice.query.QueryParameters;
+import datawave.webservice.query.configuration.LookupUUIDConfiguration;
+import datawave.webservice.query.result.event.DefaultEvent;
+import datawave.webservice.query.result.event.EventBase;
+import datawave.webservice.query.result.event.Metadata;
+import datawave.webservice.query.runner.QueryExecutor;
+import datawave.webservice.result.DefaultEventQueryResponse;
+import datawave.webservice.result.EventQueryResponseBase;
+import datawave.webservice.result.GenericResponse;
+import datawave.webservice.result.VoidResponse;
+import org.easymock.EasyMock;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.powermock.reflect.Whitebox;
+
+import javax.ejb.EJBContext;
+import javax.ws.rs.core.MultivaluedMap;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.expect;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LookupUUIDUtilTest {
+    
+    private static final Principal PRINCIPAL = () -> "user";
+    
+    private final LookupUUIDConfiguration configuration = new LookupUUIDConfiguration();
+    
+    private EJBContext context;
+    
+    private ExecutorService executorService;
+    
+    private ContentQueries contentQueries;
+    
+    @Before
+    public void setup() {
+        configuration.setBeginDate("20100101");
+        configuration.setColumnVisibility("PUBLIC");
+        configuration.setBatchLookupUpperLimit(2);
+        configuration.setMaxConcurrentBatchLookups(2);
+        
+        context = EasyMock.createMock(EJBContext.class);
+        expect(context.getCallerPrincipal()).andReturn(PRINCIPAL).anyTimes();
+        EasyMock.replay(context);
+        
+        executorService = Executors.newFixedThreadPool(4);
+        contentQueries = new ContentQueries();
+    }
+    
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+    
+    /**
+     * A query executor that answers content queries with an event for each of their terms
+     */
+    private QueryExecutor contentQueryExecutor() {
+        QueryExecutor executor = EasyMock.createMock(QueryExecutor.class);
+        expect(executor.createQuery(anyString(), anyObject())).andAnswer(() -> contentQueries.create(EasyMock.getCurrentArguments()[1])).anyTimes();
+        expect(executor.next(anyString())).andAnswer(() -> contentQueries.next((String) EasyMock.getCurrentArguments()[0])).anyTimes();
+        expect(executor.close(anyString())).andAnswer(() -> contentQueries.close((String) EasyMock.getCurrentArguments()[0])).anyTimes();
+        EasyMock.replay(executor);
+        return executor;
+    }
+    
+    private static EventBase event(String row, String internalId) {
+        Metadata metadata = new Metadata();
+        metadata.setRow(row);
+        metadata.setDataType("datatype");
+        metadata.setInternalId(internalId);
+        DefaultEvent event = new DefaultEvent();
+        event.setMetadata(metadata);
+        return event;
+    }
+    
+    private static DefaultEventQueryResponse response(List<EventBase> events) {
+        DefaultEventQueryResponse response = new DefaultEventQueryResponse();
+        response.setQueryId("uuid-query");
+        response.setLogicName("LuceneUUIDEventQuery");
+        response.setEvents(events);
+        response.setReturnedEvents((long) events.size());
+        response.setTotalEvents((long) events.size());
+        return response;
+    }
+    
+    // the events of several days, requested out of day order
+    private static List<EventBase> requestedEvents() {
+        return new ArrayList<>(Arrays.asList(event("20190102_1", "c"), event("20190101_0", "a"), event("20190103_2", "e"), event("20190101_0", "b"),
+                        event("20190102_1", "d"), event("20190104_3", "f")));
+    }
+    
+    private static List<String> internalIds(EventQueryResponseBase response) {
+        List<String> ids = new ArrayList<>();
+        for (EventBase event : response.getEvents()) {
+            ids.add(event.getMetadata().getInternalId());
+        }
+        return ids;
+    }
+    
+    @Test
+    public void testConcurrentBatchLookup() {
+        // the content queries must not be run through the bean the lookup was called on
+        QueryExecutor requestExecutor = EasyMock.createMock(QueryExecutor.class);
+        EasyMock.replay(requestExecutor);
+        
+        LookupUUIDUtil util = new LookupUUIDUtil(configuration, requestExecutor, context, null);
+        QueryExecutor batchExecutor = contentQueryExecutor();
+        util.setBatchLookupExecution(executorService, () -> batchExecutor);
+        
+        EventQueryResponseBase response = util.lookupContentByNextResponse(new PostUUIDCriteria("UUID:x", new MultivaluedMapImpl<>()),
+                        response(requestedEvents()));
+        
+        // the events come back in the order they were requested
+        assertEquals(Arrays.asList("c", "a", "e", "b", "d", "f"), internalIds(response));
+        assertEquals(6L, (long) response.getReturnedEvents());
+        assertEquals("uuid-query", response.getQueryId());
+        
+        // one batch per day, each tagged with its position in the lookup, run off the request thread and closed
+        assertEquals(4, contentQueries.queryStrings.size());
+        for (String queryString : contentQueries.queryStrings.values()) {
+            Set<String> days = new HashSet<>();
+            for (String term : queryString.split(" ")) {
+                days.add(term.substring("DOCUMENT:".length(), term.indexOf('_')));
+            }
+            assertEquals(queryString, 1, days.size());
+        }
+        for (String params : contentQueries.params.values()) {
+            assertTrue(params, params.matches(LookupUUIDUtil.PARAM_CONTENT_LOOKUP_BATCH + ":[1-4]/4"));
+        }
+        assertFalse(contentQueries.threads.contains(Thread.currentThread().getName()));
+        assertEquals(contentQueries.queryStrings.keySet(), contentQueries.closed.keySet());
+        assertTrue(contentQueries.maxInFlight.get() <= 2);
+        
+        EasyMock.verify(requestExecutor);
+    }
+    
+    @Test
+    public void testAllEventLookupKeepsTheMergedBatchOpen() throws Exception {
+        LookupUUIDUtil util = new LookupUUIDUtil(configuration, contentQueryExecutor(), context, null);
+        QueryExecutor batchExecutor = contentQueryExecutor();
+        util.setBatchLookupExecution(executorService, () -> batchExecutor);
+        
+        // the first batch finds nothing, so the query id handed back for the all-event lookup is that of the second
+        contentQueries.missing.add("a");
+        List<StringBuilder> batches = Arrays.asList(new StringBuilder("DOCUMENT:20190101_0/datatype/a"), new StringBuilder("DOCUMENT:20190102_1/datatype/b"));
+        EventQueryResponseBase response = Whitebox.invokeMethod(util, "lookupPagedContentConcurrently", "query", new PostUUIDCriteria("event:x",
+                        new MultivaluedMapImpl<>()), batches, new Date(), new Date(), "PUBLIC", true);
+        
+        assertEquals(Collections.singletonList("b"), internalIds(response));
+        String first = contentQueries.idOf("20190101_0");
+        String second = contentQueries.idOf("20190102_1");
+        assertEquals(second, response.getQueryId());
+        assertTrue(contentQueries.closed.containsKey(first));
+        assertFalse(contentQueries.closed.containsKey(second));
+    }
+    
+    @Test
+    public void testSerialBatchLookupWithoutExecutor() {
+        LookupUUIDUtil util = new LookupUUIDUtil(configuration, contentQueryExecutor(), context, null);
+        
+        EventQueryResponseBase response = util.lookupContentByNextResponse(new PostUUIDCriteria("UUID:x", new MultivaluedMapImpl<>()),
+                        response(requestedEvents()));
+        
+        // the batches follow the upper limit only, and run on the request thread
+        assertEquals(Arrays.asList("c", "a", "e", "b", "d", "f"), internalIds(response));
+        assertEquals(3, contentQueries.queryStrings.size());
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), contentQueries.threads);
+    }
+    
+    @Test
+    public void testSingleBatchIsNotSubmitted() {
+        LookupUUIDUtil util = new LookupUUIDUtil(configuration, contentQueryExecutor(), context, null);
+        util.setBatchLookupExecution(executorService, () -> {
+            throw new AssertionError("a single batch should be looked up on the request thread");
+        });
+        
+        EventQueryResponseBase response = util.lookupContentByNextResponse(new PostUUIDCriteria("UUID:x", new MultivaluedMapImpl<>()),
+                        response(new ArrayList<>(Arrays.asList(event("20190101_0", "a"), event("20190102_1", "b")))));
+        
+        assertEquals(Arrays.asList("a", "b"), internalIds(response));
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), contentQueries.threads);
+    }
+    
+    /**
+     * Content queries which return one page with an event for each of their terms
+     */
+    private static class ContentQueries {
+        private final AtomicInteger ids = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final Map<String,String> queryStrings = new ConcurrentHashMap<>();
+        private final Map<String,String> params = new ConcurrentHashMap<>();
+        private final Map<String,Boolean> returned = new ConcurrentHashMap<>();
+        private final Map<String,Boolean> closed = new ConcurrentHashMap<>();
+        private final Set<String> threads = ConcurrentHashMap.newKeySet();
+        // the internal ids of the events which are not found
+        private final Set<String> missing = ConcurrentHashMap.newKeySet();
+        
+        @SuppressWarnings("unchecked")
+        GenericResponse<String> create(Object parameters) {
+            MultivaluedMap<String,String> queryParameters = (MultivaluedMap<String,String>) parameters;
+            threads.add(Thread.currentThread().getName());
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            
+            String id = "content-" + ids.incrementAndGet();
+            queryStrings.put(id, queryParameters.getFirst(QueryParameters.QUERY_STRING));
+            String batch = queryParameters.getFirst(QueryParameters.QUERY_PARAMS);
+            if (batch != null) {
+                params.put(id, batch);
+            }
+            GenericResponse<String> response = new GenericResponse<>();
+            response.setResult(id);
+            return response;
+        }
+        
+        DefaultEventQueryResponse next(String id) throws InterruptedException {
+            if (returned.putIfAbsent(id, true) != null) {
+                throw new NoResultsException(null);
+            }
+            // hold the batch open long enough for the others to start
+            Thread.sleep(20);
+            List<EventBase> events = new ArrayList<>();
+            for (String term : queryStrings.get(id).split(" ")) {
+                String[] parts = term.substring("DOCUMENT:".length()).split("/");
+                if (!missing.contains(parts[2])) {
+                    events.add(event(parts[0], parts[2]));
+                }
+            }
+            if (events.isEmpty()) {
+                throw new NoResultsException(null);
+            }
+            DefaultEventQueryResponse response = response(events);
+            response.setQueryId(id);
+            return response;
+        }
+        
+        String idOf(String shard) {
+            for (Map.Entry<String,String> query : queryStrings.entrySet()) {
+                if (query.getValue().contains(shard)) {
+                    return query.getKey();
+                }
+            }
+            throw new AssertionError("no content query for " + shard);
+        }
+        
+        VoidResponse close(String id) {
+            closed.put(id, true);
+            inFlight.decrementAndGet();
+            return new VoidResponse();
+        }
+    }
+}